@@ -19,11 +19,17 @@
 
 package org.nuxeo.ecm.blob;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.blob.binary.BinaryGarbageCollector;
+import org.nuxeo.ecm.core.blob.binary.BinaryMarkSet;
 import org.nuxeo.ecm.core.blob.binary.BinaryManagerStatus;
+import org.nuxeo.ecm.core.blob.binary.BloomFilterBinaryMarkSet;
 import org.nuxeo.ecm.core.blob.binary.CachingBinaryManager;
 
 /**
@@ -32,6 +38,8 @@ import org.nuxeo.ecm.core.blob.binary.CachingBinaryManager;
  */
 public abstract class AbstractBinaryGarbageCollector<T extends CachingBinaryManager> implements BinaryGarbageCollector {
 
+    private static final Log log = LogFactory.getLog(AbstractBinaryGarbageCollector.class);
+
     protected T binaryManager;
 
     protected BinaryManagerStatus status;
@@ -40,6 +48,13 @@ public abstract class AbstractBinaryGarbageCollector<T extends CachingBinaryMana
 
     protected Set<String> marked;
 
+    /**
+     * The mark set used instead of {@link #marked} if {@link #createMarkSet} returns one.
+     *
+     * @since 11.1
+     */
+    protected BinaryMarkSet markSet;
+
     protected AbstractBinaryGarbageCollector(T binaryManager) {
         this.binaryManager = binaryManager;
     }
@@ -51,7 +66,8 @@ public abstract class AbstractBinaryGarbageCollector<T extends CachingBinaryMana
         }
         startTime = System.currentTimeMillis();
         status = new BinaryManagerStatus();
-        marked = new HashSet<>();
+        markSet = createMarkSet();
+        marked = markSet == null ? new HashSet<>() : null;
 
         // XXX : we should be able to do better
         // and only remove the cache entry that will be removed from S3
@@ -71,6 +87,11 @@ public abstract class AbstractBinaryGarbageCollector<T extends CachingBinaryMana
                 binaryManager.removeBinaries(unmarked);
             }
         } finally {
+            if (markSet != null) {
+                markSet.close();
+                deleteMarkSet(markSet);
+                markSet = null;
+            }
             status.gcDuration = System.currentTimeMillis() - startTime;
             startTime = 0;
         }
@@ -78,9 +99,46 @@ public abstract class AbstractBinaryGarbageCollector<T extends CachingBinaryMana
 
     public abstract Set<String> getUnmarkedBlobs();
 
+    /**
+     * Creates the mark set recording the marked binaries, or returns {@code null} to keep them in memory.
+     *
+     * @since 11.1
+     */
+    protected BinaryMarkSet createMarkSet() {
+        return null;
+    }
+
+    /**
+     * Deletes the storage of a mark set once the garbage collection is done.
+     *
+     * @since 11.1
+     */
+    protected void deleteMarkSet(BinaryMarkSet markSet) {
+        if (markSet instanceof BloomFilterBinaryMarkSet) {
+            try {
+                Files.deleteIfExists(((BloomFilterBinaryMarkSet) markSet).getFile());
+            } catch (IOException e) {
+                log.warn("Cannot delete GC mark set: " + markSet, e);
+            }
+        }
+    }
+
     @Override
     public void mark(String digest) {
-        marked.add(digest);
+        if (markSet == null) {
+            marked.add(digest);
+        } else {
+            markSet.mark(digest);
+        }
+    }
+
+    /**
+     * Checks if a binary was marked.
+     *
+     * @since 11.1
+     */
+    protected boolean isMarked(String digest) {
+        return markSet == null ? marked.contains(digest) : markSet.isMarked(digest);
     }
 
     @Override
@@ -24,6 +24,7 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.nuxeo.ecm.core.blob.BlobProviderDescriptor.PREVENT_USER_UPDATE;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.Collection;
 import java.util.Locale;
@@ -104,6 +105,21 @@ public abstract class AbstractCloudBinaryManager extends CachingBinaryManager im
 
     public static final String DIGEST_ALGORITHM_PROPERTY = "digest";
 
+    /**
+     * Property to record the binaries marked by the garbage collector in a memory-mapped Bloom filter instead of an
+     * in-memory set.
+     *
+     * @since 11.1
+     */
+    public static final String GC_MARK_SET_PROPERTY = "gcmarkset";
+
+    /**
+     * Property for the expected number of binaries, used to size the garbage collector mark set.
+     *
+     * @since 11.1
+     */
+    public static final String GC_MARK_SET_SIZE_PROPERTY = "gcmarksetsize";
+
     @Override
     public void initialize(String blobProviderId, Map<String, String> properties) throws IOException {
         super.initialize(blobProviderId, properties);
@@ -167,14 +183,34 @@ public abstract class AbstractCloudBinaryManager extends CachingBinaryManager im
         if (hint != BlobManager.UsageHint.DOWNLOAD || !isDirectDownload()) {
             return null;
         }
-        String digest = blob.getKey();
-        // strip prefix
-        int colon = digest.indexOf(':');
-        if (colon >= 0) {
-            digest = digest.substring(colon + 1);
+        String digest = stripDigestPrefix(blob.getKey());
+        return getRemoteUri(digest, blob, servletRequest);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the storage supports it, a range of a binary that is not in the local cache is fetched by chunks instead of
+     * fetching the whole binary first.
+     *
+     * @since 11.1
+     */
+    @Override
+    public InputStream getStream(ManagedBlob blob, long offset, long length) throws IOException {
+        String digest = stripDigestPrefix(blob.getKey());
+        if (!useRangeFetch(digest, offset, length, blob.getLength())) {
+            // the whole binary will be cached
+            return null;
         }
+        return getStream(digest, offset, length, blob.getLength());
+    }
 
-        return getRemoteUri(digest, blob, servletRequest);
+    /**
+     * @since 11.1
+     */
+    protected static String stripDigestPrefix(String digest) {
+        int colon = digest.indexOf(':');
+        return colon < 0 ? digest : digest.substring(colon + 1);
     }
 
     protected boolean isDirectDownload() {
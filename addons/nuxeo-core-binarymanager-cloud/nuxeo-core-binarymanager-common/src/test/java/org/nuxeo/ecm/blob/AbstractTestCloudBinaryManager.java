@@ -134,6 +134,26 @@ public abstract class AbstractTestCloudBinaryManager<T extends CachingBinaryMana
         assertEquals(CONTENT, toString(binary.getStream()));
     }
 
+    @Test
+    public void testRangeRead() throws Exception {
+        binaryManager.getBinary(Blobs.createBlob(CONTENT));
+        binaryManager.fileCache.clear();
+        int length = CONTENT.getBytes("UTF-8").length;
+
+        // range of a binary not in the cache
+        try (InputStream in = binaryManager.getStream(CONTENT_MD5, 5, 4, length)) {
+            assertEquals("is a", toString(in));
+        }
+        // whole binary
+        try (InputStream in = binaryManager.getStream(CONTENT_MD5, 0, length, length)) {
+            assertEquals(CONTENT, toString(in));
+        }
+        // range of a binary in the cache
+        try (InputStream in = binaryManager.getStream(CONTENT_MD5, 8, 6, length)) {
+            assertEquals("a file", toString(in));
+        }
+    }
+
     @Test
     public void testAsBlobProvider() throws Exception {
         // to acquire the BinaryGarbageCollector, the BlobManagerComponent only has a BlobProvider
@@ -25,29 +25,46 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.Certificate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.common.Environment;
+import org.nuxeo.common.utils.SizeUtils;
 import org.nuxeo.ecm.blob.AbstractBinaryGarbageCollector;
 import org.nuxeo.ecm.blob.AbstractCloudBinaryManager;
 import org.nuxeo.ecm.core.api.Blob;
@@ -55,7 +72,10 @@ import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.blob.BlobManager;
 import org.nuxeo.ecm.core.blob.BlobProvider;
 import org.nuxeo.ecm.core.blob.ManagedBlob;
+import org.nuxeo.ecm.core.blob.binary.Binary;
 import org.nuxeo.ecm.core.blob.binary.BinaryGarbageCollector;
+import org.nuxeo.ecm.core.blob.binary.BinaryMarkSet;
+import org.nuxeo.ecm.core.blob.binary.BloomFilterBinaryMarkSet;
 import org.nuxeo.ecm.core.blob.binary.FileStorage;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.aws.NuxeoAWSRegionProvider;
@@ -70,20 +90,26 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Builder;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.AmazonS3EncryptionClientBuilder;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CryptoConfiguration;
 import com.amazonaws.services.s3.model.EncryptedPutObjectRequest;
 import com.amazonaws.services.s3.model.EncryptionMaterials;
 import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.model.SSEAwsKeyManagementParams;
 import com.amazonaws.services.s3.model.StaticEncryptionMaterialsProvider;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.transfer.Download;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
@@ -149,6 +175,40 @@ public class S3BinaryManager extends AbstractCloudBinaryManager {
      */
     public static final String PATHSTYLEACCESS_PROPERTY = "pathstyleaccess";
 
+    /**
+     * Whether large binaries are uploaded in parallel parts while they are being digested (default {@code true}).
+     * Ignored with client-side encryption or KMS server-side encryption.
+     *
+     * @since 11.1
+     */
+    public static final String UPLOAD_PIPELINED_PROPERTY = "upload.pipelined";
+
+    /**
+     * Size of the parts of a pipelined upload, parsed with {@link SizeUtils#parseSizeInBytes} (default 8 MB, at least
+     * 5 MB).
+     *
+     * @since 11.1
+     */
+    public static final String UPLOAD_PART_SIZE_PROPERTY = "upload.partsize";
+
+    /**
+     * Number of threads uploading the parts of pipelined uploads (default 8).
+     *
+     * @since 11.1
+     */
+    public static final String UPLOAD_THREADS_PROPERTY = "upload.threads";
+
+    /** @since 11.1 */
+    public static final String DEFAULT_UPLOAD_PART_SIZE = "8MB";
+
+    /** Minimum size of a multipart upload part allowed by S3. */
+    protected static final long MIN_UPLOAD_PART_SIZE = 5 * 1024 * 1024;
+
+    protected static final int DEFAULT_UPLOAD_THREADS = 8;
+
+    /** Prefix of the temporary keys to which pipelined uploads are done before their digest is known. */
+    protected static final String UPLOAD_TMP_PREFIX = "tmp-";
+
     public static final String DIRECTDOWNLOAD_PROPERTY_COMPAT = "downloadfroms3";
 
     public static final String DIRECTDOWNLOAD_EXPIRE_PROPERTY_COMPAT = "downloadfroms3.expire";
@@ -181,8 +241,20 @@ public class S3BinaryManager extends AbstractCloudBinaryManager {
 
     protected TransferManager transferManager;
 
+    /** @since 11.1 */
+    protected boolean pipelinedUpload;
+
+    /** @since 11.1 */
+    protected long uploadPartSize;
+
+    /** @since 11.1 */
+    protected ExecutorService uploadExecutor;
+
     @Override
     public void close() {
+        if (uploadExecutor != null) {
+            uploadExecutor.shutdownNow();
+        }
         // this also shuts down the AmazonS3Client
         transferManager.shutdownNow();
         super.close();
@@ -206,6 +278,34 @@ public class S3BinaryManager extends AbstractCloudBinaryManager {
         }
     }
 
+    /**
+     * Deletes the temporary objects of pipelined uploads older than 1 day. They are left behind if the server stopped
+     * after completing an upload but before moving its object to the key of its digest.
+     *
+     * @since 11.1
+     */
+    protected void deleteOldTemporaryObjects() {
+        long oneDayAgo = System.currentTimeMillis() - 1000 * 60 * 60 * 24;
+        try {
+            ObjectListing list = amazonS3.listObjects(bucketName, bucketNamePrefix + UPLOAD_TMP_PREFIX);
+            for (;;) {
+                for (S3ObjectSummary summary : list.getObjectSummaries()) {
+                    if (summary.getLastModified().getTime() < oneDayAgo) {
+                        log.debug("Deleting old temporary object: " + summary.getKey());
+                        amazonS3.deleteObject(bucketName, summary.getKey());
+                    }
+                }
+                if (!list.isTruncated()) {
+                    break;
+                }
+                list = amazonS3.listNextBatchOfObjects(list);
+            }
+        } catch (AmazonClientException e) {
+            // don't prevent startup, they will be deleted at next one
+            log.warn("Failed to delete old temporary objects", e);
+        }
+    }
+
     @Override
     protected void setupCloudClient() throws IOException {
         // Get settings from the configuration
@@ -383,6 +483,232 @@ public class S3BinaryManager extends AbstractCloudBinaryManager {
 
         transferManager = TransferManagerBuilder.standard().withS3Client(amazonS3).build();
         abortOldUploads();
+        deleteOldTemporaryObjects();
+
+        String pipelined = getProperty(UPLOAD_PIPELINED_PROPERTY);
+        pipelinedUpload = (isBlank(pipelined) || Boolean.parseBoolean(pipelined)) && !isEncrypted
+                && !(useServerSideEncryption && isNotBlank(serverSideKMSKeyID));
+        if (pipelinedUpload) {
+            String partSize = getProperty(UPLOAD_PART_SIZE_PROPERTY, DEFAULT_UPLOAD_PART_SIZE);
+            uploadPartSize = Math.max(MIN_UPLOAD_PART_SIZE, SizeUtils.parseSizeInBytes(partSize));
+            int threads = getIntProperty(UPLOAD_THREADS_PROPERTY);
+            if (threads <= 0) {
+                threads = DEFAULT_UPLOAD_THREADS;
+            }
+            uploadExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                protected final AtomicInteger threadNumber = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Nuxeo-S3-Upload-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * With pipelined uploads, the parts of a binary bigger than the upload part size are sent to a temporary key of
+     * the bucket while the stream is still being read and digested. When the digest is known, the multipart upload is
+     * aborted if the binary is already stored, otherwise it is completed and the temporary object is moved to its
+     * final key with a server-side copy. The parts are read back from the temporary file, so that the memory used does
+     * not depend on the binary size.
+     *
+     * @since 11.1
+     */
+    @Override
+    protected Binary getBinary(InputStream in) throws IOException {
+        if (!pipelinedUpload) {
+            return super.getBinary(in);
+        }
+        File tmp = fileCache.getTempFile();
+        PipelinedUpload upload = new PipelinedUpload(tmp);
+        try {
+            String digest;
+            try {
+                digest = upload.write(in);
+            } finally {
+                in.close();
+            }
+            File cachedFile = fileCache.getFile(digest);
+            if (cachedFile != null) {
+                // file already in cache
+                if (Framework.isTestModeSet()) {
+                    Framework.getProperties().setProperty("cachedBinary", digest);
+                }
+                upload.abort();
+                tmp.delete();
+            } else {
+                if (!upload.complete(digest)) {
+                    // too small for a multipart upload, send the file to storage
+                    fileStorage.storeFile(digest, tmp);
+                }
+                // register the file in the file cache
+                fileCache.putFile(digest, tmp);
+            }
+            return getBinary(digest);
+        } catch (IOException | RuntimeException e) {
+            upload.abort();
+            tmp.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * A multipart upload to a temporary key, whose parts are uploaded as soon as they have been written to a file.
+     *
+     * @since 11.1
+     */
+    protected class PipelinedUpload {
+
+        protected final File file;
+
+        protected final String key = bucketNamePrefix + UPLOAD_TMP_PREFIX + UUID.randomUUID();
+
+        protected final List<Future<PartETag>> parts = new ArrayList<>();
+
+        protected String uploadId;
+
+        protected long partStart;
+
+        protected long length;
+
+        protected PipelinedUpload(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Writes the stream to the file while computing its digest, uploading each full part.
+         *
+         * @return the digest
+         */
+        protected String write(InputStream in) throws IOException {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance(getDigestAlgorithm());
+            } catch (NoSuchAlgorithmException e) {
+                throw new NuxeoException(e);
+            }
+            byte[] buf = new byte[MAX_BUF_SIZE];
+            long pos = 0;
+            try (OutputStream out = new FileOutputStream(file)) {
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    digest.update(buf, 0, n);
+                    out.write(buf, 0, n);
+                    pos += n;
+                    if (pos - partStart >= uploadPartSize) {
+                        // the bytes of the part are already in the file, which is not buffered
+                        uploadPart(pos - partStart);
+                        partStart = pos;
+                    }
+                }
+            }
+            length = pos;
+            return Hex.encodeHexString(digest.digest());
+        }
+
+        protected void uploadPart(long size) throws IOException {
+            try {
+                if (uploadId == null) {
+                    ObjectMetadata metadata = new ObjectMetadata();
+                    if (useServerSideEncryption) {
+                        metadata.setSSEAlgorithm(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
+                    }
+                    InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(bucketName, key,
+                            metadata);
+                    uploadId = amazonS3.initiateMultipartUpload(request).getUploadId();
+                }
+            } catch (AmazonClientException e) {
+                throw new IOException(e);
+            }
+            UploadPartRequest request = new UploadPartRequest().withBucketName(bucketName)
+                                                               .withKey(key)
+                                                               .withUploadId(uploadId)
+                                                               .withPartNumber(parts.size() + 1)
+                                                               .withFile(file)
+                                                               .withFileOffset(partStart)
+                                                               .withPartSize(size);
+            parts.add(uploadExecutor.submit(() -> amazonS3.uploadPart(request).getPartETag()));
+        }
+
+        /**
+         * Completes the upload and moves the uploaded object to the key of the digest, unless it is already stored.
+         *
+         * @return {@code false} if nothing was uploaded because the binary is smaller than a part
+         */
+        protected boolean complete(String digest) throws IOException {
+            if (uploadId == null) {
+                return false;
+            }
+            String digestKey = bucketNamePrefix + digest;
+            try {
+                amazonS3.getObjectMetadata(bucketName, digestKey);
+                if (log.isDebugEnabled()) {
+                    log.debug("blob " + digest + " is already in S3");
+                }
+                abort();
+                return true;
+            } catch (AmazonClientException e) {
+                if (!isMissingKey(e)) {
+                    throw new IOException(e);
+                }
+                // not already present -> complete the upload
+            }
+            if (length > partStart) {
+                uploadPart(length - partStart);
+            }
+            List<PartETag> etags = new ArrayList<>(parts.size());
+            for (Future<PartETag> part : parts) {
+                try {
+                    etags.add(part.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new NuxeoException(e);
+                } catch (ExecutionException e) {
+                    throw new IOException(e.getCause());
+                }
+            }
+            try {
+                amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, etags));
+                uploadId = null;
+            } catch (AmazonClientException e) {
+                throw new IOException(e);
+            }
+            try {
+                ObjectMetadata metadata = amazonS3.getObjectMetadata(bucketName, key);
+                String sseAlgorithm = useServerSideEncryption ? ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION : null;
+                S3Utils.copyFile(amazonS3, metadata, bucketName, key, bucketName, digestKey, sseAlgorithm, true);
+            } catch (AmazonClientException e) {
+                try {
+                    amazonS3.deleteObject(bucketName, key);
+                } catch (AmazonClientException ee) {
+                    e.addSuppressed(ee);
+                }
+                throw new IOException(e);
+            }
+            return true;
+        }
+
+        /**
+         * Aborts the upload if it is still in progress.
+         */
+        protected void abort() {
+            parts.forEach(part -> part.cancel(true));
+            if (uploadId == null) {
+                return;
+            }
+            try {
+                amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+            } catch (AmazonClientException e) {
+                // will be cleaned up by abortOldUploads
+                log.warn("Failed to abort upload " + uploadId + " of " + key, e);
+            }
+            uploadId = null;
+        }
     }
 
     protected void removeBinary(String digest) {
@@ -656,10 +982,37 @@ public class S3BinaryManager extends AbstractCloudBinaryManager {
             }
 
         }
+
+        /**
+         * Ranges are fetched using S3 ranged GETs, except with client-side encryption.
+         */
+        @Override
+        public boolean supportsRange() {
+            return !isEncrypted;
+        }
+
+        @Override
+        public InputStream fetchStream(String digest, long offset, long length) throws IOException {
+            if (log.isDebugEnabled()) {
+                log.debug("fetching range " + offset + "+" + length + " of blob " + digest + " from S3");
+            }
+            GetObjectRequest request = new GetObjectRequest(bucketName, bucketNamePrefix + digest);
+            request.setRange(offset, offset + length - 1);
+            try {
+                S3Object object = amazonS3.getObject(request);
+                return object == null ? null : object.getObjectContent();
+            } catch (AmazonClientException e) {
+                if (!isMissingKey(e)) {
+                    throw new IOException(e);
+                }
+                return null;
+            }
+        }
     }
 
     /**
-     * Garbage collector for S3 binaries that stores the marked (in use) binaries in memory.
+     * Garbage collector for S3 binaries that stores the marked (in use) binaries in memory, or in a
+     * {@link BloomFilterBinaryMarkSet} if the {@code gcmarkset} property is set.
      */
     public static class S3BinaryGarbageCollector extends AbstractBinaryGarbageCollector<S3BinaryManager> {
 
@@ -672,6 +1025,23 @@ public class S3BinaryManager extends AbstractCloudBinaryManager {
             return "s3:" + binaryManager.bucketName;
         }
 
+        @Override
+        protected BinaryMarkSet createMarkSet() {
+            if (!Boolean.parseBoolean(binaryManager.getProperty(GC_MARK_SET_PROPERTY))) {
+                return null;
+            }
+            String size = binaryManager.getProperty(GC_MARK_SET_SIZE_PROPERTY);
+            long expectedCount = isBlank(size) ? BloomFilterBinaryMarkSet.DEFAULT_EXPECTED_COUNT
+                    : Long.parseLong(size.trim());
+            try {
+                Path file = Framework.createTempFilePath("nxgcmarks-", "");
+                return BloomFilterBinaryMarkSet.open(file, expectedCount,
+                        BloomFilterBinaryMarkSet.DEFAULT_FALSE_POSITIVE_PROBABILITY);
+            } catch (IOException e) {
+                throw new NuxeoException(e);
+            }
+        }
+
         @Override
         public Set<String> getUnmarkedBlobs() {
             // list S3 objects in the bucket
@@ -695,7 +1065,7 @@ public class S3BinaryManager extends AbstractCloudBinaryManager {
                         continue;
                     }
                     long length = summary.getSize();
-                    if (marked.contains(digest)) {
+                    if (isMarked(digest)) {
                         status.numBinaries++;
                         status.sizeBinaries += length;
                     } else {
@@ -703,7 +1073,6 @@ public class S3BinaryManager extends AbstractCloudBinaryManager {
                         status.sizeBinariesGC += length;
                         // record file to delete
                         unmarked.add(digest);
-                        marked.remove(digest); // optimize memory
                     }
                 }
             } while (list.isTruncated());
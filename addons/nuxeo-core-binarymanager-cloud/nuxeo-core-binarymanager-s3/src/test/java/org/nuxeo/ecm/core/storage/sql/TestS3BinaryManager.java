@@ -18,7 +18,9 @@
  */
 package org.nuxeo.ecm.core.storage.sql;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -35,12 +37,15 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.junit.After;
@@ -66,6 +71,7 @@ import org.nuxeo.runtime.test.runner.RuntimeFeature;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.SDKGlobalConfiguration;
 import com.amazonaws.SdkBaseException;
+import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 
@@ -78,6 +84,8 @@ import com.amazonaws.services.s3.model.S3Object;
  * <li>nuxeo.s3storage.awssecret (or AWS_SECRET_ACCESS_KEY environment variable)</li>
  * </ul>
  * <p>
+ * To run against a local S3-compatible server instead of AWS, also set the nuxeo.s3storage.endpoint system property.
+ * <p>
  * ***** NOTE THAT THE TESTS WILL REMOVE ALL FILES IN THE BUCKET!!! *****
  */
 @RunWith(FeaturesRunner.class)
@@ -111,6 +119,13 @@ public class TestS3BinaryManager extends AbstractS3BinaryTest<S3BinaryManager> {
         PROPERTIES.put(BUCKET_NAME_PROPERTY, "nuxeo-s3-directupload");
         PROPERTIES.put(BUCKET_PREFIX_PROPERTY, "testfolder/");
         PROPERTIES.put(S3BinaryManager.BUCKET_REGION_PROPERTY, "eu-west-3");
+        // optionally run against a local S3-compatible server
+        String endpoint = System.getProperty(
+                S3BinaryManager.SYSTEM_PROPERTY_PREFIX + "." + S3BinaryManager.ENDPOINT_PROPERTY);
+        if (StringUtils.isNotBlank(endpoint)) {
+            PROPERTIES.put(S3BinaryManager.ENDPOINT_PROPERTY, endpoint);
+            PROPERTIES.put(S3BinaryManager.PATHSTYLEACCESS_PROPERTY, "true");
+        }
     }
 
     @Before
@@ -289,6 +304,37 @@ public class TestS3BinaryManager extends AbstractS3BinaryTest<S3BinaryManager> {
         return bytes;
     }
 
+    @Test
+    public void testPipelinedUpload() throws Exception {
+        assumeTrue("pipelined uploads disabled", binaryManager.pipelinedUpload);
+        // two full parts and a last smaller one
+        byte[] bytes = generateRandomBytes((int) (binaryManager.uploadPartSize * 2 + 1024));
+        String digest = DigestUtils.md5Hex(bytes);
+
+        Binary binary = binaryManager.getBinary(Blobs.createBlob(bytes));
+        assertEquals(digest, binary.getDigest());
+        assertEquals(Collections.singleton(digest), listObjects());
+        // no temporary object left
+        for (String key : listAllObjects()) {
+            assertFalse(key, key.contains(S3BinaryManager.UPLOAD_TMP_PREFIX));
+        }
+
+        // fetch it back from S3
+        binaryManager.fileCache.clear();
+        binary = binaryManager.getBinary(digest);
+        try (InputStream stream = binary.getStream()) {
+            assertArrayEquals(bytes, IOUtils.toByteArray(stream));
+        }
+
+        // store the same content again, not in cache: the upload is aborted
+        binaryManager.fileCache.clear();
+        binary = binaryManager.getBinary(Blobs.createBlob(bytes));
+        assertEquals(digest, binary.getDigest());
+        assertEquals(Collections.singleton(digest), listObjects());
+        assertTrue(binaryManager.amazonS3.listMultipartUploads(
+                new ListMultipartUploadsRequest(binaryManager.bucketName)).getMultipartUploads().isEmpty());
+    }
+
     @Test
     public void testDifferentDigestAlgorithm() throws Exception {
         Binary binary = binaryManager3.getBinary(CONTENT4_SHA256);
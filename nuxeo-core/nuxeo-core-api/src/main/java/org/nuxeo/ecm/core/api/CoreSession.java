@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 import org.nuxeo.ecm.core.api.DocumentModel.DocumentModelRefresh;
@@ -239,6 +240,21 @@ public interface CoreSession {
      */
     DocumentModelList getDocuments(DocumentRef[] docRefs) throws DocumentNotFoundException;
 
+    /**
+     * Gets a list of documents given their ids, fetched from the repository in batches.
+     * <p>
+     * This is the preferred way to load a known set of documents, for instance a bucket of a bulk command: no query is
+     * involved and the permissions are checked in memory. Documents are returned in the order of the ids, the ids of
+     * documents that don't exist are skipped.
+     *
+     * @param ids the document ids
+     * @param checkRead whether to skip the documents that cannot be browsed by the current user, as done by queries
+     * @param schemas the schemas to prefetch, or {@code null} for the default prefetched schemas
+     * @return the documents
+     * @since 11.1
+     */
+    DocumentModelList getDocuments(List<String> ids, boolean checkRead, Set<String> schemas);
+
     /**
      * Gets a child document given its name and the parent reference.
      * <p>
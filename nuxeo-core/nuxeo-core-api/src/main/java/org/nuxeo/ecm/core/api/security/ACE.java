@@ -269,6 +269,9 @@ public final class ACE implements Serializable, Cloneable {
      */
     public Status getStatus() {
         Status status = Status.EFFECTIVE;
+        if (begin == null && end == null) {
+            return status;
+        }
         Calendar now = new GregorianCalendar();
         if (begin != null && now.before(begin)) {
             status = Status.PENDING;
@@ -125,6 +125,23 @@ public interface BlobProvider {
         return null;
     }
 
+    /**
+     * Gets an {@link InputStream} for a byte range of the data of a managed blob, without reading the whole data if
+     * possible.
+     * <p>
+     * Like all {@link InputStream}, the result must be closed when done with it to avoid resource leaks.
+     *
+     * @param blob the managed blob
+     * @param offset the offset of the first byte of the range
+     * @param length the length of the range
+     * @return the stream, or {@code null} if this provider has no better way to read the range than reading the blob
+     *         stream or file
+     * @since 11.1
+     */
+    default InputStream getStream(ManagedBlob blob, long offset, long length) throws IOException {
+        return null;
+    }
+
     /**
      * Gets an {@link InputStream} for a thumbnail of a managed blob.
      * <p>
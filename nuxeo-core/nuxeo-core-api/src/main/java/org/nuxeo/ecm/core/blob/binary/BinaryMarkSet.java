@@ -0,0 +1,55 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+/**
+ * The set of binaries marked as being in use during a garbage collection.
+ * <p>
+ * Implementations may trade exactness for bounded memory: {@link #isMarked} may return {@code true} for a digest that
+ * was not marked (the binary is then kept until a later garbage collection), but never {@code false} for a digest that
+ * was marked.
+ *
+ * @since 11.1
+ */
+public interface BinaryMarkSet extends AutoCloseable {
+
+    /**
+     * Marks a binary as being in use. May be called concurrently.
+     *
+     * @param digest the binary's digest
+     */
+    void mark(String digest);
+
+    /**
+     * Checks if a binary may have been marked.
+     *
+     * @param digest the binary's digest
+     * @return {@code false} if the binary was definitely not marked
+     */
+    boolean isMarked(String digest);
+
+    /**
+     * Writes the marks to persistent storage, if any.
+     */
+    void flush();
+
+    /**
+     * Releases the resources held by this mark set. Persisted marks are kept.
+     */
+    @Override
+    void close();
+
+}
@@ -0,0 +1,186 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
+
+/**
+ * A {@link BinaryMarkSet} stored as a Bloom filter in a memory-mapped file.
+ * <p>
+ * The memory used is fixed by the expected number of binaries and the false positive probability, about 10 bits per
+ * binary for a 1% probability, and lives in the OS page cache rather than in the Java heap. The file survives the
+ * process, so that an interrupted garbage collection can be resumed with the same marks.
+ * <p>
+ * The file is made of a header (magic, number of bits, number of hash functions) followed by the bits, set atomically
+ * so that marking can be done from several threads.
+ *
+ * @since 11.1
+ */
+public class BloomFilterBinaryMarkSet implements BinaryMarkSet {
+
+    private static final Log log = LogFactory.getLog(BloomFilterBinaryMarkSet.class);
+
+    public static final long DEFAULT_EXPECTED_COUNT = 10_000_000;
+
+    public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    protected static final long MAGIC = 0x4e5847434d41524bL; // NXGCMARK
+
+    protected static final int HEADER_SIZE = 24;
+
+    protected static final long MAX_BITS = (long) (Integer.MAX_VALUE - HEADER_SIZE) / Long.BYTES * Long.SIZE;
+
+    protected static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    protected final Path file;
+
+    protected final long numBits;
+
+    protected final int numHashes;
+
+    protected MappedByteBuffer buffer;
+
+    /**
+     * Opens the mark set stored in the given file, creating it if it doesn't exist or was created for a different
+     * size.
+     *
+     * @param file the file
+     * @param expectedCount the expected number of marked binaries
+     * @param falsePositiveProbability the probability that an unmarked binary is reported as marked
+     */
+    public static BloomFilterBinaryMarkSet open(Path file, long expectedCount, double falsePositiveProbability) {
+        long n = Math.max(expectedCount, 1);
+        double bits = -n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        long numBits = Math.min(MAX_BITS, ((long) Math.ceil(bits) + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+        int numHashes = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+        return new BloomFilterBinaryMarkSet(file, numBits, numHashes);
+    }
+
+    protected BloomFilterBinaryMarkSet(Path file, long numBits, int numHashes) {
+        this.file = file;
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        long size = HEADER_SIZE + numBits / Byte.SIZE;
+        try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+            boolean reuse = channel.size() == size;
+            if (!reuse && channel.size() != 0) {
+                channel.truncate(0);
+            }
+            buffer = channel.map(MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.nativeOrder());
+            if (reuse && (buffer.getLong(0) != MAGIC || buffer.getLong(8) != numBits
+                    || buffer.getInt(16) != numHashes)) {
+                reuse = false;
+                for (int i = 0; i < size; i += Long.BYTES) {
+                    buffer.putLong(i, 0);
+                }
+            }
+            if (reuse) {
+                log.debug("Reusing marks from: " + file);
+            } else {
+                buffer.putLong(0, MAGIC);
+                buffer.putLong(8, numBits);
+                buffer.putInt(16, numHashes);
+            }
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot open mark set: " + file, e);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void mark(String digest) {
+        long h1 = hash(digest, 0xcbf29ce484222325L);
+        long h2 = hash(digest, 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            LONG.getAndBitwiseOr(buffer, offset(bit), 1L << bit);
+        }
+    }
+
+    @Override
+    public boolean isMarked(String digest) {
+        long h1 = hash(digest, 0xcbf29ce484222325L);
+        long h2 = hash(digest, 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            if (((long) LONG.getAcquire(buffer, offset(bit)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static int offset(long bit) {
+        return HEADER_SIZE + (int) (bit >>> 6) * Long.BYTES;
+    }
+
+    /**
+     * FNV-1a hash of the digest followed by a MurmurHash3 finalizer, digests being already well distributed.
+     */
+    protected static long hash(String digest, long seed) {
+        long h = seed;
+        for (int i = 0; i < digest.length(); i++) {
+            h ^= digest.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() {
+        if (buffer != null) {
+            flush();
+            // the mapping is released when the buffer is garbage collected
+            buffer = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + file + ", bits=" + numBits + ", hashes=" + numHashes + ")";
+    }
+
+}
@@ -20,13 +20,21 @@
 package org.nuxeo.ecm.core.blob.binary;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.common.file.FileCache;
@@ -47,8 +55,21 @@ public abstract class CachingBinaryManager extends AbstractBinaryManager {
 
     private static final Log log = LogFactory.getLog(CachingBinaryManager.class);
 
+    /**
+     * The size of the chunks in which binaries read by byte ranges are cached.
+     *
+     * @since 11.1
+     */
+    public static final long DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024; // 4 MB
+
     protected File cachedir;
 
+    /** @since 11.1 */
+    protected long cacheMaxSize = Long.MAX_VALUE;
+
+    /** @since 11.1 */
+    protected long chunkSize = DEFAULT_CHUNK_SIZE;
+
     public FileCache fileCache;
 
     protected FileStorage fileStorage;
@@ -74,6 +95,7 @@ public abstract class CachingBinaryManager extends AbstractBinaryManager {
      */
     protected void initializeCache(File dir, long maxSize, long maxCount, long minAge, FileStorage fileStorage) {
         fileCache = new LRUFileCache(dir, maxSize, maxCount, minAge);
+        cacheMaxSize = maxSize;
         this.fileStorage = fileStorage;
     }
 
@@ -190,4 +212,136 @@ public abstract class CachingBinaryManager extends AbstractBinaryManager {
         }
     }
 
+    /**
+     * Checks if a byte range of a binary should be fetched by chunks from the storage, instead of fetching the whole
+     * binary in the cache.
+     * <p>
+     * This is the case if the storage supports ranges, the binary is not already cached, and either the range is not
+     * the whole binary or the binary is too big for the cache.
+     *
+     * @since 11.1
+     */
+    protected boolean useRangeFetch(String digest, long offset, long length, long binaryLength) {
+        if (!fileStorage.supportsRange() || fileCache.getFile(digest) != null) {
+            return false;
+        }
+        return offset != 0 || length != binaryLength || length > cacheMaxSize;
+    }
+
+    /**
+     * Gets a stream on a byte range of a binary from cache or storage.
+     * <p>
+     * If the range {@linkplain #useRangeFetch should be fetched by chunks}, only the chunks covering the range are
+     * fetched from the storage and cached, instead of the whole binary. A range bigger than the cache is streamed from
+     * the storage without being cached.
+     *
+     * @param digest the binary digest
+     * @param offset the offset of the first byte of the range
+     * @param length the length of the range
+     * @param binaryLength the length of the binary
+     * @return the stream, or {@code null} if the binary is not found
+     * @since 11.1
+     */
+    public InputStream getStream(String digest, long offset, long length, long binaryLength) throws IOException {
+        if (!useRangeFetch(digest, offset, length, binaryLength)) {
+            File file = getFile(digest);
+            return file == null ? null : getFileStream(file, offset, length);
+        }
+        if (length > cacheMaxSize) {
+            // stream through, the cache would just be thrashed
+            return fileStorage.fetchStream(digest, offset, length);
+        }
+        return getChunkedStream(digest, offset, length);
+    }
+
+    protected static InputStream getFileStream(File file, long offset, long length) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            in.getChannel().position(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new BoundedInputStream(in, length);
+    }
+
+    /**
+     * Gets a stream on a byte range of a binary, fetching the chunks covering the range on demand.
+     */
+    protected InputStream getChunkedStream(String digest, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        long end = offset + length;
+        long firstIndex = offset / chunkSize;
+        long lastIndex = (end - 1) / chunkSize;
+        File first = getChunk(digest, firstIndex);
+        if (first == null) {
+            return null;
+        }
+        Enumeration<InputStream> chunks = new Enumeration<InputStream>() {
+
+            private long index = firstIndex;
+
+            private File chunk = first;
+
+            @Override
+            public boolean hasMoreElements() {
+                return index <= lastIndex;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (index > lastIndex) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    if (chunk == null) {
+                        chunk = getChunk(digest, index);
+                        if (chunk == null) {
+                            throw new IOException("Binary removed while being read: " + digest);
+                        }
+                    }
+                    long chunkStart = index * chunkSize;
+                    long start = Math.max(offset, chunkStart);
+                    long stop = Math.min(end, chunkStart + chunkSize);
+                    InputStream in = getFileStream(chunk, start - chunkStart, stop - start);
+                    index++;
+                    chunk = null;
+                    return in;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return new SequenceInputStream(chunks);
+    }
+
+    /**
+     * Gets a chunk of a binary from cache or storage.
+     *
+     * @return the chunk file, or {@code null} if the binary is not found
+     * @since 11.1
+     */
+    protected File getChunk(String digest, long index) throws IOException {
+        String key = digest + "-" + index;
+        File file = fileCache.getFile(key);
+        if (file != null) {
+            return file;
+        }
+        File tmp = fileCache.getTempFile();
+        try (InputStream in = fileStorage.fetchStream(digest, index * chunkSize, chunkSize)) {
+            if (in == null) {
+                // file not in storage
+                tmp.delete();
+                return null;
+            }
+            Files.copy(in, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        return fileCache.putFile(key, tmp);
+    }
+
 }
@@ -20,6 +20,7 @@ package org.nuxeo.ecm.core.blob.binary;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Interface to store a file or fetch a file or its length.
@@ -47,4 +48,30 @@ public interface FileStorage {
      */
     boolean fetchFile(String key, File file) throws IOException;
 
+    /**
+     * Checks whether this storage can fetch a byte range of a file without fetching the whole file.
+     *
+     * @since 11.1
+     */
+    default boolean supportsRange() {
+        return false;
+    }
+
+    /**
+     * Fetches a byte range of a file based on its key.
+     * <p>
+     * If the range extends past the end of the file, only the available bytes are returned.
+     *
+     * @param key the file key
+     * @param offset the offset of the first byte of the range
+     * @param length the length of the range
+     * @return the stream, or {@code null} if the file was not found
+     * @throws IOException if a storage error occurred
+     * @throws UnsupportedOperationException if the storage does not {@linkplain #supportsRange support ranges}
+     * @since 11.1
+     */
+    default InputStream fetchStream(String key, long offset, long length) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
 }
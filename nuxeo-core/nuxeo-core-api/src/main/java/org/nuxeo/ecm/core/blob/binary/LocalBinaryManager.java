@@ -28,7 +28,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
@@ -72,6 +88,30 @@ public class LocalBinaryManager extends AbstractBinaryManager {
 
     public static final String CONFIG_FILE = "config.xml";
 
+    /** @since 11.1 */
+    public static final String GC = "gc";
+
+    /**
+     * Property to enable the garbage collector recording marks in a {@link BinaryMarkSet} instead of touching files.
+     *
+     * @since 11.1
+     */
+    public static final String PROP_GC_MARK_SET = "gcmarkset";
+
+    /**
+     * Property for the expected number of binaries, used to size the {@link BinaryMarkSet}.
+     *
+     * @since 11.1
+     */
+    public static final String PROP_GC_MARK_SET_SIZE = "gcmarksetsize";
+
+    /**
+     * Property for the number of threads sweeping the storage directories.
+     *
+     * @since 11.1
+     */
+    public static final String PROP_GC_THREADS = "gcthreads";
+
     protected File storageDir;
 
     protected File tmpDir;
@@ -254,7 +294,18 @@ public class LocalBinaryManager extends AbstractBinaryManager {
     }
 
     protected void createGarbageCollector() {
-        garbageCollector = new DefaultBinaryGarbageCollector(this);
+        if (properties != null && Boolean.parseBoolean(properties.get(PROP_GC_MARK_SET))) {
+            String size = properties.get(PROP_GC_MARK_SET_SIZE);
+            long expectedCount = StringUtils.isBlank(size) ? BloomFilterBinaryMarkSet.DEFAULT_EXPECTED_COUNT
+                    : Long.parseLong(size.trim());
+            String threadsStr = properties.get(PROP_GC_THREADS);
+            int threads = StringUtils.isBlank(threadsStr) ? Runtime.getRuntime().availableProcessors()
+                    : Integer.parseInt(threadsStr.trim());
+            File gcDir = new File(storageDir.getParentFile(), GC);
+            garbageCollector = new MarkSetBinaryGarbageCollector(this, gcDir, expectedCount, threads);
+        } else {
+            garbageCollector = new DefaultBinaryGarbageCollector(this);
+        }
     }
 
     public static class DefaultBinaryGarbageCollector implements BinaryGarbageCollector {
@@ -347,6 +398,255 @@ public class LocalBinaryManager extends AbstractBinaryManager {
         }
     }
 
+    /**
+     * Garbage collector recording the marks in a {@link BloomFilterBinaryMarkSet} instead of touching the files, and
+     * sweeping the top-level storage directories in parallel.
+     * <p>
+     * Binaries created after the start of the garbage collection are never deleted, as their last modification time
+     * is after it.
+     * <p>
+     * The marks, the start time and the directories already swept are persisted in a {@code gc} directory next to the
+     * {@code data} directory. If a sweep is interrupted, the next garbage collection resumes it: the previous marks
+     * are kept in addition to the new ones, the previous start time is kept, and the directories already swept are
+     * skipped. This can only keep more binaries than needed, never delete a binary in use.
+     *
+     * @since 11.1
+     */
+    public static class MarkSetBinaryGarbageCollector extends DefaultBinaryGarbageCollector {
+
+        protected static final String MARKS_FILE = "marks";
+
+        protected static final String STATE_FILE = "state";
+
+        protected static final String SWEPT_FILE = "swept";
+
+        protected static final String PROP_START_TIME = "startTime";
+
+        protected static final String PROP_PHASE = "phase";
+
+        protected static final String PHASE_MARK = "mark";
+
+        protected static final String PHASE_SWEEP = "sweep";
+
+        protected final File gcDir;
+
+        protected final long expectedCount;
+
+        protected final int threads;
+
+        protected BinaryMarkSet markSet;
+
+        /** The minimum last modification time of the binaries that can be deleted. */
+        protected long minTime;
+
+        /** The top-level directories already swept by an interrupted garbage collection. */
+        protected Set<String> swept;
+
+        public MarkSetBinaryGarbageCollector(LocalBinaryManager binaryManager, File gcDir, long expectedCount,
+                int threads) {
+            super(binaryManager);
+            this.gcDir = gcDir;
+            this.expectedCount = expectedCount;
+            this.threads = Math.max(1, threads);
+        }
+
+        @Override
+        public void start() {
+            if (startTime != 0) {
+                throw new RuntimeException("Alread started");
+            }
+            long now = System.currentTimeMillis();
+            gcDir.mkdirs();
+            Properties state = readState();
+            swept = ConcurrentHashMap.newKeySet();
+            if (PHASE_SWEEP.equals(state.getProperty(PROP_PHASE))) {
+                // previous sweep was interrupted, resume it
+                minTime = Long.parseLong(state.getProperty(PROP_START_TIME)) - TIME_RESOLUTION;
+                swept.addAll(readSwept());
+                log.info("Resuming interrupted binaries GC in: " + gcDir + ", already swept: " + swept.size());
+            } else {
+                deleteState();
+                minTime = now - TIME_RESOLUTION;
+                writeState(PHASE_MARK, now);
+            }
+            markSet = BloomFilterBinaryMarkSet.open(new File(gcDir, MARKS_FILE).toPath(), expectedCount,
+                    BloomFilterBinaryMarkSet.DEFAULT_FALSE_POSITIVE_PROBABILITY);
+            status = new BinaryManagerStatus();
+            startTime = now;
+        }
+
+        @Override
+        public void mark(String digest) {
+            markSet.mark(digest);
+        }
+
+        @Override
+        public void stop(boolean delete) {
+            if (startTime == 0) {
+                throw new RuntimeException("Not started");
+            }
+            boolean completed = false;
+            try {
+                markSet.flush();
+                writeState(PHASE_SWEEP, minTime + TIME_RESOLUTION);
+                sweep(delete);
+                completed = true;
+            } finally {
+                markSet.close();
+                markSet = null;
+                if (completed) {
+                    deleteState();
+                }
+                status.gcDuration = System.currentTimeMillis() - startTime;
+                startTime = 0;
+            }
+        }
+
+        protected void sweep(boolean delete) {
+            File[] files = binaryManager.getStorageDir().listFiles();
+            if (files == null) {
+                return;
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, files.length)),
+                    new ThreadFactory() {
+                        protected final AtomicInteger threadNumber = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            return new Thread(r, "Nuxeo-BinaryGC-" + threadNumber.incrementAndGet());
+                        }
+                    });
+            try {
+                List<Future<?>> futures = new ArrayList<>(files.length);
+                for (File file : files) {
+                    if (swept.contains(file.getName())) {
+                        continue;
+                    }
+                    futures.add(executor.submit(() -> sweepTopLevel(file, delete)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NuxeoException(e);
+            } catch (ExecutionException e) {
+                throw new NuxeoException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        protected void sweepTopLevel(File file, boolean delete) {
+            BinaryManagerStatus dirStatus = new BinaryManagerStatus();
+            sweep(file, delete, dirStatus);
+            synchronized (this) {
+                status.numBinaries += dirStatus.numBinaries;
+                status.sizeBinaries += dirStatus.sizeBinaries;
+                status.numBinariesGC += dirStatus.numBinariesGC;
+                status.sizeBinariesGC += dirStatus.sizeBinariesGC;
+                if (delete) {
+                    // persist progress for a resume
+                    appendSwept(file.getName());
+                }
+            }
+        }
+
+        protected void sweep(File file, boolean delete, BinaryManagerStatus dirStatus) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new NuxeoException("Interrupted");
+            }
+            if (file.isDirectory()) {
+                File[] files = file.listFiles();
+                if (files != null) {
+                    for (File f : files) {
+                        sweep(f, delete, dirStatus);
+                    }
+                }
+                String[] names = file.list();
+                if (names != null && names.length == 0) {
+                    // empty directory
+                    file.delete();
+                }
+            } else if (file.isFile() && file.canWrite()) {
+                long lastModified = file.lastModified();
+                long length = file.length();
+                if (lastModified == 0) {
+                    log.error("Cannot read last modified for file: " + file);
+                } else if (lastModified < minTime && !markSet.isMarked(file.getName())) {
+                    dirStatus.sizeBinariesGC += length;
+                    dirStatus.numBinariesGC++;
+                    if (delete && !file.delete()) {
+                        log.warn("Cannot gc file: " + file);
+                    }
+                } else {
+                    dirStatus.sizeBinaries += length;
+                    dirStatus.numBinaries++;
+                }
+            }
+        }
+
+        protected Properties readState() {
+            Properties state = new Properties();
+            File file = new File(gcDir, STATE_FILE);
+            if (file.exists()) {
+                try (InputStream in = new FileInputStream(file)) {
+                    state.load(in);
+                } catch (IOException e) {
+                    log.error("Cannot read GC state: " + file, e);
+                    state.clear();
+                }
+            }
+            return state;
+        }
+
+        protected void writeState(String phase, long time) {
+            Properties state = new Properties();
+            state.setProperty(PROP_PHASE, phase);
+            state.setProperty(PROP_START_TIME, String.valueOf(time));
+            // write then rename, so that the state is never partially written
+            File tmp = new File(gcDir, STATE_FILE + ".tmp");
+            try {
+                try (OutputStream out = new FileOutputStream(tmp)) {
+                    state.store(out, null);
+                }
+                Files.move(tmp.toPath(), new File(gcDir, STATE_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new NuxeoException("Cannot write GC state in: " + gcDir, e);
+            }
+        }
+
+        protected List<String> readSwept() {
+            File file = new File(gcDir, SWEPT_FILE);
+            if (!file.exists()) {
+                return Collections.emptyList();
+            }
+            try {
+                return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                log.error("Cannot read GC progress: " + file, e);
+                return Collections.emptyList();
+            }
+        }
+
+        protected void appendSwept(String name) {
+            try {
+                Files.write(new File(gcDir, SWEPT_FILE).toPath(),
+                        Collections.singletonList(name), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                log.error("Cannot write GC progress in: " + gcDir, e);
+            }
+        }
+
+        protected void deleteState() {
+            FileUtils.deleteQuietly(new File(gcDir, STATE_FILE));
+            FileUtils.deleteQuietly(new File(gcDir, SWEPT_FILE));
+            FileUtils.deleteQuietly(new File(gcDir, MARKS_FILE));
+        }
+    }
+
     /**
      * Sets the last modification date to now on a file
      *
@@ -134,6 +134,17 @@ public interface Session<T extends QueryFilter> {
      */
     Document getDocumentByUUID(String uuid) throws DocumentNotFoundException;
 
+    /**
+     * Gets the documents for the given ids, fetched from the repository in batches.
+     * <p>
+     * The documents are returned in the order of the ids, the ids of documents that don't exist are skipped.
+     *
+     * @param uuids the document ids
+     * @return the documents
+     * @since 11.1
+     */
+    List<Document> getDocumentsByUUIDs(List<String> uuids);
+
     /**
      * Gets the root document in this repository.
      *
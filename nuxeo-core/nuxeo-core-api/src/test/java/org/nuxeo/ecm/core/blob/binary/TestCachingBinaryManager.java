@@ -0,0 +1,184 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+
+@RunWith(FeaturesRunner.class)
+@Features(RuntimeFeature.class)
+public class TestCachingBinaryManager {
+
+    // 100 bytes
+    protected static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ"
+            + "0123456789abcdefghijklmnopqrstuvwxyzAB";
+
+    protected static final String SMALL_CONTENT = "this is a file au café";
+
+    /**
+     * In-memory storage standing in for a remote storage supporting ranges, recording the fetches.
+     */
+    protected static class RangeFileStorage implements FileStorage {
+
+        protected final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+        protected final List<String> fetches = new ArrayList<>();
+
+        @Override
+        public void storeFile(String key, File file) throws IOException {
+            files.put(key, Files.readAllBytes(file.toPath()));
+        }
+
+        @Override
+        public boolean fetchFile(String key, File file) throws IOException {
+            fetches.add("file");
+            byte[] bytes = files.get(key);
+            if (bytes == null) {
+                return false;
+            }
+            Files.write(file.toPath(), bytes);
+            return true;
+        }
+
+        @Override
+        public boolean supportsRange() {
+            return true;
+        }
+
+        @Override
+        public InputStream fetchStream(String key, long offset, long length) {
+            fetches.add(offset + "+" + length);
+            byte[] bytes = files.get(key);
+            if (bytes == null) {
+                return null;
+            }
+            int from = (int) offset;
+            int to = (int) Math.min(bytes.length, offset + length);
+            return new ByteArrayInputStream(Arrays.copyOfRange(bytes, from, to));
+        }
+    }
+
+    protected static class TestCachingBinaryManagerImpl extends CachingBinaryManager {
+
+        @Override
+        public void removeBinaries(Collection<String> digests) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    protected RangeFileStorage storage;
+
+    protected CachingBinaryManager binaryManager;
+
+    @Before
+    public void setUp() throws IOException {
+        storage = new RangeFileStorage();
+        binaryManager = new TestCachingBinaryManagerImpl();
+        binaryManager.initialize("repo", Map.of());
+        binaryManager.initializeCache("64", "100", "3600", storage);
+        binaryManager.chunkSize = 16;
+    }
+
+    @After
+    public void tearDown() {
+        binaryManager.close();
+    }
+
+    protected String read(String digest, long offset, long length, long binaryLength) throws IOException {
+        try (InputStream in = binaryManager.getStream(digest, offset, length, binaryLength)) {
+            return in == null ? null : IOUtils.toString(in, UTF_8);
+        }
+    }
+
+    @Test
+    public void testRangeFetchesChunks() throws IOException {
+        String digest = binaryManager.getBinary(Blobs.createBlob(CONTENT)).getDigest();
+        binaryManager.fileCache.clear();
+        assertEquals(0, binaryManager.fileCache.getNumberOfItems());
+
+        // range within a chunk
+        assertEquals(CONTENT.substring(20, 30), read(digest, 20, 10, 100));
+        assertEquals(Arrays.asList("16+16"), storage.fetches);
+        // cached chunk
+        assertEquals(CONTENT.substring(17, 31), read(digest, 17, 14, 100));
+        assertEquals(Arrays.asList("16+16"), storage.fetches);
+        // range over several chunks, including the last incomplete one
+        assertEquals(CONTENT.substring(30), read(digest, 30, 70, 100));
+        assertEquals(Arrays.asList("16+16", "32+16", "48+16", "64+16", "80+16", "96+16"), storage.fetches);
+        // the whole binary was never fetched
+        assertNull(binaryManager.fileCache.getFile(digest));
+    }
+
+    @Test
+    public void testRangeBiggerThanCacheIsStreamed() throws IOException {
+        String digest = binaryManager.getBinary(Blobs.createBlob(CONTENT)).getDigest();
+        binaryManager.fileCache.clear();
+
+        assertEquals(CONTENT, read(digest, 0, 100, 100));
+        assertEquals(Arrays.asList("0+100"), storage.fetches);
+        // nothing cached
+        assertEquals(0, binaryManager.fileCache.getNumberOfItems());
+    }
+
+    @Test
+    public void testWholeBinaryFitsInCache() throws IOException {
+        byte[] bytes = SMALL_CONTENT.getBytes(UTF_8);
+        String digest = binaryManager.getBinary(Blobs.createBlob(SMALL_CONTENT)).getDigest();
+        binaryManager.fileCache.clear();
+
+        // whole binary fetched and cached
+        assertEquals(SMALL_CONTENT, read(digest, 0, bytes.length, bytes.length));
+        assertEquals(Arrays.asList("file"), storage.fetches);
+        assertTrue(binaryManager.fileCache.getFile(digest) != null);
+        // ranges are now read from the cached binary
+        assertEquals("is a", read(digest, 5, 4, bytes.length));
+        assertEquals(Arrays.asList("file"), storage.fetches);
+    }
+
+    @Test
+    public void testMissingBinary() throws IOException {
+        String digest = "d25ea4f4642073b7f218024d397dbaef";
+        assertNull(read(digest, 10, 10, 100));
+        assertNull(read(digest, 0, 10, 10));
+        assertFalse(storage.fetches.isEmpty());
+    }
+
+}
@@ -18,6 +18,7 @@
  */
 package org.nuxeo.ecm.core.blob.binary;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -29,6 +30,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -146,6 +149,76 @@ public class TestDefaultBinaryManager {
         binaryManager.close();
     }
 
+    @Test
+    @Deploy("org.nuxeo.ecm.core.api")
+    @Deploy("org.nuxeo.ecm.core.api.tests:OSGI-INF/test-default-blob-provider.xml")
+    public void testMarkSetGarbageCollector() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(LocalBinaryManager.PROP_GC_MARK_SET, "true");
+        properties.put(LocalBinaryManager.PROP_GC_MARK_SET_SIZE, "1000");
+        properties.put(LocalBinaryManager.PROP_GC_THREADS, "4");
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize("repo", properties);
+        File gcDir = new File(binaryManager.getStorageDir().getParentFile(), LocalBinaryManager.GC);
+        try {
+            binaryManager.getBinary(Blobs.createBlob(CONTENT));
+            // other binaries we'll GC
+            binaryManager.getBinary(Blobs.createBlob("abc")); // in directory 90
+            binaryManager.getBinary(Blobs.createBlob("abcd")); // in directory e2
+            assertEquals(3, countFiles(binaryManager.getStorageDir()));
+
+            // sleep before GC to pass its time threshold
+            Thread.sleep(3 * 1000);
+
+            // create another binary after time threshold, it won't be GCed
+            long threshold = System.currentTimeMillis();
+            binaryManager.getBinary(Blobs.createBlob("defg"));
+
+            // GC in non-delete mode
+            BinaryGarbageCollector gc = binaryManager.getGarbageCollector();
+            assertTrue(gc instanceof LocalBinaryManager.MarkSetBinaryGarbageCollector);
+            gc.start();
+            gc.mark(CONTENT_MD5);
+            gc.stop(false);
+            BinaryManagerStatus status = gc.getStatus();
+            assertEquals(2, status.numBinaries);
+            assertEquals(2, status.numBinariesGC);
+            assertEquals(7, status.sizeBinariesGC);
+            assertEquals(4, countFiles(binaryManager.getStorageDir()));
+            // no state left
+            assertEquals(0, gcDir.list().length);
+
+            // simulate a GC interrupted after directory 90 was swept
+            FileUtils.writeStringToFile(new File(gcDir, "state"), "phase=sweep\nstartTime=" + threshold + "\n",
+                    UTF_8);
+            FileUtils.writeStringToFile(new File(gcDir, "swept"), "90\n", UTF_8);
+
+            // real GC resumes it
+            gc.start();
+            gc.mark(CONTENT_MD5);
+            gc.stop(true);
+            status = gc.getStatus();
+            assertEquals(2, status.numBinaries);
+            assertEquals(1, status.numBinariesGC);
+            assertEquals(4, status.sizeBinariesGC);
+            assertEquals(3, countFiles(binaryManager.getStorageDir()));
+            assertEquals(0, gcDir.list().length);
+
+            // next GC sweeps everything
+            gc.start();
+            gc.mark(CONTENT_MD5);
+            gc.stop(true);
+            status = gc.getStatus();
+            assertEquals(2, status.numBinaries);
+            assertEquals(1, status.numBinariesGC);
+            assertEquals(3, status.sizeBinariesGC);
+            assertEquals(2, countFiles(binaryManager.getStorageDir()));
+        } finally {
+            binaryManager.close();
+            FileUtils.deleteQuietly(gcDir);
+        }
+    }
+
     @Test
     public void testTemporaryCopies() throws IOException {
         DefaultBinaryManager binaryManager = new DefaultBinaryManager();
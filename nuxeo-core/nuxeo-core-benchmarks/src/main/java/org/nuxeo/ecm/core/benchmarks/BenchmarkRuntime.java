@@ -0,0 +1,165 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.benchmarks;
+
+import static org.nuxeo.ecm.core.test.StorageConfiguration.CORE_PROPERTY;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.nuxeo.ecm.core.api.CloseableCoreSession;
+import org.nuxeo.ecm.core.api.CoreInstance;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.TransactionalConfig;
+
+/**
+ * Boots the Nuxeo test runtime with a repository for the duration of a benchmark trial.
+ * <p>
+ * The runtime is started through the regular {@link CoreFeature}, so that the storage configuration is the one of the
+ * unit tests: the {@code nuxeo.test.core} system property selects {@code mem} (in-memory DBS) or {@code vcs} (embedded
+ * H2). The feature runner executes a single bootstrap test on a dedicated thread, which keeps the runtime up until
+ * {@link #stop} is called.
+ *
+ * @since 11.1
+ */
+public class BenchmarkRuntime {
+
+    protected static final long START_TIMEOUT_MINUTES = 5;
+
+    protected static volatile BenchmarkRuntime current;
+
+    protected final CountDownLatch started = new CountDownLatch(1);
+
+    protected final CountDownLatch stopped = new CountDownLatch(1);
+
+    protected volatile CoreFeature coreFeature;
+
+    protected volatile Throwable failure;
+
+    protected Thread thread;
+
+    @RunWith(FeaturesRunner.class)
+    @Features(CoreFeature.class)
+    @TransactionalConfig(autoStart = false)
+    public static class Bootstrap {
+
+        @Inject
+        protected CoreFeature coreFeature;
+
+        @Test
+        public void run() throws InterruptedException {
+            BenchmarkRuntime runtime = current;
+            runtime.coreFeature = coreFeature;
+            runtime.started.countDown();
+            runtime.stopped.await();
+        }
+    }
+
+    /**
+     * Starts the runtime with the given core type ({@code mem} or {@code vcs}).
+     */
+    public static synchronized BenchmarkRuntime start(String coreType) {
+        if (current != null) {
+            throw new IllegalStateException("Runtime already started");
+        }
+        System.setProperty(CORE_PROPERTY, coreType);
+        BenchmarkRuntime runtime = new BenchmarkRuntime();
+        current = runtime;
+        runtime.doStart();
+        return runtime;
+    }
+
+    protected void doStart() {
+        thread = new Thread(this::runBootstrap, "Nuxeo-benchmark-runtime");
+        thread.start();
+        try {
+            if (!started.await(START_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                throw new NuxeoException("Timeout while starting the runtime");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException(e);
+        }
+        if (failure != null) {
+            throw new NuxeoException("Cannot start the runtime", failure);
+        }
+    }
+
+    protected void runBootstrap() {
+        RunNotifier notifier = new RunNotifier();
+        notifier.addListener(new RunListener() {
+            @Override
+            public void testFailure(Failure f) {
+                failure = f.getException();
+                started.countDown();
+            }
+
+            @Override
+            public void testRunFinished(org.junit.runner.Result result) {
+                started.countDown();
+            }
+
+            @Override
+            public void testIgnored(Description description) {
+                started.countDown();
+            }
+        });
+        try {
+            new FeaturesRunner(Bootstrap.class).run(notifier);
+        } catch (Exception e) { // InitializationError
+            failure = e;
+            started.countDown();
+        }
+    }
+
+    /**
+     * Stops the runtime, waiting for the repository cleanup to complete.
+     */
+    public synchronized void stop() {
+        stopped.countDown();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException(e);
+        } finally {
+            current = null;
+        }
+    }
+
+    public String getRepositoryName() {
+        return coreFeature.getRepositoryName();
+    }
+
+    /**
+     * Opens a system session on the benchmark repository. Must be called in a transaction.
+     */
+    public CloseableCoreSession openSession() {
+        return CoreInstance.openCoreSessionSystem(getRepositoryName());
+    }
+
+}
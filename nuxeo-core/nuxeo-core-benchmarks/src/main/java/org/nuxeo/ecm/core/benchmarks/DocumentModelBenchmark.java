@@ -0,0 +1,103 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.benchmarks;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.ecm.core.api.CloseableCoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.model.Property;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks property access on a {@link org.nuxeo.ecm.core.api.impl.DocumentModelImpl}.
+ *
+ * @since 11.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentModelBenchmark {
+
+    protected BenchmarkRuntime runtime;
+
+    protected DocumentModel doc;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        runtime = BenchmarkRuntime.start("mem");
+        doc = TransactionHelper.runInTransaction(() -> {
+            try (CloseableCoreSession session = runtime.openSession()) {
+                DocumentModel d = session.createDocumentModel("/", "doc", "File");
+                d.setPropertyValue("dc:title", "Document");
+                d.setPropertyValue("dc:subjects", new String[] { "art", "sport" });
+                d = session.createDocument(d);
+                session.save();
+                // load all schemas and detach so that the benchmark doesn't need a session
+                d.detach(true);
+                return d;
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        runtime.stop();
+    }
+
+    @Benchmark
+    public Serializable getPropertyValue() {
+        return doc.getPropertyValue("dc:title");
+    }
+
+    @Benchmark
+    public Serializable getListPropertyValue() {
+        return doc.getPropertyValue("dc:subjects");
+    }
+
+    @Benchmark
+    public Property getProperty() {
+        return doc.getProperty("dc:title");
+    }
+
+    @Benchmark
+    public boolean setPropertyValue() {
+        doc.setPropertyValue("dc:description", "description");
+        return doc.isDirty();
+    }
+
+    @Benchmark
+    public Object getSchemaProperty() {
+        return doc.getProperty("dublincore", "title");
+    }
+
+}
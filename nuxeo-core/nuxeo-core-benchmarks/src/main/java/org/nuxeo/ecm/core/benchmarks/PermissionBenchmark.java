@@ -0,0 +1,128 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.ecm.core.api.security.ACE;
+import org.nuxeo.ecm.core.api.security.ACL;
+import org.nuxeo.ecm.core.api.security.ACP;
+import org.nuxeo.ecm.core.api.security.Access;
+import org.nuxeo.ecm.core.api.security.SecurityConstants;
+import org.nuxeo.ecm.core.api.security.impl.ACLImpl;
+import org.nuxeo.ecm.core.api.security.impl.ACPImpl;
+import org.nuxeo.ecm.core.security.CompiledACP;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the evaluation of a permission on a merged ACP, as done by the security service for each permission check,
+ * with the string evaluator of {@link ACP#getAccess(String[], String[])} and with {@link CompiledACP}.
+ * <p>
+ * The ACP has a few local ACEs and an inherited ACL of ACEs for other groups, the grant is given by the last ACE.
+ *
+ * @since 11.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PermissionBenchmark {
+
+    /** Number of groups of the user. */
+    @Param({ "10", "100", "500" })
+    public int groups;
+
+    /** Number of ACEs in the inherited ACL. */
+    @Param({ "10", "50" })
+    public int aces;
+
+    protected List<String> userGroups;
+
+    protected String[] permissions;
+
+    protected ACP acp;
+
+    protected CompiledACP.Principals compiledPrincipals;
+
+    protected CompiledACP.Permissions compiledPermissions;
+
+    protected CompiledACP compiledACP;
+
+    @Setup
+    public void setup() {
+        userGroups = new ArrayList<>(groups);
+        for (int i = 0; i < groups; i++) {
+            userGroups.add("group" + i);
+        }
+        permissions = new String[] { SecurityConstants.READ, SecurityConstants.READ_WRITE,
+                "ReadRemove", SecurityConstants.EVERYTHING };
+        acp = new ACPImpl();
+        ACL local = new ACLImpl(ACL.LOCAL_ACL);
+        local.add(new ACE("bob", SecurityConstants.EVERYTHING, true));
+        local.add(new ACE("othergroup", SecurityConstants.WRITE, true));
+        acp.addACL(local);
+        ACL inherited = new ACLImpl(ACL.INHERITED_ACL);
+        for (int i = 0; i < aces - 1; i++) {
+            inherited.add(new ACE("other" + i, SecurityConstants.READ, true));
+        }
+        // granted to the last group of the user
+        inherited.add(new ACE("group" + (groups - 1), SecurityConstants.READ, true));
+        acp.addACL(inherited);
+        compiledPrincipals = CompiledACP.compilePrincipals(getPrincipalsToCheck());
+        compiledPermissions = CompiledACP.compilePermissions(permissions);
+        compiledACP = CompiledACP.compile(acp);
+    }
+
+    /** Same as SecurityService.getPrincipalsToCheck. */
+    protected String[] getPrincipalsToCheck() {
+        int size = userGroups.size();
+        String[] principals = new String[size + 2];
+        userGroups.toArray(principals);
+        principals[size] = "alice";
+        principals[size + 1] = SecurityConstants.EVERYONE;
+        return principals;
+    }
+
+    @Benchmark
+    public Access strings() {
+        return acp.getAccess(getPrincipalsToCheck(), permissions);
+    }
+
+    @Benchmark
+    public Access compiledPrincipals() {
+        return CompiledACP.getAccess(acp, compiledPrincipals, compiledPermissions);
+    }
+
+    @Benchmark
+    public Access compiledACP() {
+        return compiledACP.getAccess(compiledPrincipals, compiledPermissions);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.benchmarks;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.ecm.core.api.CloseableCoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.query.sql.SQLQueryCache;
+import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks NXQL query processing with and without the parsed query cache and the VCS query plan cache.
+ * <p>
+ * The VCS benchmark runs an NXQL query returning a single document on embedded H2, so most of its cost is the query
+ * generation by {@code NXQLQueryMaker}.
+ *
+ * @since 11.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    protected static final String QUERY = "SELECT * FROM Document WHERE ecm:primaryType = 'File' AND dc:title = '%s'"
+            + " AND ecm:isProxy = 0 AND ecm:isVersion = 0 ORDER BY dc:modified DESC";
+
+    @State(Scope.Thread)
+    public static class ParserState {
+
+        /** Parsed query cache size, 0 to parse without the cache. */
+        @Param({ "0", "1000" })
+        public int cacheSize;
+
+        protected SQLQueryCache cache;
+
+        protected int counter;
+
+        @Setup
+        public void setup() {
+            cache = cacheSize == 0 ? null : new SQLQueryCache(cacheSize);
+        }
+
+        protected SQLQuery parse() {
+            String query = String.format(QUERY, "title" + counter++);
+            if (cache == null) {
+                return SQLQueryParser.parse(new StringReader(query));
+            }
+            return cache.parse(query);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RepositoryState {
+
+        /** VCS query plan cache size, 0 to disable the cache. */
+        @Param({ "0", "1000" })
+        public int planCacheSize;
+
+        protected BenchmarkRuntime runtime;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            System.setProperty(QueryPlanCache.CACHE_SIZE_PROP, String.valueOf(planCacheSize));
+            runtime = BenchmarkRuntime.start("vcs");
+            TransactionHelper.runInTransaction(() -> {
+                try (CloseableCoreSession session = runtime.openSession()) {
+                    DocumentModel doc = session.createDocumentModel("/", "doc", "File");
+                    doc.setPropertyValue("dc:title", "title");
+                    session.createDocument(doc);
+                    session.save();
+                }
+            });
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            runtime.stop();
+            System.clearProperty(QueryPlanCache.CACHE_SIZE_PROP);
+        }
+    }
+
+    @Benchmark
+    public SQLQuery parse(ParserState state) {
+        return state.parse();
+    }
+
+    @Benchmark
+    public int query(RepositoryState state) {
+        return TransactionHelper.runInTransaction(() -> {
+            try (CloseableCoreSession session = state.runtime.openSession()) {
+                return session.query(String.format(QUERY, "title")).size();
+            }
+        });
+    }
+
+}
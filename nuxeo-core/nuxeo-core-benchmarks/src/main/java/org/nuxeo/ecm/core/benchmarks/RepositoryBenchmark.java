@@ -0,0 +1,149 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.ecm.core.api.CloseableCoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the document storage write and read paths through the {@link org.nuxeo.ecm.core.api.CoreSession}:
+ * {@code DBSSession} / {@code DBSTransactionState} on the in-memory repository, {@code SessionImpl} /
+ * {@code PersistenceContext} on embedded H2.
+ * <p>
+ * Each benchmark operation runs in its own transaction, like a request would.
+ *
+ * @since 11.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    protected static final int NB_DOCS = 1000;
+
+    /** Number of documents created per transaction by {@link #createAndSave}. */
+    protected static final int BATCH_SIZE = 10;
+
+    @Param({ "mem", "vcs" })
+    public String core;
+
+    protected BenchmarkRuntime runtime;
+
+    protected String folderId;
+
+    protected List<String> ids;
+
+    protected int counter;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        runtime = BenchmarkRuntime.start(core);
+        ids = new ArrayList<>(NB_DOCS);
+        TransactionHelper.runInTransaction(() -> {
+            try (CloseableCoreSession session = runtime.openSession()) {
+                DocumentModel folder = session.createDocumentModel("/", "bench", "Folder");
+                folder = session.createDocument(folder);
+                folderId = folder.getId();
+                for (int i = 0; i < NB_DOCS; i++) {
+                    DocumentModel doc = session.createDocumentModel(folder.getPathAsString(), "doc" + i, "File");
+                    doc.setPropertyValue("dc:title", "Document " + i);
+                    doc.setPropertyValue("dc:subjects", new String[] { "art", "sport" });
+                    doc = session.createDocument(doc);
+                    ids.add(doc.getId());
+                }
+                session.save();
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        runtime.stop();
+    }
+
+    protected String nextId() {
+        return ids.get(counter++ % NB_DOCS);
+    }
+
+    @Benchmark
+    public void createAndSave() {
+        TransactionHelper.runInTransaction(() -> {
+            try (CloseableCoreSession session = runtime.openSession()) {
+                DocumentModel folder = session.getDocument(new IdRef(folderId));
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    DocumentModel doc = session.createDocumentModel(folder.getPathAsString(), "new", "File");
+                    doc.setPropertyValue("dc:title", "New document");
+                    doc.setPropertyValue("dc:description", "Some description");
+                    session.createDocument(doc);
+                }
+                session.save();
+            }
+        });
+    }
+
+    @Benchmark
+    public void updateAndSave() {
+        TransactionHelper.runInTransaction(() -> {
+            try (CloseableCoreSession session = runtime.openSession()) {
+                DocumentModel doc = session.getDocument(new IdRef(nextId()));
+                doc.setPropertyValue("dc:description", "description " + counter);
+                session.saveDocument(doc);
+                session.save();
+            }
+        });
+    }
+
+    @Benchmark
+    public DocumentModel getDocument() {
+        return TransactionHelper.runInTransaction(() -> {
+            try (CloseableCoreSession session = runtime.openSession()) {
+                return session.getDocument(new IdRef(nextId()));
+            }
+        });
+    }
+
+    @Benchmark
+    public int getChildren() {
+        return TransactionHelper.runInTransaction(() -> {
+            try (CloseableCoreSession session = runtime.openSession()) {
+                return session.getChildrenRefs(new IdRef(folderId), null).size();
+            }
+        });
+    }
+
+}
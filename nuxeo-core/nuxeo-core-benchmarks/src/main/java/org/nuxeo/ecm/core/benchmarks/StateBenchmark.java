@@ -0,0 +1,121 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.benchmarks;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.ecm.core.storage.StateHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link State} copy and diff, as done by the DBS transaction state for each read and save.
+ *
+ * @since 11.1
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateBenchmark {
+
+    /** Number of complex list elements in the document state. */
+    @Param({ "0", "10", "100" })
+    public int listSize;
+
+    protected State state;
+
+    protected State modified;
+
+    @Setup
+    public void setup() {
+        state = newState(listSize);
+        modified = StateHelper.deepCopy(state);
+        modified.put("dc:title", "modified title");
+        if (listSize > 0) {
+            @SuppressWarnings("unchecked")
+            List<Serializable> list = (List<Serializable>) modified.get("files:files");
+            ((State) list.get(listSize / 2)).put("filename", "modified.txt");
+        }
+    }
+
+    protected static State newState(int listSize) {
+        State state = new State();
+        state.put("ecm:id", "12345678-1234-1234-1234-123456789abc");
+        state.put("ecm:parentId", "12345678-1234-1234-1234-123456789000");
+        state.put("ecm:name", "doc");
+        state.put("ecm:primaryType", "File");
+        state.put("ecm:ancestorIds", new Object[] { "00000000-0000-0000-0000-000000000000",
+                "12345678-1234-1234-1234-123456789000" });
+        state.put("ecm:racl", new String[] { "Administrator", "members" });
+        state.put("ecm:changeToken", Long.valueOf(1));
+        state.put("dc:title", "title");
+        state.put("dc:description", "description");
+        state.put("dc:created", new GregorianCalendar());
+        state.put("dc:modified", Calendar.getInstance());
+        state.put("dc:subjects", new Object[] { "art", "sciences", "sport" });
+        state.put("dc:contributors", new Object[] { "Administrator", "bob" });
+        ArrayList<Serializable> files = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            State file = new State();
+            file.put("filename", "file" + i + ".txt");
+            State blob = new State();
+            blob.put("name", "file" + i + ".txt");
+            blob.put("mime-type", "text/plain");
+            blob.put("digest", "d41d8cd98f00b204e9800998ecf8427e");
+            blob.put("length", Long.valueOf(i));
+            file.put("file", blob);
+            files.add(file);
+        }
+        if (listSize > 0) {
+            state.put("files:files", files);
+        }
+        return state;
+    }
+
+    @Benchmark
+    public State deepCopy() {
+        return StateHelper.deepCopy(state);
+    }
+
+    @Benchmark
+    public StateDiff diff() {
+        return StateHelper.diff(state, modified);
+    }
+
+    @Benchmark
+    public boolean equalsStrict() {
+        return StateHelper.equalsStrict(state, modified);
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.ecm.core.bulk.message.BulkBucket;
+import org.nuxeo.ecm.core.bulk.message.BulkCommand;
+import org.nuxeo.lib.stream.codec.AvroBinaryCodec;
+import org.nuxeo.lib.stream.codec.AvroJsonCodec;
+import org.nuxeo.lib.stream.codec.AvroMessageCodec;
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.codec.SerializableCodec;
+import org.nuxeo.lib.stream.computation.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the encoding and decoding of the messages exchanged through nuxeo-stream, for each available codec.
+ * <p>
+ * The {@code none} codec of the Log API is not a real encoding: it falls back to Java serialization for
+ * {@link Record}, which is what the {@code java} codec measures.
+ *
+ * @since 11.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamCodecBenchmark {
+
+    @Param({ "java", "avro", "avroBinary", "avroJson" })
+    public String codec;
+
+    @Param({ "record", "command", "bucket" })
+    public String message;
+
+    /** Size of the record data, and number of document ids in the bucket. */
+    @Param({ "100" })
+    public int size;
+
+    protected Codec<Object> messageCodec;
+
+    protected Object object;
+
+    protected byte[] data;
+
+    @Setup
+    public void setup() {
+        Class<?> messageClass;
+        switch (message) {
+        case "record":
+            messageClass = Record.class;
+            byte[] bytes = new byte[size];
+            new Random(0).nextBytes(bytes);
+            object = Record.of("key-0001", bytes);
+            break;
+        case "command":
+            messageClass = BulkCommand.class;
+            object = new BulkCommand.Builder("setProperties", "SELECT * FROM Document WHERE ecm:isVersion = 0",
+                    "Administrator").repository("test").bucket(size).batch(size / 10 + 1).build();
+            break;
+        case "bucket":
+            messageClass = BulkBucket.class;
+            List<String> ids = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                ids.add(UUID.randomUUID().toString());
+            }
+            object = new BulkBucket(UUID.randomUUID().toString(), ids);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown message: " + message);
+        }
+        messageCodec = newCodec(codec, messageClass);
+        data = messageCodec.encode(object);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected static Codec<Object> newCodec(String name, Class<?> messageClass) {
+        switch (name) {
+        case "java":
+            return (Codec) new SerializableCodec<>();
+        case "avro":
+            return new AvroMessageCodec(messageClass);
+        case "avroBinary":
+            return new AvroBinaryCodec(messageClass);
+        case "avroJson":
+            return new AvroJsonCodec(messageClass);
+        default:
+            throw new IllegalArgumentException("Unknown codec: " + name);
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return messageCodec.encode(object);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return messageCodec.decode(data);
+    }
+
+}
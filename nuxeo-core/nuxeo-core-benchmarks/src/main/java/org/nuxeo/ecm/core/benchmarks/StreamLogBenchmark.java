@@ -0,0 +1,157 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.benchmarks;
+
+import static org.nuxeo.lib.stream.codec.NoCodec.NO_CODEC;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.nuxeo.lib.stream.codec.AvroMessageCodec;
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.codec.SerializableCodec;
+import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.log.LogAppender;
+import org.nuxeo.lib.stream.log.LogManager;
+import org.nuxeo.lib.stream.log.LogRecord;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.chronicle.ChronicleLogManager;
+import org.nuxeo.lib.stream.log.mmap.MMapLogManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the end-to-end throughput of a Log backend: records are appended then read back by a tailer which commits
+ * its position, as done by a computation.
+ * <p>
+ * The score is a number of records per second, each record being appended and read once.
+ *
+ * @since 11.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamLogBenchmark {
+
+    protected static final int BATCH_SIZE = 1000;
+
+    protected static final String LOG_NAME = "bench";
+
+    protected static final String GROUP = "bench";
+
+    protected static final Duration READ_TIMEOUT = Duration.ofSeconds(10);
+
+    @Param({ "chronicle", "mmap" })
+    public String backend;
+
+    /** The codec, {@code none} being the default format of the backend. */
+    @Param({ "none", "java", "avro" })
+    public String codec;
+
+    /** Size of the record data. */
+    @Param({ "100", "1000" })
+    public int size;
+
+    protected Path basePath;
+
+    protected LogManager manager;
+
+    protected LogAppender<Record> appender;
+
+    protected LogTailer<Record> tailer;
+
+    protected Record record;
+
+    @Setup
+    public void setup() throws IOException {
+        basePath = Files.createTempDirectory("stream-bench-");
+        switch (backend) {
+        case "chronicle":
+            manager = new ChronicleLogManager(basePath);
+            break;
+        case "mmap":
+            manager = new MMapLogManager(basePath);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+        manager.createIfNotExists(LOG_NAME, 1);
+        Codec<Record> recordCodec = newCodec(codec);
+        appender = manager.getAppender(LOG_NAME, recordCodec);
+        tailer = manager.createTailer(GROUP, LOG_NAME, recordCodec);
+        byte[] data = new byte[size];
+        new Random(0).nextBytes(data);
+        record = Record.of("key", data);
+    }
+
+    protected static Codec<Record> newCodec(String name) {
+        switch (name) {
+        case "none":
+            return NO_CODEC;
+        case "java":
+            return new SerializableCodec<>();
+        case "avro":
+            return new AvroMessageCodec<>(Record.class);
+        default:
+            throw new IllegalArgumentException("Unknown codec: " + name);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        tailer.close();
+        manager.close();
+        FileUtils.deleteDirectory(basePath.toFile());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long appendAndTail() throws InterruptedException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            appender.append(0, record);
+        }
+        long bytes = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            LogRecord<Record> logRecord = tailer.read(READ_TIMEOUT);
+            if (logRecord == null) {
+                throw new IllegalStateException("Timeout reading record: " + i);
+            }
+            bytes += logRecord.message().getData().length;
+        }
+        tailer.commit();
+        return bytes;
+    }
+
+}
@@ -71,6 +71,9 @@ public class BulkServiceImpl implements BulkService {
 
     public static final String STATUS_PREFIX = "status:";
 
+    /** @since 11.1 */
+    public static final String SCROLL_PREFIX = "scroll:";
+
     public static final String PRODUCE_IMMEDIATE_OPTION = "produceImmediate";
 
     // How long we keep the command and its status in the kv store once completed
@@ -164,10 +167,12 @@ public class BulkServiceImpl implements BulkService {
             kvStore.put(STATUS_PREFIX + status.getId(), statusAsBytes, ABORTED_TTL_SECONDS);
             // we remove the command from the kv store, so computation have to handle abort
             kvStore.put(COMMAND_PREFIX + status.getId(), (String) null);
+            kvStore.put(SCROLL_PREFIX + status.getId(), (String) null);
             break;
         case COMPLETED:
             kvStore.put(STATUS_PREFIX + status.getId(), statusAsBytes, COMPLETED_TTL_SECONDS);
             kvStore.setTTL(COMMAND_PREFIX + status.getId(), COMPLETED_TTL_SECONDS);
+            kvStore.setTTL(SCROLL_PREFIX + status.getId(), COMPLETED_TTL_SECONDS);
             break;
         default:
             kvStore.put(STATUS_PREFIX + status.getId(), statusAsBytes);
@@ -19,9 +19,11 @@
 package org.nuxeo.ecm.core.bulk;
 
 import static org.nuxeo.ecm.core.bulk.BulkAdminServiceImpl.BULK_SCROLL_KEEP_ALIVE_PROPERTY;
+import static org.nuxeo.ecm.core.bulk.BulkAdminServiceImpl.BULK_SCROLL_PARTITIONS_PROPERTY;
 import static org.nuxeo.ecm.core.bulk.BulkAdminServiceImpl.BULK_SCROLL_PRODUCE_IMMEDIATE_PROPERTY;
 import static org.nuxeo.ecm.core.bulk.BulkAdminServiceImpl.BULK_SCROLL_SIZE_PROPERTY;
 import static org.nuxeo.ecm.core.bulk.BulkAdminServiceImpl.DEFAULT_SCROLL_KEEP_ALIVE;
+import static org.nuxeo.ecm.core.bulk.BulkAdminServiceImpl.DEFAULT_SCROLL_PARTITIONS;
 import static org.nuxeo.ecm.core.bulk.BulkAdminServiceImpl.DEFAULT_SCROLL_SIZE;
 import static org.nuxeo.ecm.core.bulk.BulkAdminServiceImpl.SCROLLER_NAME;
 import static org.nuxeo.ecm.core.bulk.BulkAdminServiceImpl.STATUS_NAME;
@@ -62,11 +64,12 @@ public class BulkServiceProcessor implements StreamProcessorTopology {
         ConfigurationService confService = Framework.getService(ConfigurationService.class);
         int scrollBatchSize = confService.getInteger(BULK_SCROLL_SIZE_PROPERTY, DEFAULT_SCROLL_SIZE);
         int scrollKeepAlive = confService.getInteger(BULK_SCROLL_KEEP_ALIVE_PROPERTY, DEFAULT_SCROLL_KEEP_ALIVE);
+        int scrollPartitions = confService.getInteger(BULK_SCROLL_PARTITIONS_PROPERTY, DEFAULT_SCROLL_PARTITIONS);
         boolean scrollProduceImmediate = confService.isBooleanTrue(BULK_SCROLL_PRODUCE_IMMEDIATE_PROPERTY);
         return Topology.builder()
                        .addComputation( //
                                () -> new BulkScrollerComputation(SCROLLER_NAME, actions.size() + 1, scrollBatchSize,
-                                       scrollKeepAlive, scrollProduceImmediate), //
+                                       scrollKeepAlive, scrollPartitions, scrollProduceImmediate), //
                                mapping)
                        .addComputation(() -> new BulkStatusComputation(STATUS_NAME),
                                Arrays.asList(INPUT_1 + ":" + STATUS_STREAM, //
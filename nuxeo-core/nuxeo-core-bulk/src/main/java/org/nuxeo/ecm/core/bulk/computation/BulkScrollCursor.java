@@ -0,0 +1,135 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.bulk.computation;
+
+import static org.nuxeo.ecm.core.bulk.BulkServiceImpl.SCROLL_PREFIX;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nuxeo.runtime.kv.KeyValueStore;
+
+/**
+ * The progress of the scroll of a bulk command split into id ranges (see {@link BulkScrollPartitions}), persisted in
+ * the bulk key/value store so that the scroll can resume after a failover.
+ * <p>
+ * The cursor records the ranges whose documents have all been sent in buckets, the number of these documents, and the
+ * next bucket number. A resumed scroll skips the completed ranges, the ranges in progress are scrolled again from their
+ * start, their buckets being only sent once they are completed.
+ * <p>
+ * It is stored as a string: {@code ranges:bucketNumber:documentCount:completedRange,completedRange,...}.
+ *
+ * @since 11.1
+ */
+public class BulkScrollCursor {
+
+    private static final Logger log = LogManager.getLogger(BulkScrollCursor.class);
+
+    protected final String commandId;
+
+    protected final int ranges;
+
+    protected final BitSet completed;
+
+    protected long bucketNumber;
+
+    protected long documentCount;
+
+    public BulkScrollCursor(String commandId, int ranges) {
+        this.commandId = commandId;
+        this.ranges = ranges;
+        completed = new BitSet(ranges);
+        bucketNumber = 1;
+    }
+
+    /**
+     * Loads the cursor of a command, or returns a new cursor if none is stored for the given number of ranges.
+     */
+    public static BulkScrollCursor load(KeyValueStore kvStore, String commandId, int ranges) {
+        BulkScrollCursor cursor = new BulkScrollCursor(commandId, ranges);
+        String value = kvStore.getString(SCROLL_PREFIX + commandId);
+        if (value == null) {
+            return cursor;
+        }
+        String[] parts = value.split(":", 4);
+        try {
+            if (parts.length != 4 || Integer.parseInt(parts[0]) != ranges) {
+                log.warn("Ignoring scroll cursor: {} for command: {}, expecting {} ranges", value, commandId, ranges);
+                return cursor;
+            }
+            cursor.bucketNumber = Long.parseLong(parts[1]);
+            cursor.documentCount = Long.parseLong(parts[2]);
+            if (!parts[3].isEmpty()) {
+                for (String range : parts[3].split(",")) {
+                    cursor.completed.set(Integer.parseInt(range));
+                }
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid scroll cursor: {} for command: {}", value, commandId);
+            return new BulkScrollCursor(commandId, ranges);
+        }
+        log.debug("Resuming scroll of command: {} with cursor: {}", commandId, value);
+        return cursor;
+    }
+
+    public void save(KeyValueStore kvStore) {
+        kvStore.put(SCROLL_PREFIX + commandId, toString());
+    }
+
+    /**
+     * Marks a range as completed, all its documents having been sent.
+     */
+    public void complete(int range, long rangeDocumentCount) {
+        if (!completed.get(range)) {
+            completed.set(range);
+            documentCount += rangeDocumentCount;
+        }
+    }
+
+    public boolean isCompleted(int range) {
+        return completed.get(range);
+    }
+
+    public List<Integer> getPendingRanges() {
+        return IntStream.range(0, ranges).filter(r -> !completed.get(r)).boxed().collect(Collectors.toList());
+    }
+
+    public long getBucketNumber() {
+        return bucketNumber;
+    }
+
+    public void setBucketNumber(long bucketNumber) {
+        this.bucketNumber = bucketNumber;
+    }
+
+    /**
+     * Gets the number of documents of the completed ranges.
+     */
+    public long getDocumentCount() {
+        return documentCount;
+    }
+
+    @Override
+    public String toString() {
+        return ranges + ":" + bucketNumber + ":" + documentCount + ":"
+                + completed.stream().mapToObj(Integer::toString).collect(Collectors.joining(","));
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.bulk.computation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.query.sql.NXQLSerializer;
+import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.Predicate;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+
+/**
+ * Splits an NXQL query into queries on disjoint ranges of document ids, so that they can be scrolled concurrently.
+ * <p>
+ * The query is parsed and a range predicate is added to its {@code WHERE} clause. The ranges are made on the first 32
+ * bits of the UUID, the first and last ranges are open so that any id is matched by exactly one range. The order of
+ * the results is not preserved across ranges. Only repositories whose document ids are UUIDs can be split this way.
+ * <p>
+ * Queries with a {@code LIMIT} or an {@code OFFSET}, or that cannot be serialized back to NXQL, are not split.
+ *
+ * @since 11.1
+ */
+public class BulkScrollPartitions {
+
+    public static final int MAX_PARTITIONS = 256;
+
+    private BulkScrollPartitions() {
+        // utility class
+    }
+
+    /**
+     * Splits the query into {@code partitions} queries on disjoint id ranges.
+     *
+     * @return the list of queries, containing only the original query if it cannot be split
+     * @throws org.nuxeo.ecm.core.query.QueryParseException if the query is invalid
+     */
+    public static List<String> split(String query, int partitions) {
+        partitions = Math.min(partitions, MAX_PARTITIONS);
+        if (partitions <= 1) {
+            return Collections.singletonList(query);
+        }
+        SQLQuery sqlQuery = SQLQueryParser.parse(query);
+        if (sqlQuery.limit != 0 || sqlQuery.offset != 0) {
+            return Collections.singletonList(query);
+        }
+        Predicate where = sqlQuery.where == null ? null : sqlQuery.where.predicate;
+        List<String> queries = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            Predicate range = getRangePredicate(i, partitions);
+            Predicate predicate = where == null ? range : new Predicate(where, Operator.AND, range);
+            String rangeQuery = NXQLSerializer.serializeChecked(sqlQuery.withPredicate(predicate));
+            if (rangeQuery == null) {
+                return Collections.singletonList(query);
+            }
+            queries.add(rangeQuery);
+        }
+        return queries;
+    }
+
+    protected static Predicate getRangePredicate(int i, int partitions) {
+        Reference id = new Reference(NXQL.ECM_UUID);
+        Predicate lower = i == 0 ? null
+                : new Predicate(id, Operator.GTEQ, new StringLiteral(getBound(i, partitions)));
+        Predicate upper = i == partitions - 1 ? null
+                : new Predicate(id, Operator.LT, new StringLiteral(getBound(i + 1, partitions)));
+        if (lower == null) {
+            return upper;
+        } else if (upper == null) {
+            return lower;
+        }
+        return new Predicate(lower, Operator.AND, upper);
+    }
+
+    protected static String getBound(int i, int partitions) {
+        long prefix = (i * 0x1_0000_0000L) / partitions;
+        return String.format("%08x-0000-0000-0000-000000000000", prefix);
+    }
+
+}
@@ -21,6 +21,7 @@ package org.nuxeo.ecm.core.bulk.computation;
 
 import static java.lang.Math.min;
 import static org.nuxeo.ecm.core.api.security.SecurityConstants.SYSTEM_USERNAME;
+import static org.nuxeo.ecm.core.bulk.BulkServiceImpl.BULK_KV_STORE_NAME;
 import static org.nuxeo.ecm.core.bulk.BulkServiceImpl.STATUS_STREAM;
 import static org.nuxeo.ecm.core.bulk.message.BulkStatus.State.ABORTED;
 import static org.nuxeo.ecm.core.bulk.message.BulkStatus.State.COMPLETED;
@@ -29,7 +30,19 @@ import static org.nuxeo.ecm.core.bulk.message.BulkStatus.State.SCROLLING_RUNNING
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 import javax.security.auth.login.LoginException;
 
@@ -37,6 +50,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.nuxeo.ecm.core.api.CloseableCoreSession;
 import org.nuxeo.ecm.core.api.CoreInstance;
+import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentNotFoundException;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.ScrollResult;
@@ -47,12 +61,15 @@ import org.nuxeo.ecm.core.bulk.message.BulkBucket;
 import org.nuxeo.ecm.core.bulk.message.BulkCommand;
 import org.nuxeo.ecm.core.bulk.message.BulkStatus;
 import org.nuxeo.ecm.core.query.QueryParseException;
+import org.nuxeo.lib.stream.StreamRuntimeException;
 import org.nuxeo.lib.stream.computation.AbstractComputation;
 import org.nuxeo.lib.stream.computation.ComputationContext;
 import org.nuxeo.lib.stream.computation.Record;
 import org.nuxeo.lib.stream.computation.internals.ComputationContextImpl;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.api.login.NuxeoLoginContext;
+import org.nuxeo.runtime.kv.KeyValueService;
+import org.nuxeo.runtime.kv.KeyValueStore;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
 /**
@@ -68,6 +85,16 @@ import org.nuxeo.runtime.transaction.TransactionHelper;
  * <li>- "actionName": Writes {@link BulkBucket} into the action stream</li>
  * <li>- "status": Writes {@link BulkStatus} into the action stream</li>
  * </ul>
+ * <p>
+ * When configured with several scroll partitions, and if the repository uses UUIDs as document ids, the query is split
+ * into disjoint ranges of document ids (see {@link BulkScrollPartitions}) which are scrolled concurrently by a thread
+ * pool created at init, the buckets being produced by the computation thread as the results of any range arrive.
+ * <p>
+ * When records are produced immediately, and if the repository uses UUIDs as document ids, the query is always split
+ * into at least {@link #CHECKPOINT_RANGES} ranges, scrolled by the same thread pool. The buckets of a range are only
+ * produced once the range is completely scrolled, then the scroll progress is saved (see {@link BulkScrollCursor}). A
+ * command record processed again after a failover resumes its scroll from the completed ranges, the documents of the
+ * ranges in progress are neither lost nor produced twice.
  *
  * @since 10.2
  */
@@ -77,14 +104,35 @@ public class BulkScrollerComputation extends AbstractComputation {
 
     public static final int MAX_SCROLL_SIZE = 4_000;
 
+    /**
+     * The minimum number of ranges a query is split into when records are produced immediately, so that the scroll
+     * progress can be saved after each range.
+     *
+     * @since 11.1
+     */
+    public static final int CHECKPOINT_RANGES = 16;
+
+    protected static final Pattern UUID_PATTERN = Pattern.compile(
+            "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
     protected final int scrollBatchSize;
 
     protected final int scrollKeepAliveSeconds;
 
+    protected final int scrollPartitions;
+
     protected final List<String> documentIds;
 
     private final boolean produceImmediate;
 
+    protected long bucketNumber;
+
+    /** Threads scrolling the id ranges, {@code null} when the query is never split. */
+    protected ExecutorService scrollExecutor;
+
+    /** Whether the document ids of a repository are UUIDs. */
+    protected final Map<String, Boolean> uuidRepositories = new HashMap<>();
+
     /**
      * @param name the computation name
      * @param nbOutputStreams the number of registered bulk action streams
@@ -94,13 +142,53 @@ public class BulkScrollerComputation extends AbstractComputation {
      */
     public BulkScrollerComputation(String name, int nbOutputStreams, int scrollBatchSize, int scrollKeepAliveSeconds,
             boolean produceImmediate) {
+        this(name, nbOutputStreams, scrollBatchSize, scrollKeepAliveSeconds, 1, produceImmediate);
+    }
+
+    /**
+     * @param name the computation name
+     * @param nbOutputStreams the number of registered bulk action streams
+     * @param scrollBatchSize the batch size to scroll
+     * @param scrollKeepAliveSeconds the scroll lifetime
+     * @param scrollPartitions the number of id ranges scrolled concurrently, {@code 1} to scroll the query at once
+     * @param produceImmediate whether or not the record should be produced immedialitely while scrolling
+     * @since 11.1
+     */
+    public BulkScrollerComputation(String name, int nbOutputStreams, int scrollBatchSize, int scrollKeepAliveSeconds,
+            int scrollPartitions, boolean produceImmediate) {
         super(name, 1, nbOutputStreams);
         this.scrollBatchSize = scrollBatchSize;
         this.scrollKeepAliveSeconds = scrollKeepAliveSeconds;
+        this.scrollPartitions = scrollPartitions;
         this.produceImmediate = produceImmediate;
         documentIds = new ArrayList<>(scrollBatchSize);
     }
 
+    @Override
+    public void init(ComputationContext context) {
+        if (getRangeCount() > 1) {
+            String prefix = "Nuxeo-Bulk-Scroller-" + metadata.name() + "-";
+            AtomicInteger threadNumber = new AtomicInteger();
+            scrollExecutor = Executors.newFixedThreadPool(scrollPartitions,
+                    r -> new Thread(r, prefix + threadNumber.incrementAndGet()));
+        }
+    }
+
+    /**
+     * Gets the number of ranges the query is split into, if the repository uses UUIDs.
+     */
+    protected int getRangeCount() {
+        return produceImmediate ? Math.max(scrollPartitions, CHECKPOINT_RANGES) : scrollPartitions;
+    }
+
+    @Override
+    public void destroy() {
+        if (scrollExecutor != null) {
+            scrollExecutor.shutdownNow();
+            scrollExecutor = null;
+        }
+    }
+
     @Override
     public void processRecord(ComputationContext context, String inputStreamName, Record record) {
         TransactionHelper.runInTransaction(() -> processRecord(context, record));
@@ -124,30 +212,23 @@ public class BulkScrollerComputation extends AbstractComputation {
                 }
             }
             updateStatusAsScrolling(context, commandId);
-            String username = command.getUsername();
-            try (NuxeoLoginContext loginContext = loginSystemOrUser(username);
-                    CloseableCoreSession session = CoreInstance.openCoreSession(command.getRepository())) {
-                // scroll documents
-                ScrollResult<String> scroll = session.scroll(command.getQuery(), scrollSize, scrollKeepAliveSeconds);
-                long documentCount = 0;
-                long bucketNumber = 1;
-                while (scroll.hasResults()) {
-                    if (isAbortedCommand(commandId)) {
-                        log.debug("Skipping aborted command: {}", commandId);
-                        context.askForCheckpoint();
-                        return;
-                    }
-                    List<String> docIds = scroll.getResults();
-                    documentIds.addAll(docIds);
-                    while (documentIds.size() >= bucketSize) {
-                        produceBucket(context, command.getAction(), commandId, bucketSize, bucketNumber++);
-                    }
-
-                    documentCount += docIds.size();
-                    // next batch
-                    scroll = session.scroll(scroll.getScrollId());
-                    TransactionHelper.commitOrRollbackTransaction();
-                    TransactionHelper.startTransaction();
+            documentIds.clear();
+            bucketNumber = 1;
+            try {
+                int nbRanges = getRangeCount();
+                List<String> queries = nbRanges > 1 && hasUUIDs(command.getRepository())
+                        ? BulkScrollPartitions.split(command.getQuery(), nbRanges)
+                        : Collections.singletonList(command.getQuery());
+                long documentCount;
+                if (queries.size() == 1) {
+                    documentCount = scroll(context, command, bucketSize, scrollSize);
+                } else {
+                    documentCount = scrollRanges(context, command, queries, bucketSize, scrollSize);
+                }
+                if (documentCount < 0) {
+                    log.debug("Skipping aborted command: {}", commandId);
+                    context.askForCheckpoint();
+                    return;
                 }
                 // send remaining document ids
                 // there's at most one record because we loop while scrolling
@@ -171,6 +252,232 @@ public class BulkScrollerComputation extends AbstractComputation {
         context.askForCheckpoint();
     }
 
+    /**
+     * Scrolls the command query and produces the buckets.
+     *
+     * @return the number of documents, or {@code -1} if the command has been aborted
+     */
+    protected long scroll(ComputationContext context, BulkCommand command, int bucketSize, int scrollSize)
+            throws LoginException {
+        try (NuxeoLoginContext loginContext = loginSystemOrUser(command.getUsername());
+                CloseableCoreSession session = CoreInstance.openCoreSession(command.getRepository())) {
+            // scroll documents
+            ScrollResult<String> scroll = session.scroll(command.getQuery(), scrollSize, scrollKeepAliveSeconds);
+            long documentCount = 0;
+            while (scroll.hasResults()) {
+                if (isAbortedCommand(command.getId())) {
+                    return -1;
+                }
+                List<String> docIds = scroll.getResults();
+                addDocumentIds(context, command, bucketSize, docIds);
+                documentCount += docIds.size();
+                // next batch
+                scroll = session.scroll(scroll.getScrollId());
+                TransactionHelper.commitOrRollbackTransaction();
+                TransactionHelper.startTransaction();
+            }
+            return documentCount;
+        }
+    }
+
+    /**
+     * Checks if the document ids of the repository are UUIDs, which is required to split the query into id ranges.
+     */
+    protected boolean hasUUIDs(String repositoryName) {
+        return uuidRepositories.computeIfAbsent(repositoryName, name -> CoreInstance.doPrivileged(name,
+                (CoreSession session) -> UUID_PATTERN.matcher(session.getRootDocument().getId()).matches()))
+                               .booleanValue();
+    }
+
+    /**
+     * Scrolls the given disjoint range queries, up to {@link #scrollPartitions} concurrently, each in its own thread,
+     * session and transactions. The buckets are produced by the computation thread as the scroll batches of any range
+     * arrive, a bucket never mixes documents from different ranges. The computation thread does not access the
+     * repository meanwhile, its transaction is suspended until all the ranges are scrolled.
+     * <p>
+     * When records are produced immediately, the buckets of a range are produced once it is completed, then the
+     * progress is saved in a {@link BulkScrollCursor}, and a scroll restarted after a failover skips the ranges
+     * completed before.
+     *
+     * @return the total number of documents, or {@code -1} if the command has been aborted
+     */
+    protected long scrollRanges(ComputationContext context, BulkCommand command, List<String> queries, int bucketSize,
+            int scrollSize) throws LoginException {
+        KeyValueStore kvStore = produceImmediate
+                ? Framework.getService(KeyValueService.class).getKeyValueStore(BULK_KV_STORE_NAME)
+                : null;
+        BulkScrollCursor cursor = kvStore == null ? new BulkScrollCursor(command.getId(), queries.size())
+                : BulkScrollCursor.load(kvStore, command.getId(), queries.size());
+        bucketNumber = cursor.getBucketNumber();
+        List<Integer> ranges = cursor.getPendingRanges();
+        if (ranges.isEmpty()) {
+            return cursor.getDocumentCount();
+        }
+        BlockingQueue<RangeBatch> batches = new ArrayBlockingQueue<>(2 * Math.min(scrollPartitions, ranges.size()));
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Future<?>> futures = new ArrayList<>(ranges.size());
+        boolean aborted;
+        try {
+            for (int range : ranges) {
+                futures.add(scrollExecutor.submit(() -> {
+                    boolean completed = false;
+                    try {
+                        completed = scrollRange(command, queries.get(range), range, scrollSize, batches, stopped);
+                    } catch (Exception e) { // NOSONAR
+                        failure.compareAndSet(null, e);
+                        stopped.set(true);
+                    } finally {
+                        putBatch(batches, new RangeBatch(range, null, completed));
+                    }
+                }));
+            }
+            aborted = TransactionHelper.runWithoutTransaction(
+                    () -> consumeRangeBatches(context, command, ranges.size(), batches, stopped, cursor, kvStore,
+                            bucketSize)).booleanValue();
+        } finally {
+            // unblocks the remaining threads if we exit early
+            stopped.set(true);
+            futures.forEach(future -> future.cancel(true));
+        }
+        Exception e = failure.get();
+        if (e instanceof LoginException) {
+            throw (LoginException) e;
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e != null) {
+            throw new NuxeoException(e);
+        }
+        return aborted ? -1 : cursor.getDocumentCount();
+    }
+
+    /**
+     * Produces the buckets from the batches of the range scrolls, until all the ranges are finished.
+     *
+     * @return {@code true} if the command has been aborted
+     */
+    protected boolean consumeRangeBatches(ComputationContext context, BulkCommand command, int nbRanges,
+            BlockingQueue<RangeBatch> batches, AtomicBoolean stopped, BulkScrollCursor cursor, KeyValueStore kvStore,
+            int bucketSize) {
+        Map<Integer, List<String>> rangeDocumentIds = new HashMap<>();
+        Map<Integer, Long> rangeDocumentCounts = new HashMap<>();
+        boolean aborted = false;
+        int finished = 0;
+        while (finished < nbRanges) {
+            RangeBatch batch = takeBatch(batches);
+            int range = batch.range;
+            List<String> ids = rangeDocumentIds.computeIfAbsent(range, k -> new ArrayList<>());
+            if (batch.documentIds == null) {
+                finished++;
+                if (batch.completed && !stopped.get()) {
+                    // send remaining document ids of the range
+                    while (!ids.isEmpty()) {
+                        produceBucket(context, command.getAction(), command.getId(), ids, bucketSize, bucketNumber++);
+                    }
+                    cursor.complete(range, rangeDocumentCounts.getOrDefault(range, 0L));
+                    cursor.setBucketNumber(bucketNumber);
+                    if (kvStore != null) {
+                        cursor.save(kvStore);
+                    }
+                }
+            } else if (!stopped.get()) {
+                if (isAbortedCommand(command.getId())) {
+                    aborted = true;
+                    stopped.set(true);
+                    continue;
+                }
+                ids.addAll(batch.documentIds);
+                // when checkpointing, a range in progress produces nothing, it is scrolled again on resume
+                while (kvStore == null && ids.size() >= bucketSize) {
+                    produceBucket(context, command.getAction(), command.getId(), ids, bucketSize, bucketNumber++);
+                }
+                rangeDocumentCounts.merge(range, (long) batch.documentIds.size(), Long::sum);
+            }
+        }
+        return aborted;
+    }
+
+    /**
+     * Scrolls a range query, passing the scroll batches to the given queue until the end or until stopped. Runs in a
+     * scroller thread, which commits its own transaction after each scroll batch like {@link #scroll} does.
+     *
+     * @return {@code true} if the range has been scrolled completely
+     */
+    protected boolean scrollRange(BulkCommand command, String query, int range, int scrollSize,
+            BlockingQueue<RangeBatch> batches, AtomicBoolean stopped) throws LoginException {
+        try (NuxeoLoginContext loginContext = loginSystemOrUser(command.getUsername())) {
+            return TransactionHelper.runInTransaction(() -> {
+                try (CloseableCoreSession session = CoreInstance.openCoreSession(command.getRepository())) {
+                    ScrollResult<String> scroll = session.scroll(query, scrollSize, scrollKeepAliveSeconds);
+                    while (scroll.hasResults()) {
+                        if (stopped.get()
+                                || !putBatch(batches, new RangeBatch(range, scroll.getResults(), false))) {
+                            return Boolean.FALSE;
+                        }
+                        scroll = session.scroll(scroll.getScrollId());
+                        TransactionHelper.commitOrRollbackTransaction();
+                        TransactionHelper.startTransaction();
+                    }
+                    return Boolean.TRUE;
+                }
+            }).booleanValue();
+        }
+    }
+
+    /**
+     * A batch of document ids scrolled from a range, or the end of the range if there are no document ids.
+     */
+    protected static class RangeBatch {
+
+        protected final int range;
+
+        protected final List<String> documentIds;
+
+        protected final boolean completed;
+
+        protected RangeBatch(int range, List<String> documentIds, boolean completed) {
+            this.range = range;
+            this.documentIds = documentIds == null ? null : new ArrayList<>(documentIds);
+            this.completed = completed;
+        }
+    }
+
+    /**
+     * Passes a batch to the scroller thread.
+     *
+     * @return {@code false} if interrupted while waiting
+     */
+    protected static boolean putBatch(BlockingQueue<RangeBatch> batches, RangeBatch batch) {
+        try {
+            batches.put(batch);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    protected static RangeBatch takeBatch(BlockingQueue<RangeBatch> batches) {
+        try {
+            return batches.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // not a NuxeoException, the command is not in error
+            throw new StreamRuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds scrolled document ids, producing the full buckets.
+     */
+    protected void addDocumentIds(ComputationContext context, BulkCommand command, int bucketSize,
+            List<String> docIds) {
+        documentIds.addAll(docIds);
+        while (documentIds.size() >= bucketSize) {
+            produceBucket(context, command.getAction(), command.getId(), bucketSize, bucketNumber++);
+        }
+    }
+
     protected NuxeoLoginContext loginSystemOrUser(String username) throws LoginException {
         return SYSTEM_USERNAME.equals(username) ? Framework.loginSystem() : Framework.loginUser(username);
     }
@@ -220,7 +527,18 @@ public class BulkScrollerComputation extends AbstractComputation {
      */
     protected void produceBucket(ComputationContext context, String action, String commandId, int bucketSize,
             long bucketNumber) {
-        List<String> ids = documentIds.subList(0, min(bucketSize, documentIds.size()));
+        produceBucket(context, action, commandId, documentIds, bucketSize, bucketNumber);
+    }
+
+    /**
+     * Produces a bucket from the first given document ids as a record to appropriate bulk action stream, removing them
+     * from the list.
+     *
+     * @since 11.1
+     */
+    protected void produceBucket(ComputationContext context, String action, String commandId, List<String> docIds,
+            int bucketSize, long bucketNumber) {
+        List<String> ids = docIds.subList(0, min(bucketSize, docIds.size()));
         BulkBucket bucket = new BulkBucket(commandId, ids);
         String key = commandId + ":" + Long.toString(bucketNumber);
         Record record = Record.of(key, BulkCodecs.getBucketCodec().encode(bucket));
@@ -229,7 +547,7 @@ public class BulkScrollerComputation extends AbstractComputation {
         } else {
             context.produceRecord(action, record);
         }
-        ids.clear(); // this clear the documentIds part that has been sent
+        ids.clear(); // this clear the docIds part that has been sent
     }
 
 }
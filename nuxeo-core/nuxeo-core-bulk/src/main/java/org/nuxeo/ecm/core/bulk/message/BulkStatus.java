@@ -158,7 +158,8 @@ public class BulkStatus implements AsyncStatus<String> {
             throw new IllegalArgumentException(
                     String.format("Cannot merge different command: %s with %s", this, update));
         }
-        if (update.getState() != null && getState() != State.ABORTED) {
+        // aborted and completed are final states, deltas replayed by a resumed scroll must not change them
+        if (update.getState() != null && getState() != State.ABORTED && getState() != State.COMPLETED) {
             setState(update.getState());
         }
         if (update.processed != null) {
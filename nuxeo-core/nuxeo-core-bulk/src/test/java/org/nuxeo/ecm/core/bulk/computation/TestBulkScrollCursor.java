@@ -0,0 +1,71 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.bulk.computation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.nuxeo.ecm.core.bulk.BulkServiceImpl.SCROLL_PREFIX;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.nuxeo.runtime.kv.KeyValueStore;
+import org.nuxeo.runtime.kv.MemKeyValueStore;
+
+public class TestBulkScrollCursor {
+
+    protected static final String COMMAND_ID = "1234";
+
+    @Test
+    public void testSaveAndLoad() {
+        KeyValueStore kvStore = new MemKeyValueStore();
+        BulkScrollCursor cursor = BulkScrollCursor.load(kvStore, COMMAND_ID, 4);
+        assertEquals(1, cursor.getBucketNumber());
+        assertEquals(0, cursor.getDocumentCount());
+        assertEquals(Arrays.asList(0, 1, 2, 3), cursor.getPendingRanges());
+
+        cursor.complete(2, 150);
+        cursor.setBucketNumber(5);
+        cursor.save(kvStore);
+        cursor.complete(0, 20);
+        cursor.complete(2, 150); // already completed
+        cursor.setBucketNumber(7);
+        cursor.save(kvStore);
+        assertEquals("4:7:170:0,2", kvStore.getString(SCROLL_PREFIX + COMMAND_ID));
+
+        cursor = BulkScrollCursor.load(kvStore, COMMAND_ID, 4);
+        assertEquals(7, cursor.getBucketNumber());
+        assertEquals(170, cursor.getDocumentCount());
+        assertTrue(cursor.isCompleted(0));
+        assertFalse(cursor.isCompleted(1));
+        assertEquals(Arrays.asList(1, 3), cursor.getPendingRanges());
+    }
+
+    @Test
+    public void testIgnoreOtherRanges() {
+        KeyValueStore kvStore = new MemKeyValueStore();
+        kvStore.put(SCROLL_PREFIX + COMMAND_ID, "16:7:170:0,2");
+        BulkScrollCursor cursor = BulkScrollCursor.load(kvStore, COMMAND_ID, 4);
+        assertEquals(1, cursor.getBucketNumber());
+        assertEquals(4, cursor.getPendingRanges().size());
+
+        kvStore.put(SCROLL_PREFIX + COMMAND_ID, "4:foo");
+        cursor = BulkScrollCursor.load(kvStore, COMMAND_ID, 4);
+        assertEquals(4, cursor.getPendingRanges().size());
+    }
+
+}
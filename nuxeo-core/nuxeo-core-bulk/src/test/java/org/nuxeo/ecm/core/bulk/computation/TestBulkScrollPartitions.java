@@ -0,0 +1,83 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.bulk.computation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+
+public class TestBulkScrollPartitions {
+
+    @Test
+    public void testNoSplit() {
+        String query = "SELECT * FROM Document";
+        assertEquals(Collections.singletonList(query), BulkScrollPartitions.split(query, 1));
+        query = "SELECT * FROM Document WHERE dc:title = 'foo' LIMIT 10";
+        assertEquals(Collections.singletonList(query), BulkScrollPartitions.split(query, 4));
+    }
+
+    @Test
+    public void testSplit() {
+        String query = "SELECT * FROM Document WHERE dc:title = 'foo' OR ecm:isProxy = 1";
+        List<String> queries = BulkScrollPartitions.split(query, 4);
+        String where = "SELECT * FROM Document WHERE (((dc:title = 'foo') OR (ecm:isProxy = 1)) AND ";
+        assertEquals(Arrays.asList( //
+                where + "(ecm:uuid < '40000000-0000-0000-0000-000000000000'))",
+                where + "((ecm:uuid >= '40000000-0000-0000-0000-000000000000')"
+                        + " AND (ecm:uuid < '80000000-0000-0000-0000-000000000000')))",
+                where + "((ecm:uuid >= '80000000-0000-0000-0000-000000000000')"
+                        + " AND (ecm:uuid < 'c0000000-0000-0000-0000-000000000000')))",
+                where + "(ecm:uuid >= 'c0000000-0000-0000-0000-000000000000'))"), queries);
+        queries.forEach(q -> assertRestricts(query, q));
+    }
+
+    @Test
+    public void testSplitWithoutWhere() {
+        List<String> queries = BulkScrollPartitions.split("SELECT * FROM Document ORDER BY dc:title", 2);
+        assertEquals(Arrays.asList( //
+                "SELECT * FROM Document WHERE (ecm:uuid < '80000000-0000-0000-0000-000000000000') ORDER BY dc:title",
+                "SELECT * FROM Document WHERE (ecm:uuid >= '80000000-0000-0000-0000-000000000000') ORDER BY dc:title"),
+                queries);
+    }
+
+    @Test
+    public void testKeywordsInLiteralsAndFunctions() {
+        String query = "select * from Document where dc:title = 'a where b order by c' and dc:description = 'limit'"
+                + " and DATE(dc:created) > DATE '2019-01-01' order by dc:title";
+        List<String> queries = BulkScrollPartitions.split(query, 3);
+        assertEquals(3, queries.size());
+        queries.forEach(q -> assertRestricts(query, q));
+    }
+
+    /**
+     * Checks that the range query is the original query with an additional predicate.
+     */
+    protected static void assertRestricts(String query, String rangeQuery) {
+        SQLQuery original = SQLQueryParser.parse(query);
+        SQLQuery range = SQLQueryParser.parse(rangeQuery);
+        assertEquals(original.select, range.select);
+        assertEquals(original.from, range.from);
+        assertEquals(original.orderBy, range.orderBy);
+        assertEquals(original.where.predicate, range.where.predicate.lvalue);
+    }
+
+}
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Date;
 
+import org.apache.commons.io.FileUtils;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
 import org.nuxeo.ecm.core.convert.api.ConversionService;
 
@@ -35,7 +36,7 @@ import org.nuxeo.ecm.core.convert.api.ConversionService;
  */
 public class ConversionCacheEntry {
 
-    protected Date lastAccessTime;
+    protected volatile Date lastAccessTime;
 
     protected BlobHolder bh;
 
@@ -45,6 +46,9 @@ public class ConversionCacheEntry {
 
     protected long sizeInKB = 0;
 
+    /** @since 11.1 */
+    protected long sizeInBytes = 0;
+
     public ConversionCacheEntry(BlobHolder bh) {
         this.bh = bh;
         updateAccessTime();
@@ -59,7 +63,9 @@ public class ConversionCacheEntry {
             CachableBlobHolder cbh = (CachableBlobHolder) bh;
             persistPath = cbh.persist(basePath);
             if (persistPath != null) {
-                sizeInKB = new File(persistPath).length() / 1024;
+                // multi-blob holders are persisted as a directory
+                sizeInBytes = FileUtils.sizeOf(new File(persistPath));
+                sizeInKB = sizeInBytes / 1024;
                 persisted = true;
             }
         }
@@ -69,7 +75,7 @@ public class ConversionCacheEntry {
 
     public void remove() {
         if (persisted && persistPath != null) {
-            new File(persistPath).delete();
+            FileUtils.deleteQuietly(new File(persistPath));
         }
     }
 
@@ -92,8 +98,22 @@ public class ConversionCacheEntry {
         return sizeInKB;
     }
 
+    /**
+     * @since 11.1
+     */
+    public long getDiskSpaceUsage() {
+        return sizeInBytes;
+    }
+
     public Date getLastAccessedTime() {
         return lastAccessTime;
     }
 
+    /**
+     * @since 11.1
+     */
+    public String getPersistPath() {
+        return persistPath;
+    }
+
 }
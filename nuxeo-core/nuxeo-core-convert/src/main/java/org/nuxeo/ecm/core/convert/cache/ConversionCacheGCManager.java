@@ -21,14 +21,8 @@
  */
 package org.nuxeo.ecm.core.convert.cache;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,6 +30,9 @@ import org.nuxeo.ecm.core.convert.service.ConversionServiceImpl;
 
 /**
  * Manages GC processing to clean up disk cache.
+ * <p>
+ * The GC is triggered each time an entry is added to the cache, and periodically by the {@link GCTask}. It evicts the
+ * least recently used entries until the cache fits in its maximum size again. Only one GC runs at a time.
  *
  * @author tiry
  */
@@ -47,9 +44,11 @@ public class ConversionCacheGCManager {
 
     private static final Log log = LogFactory.getLog(ConversionCacheGCManager.class);
 
-    private static int gcRuns = 0;
+    private static final AtomicInteger gcRuns = new AtomicInteger();
 
-    private static int gcCalls = 0;
+    private static final AtomicInteger gcCalls = new AtomicInteger();
+
+    private static final ReentrantLock gcLock = new ReentrantLock();
 
     // Utility class.
     private ConversionCacheGCManager() {
@@ -60,24 +59,15 @@ public class ConversionCacheGCManager {
     }
 
     public static int getGCRuns() {
-        return gcRuns;
+        return gcRuns.get();
     }
 
     public static int getGCCalls() {
-        return gcCalls;
+        return gcCalls.get();
     }
 
     public static long getCacheSizeInKB() {
-        long totalSize = 0;
-        Set<String> cacheKeys = ConversionCacheHolder.getCacheKeys();
-
-        for (String key : cacheKeys) {
-            ConversionCacheEntry cacheEntry = ConversionCacheHolder.getCacheEntry(key);
-            if (cacheEntry != null) {
-                totalSize += cacheEntry.getDiskSpaceUsageInKB();
-            }
-        }
-        return totalSize;
+        return ConversionCacheHolder.getCacheSize() / 1024;
     }
 
     public static boolean gcIfNeeded() {
@@ -86,55 +76,42 @@ public class ConversionCacheGCManager {
         long totalSize = getCacheSizeInKB();
         long limit = getMaxDiskSpaceUsageKB();
 
-        if (totalSize < limit) {
-            gcCalls += 1;
+        if (totalSize < limit || ConversionCacheHolder.getNbCacheEntries() == 0) {
+            gcCalls.incrementAndGet();
             log.debug("No GC needed, go back to sleep for now");
             return false;
         }
-
-        // do the GC
-        long deltaInKB = totalSize - limit;
-        if (limit < 0) {
-            // mainly for testing : negative limit means cleanup everything
-            deltaInKB = totalSize;
+        if (!gcLock.tryLock()) {
+            // another GC is running, it will free the space
+            gcCalls.incrementAndGet();
+            return false;
+        }
+        try {
+            // do the GC
+            totalSize = getCacheSizeInKB();
+            long deltaInKB = totalSize - limit;
+            if (limit < 0) {
+                // mainly for testing : negative limit means cleanup everything
+                deltaInKB = totalSize;
+            }
+            log.debug("GC needed to free " + deltaInKB + " KB of data");
+            doGC(deltaInKB);
+            log.debug("GC terminated");
+        } finally {
+            gcLock.unlock();
         }
-        log.debug("GC needed to free " + deltaInKB + " KB of data");
-        doGC(deltaInKB);
-        log.debug("GC terminated");
-        gcCalls += 1;
+        gcCalls.incrementAndGet();
         return true;
     }
 
     public static void doGC(long deltaInKB) {
-
-        Set<String> cacheKeys = ConversionCacheHolder.getCacheKeys();
-
-        Map<Date, String> sortingMap = new HashMap<>();
-
-        for (String key : cacheKeys) {
-            ConversionCacheEntry cacheEntry = ConversionCacheHolder.getCacheEntry(key);
-            Objects.requireNonNull(cacheEntry, key);
-            sortingMap.put(cacheEntry.getLastAccessedTime(), key);
-        }
-
-        List<Date> accessTimeList = new ArrayList<>();
-        accessTimeList.addAll(sortingMap.keySet());
-        Collections.sort(accessTimeList);
-
-        long deletedVolume = 0;
-        for (Date accessDate : accessTimeList) {
-            ConversionCacheEntry cacheEntry = ConversionCacheHolder.getCacheEntry(sortingMap.get(accessDate));
-
-            long deletePotential = cacheEntry.getDiskSpaceUsageInKB();
-
-            deletedVolume += deletePotential;
-            ConversionCacheHolder.removeFromCache(sortingMap.get(accessDate));
-
-            if (deletedVolume > deltaInKB) {
-                break;
-            }
+        gcLock.lock();
+        try {
+            ConversionCacheHolder.evictLeastRecentlyUsed(deltaInKB);
+            gcRuns.incrementAndGet();
+        } finally {
+            gcLock.unlock();
         }
-        gcRuns += 1;
     }
 
 }
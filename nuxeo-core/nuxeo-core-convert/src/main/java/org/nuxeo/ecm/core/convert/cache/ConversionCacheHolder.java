@@ -22,33 +22,74 @@ package org.nuxeo.ecm.core.convert.cache;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.common.utils.Path;
+import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
 import org.nuxeo.ecm.core.convert.api.ConversionService;
 import org.nuxeo.ecm.core.convert.service.ConversionServiceImpl;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
 
 /**
  * Manager for the cache system of the {@link ConversionService}.
+ * <p>
+ * The entries are kept in access order, and the total disk space they use is tracked so that the least recently used
+ * entries are evicted as soon as the configured maximum size is exceeded (see
+ * {@link ConversionCacheGCManager#gcIfNeeded}). Each entry is persisted in its own directory, so that the eviction of
+ * an entry never deletes the files of a newer entry for the same key.
+ * <p>
+ * Concurrent conversions of the same key through {@link #getFromCache(String, Supplier)} are run only once, the other
+ * callers wait for the first one and then get its result from the cache.
  *
  * @author tiry
  */
 public class ConversionCacheHolder {
 
-    protected static final Map<String, ConversionCacheEntry> cache = new HashMap<>();
+    /**
+     * The entries, from the least recently used to the most recently used. All accesses synchronize on the map, the
+     * files of the entries are written, read and deleted outside of it.
+     */
+    protected static final Map<String, ConversionCacheEntry> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Generation of the entries, used to persist each entry in its own directory.
+     *
+     * @since 11.1
+     */
+    protected static final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Conversions in progress, by key.
+     *
+     * @since 11.1
+     */
+    protected static final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
 
-    protected static final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
+    /**
+     * Total disk space used by the entries, in bytes.
+     *
+     * @since 11.1
+     */
+    protected static final AtomicLong cacheSize = new AtomicLong();
 
     private static final Log log = LogFactory.getLog(ConversionCacheHolder.class);
 
@@ -58,6 +99,18 @@ public class ConversionCacheHolder {
 
     public static final AtomicLong CACHE_HITS = new AtomicLong();
 
+    protected static final MetricRegistry registry = SharedMetricRegistries.getOrCreate(
+            MetricsService.class.getName());
+
+    protected static final Counter hitCounter = registry.counter(
+            MetricRegistry.name("nuxeo", "conversion", "cache", "hit"));
+
+    protected static final Counter missCounter = registry.counter(
+            MetricRegistry.name("nuxeo", "conversion", "cache", "miss"));
+
+    protected static final Counter evictionCounter = registry.counter(
+            MetricRegistry.name("nuxeo", "conversion", "cache", "eviction"));
+
     // Utility class.
     private ConversionCacheHolder() {
     }
@@ -66,8 +119,33 @@ public class ConversionCacheHolder {
         return CACHE_HITS.get();
     }
 
+    /**
+     * @since 11.1
+     */
+    public static long getCacheMisses() {
+        return missCounter.getCount();
+    }
+
+    /**
+     * @since 11.1
+     */
+    public static long getCacheEvictions() {
+        return evictionCounter.getCount();
+    }
+
     public static int getNbCacheEntries() {
-        return cache.keySet().size();
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Gets the total disk space used by the cache entries, in bytes.
+     *
+     * @since 11.1
+     */
+    public static long getCacheSize() {
+        return cacheSize.get();
     }
 
     protected static List<String> getSubPathFromKey(String key) {
@@ -102,93 +180,167 @@ public class ConversionCacheHolder {
         }
 
         // path = path.append(key);
+        path = path.append(String.valueOf(generation.incrementAndGet()));
+        new File(path.toString()).mkdir();
 
         return path.toString();
     }
 
     public static void addToCache(String key, BlobHolder result) {
         Objects.requireNonNull(key);
-        cacheLock.writeLock().lock();
-        try {
-            doAddToCache(key, result);
-        } finally {
-            cacheLock.writeLock().unlock();
-        }
+        doAddToCache(key, result);
+        ConversionCacheGCManager.gcIfNeeded();
     }
 
     protected static void doAddToCache(String key, BlobHolder result) {
         ConversionCacheEntry cce = new ConversionCacheEntry(result);
         boolean persisted = false;
 
+        String path = getCacheEntryPath(key);
         try {
-            persisted = cce.persist(getCacheEntryPath(key));
+            persisted = cce.persist(path);
         } catch (IOException e) {
             log.error("Error while trying to persist cache entry", e);
         }
 
         if (persisted) {
-            cache.put(key, cce);
+            cacheSize.addAndGet(cce.getDiskSpaceUsage());
+            ConversionCacheEntry old;
+            synchronized (cache) {
+                old = cache.put(key, cce);
+            }
+            if (old != null) {
+                removed(old);
+            }
+        } else {
+            new File(path).delete();
         }
     }
 
     public static void removeFromCache(String key) {
-        cacheLock.writeLock().lock();
-        try {
-            doRemoveFromCache(key);
-        } finally {
-            cacheLock.writeLock().unlock();
+        ConversionCacheEntry cce;
+        synchronized (cache) {
+            cce = cache.remove(key);
         }
-
-    }
-
-    protected static void doRemoveFromCache(String key) {
-        if (cache.containsKey(key)) {
-            ConversionCacheEntry cce = cache.get(key);
-            cce.remove();
-            cache.remove(key);
+        if (cce != null) {
+            removed(cce);
         }
     }
 
-    public static ConversionCacheEntry getCacheEntry(String key) {
-        cacheLock.readLock().lock();
-        try {
-            return doGetCacheEntry(key);
-        } finally {
-            cacheLock.readLock().unlock();
+    /**
+     * Evicts the least recently used entries until the disk space they use exceeds the given volume, or the cache is
+     * empty.
+     *
+     * @return the number of entries evicted
+     * @since 11.1
+     */
+    protected static int evictLeastRecentlyUsed(long deltaInKB) {
+        List<ConversionCacheEntry> evicted = new ArrayList<>();
+        synchronized (cache) {
+            long deletedVolume = 0;
+            for (Iterator<ConversionCacheEntry> it = cache.values().iterator(); it.hasNext()
+                    && deletedVolume <= deltaInKB;) {
+                ConversionCacheEntry cce = it.next();
+                it.remove();
+                evicted.add(cce);
+                deletedVolume += cce.getDiskSpaceUsageInKB();
+            }
         }
+        // the files of an evicted entry belong to it only, a newer entry for the same key has its own directory
+        evicted.forEach(ConversionCacheHolder::removed);
+        evictionCounter.inc(evicted.size());
+        return evicted.size();
     }
 
-    protected static ConversionCacheEntry doGetCacheEntry(String key) {
-        return cache.get(key);
+    protected static void removed(ConversionCacheEntry cce) {
+        cacheSize.addAndGet(-cce.getDiskSpaceUsage());
+        cce.remove();
+        String path = cce.getPersistPath();
+        if (path != null) {
+            // the generation directory of the entry, if empty
+            new File(path).getParentFile().delete();
+        }
     }
 
-    public static BlobHolder getFromCache(String key) {
-        cacheLock.readLock().lock();
-        try {
-            return doGetFromCache(key);
-        } finally {
-            cacheLock.readLock().unlock();
+    public static ConversionCacheEntry getCacheEntry(String key) {
+        synchronized (cache) {
+            return cache.get(key);
         }
     }
 
-    protected static BlobHolder doGetFromCache(String key) {
-        ConversionCacheEntry cacheEntry = cache.get(key);
+    public static BlobHolder getFromCache(String key) {
+        ConversionCacheEntry cacheEntry = getCacheEntry(key);
         if (cacheEntry != null) {
             if (CACHE_HITS.incrementAndGet() < 0) {
                 // skip all negative values
                 CACHE_HITS.addAndGet(Long.MIN_VALUE); // back to 0
             }
+            hitCounter.inc();
             return cacheEntry.restore();
         }
         return null;
     }
 
-    public static Set<String> getCacheKeys() {
-        cacheLock.readLock().lock();
+    /**
+     * Gets a conversion result from the cache, or runs the conversion and adds its result to the cache.
+     * <p>
+     * If the same conversion is already running in another thread, waits for it to complete and gets its result from
+     * the cache instead of running it again. If that result could not be cached, the conversion is run anyway.
+     *
+     * @param key the cache key
+     * @param conversion the conversion to run on cache miss
+     * @return the cached result, or the result of the conversion
+     * @since 11.1
+     */
+    public static BlobHolder getFromCache(String key, Supplier<BlobHolder> conversion) {
+        Objects.requireNonNull(key);
+        BlobHolder result = getFromCache(key);
+        if (result != null) {
+            return result;
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> running = inFlight.putIfAbsent(key, future);
+        if (running == null) {
+            try {
+                // a conversion may have completed since our first lookup
+                result = getFromCache(key);
+                if (result == null) {
+                    result = convert(key, conversion);
+                }
+                return result;
+            } finally {
+                inFlight.remove(key, future);
+                future.complete(null);
+            }
+        }
         try {
+            running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException(e);
+        } catch (ExecutionException e) {
+            // cannot happen, never completed exceptionally
+            throw new NuxeoException(e);
+        }
+        result = getFromCache(key);
+        if (result == null) {
+            result = convert(key, conversion);
+        }
+        return result;
+    }
+
+    protected static BlobHolder convert(String key, Supplier<BlobHolder> conversion) {
+        missCounter.inc();
+        BlobHolder result = conversion.get();
+        if (result != null) {
+            addToCache(key, result);
+        }
+        return result;
+    }
+
+    public static Set<String> getCacheKeys() {
+        synchronized (cache) {
             return new HashSet<>(cache.keySet());
-        } finally {
-            cacheLock.readLock().unlock();
         }
     }
 
@@ -196,12 +348,10 @@ public class ConversionCacheHolder {
      * @since 6.0
      */
     public static void deleteCache() {
-        cacheLock.writeLock().lock();
-        try {
+        synchronized (cache) {
             cache.clear();
-            new File(ConversionServiceImpl.getCacheBasePath()).delete();
-        } finally {
-            cacheLock.writeLock().unlock();
         }
+        cacheSize.set(0);
+        new File(ConversionServiceImpl.getCacheBasePath()).delete();
     }
 }
@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,6 +38,7 @@ import javax.ws.rs.core.MediaType;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.nuxeo.common.utils.FileUtils;
@@ -332,16 +334,22 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
 
         String cacheKey = CacheKeyGenerator.computeKey(converterName, blobHolder, parameters);
 
-        BlobHolder result = ConversionCacheHolder.getFromCache(cacheKey);
-
-        if (result == null) {
-            Converter converter = desc.getConverterInstance();
-            result = converter.convert(blobHolder, parameters);
+        Converter converter = desc.getConverterInstance();
+        Map<String, Serializable> params = parameters;
+        MutableBoolean converted = new MutableBoolean();
+        Supplier<BlobHolder> conversion = () -> {
+            converted.setTrue();
+            return converter.convert(blobHolder, params);
+        };
+        BlobHolder result;
+        if (config.isCacheEnabled()) {
+            // concurrent identical conversions are run only once
+            result = ConversionCacheHolder.getFromCache(cacheKey, conversion);
+        } else {
+            result = conversion.get();
+        }
 
-            if (config.isCacheEnabled()) {
-                ConversionCacheHolder.addToCache(cacheKey, result);
-            }
-        } else if (result.getBlobs() != null && result.getBlobs().size() == 1) {
+        if (result != null && converted.isFalse() && result.getBlobs() != null && result.getBlobs().size() == 1) {
             // we need to reset the filename if result is a single file from the cache because the name is just a hash
             result.getBlob().setFilename(null);
         }
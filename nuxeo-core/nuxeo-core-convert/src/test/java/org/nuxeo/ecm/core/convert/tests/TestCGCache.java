@@ -61,24 +61,16 @@ public class TestCGCache {
         assertNotNull(cv);
 
         int cacheSize1 = ConversionCacheHolder.getNbCacheEntries();
+        long evictions = ConversionCacheHolder.getCacheEvictions();
         BlobHolder bh = getBlobHolder();
         BlobHolder result = cs.convert("identity", bh, null);
         assertNotNull(result);
 
+        // the entry is larger than the cache maximum size, it is evicted right away
         int cacheSize2 = ConversionCacheHolder.getNbCacheEntries();
-        // check new cache entry was created
-        assertEquals(1, cacheSize2 - cacheSize1);
-
-        // wait for the GCThread to run
-        int retryCount = 0;
-        int noRuns = ConversionCacheGCManager.getGCRuns();
-        while (ConversionCacheGCManager.getGCRuns() == noRuns && retryCount++ < 5) {
-            Thread.sleep(1100);
-        }
+        assertEquals(0, cacheSize2 - cacheSize1);
+        assertEquals(1, ConversionCacheHolder.getCacheEvictions() - evictions);
         assertTrue(ConversionCacheGCManager.getGCRuns() > 0);
-
-        int cacheSize3 = ConversionCacheHolder.getNbCacheEntries();
-        assertEquals(0, cacheSize3 - cacheSize1);
     }
 
     private Converter deployConverter() throws Exception {
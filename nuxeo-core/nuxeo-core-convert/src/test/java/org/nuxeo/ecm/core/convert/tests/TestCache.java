@@ -21,10 +21,20 @@
 package org.nuxeo.ecm.core.convert.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -36,6 +46,7 @@ import org.nuxeo.ecm.core.api.blobholder.SimpleBlobHolder;
 import org.nuxeo.ecm.core.convert.api.ConversionService;
 import org.nuxeo.ecm.core.convert.cache.ConversionCacheGCManager;
 import org.nuxeo.ecm.core.convert.cache.ConversionCacheHolder;
+import org.nuxeo.ecm.core.convert.cache.SimpleCachableBlobHolder;
 import org.nuxeo.ecm.core.convert.extension.Converter;
 import org.nuxeo.ecm.core.convert.service.ConversionServiceImpl;
 import org.nuxeo.runtime.api.Framework;
@@ -94,4 +105,70 @@ public class TestCache {
         assertEquals(0, cacheSize1 - cacheSize3);
     }
 
+    @Test
+    public void testConcurrentConversionsRunOnce() throws Exception {
+        File file = FileUtils.getResourceFileFromContext("test-data/hello.doc");
+        Blob blob = Blobs.createBlob(file, "application/msword", null, "hello.doc");
+        String key = "testConcurrentConversionsRunOnce";
+        long misses = ConversionCacheHolder.getCacheMisses();
+
+        int nbThreads = 5;
+        AtomicInteger conversions = new AtomicInteger();
+        CyclicBarrier barrier = new CyclicBarrier(nbThreads);
+        Callable<BlobHolder> task = () -> {
+            barrier.await();
+            return ConversionCacheHolder.getFromCache(key, () -> {
+                conversions.incrementAndGet();
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+                return new SimpleCachableBlobHolder(blob);
+            });
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<BlobHolder>> futures = new ArrayList<>();
+            for (int i = 0; i < nbThreads; i++) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<BlobHolder> future : futures) {
+                BlobHolder result = future.get();
+                assertNotNull(result);
+                assertEquals(file.length(), result.getBlob().getLength());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, conversions.get());
+        assertEquals(1, ConversionCacheHolder.getCacheMisses() - misses);
+        ConversionCacheHolder.removeFromCache(key);
+    }
+
+    @Test
+    public void testReplacedEntryKeepsItsOwnFiles() throws Exception {
+        File file = FileUtils.getResourceFileFromContext("test-data/hello.doc");
+        Blob blob = Blobs.createBlob(file, "application/msword", null, "hello.doc");
+        String key = "testReplacedEntryKeepsItsOwnFiles";
+
+        ConversionCacheHolder.addToCache(key, new SimpleCachableBlobHolder(blob));
+        String oldPath = ConversionCacheHolder.getCacheEntry(key).getPersistPath();
+        ConversionCacheHolder.addToCache(key, new SimpleCachableBlobHolder(blob));
+        String newPath = ConversionCacheHolder.getCacheEntry(key).getPersistPath();
+
+        // each entry is persisted in its own directory, the replaced one is deleted
+        assertNotEquals(oldPath, newPath);
+        assertFalse(new File(oldPath).exists());
+        assertTrue(new File(newPath).exists());
+        BlobHolder result = ConversionCacheHolder.getFromCache(key);
+        assertNotNull(result);
+        assertEquals(file.length(), result.getBlob().getLength());
+
+        ConversionCacheHolder.removeFromCache(key);
+        assertFalse(new File(newPath).exists());
+        assertFalse(new File(newPath).getParentFile().exists());
+    }
+
 }
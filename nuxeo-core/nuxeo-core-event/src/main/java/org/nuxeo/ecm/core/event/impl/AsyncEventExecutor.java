@@ -229,9 +229,11 @@ public class AsyncEventExecutor {
                 log.error("Failed to execute async event " + bundle.getName() + " on listener " + listenerName, e);
             }
             if (listener != null) {
+                long elapsed = System.currentTimeMillis() - getStartTime();
+                listener.getTimer().update(elapsed, TimeUnit.MILLISECONDS);
                 EventStats stats = Framework.getService(EventStats.class);
                 if (stats != null) {
-                    stats.logAsyncExec(listener, System.currentTimeMillis() - getStartTime());
+                    stats.logAsyncExec(listener, elapsed);
                 }
                 listener = null;
             }
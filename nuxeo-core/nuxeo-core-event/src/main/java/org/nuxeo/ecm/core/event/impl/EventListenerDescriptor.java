@@ -38,8 +38,13 @@ import org.nuxeo.ecm.core.event.PostCommitFilteringEventListener;
 import org.nuxeo.ecm.core.event.script.Script;
 import org.nuxeo.ecm.core.event.script.ScriptingEventListener;
 import org.nuxeo.ecm.core.event.script.ScriptingPostCommitEventListener;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.model.RuntimeContext;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
 /**
  * XObject descriptor to declare event listeners
  */
@@ -102,6 +107,9 @@ public class EventListenerDescriptor {
 
     protected PostCommitEventListener postCommitEventListener;
 
+    /** @since 11.1 */
+    protected Timer timer;
+
     public int getPriority() {
         return priority == null ? 0 : priority.intValue();
     }
@@ -204,6 +212,19 @@ public class EventListenerDescriptor {
         return name;
     }
 
+    /**
+     * Gets the timer recording the executions of this listener in the metrics registry.
+     *
+     * @since 11.1
+     */
+    public Timer getTimer() {
+        if (timer == null) {
+            MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+            timer = registry.timer(MetricRegistry.name("nuxeo", "events", "listeners", getName()));
+        }
+        return timer;
+    }
+
     public Integer getTransactionTimeout() {
         return transactionTimeOut;
     }
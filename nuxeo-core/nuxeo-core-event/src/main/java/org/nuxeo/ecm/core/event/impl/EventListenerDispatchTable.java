@@ -0,0 +1,132 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.event.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.EventBundle;
+
+/**
+ * Immutable index of enabled listeners by event name.
+ * <p>
+ * For each event name declared by a listener, the table holds the array of listeners accepting it, including the
+ * listeners without event filter, in priority order. Events not declared by any listener are dispatched to the
+ * listeners without event filter only.
+ * <p>
+ * The table is rebuilt by the {@link EventListenerList} when listeners are registered, unregistered, enabled or
+ * disabled, so that dispatching an event is a single map lookup.
+ *
+ * @since 11.1
+ */
+public class EventListenerDispatchTable {
+
+    protected final EventListenerDescriptor[] listeners;
+
+    /** Listeners accepting any event. */
+    protected final EventListenerDescriptor[] anyEventListeners;
+
+    protected final Map<String, EventListenerDescriptor[]> byEvent;
+
+    /** Positions of the listeners in {@link #listeners}, by event name. */
+    protected final Map<String, BitSet> positionsByEvent;
+
+    protected final BitSet anyEventPositions;
+
+    /**
+     * Builds the table for the given enabled listeners, which must be sorted by priority.
+     */
+    public EventListenerDispatchTable(List<EventListenerDescriptor> enabledListeners) {
+        listeners = enabledListeners.toArray(new EventListenerDescriptor[0]);
+        anyEventPositions = new BitSet(listeners.length);
+        positionsByEvent = new HashMap<>();
+        for (int i = 0; i < listeners.length; i++) {
+            Set<String> events = listeners[i].getEvents();
+            if (events == null) {
+                anyEventPositions.set(i);
+            } else {
+                for (String event : events) {
+                    positionsByEvent.computeIfAbsent(event, k -> new BitSet(listeners.length)).set(i);
+                }
+            }
+        }
+        anyEventListeners = select(anyEventPositions);
+        byEvent = new HashMap<>();
+        for (Map.Entry<String, BitSet> es : positionsByEvent.entrySet()) {
+            BitSet positions = es.getValue();
+            positions.or(anyEventPositions);
+            byEvent.put(es.getKey(), select(positions));
+        }
+    }
+
+    protected EventListenerDescriptor[] select(BitSet positions) {
+        EventListenerDescriptor[] selected = new EventListenerDescriptor[positions.cardinality()];
+        int n = 0;
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            selected[n++] = listeners[i];
+        }
+        return selected;
+    }
+
+    /**
+     * Gets the listeners accepting the given event name, in priority order.
+     * <p>
+     * The returned array is shared and must not be modified.
+     */
+    public EventListenerDescriptor[] getListeners(String eventName) {
+        EventListenerDescriptor[] selected = byEvent.get(eventName);
+        return selected == null ? anyEventListeners : selected;
+    }
+
+    /**
+     * Gets the listeners accepting at least one of the event names of the bundle, in priority order.
+     * <p>
+     * Listeners implementing {@link org.nuxeo.ecm.core.event.PostCommitFilteringEventListener} may still reject all
+     * the events of the bundle.
+     */
+    public List<EventListenerDescriptor> getListeners(EventBundle bundle) {
+        if (listeners.length == 0) {
+            return new ArrayList<>(0);
+        }
+        BitSet positions = (BitSet) anyEventPositions.clone();
+        for (Event event : bundle) {
+            BitSet eventPositions = positionsByEvent.get(event.getName());
+            if (eventPositions != null) {
+                positions.or(eventPositions);
+            }
+        }
+        List<EventListenerDescriptor> selected = new ArrayList<>(positions.cardinality());
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            selected.add(listeners[i]);
+        }
+        return selected;
+    }
+
+    /**
+     * Gets all the listeners of this table, in priority order.
+     * <p>
+     * The returned array is shared and must not be modified.
+     */
+    public EventListenerDescriptor[] getListeners() {
+        return listeners;
+    }
+
+}
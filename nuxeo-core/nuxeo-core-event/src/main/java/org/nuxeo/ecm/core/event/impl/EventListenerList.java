@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.nuxeo.ecm.core.event.EventBundle;
 import org.nuxeo.ecm.core.event.EventListener;
 import org.nuxeo.ecm.core.event.PostCommitEventListener;
 
@@ -49,12 +50,24 @@ public class EventListenerList {
 
     protected volatile List<EventListenerDescriptor> enabledAsyncPostCommitListenersDescriptors = null;
 
+    /** @since 11.1 */
+    protected volatile EventListenerDispatchTable inlineDispatchTable;
+
+    /** @since 11.1 */
+    protected volatile EventListenerDispatchTable syncPostCommitDispatchTable;
+
+    /** @since 11.1 */
+    protected volatile EventListenerDispatchTable asyncPostCommitDispatchTable;
+
     protected final Map<String, EventListenerDescriptor> descriptors = new HashMap<>();
 
     protected synchronized void flushCache() {
         enabledAsyncPostCommitListenersDescriptors = null;
         enabledInlineListenersDescriptors = null;
         enabledSyncPostCommitListenersDescriptors = null;
+        inlineDispatchTable = null;
+        syncPostCommitDispatchTable = null;
+        asyncPostCommitDispatchTable = null;
     }
 
     public void add(EventListenerDescriptor descriptor) {
@@ -167,6 +180,9 @@ public class EventListenerList {
                 enabledInlineListenersDescriptors.add(desc);
             }
         }
+        inlineDispatchTable = new EventListenerDispatchTable(enabledInlineListenersDescriptors);
+        syncPostCommitDispatchTable = new EventListenerDispatchTable(enabledSyncPostCommitListenersDescriptors);
+        asyncPostCommitDispatchTable = new EventListenerDispatchTable(enabledAsyncPostCommitListenersDescriptors);
     }
 
     public List<EventListenerDescriptor> getEnabledInlineListenersDescriptors() {
@@ -190,6 +206,57 @@ public class EventListenerList {
         return new ArrayList<>(enabledAsyncPostCommitListenersDescriptors);
     }
 
+    /**
+     * Gets the enabled inline listeners accepting the given event, in priority order.
+     * <p>
+     * The returned array is shared and must not be modified.
+     *
+     * @since 11.1
+     */
+    public EventListenerDescriptor[] getEnabledInlineListenersDescriptors(String eventName) {
+        EventListenerDispatchTable table = inlineDispatchTable;
+        if (table == null) {
+            synchronized (this) {
+                recomputeEnabledListeners();
+                table = inlineDispatchTable;
+            }
+        }
+        return table.getListeners(eventName);
+    }
+
+    /**
+     * Gets the enabled synchronous post-commit listeners accepting at least one event of the bundle, in priority order.
+     *
+     * @since 11.1
+     */
+    public List<EventListenerDescriptor> getEnabledSyncPostCommitListenersDescriptors(EventBundle bundle) {
+        EventListenerDispatchTable table = syncPostCommitDispatchTable;
+        if (table == null) {
+            synchronized (this) {
+                recomputeEnabledListeners();
+                table = syncPostCommitDispatchTable;
+            }
+        }
+        return table.getListeners(bundle);
+    }
+
+    /**
+     * Gets the enabled asynchronous post-commit listeners accepting at least one event of the bundle, in priority
+     * order.
+     *
+     * @since 11.1
+     */
+    public List<EventListenerDescriptor> getEnabledAsyncPostCommitListenersDescriptors(EventBundle bundle) {
+        EventListenerDispatchTable table = asyncPostCommitDispatchTable;
+        if (table == null) {
+            synchronized (this) {
+                recomputeEnabledListeners();
+                table = asyncPostCommitDispatchTable;
+            }
+        }
+        return table.getListeners(bundle);
+    }
+
     public List<String> getListenerNames() {
         return new ArrayList<>(descriptors.keySet());
     }
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.naming.NamingException;
@@ -110,6 +111,12 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
 
     protected EventBundleDispatcher pipeDispatcher;
 
+    /** @since 11.1 */
+    protected volatile EventStats eventStats;
+
+    /** @since 11.1 */
+    protected volatile boolean eventStatsResolved;
+
     public EventServiceImpl() {
         listenerDescriptors = new EventListenerList();
         postCommitExec = new PostCommitEventExecutor();
@@ -118,6 +125,8 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
 
     public void init() {
         asyncExec.init();
+        eventStats = Framework.getService(EventStats.class);
+        eventStatsResolved = true;
 
         EventDispatcherDescriptor dispatcherDescriptor = dispatchers.getDispatcherDescriptor();
         if (dispatcherDescriptor != null) {
@@ -129,6 +138,15 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
         }
     }
 
+    /**
+     * Gets the event stats service, resolved once the application is started.
+     *
+     * @since 11.1
+     */
+    protected EventStats getEventStats() {
+        return eventStatsResolved ? eventStats : Framework.getService(EventStats.class);
+    }
+
     public EventBundleDispatcher getEventBundleDispatcher() {
         return pipeDispatcher;
     }
@@ -230,16 +248,15 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
     public void fireEvent(Event event) {
 
         String ename = event.getName();
-        EventStats stats = Framework.getService(EventStats.class);
-        for (EventListenerDescriptor desc : listenerDescriptors.getEnabledInlineListenersDescriptors()) {
-            if (!desc.acceptEvent(ename)) {
-                continue;
-            }
+        EventStats stats = getEventStats();
+        for (EventListenerDescriptor desc : listenerDescriptors.getEnabledInlineListenersDescriptors(ename)) {
             try {
-                long t0 = System.currentTimeMillis();
+                long t0 = System.nanoTime();
                 SequenceTracer.start("Fire sync event " + event.getName());
                 desc.asEventListener().handleEvent(event);
-                long elapsed = System.currentTimeMillis() - t0;
+                long elapsedNanos = System.nanoTime() - t0;
+                desc.getTimer().update(elapsedNanos, TimeUnit.NANOSECONDS);
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
                 SequenceTracer.stop("done in " + elapsed + " ms");
                 if (stats != null) {
                     stats.logSyncExec(desc, elapsed);
@@ -308,8 +325,10 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
 
     @Override
     public void fireEventBundle(EventBundle event) {
-        List<EventListenerDescriptor> postCommitSync = listenerDescriptors.getEnabledSyncPostCommitListenersDescriptors();
-        List<EventListenerDescriptor> postCommitAsync = listenerDescriptors.getEnabledAsyncPostCommitListenersDescriptors();
+        List<EventListenerDescriptor> postCommitSync = listenerDescriptors.getEnabledSyncPostCommitListenersDescriptors(
+                event);
+        List<EventListenerDescriptor> postCommitAsync = listenerDescriptors.getEnabledAsyncPostCommitListenersDescriptors(
+                event);
 
         if (bulkModeEnabled) {
             // run all listeners synchronously in one transaction
@@ -342,7 +361,9 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
 
         // fire async listeners
         if (pipeDispatcher == null) {
-            asyncExec.run(postCommitAsync, event);
+            if (!postCommitAsync.isEmpty()) {
+                asyncExec.run(postCommitAsync, event);
+            }
         } else {
             // rather than sending to the WorkManager: send to the Pipe
             pipeDispatcher.sendEventBundle(event);
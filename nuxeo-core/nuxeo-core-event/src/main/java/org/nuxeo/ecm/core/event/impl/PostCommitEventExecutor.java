@@ -142,7 +142,18 @@ public class PostCommitEventExecutor {
         run(listeners, event, Long.parseLong(timeoutSeconds) * 1000, true);
     }
 
+    /**
+     * Runs the listeners on the event bundle.
+     * <p>
+     * The listeners are expected to be already selected on the event names of the bundle, see
+     * {@link EventListenerList#getEnabledSyncPostCommitListenersDescriptors(EventBundle)}, so only the listeners
+     * filtering events on something else than their name may still have nothing to do.
+     */
     public void run(List<EventListenerDescriptor> listeners, EventBundle bundle, long timeoutMillis, boolean bulk) {
+        if (listeners.isEmpty()) {
+            log.debug("Events postcommit execution has nothing to do");
+            return;
+        }
         // check that there's at list one listener interested
         boolean some = false;
         for (EventListenerDescriptor listener : listeners) {
@@ -265,6 +276,7 @@ public class PostCommitEventExecutor {
                             TransactionHelper.commitOrRollbackTransaction();
                         }
                         long elapsed = System.currentTimeMillis() - t1;
+                        listener.getTimer().update(elapsed, TimeUnit.MILLISECONDS);
                         if (stats != null) {
                             stats.logAsyncExec(listener, elapsed);
                         }
@@ -342,6 +354,7 @@ public class PostCommitEventExecutor {
                         return Boolean.FALSE; // report error
                     } finally {
                         long elapsed = System.currentTimeMillis() - t1;
+                        listener.getTimer().update(elapsed, TimeUnit.MILLISECONDS);
                         log.debug("Events postcommit bulk execution end for listener: {} in {}ms", listener::getName,
                                 () -> elapsed);
                         SequenceTracer.stop("listener done " + elapsed + " ms");
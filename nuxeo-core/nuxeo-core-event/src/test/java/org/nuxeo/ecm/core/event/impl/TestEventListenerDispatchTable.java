@@ -0,0 +1,94 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.event.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.event.EventBundle;
+
+public class TestEventListenerDispatchTable {
+
+    protected static EventListenerDescriptor newDescriptor(String name, String... events) {
+        EventListenerDescriptor desc = new EventListenerDescriptor();
+        desc.name = name;
+        if (events.length > 0) {
+            desc.setEvents(new HashSet<>(Arrays.asList(events)));
+        }
+        return desc;
+    }
+
+    protected static EventBundle newBundle(String... names) {
+        EventBundle bundle = new EventBundleImpl();
+        for (String name : names) {
+            bundle.push(new EventImpl(name, new EventContextImpl()));
+        }
+        return bundle;
+    }
+
+    @Test
+    public void testInlineDispatch() {
+        EventListenerDescriptor a = newDescriptor("a", "created", "modified");
+        EventListenerDescriptor b = newDescriptor("b");
+        EventListenerDescriptor c = newDescriptor("c", "modified");
+        EventListenerDispatchTable table = new EventListenerDispatchTable(Arrays.asList(a, b, c));
+
+        assertArrayEquals(new Object[] { a, b }, table.getListeners("created"));
+        assertArrayEquals(new Object[] { a, b, c }, table.getListeners("modified"));
+        assertArrayEquals(new Object[] { b }, table.getListeners("removed"));
+        // shared arrays
+        assertSame(table.getListeners("removed"), table.getListeners("other"));
+        assertArrayEquals(new Object[] { a, b, c }, table.getListeners());
+    }
+
+    @Test
+    public void testBundleDispatch() {
+        EventListenerDescriptor a = newDescriptor("a", "created");
+        EventListenerDescriptor b = newDescriptor("b", "removed");
+        EventListenerDescriptor c = newDescriptor("c", "modified", "created");
+        EventListenerDispatchTable table = new EventListenerDispatchTable(Arrays.asList(a, b, c));
+
+        assertEquals(Arrays.asList(a, c), table.getListeners(newBundle("modified", "created")));
+        assertEquals(Arrays.asList(b), table.getListeners(newBundle("removed", "other")));
+        assertEquals(Collections.emptyList(), table.getListeners(newBundle("other")));
+        // returned lists can be modified by the caller
+        List<EventListenerDescriptor> listeners = table.getListeners(newBundle("created"));
+        listeners.add(b);
+        assertEquals(Arrays.asList(a, c), table.getListeners(newBundle("created")));
+    }
+
+    @Test
+    public void testEnabledFlag() {
+        EventListenerList list = new EventListenerList();
+        EventListenerDescriptor a = newDescriptor("a", "created");
+        EventListenerDescriptor b = newDescriptor("b", "created");
+        list.inlineListenersDescriptors.addAll(Arrays.asList(a, b));
+        assertArrayEquals(new Object[] { a, b }, list.getEnabledInlineListenersDescriptors("created"));
+
+        a.setEnabled(false);
+        list.recomputeEnabledListeners();
+        assertArrayEquals(new Object[] { b }, list.getEnabledInlineListenersDescriptors("created"));
+        assertEquals(0, list.getEnabledInlineListenersDescriptors("other").length);
+    }
+
+}
@@ -19,6 +19,7 @@
  */
 package org.nuxeo.ecm.core.io.download;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -27,6 +28,10 @@ import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -76,6 +81,7 @@ import org.nuxeo.ecm.core.api.model.PropertyNotFoundException;
 import org.nuxeo.ecm.core.blob.BlobManager;
 import org.nuxeo.ecm.core.blob.BlobManager.UsageHint;
 import org.nuxeo.ecm.core.blob.BlobProvider;
+import org.nuxeo.ecm.core.blob.ManagedBlob;
 import org.nuxeo.ecm.core.blob.binary.DefaultBinaryManager;
 import org.nuxeo.ecm.core.event.Event;
 import org.nuxeo.ecm.core.event.EventContext;
@@ -105,6 +111,32 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
 
     protected static final int DOWNLOAD_BUFFER_SIZE = 1024 * 512;
 
+    /**
+     * Property to disable the use of the servlet container sendfile support for the files of a local binary store.
+     *
+     * @since 11.1
+     */
+    public static final String SENDFILE_ENABLED_PROP = "org.nuxeo.download.sendfile.enabled";
+
+    /**
+     * Minimum size of the content sent using the servlet container sendfile support, like Tomcat's DefaultServlet.
+     *
+     * @since 11.1
+     */
+    protected static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    /** @since 11.1 */
+    protected static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+
+    /** @since 11.1 */
+    protected static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+
+    /** @since 11.1 */
+    protected static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+
+    /** @since 11.1 */
+    protected static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     private static final String NUXEO_VIRTUAL_HOST = "nuxeo-virtual-host";
 
     private static final String VH_PARAM = "nuxeo.virtual.host";
@@ -544,7 +576,7 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         Consumer<ByteRange> blobTransferer = context.getBlobTransferer();
         if (blobTransferer == null) {
             Blob fblob = blob;
-            blobTransferer = byteRange -> transferBlobWithByteRange(fblob, byteRange, response);
+            blobTransferer = byteRange -> transferBlobWithByteRange(fblob, byteRange, request, response);
         }
         Calendar lastModified = context.getLastModified();
         if (lastModified == null && doc != null) {
@@ -749,6 +781,52 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         }
     }
 
+    /**
+     * Transfers the blob at the given byte range, letting the servlet container send the file itself when possible.
+     *
+     * @since 11.1
+     */
+    protected void transferBlobWithByteRange(Blob blob, ByteRange byteRange, HttpServletRequest request,
+            HttpServletResponse response) {
+        if (!sendFile(blob, byteRange, request)) {
+            transferBlobWithByteRange(blob, byteRange, response);
+        }
+    }
+
+    /**
+     * Asks the servlet container to send the file of a blob stored in a local binary store, if it supports it
+     * (Tomcat's sendfile). The file is then written to the socket by the container without going through the JVM heap.
+     * <p>
+     * Only files of a local unencrypted binary store are sent this way, because the container sends them after the
+     * request processing, once temporary or cached files may already have been deleted.
+     *
+     * @return {@code true} if the container will send the file
+     * @since 11.1
+     */
+    protected boolean sendFile(Blob blob, ByteRange byteRange, HttpServletRequest request) {
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))
+                || Framework.isBooleanPropertyFalse(SENDFILE_ENABLED_PROP)) {
+            return false;
+        }
+        long start = byteRange == null ? 0 : byteRange.getStart();
+        long length = byteRange == null ? blob.getLength() : byteRange.getLength();
+        if (length < SENDFILE_MIN_SIZE) {
+            return false;
+        }
+        BlobProvider blobProvider = Framework.getService(BlobManager.class).getBlobProvider(blob);
+        if (blobProvider == null || !(blobProvider.getBinaryManager() instanceof DefaultBinaryManager)) {
+            return false;
+        }
+        File file = blob.getFile();
+        if (file == null || file.length() < start + length) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME_ATTR, file.getAbsolutePath());
+        request.setAttribute(SENDFILE_START_ATTR, Long.valueOf(start));
+        request.setAttribute(SENDFILE_END_ATTR, Long.valueOf(start + length));
+        return true;
+    }
+
     protected void transferBlobWithByteRange(Blob blob, ByteRange byteRange, HttpServletResponse response) {
         transferBlobWithByteRange(blob, byteRange, () -> {
             try {
@@ -766,6 +844,14 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
 
     @Override
     public void transferBlobWithByteRange(Blob blob, ByteRange byteRange, Supplier<OutputStream> outputStreamSupplier) {
+        if (transferBlobRangeFromProvider(blob, byteRange, outputStreamSupplier)) {
+            return;
+        }
+        File file = blob.getFile();
+        if (file != null) {
+            transferFileWithByteRange(file, byteRange, outputStreamSupplier);
+            return;
+        }
         try (InputStream in = blob.getStream()) {
             @SuppressWarnings("resource")
             OutputStream out = outputStreamSupplier.get(); // not ours to close
@@ -781,6 +867,76 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         }
     }
 
+    /**
+     * Copies the given byte range of a managed blob using a stream provided by its blob provider, which may read the
+     * range without fetching the whole blob from a remote storage.
+     *
+     * @return {@code true} if the blob provider could provide the range
+     * @since 11.1
+     */
+    protected boolean transferBlobRangeFromProvider(Blob blob, ByteRange byteRange,
+            Supplier<OutputStream> outputStreamSupplier) {
+        BlobManager blobManager = Framework.getService(BlobManager.class);
+        if (!(blob instanceof ManagedBlob) || blobManager == null) {
+            return false;
+        }
+        BlobProvider blobProvider = blobManager.getBlobProvider(blob);
+        if (blobProvider == null) {
+            return false;
+        }
+        long offset = byteRange == null ? 0 : byteRange.getStart();
+        long length = byteRange == null ? blob.getLength() : byteRange.getLength();
+        if (length < 0) {
+            return false;
+        }
+        try (InputStream in = blobProvider.getStream((ManagedBlob) blob, offset, length)) {
+            if (in == null) {
+                return false;
+            }
+            @SuppressWarnings("resource")
+            OutputStream out = outputStreamSupplier.get(); // not ours to close
+            BufferingServletOutputStream.stopBuffering(out);
+            IOUtils.copyLarge(in, out);
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies the file at the given byte range into the supplied {@link OutputStream} using
+     * {@link FileChannel#transferTo}.
+     * <p>
+     * When the output stream is not itself a channel, the JDK does the copy through its per-thread cache of direct
+     * buffers, without allocating buffers for each download.
+     *
+     * @since 11.1
+     */
+    protected void transferFileWithByteRange(File file, ByteRange byteRange,
+            Supplier<OutputStream> outputStreamSupplier) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            @SuppressWarnings("resource")
+            OutputStream out = outputStreamSupplier.get(); // not ours to close
+            BufferingServletOutputStream.stopBuffering(out);
+            long position = byteRange == null ? 0 : byteRange.getStart();
+            long count = byteRange == null ? channel.size() : byteRange.getLength();
+            @SuppressWarnings("resource")
+            WritableByteChannel target = Channels.newChannel(out); // closing it would close the output stream
+            while (count > 0) {
+                long n = channel.transferTo(position, count, target);
+                if (n <= 0) {
+                    break; // end of file
+                }
+                position += n;
+                count -= n;
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     protected String fixXPath(String xpath) {
         // Hack for Flash Url wich doesn't support ':' char
         return xpath == null ? null : xpath.replace(';', ':');
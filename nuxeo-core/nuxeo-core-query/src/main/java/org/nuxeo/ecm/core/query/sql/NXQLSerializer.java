@@ -0,0 +1,294 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.query.sql;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import org.nuxeo.ecm.core.query.QueryParseException;
+import org.nuxeo.ecm.core.query.sql.model.DefaultQueryVisitor;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.FromClause;
+import org.nuxeo.ecm.core.query.sql.model.Function;
+import org.nuxeo.ecm.core.query.sql.model.GroupByClause;
+import org.nuxeo.ecm.core.query.sql.model.HavingClause;
+import org.nuxeo.ecm.core.query.sql.model.Literal;
+import org.nuxeo.ecm.core.query.sql.model.LiteralList;
+import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
+import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.OperandList;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.OrderByExpr;
+import org.nuxeo.ecm.core.query.sql.model.OrderByList;
+import org.nuxeo.ecm.core.query.sql.model.Predicate;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.SelectClause;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+import org.nuxeo.ecm.core.query.sql.model.WhereClause;
+
+/**
+ * Serializes a parsed {@link SQLQuery} back into an NXQL string, for instance after it has been transformed.
+ * <p>
+ * Binary expressions are always parenthesized, so the result does not depend on operator precedence. Only the
+ * constructs that can be produced by the {@link SQLQueryParser} can be serialized.
+ *
+ * @since 11.1
+ */
+public class NXQLSerializer extends DefaultQueryVisitor {
+
+    protected final StringBuilder sb = new StringBuilder();
+
+    /**
+     * Serializes a query into NXQL.
+     *
+     * @throws QueryParseException if the query contains a construct that cannot be expressed in NXQL
+     */
+    public static String serialize(SQLQuery query) {
+        NXQLSerializer serializer = new NXQLSerializer();
+        query.accept(serializer);
+        return serializer.sb.toString();
+    }
+
+    /**
+     * Serializes a query into NXQL, checking that parsing the result gives back the same query.
+     *
+     * @return the NXQL string, or {@code null} if the query cannot be serialized faithfully
+     */
+    public static String serializeChecked(SQLQuery query) {
+        try {
+            String string = serialize(query);
+            if (query.equals(SQLQueryParser.parse(string))) {
+                return string;
+            }
+        } catch (QueryParseException e) {
+            // cannot be serialized or parsed back
+        }
+        return null;
+    }
+
+    @Override
+    public void visitQuery(SQLQuery node) {
+        node.select.accept(this);
+        node.from.accept(this);
+        if (node.where != null && node.where.predicate != null) {
+            node.where.accept(this);
+        }
+        if (node.groupBy != null) {
+            node.groupBy.accept(this);
+        }
+        if (node.having != null) {
+            node.having.accept(this);
+        }
+        if (node.orderBy != null && !node.orderBy.elements.isEmpty()) {
+            sb.append(" ORDER BY ");
+            node.orderBy.accept(this);
+        }
+        if (node.limit != 0) {
+            sb.append(" LIMIT ").append(node.limit);
+            if (node.offset != 0) {
+                sb.append(" OFFSET ").append(node.offset);
+            }
+        } else if (node.offset != 0) {
+            throw new QueryParseException("Cannot serialize OFFSET without LIMIT");
+        }
+    }
+
+    @Override
+    public void visitSelectClause(SelectClause node) {
+        sb.append("SELECT ");
+        if (node.distinct) {
+            sb.append("DISTINCT ");
+        }
+        if (node.elements.isEmpty()) {
+            sb.append('*');
+            return;
+        }
+        for (Iterator<Entry<String, Operand>> it = node.elements.entrySet().iterator(); it.hasNext();) {
+            Entry<String, Operand> es = it.next();
+            Operand operand = es.getValue();
+            operand.accept(this);
+            // the parser uses the operand string as the key of non-aliased operands
+            if (!es.getKey().equals(operand.toString())) {
+                sb.append(" AS ").append(es.getKey());
+            }
+            if (it.hasNext()) {
+                sb.append(", ");
+            }
+        }
+    }
+
+    @Override
+    public void visitFromClause(FromClause node) {
+        sb.append(" FROM ");
+        if (node.type == FromClause.LOCATION) {
+            sb.append("LOCATION ");
+        }
+        for (Iterator<Entry<String, String>> it = node.elements.entrySet().iterator(); it.hasNext();) {
+            Entry<String, String> es = it.next();
+            sb.append(es.getValue());
+            if (!es.getKey().equals(es.getValue())) {
+                sb.append(" AS ").append(es.getKey());
+            }
+            if (it.hasNext()) {
+                sb.append(", ");
+            }
+        }
+    }
+
+    @Override
+    public void visitWhereClause(WhereClause node) {
+        sb.append(" WHERE ");
+        node.predicate.accept(this);
+    }
+
+    @Override
+    public void visitGroupByClause(GroupByClause node) {
+        throw new QueryParseException("Cannot serialize GROUP BY");
+    }
+
+    @Override
+    public void visitHavingClause(HavingClause node) {
+        throw new QueryParseException("Cannot serialize HAVING");
+    }
+
+    @Override
+    public void visitOrderByList(OrderByList node) {
+        for (Iterator<OrderByExpr> it = node.iterator(); it.hasNext();) {
+            it.next().accept(this);
+            if (it.hasNext()) {
+                sb.append(", ");
+            }
+        }
+    }
+
+    @Override
+    public void visitOrderByExpr(OrderByExpr node) {
+        node.reference.accept(this);
+        if (node.isDescending) {
+            sb.append(" DESC");
+        }
+    }
+
+    @Override
+    public void visitExpression(Expression node) {
+        Operator operator = node.operator;
+        if (node.rvalue == null) {
+            sb.append('(');
+            if (node.isSuffix()) {
+                // IS NULL, IS NOT NULL
+                node.lvalue.accept(this);
+                sb.append(' ').append(operator);
+            } else {
+                // NOT
+                sb.append(operator).append(' ');
+                node.lvalue.accept(this);
+            }
+            sb.append(')');
+        } else if (operator == Operator.IN || operator == Operator.NOTIN) {
+            sb.append('(');
+            node.lvalue.accept(this);
+            sb.append(' ').append(operator).append(" (");
+            node.rvalue.accept(this);
+            sb.append("))");
+        } else if (operator == Operator.BETWEEN || operator == Operator.NOTBETWEEN) {
+            if (!(node.rvalue instanceof LiteralList) || ((LiteralList) node.rvalue).size() != 2) {
+                throw new QueryParseException("Invalid " + operator + " range: " + node.rvalue);
+            }
+            LiteralList range = (LiteralList) node.rvalue;
+            sb.append('(');
+            node.lvalue.accept(this);
+            sb.append(' ').append(operator).append(' ');
+            range.get(0).accept(this);
+            sb.append(" AND ");
+            range.get(1).accept(this);
+            sb.append(')');
+        } else {
+            sb.append('(');
+            node.lvalue.accept(this);
+            sb.append(' ').append(operator).append(' ');
+            node.rvalue.accept(this);
+            sb.append(')');
+        }
+    }
+
+    @Override
+    public void visitMultiExpression(MultiExpression node) {
+        if (node.predicates.isEmpty()) {
+            throw new QueryParseException("Cannot serialize empty " + node.operator);
+        }
+        sb.append('(');
+        for (Iterator<Predicate> it = node.predicates.iterator(); it.hasNext();) {
+            it.next().accept(this);
+            if (it.hasNext()) {
+                sb.append(' ').append(node.operator).append(' ');
+            }
+        }
+        sb.append(')');
+    }
+
+    @Override
+    public void visitReference(Reference node) {
+        if (node.cast != null) {
+            sb.append(node.cast).append('(').append(node.name).append(')');
+        } else if (node.esHint != null) {
+            sb.append(node.esHint).append(' ').append(node.name);
+        } else {
+            sb.append(node.name);
+        }
+    }
+
+    @Override
+    public void visitLiteral(Literal node) {
+        // dates and numbers
+        sb.append(node);
+    }
+
+    @Override
+    public void visitStringLiteral(StringLiteral node) {
+        sb.append(NXQL.escapeString(node.value));
+    }
+
+    @Override
+    public void visitLiteralList(LiteralList node) {
+        for (Iterator<Literal> it = node.iterator(); it.hasNext();) {
+            it.next().accept(this);
+            if (it.hasNext()) {
+                sb.append(", ");
+            }
+        }
+    }
+
+    @Override
+    public void visitFunction(Function node) {
+        sb.append(node.name).append('(');
+        if (node.args != null) {
+            node.args.accept(this);
+        }
+        sb.append(')');
+    }
+
+    @Override
+    public void visitOperandList(OperandList node) {
+        for (Iterator<Operand> it = node.iterator(); it.hasNext();) {
+            it.next().accept(this);
+            if (it.hasNext()) {
+                sb.append(", ");
+            }
+        }
+    }
+
+}
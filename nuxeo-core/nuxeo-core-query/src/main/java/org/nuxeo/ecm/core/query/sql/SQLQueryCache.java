@@ -0,0 +1,400 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.query.sql;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.nuxeo.ecm.core.query.QueryParseException;
+import org.nuxeo.ecm.core.query.sql.model.DateLiteral;
+import org.nuxeo.ecm.core.query.sql.model.DoubleLiteral;
+import org.nuxeo.ecm.core.query.sql.model.IdentityQueryTransformer;
+import org.nuxeo.ecm.core.query.sql.model.IntegerLiteral;
+import org.nuxeo.ecm.core.query.sql.model.Literal;
+import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.SelectList;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+import org.nuxeo.ecm.core.query.sql.parser.Scanner;
+import org.nuxeo.ecm.core.query.sql.parser.sym;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of parsed NXQL queries, keyed by the query "shape", i.e. the query with its literals normalized out.
+ * <p>
+ * The query is first tokenized (which is much cheaper than a full parse). Literal tokens are replaced by placeholders
+ * to compute the cache key, and their values are collected. On a cache hit, a fresh copy of the cached template is
+ * returned in which the template literals are replaced by the collected values. On a cache miss, the query is parsed
+ * normally and a template is cached if its literals can be mapped unambiguously to the literal tokens, otherwise the
+ * shape is remembered as not cacheable.
+ * <p>
+ * The returned {@link SQLQuery} is always a new instance, so callers are free to modify it.
+ *
+ * @since 11.1
+ */
+public class SQLQueryCache {
+
+    /** Property defining the maximum number of query shapes kept in the cache, {@code 0} to disable the cache. */
+    public static final String CACHE_SIZE_PROP = "nuxeo.core.query.parser.cache.size";
+
+    public static final long DEFAULT_CACHE_SIZE = 1000;
+
+    protected static final Template NOT_CACHEABLE = new Template(null, null);
+
+    protected static volatile SQLQueryCache instance;
+
+    protected final Cache<String, Template> cache;
+
+    protected final Counter hits;
+
+    protected final Counter misses;
+
+    /**
+     * Gets the shared cache, or {@code null} if caching is disabled.
+     */
+    public static SQLQueryCache getInstance() {
+        if (instance == null) {
+            synchronized (SQLQueryCache.class) {
+                if (instance == null) {
+                    instance = new SQLQueryCache(getConfiguredCacheSize());
+                }
+            }
+        }
+        return instance.cache == null ? null : instance;
+    }
+
+    protected static long getConfiguredCacheSize() {
+        String value;
+        if (Framework.isInitialized()) {
+            value = Framework.getProperty(CACHE_SIZE_PROP);
+        } else {
+            value = System.getProperty(CACHE_SIZE_PROP);
+        }
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_CACHE_SIZE;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return DEFAULT_CACHE_SIZE;
+        }
+    }
+
+    public SQLQueryCache(long maxSize) {
+        if (maxSize > 0) {
+            cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+        } else {
+            cache = null;
+        }
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        hits = registry.counter(MetricRegistry.name("nuxeo", "query", "parser", "cache", "hit"));
+        misses = registry.counter(MetricRegistry.name("nuxeo", "query", "parser", "cache", "miss"));
+    }
+
+    /**
+     * Parses a query, using the cache if possible.
+     */
+    public SQLQuery parse(String string) throws QueryParseException {
+        Tokens tokens = tokenize(string);
+        Template template = cache.getIfPresent(tokens.key);
+        SQLQuery query;
+        if (template == null) {
+            misses.inc();
+            query = SQLQueryParser.parse(new StringReader(string));
+            cache.put(tokens.key, createTemplate(query, tokens));
+        } else if (template == NOT_CACHEABLE) {
+            misses.inc();
+            query = SQLQueryParser.parse(new StringReader(string));
+        } else {
+            hits.inc();
+            query = new RebindingTransformer(template.binders, tokens.values).transform(template.query);
+        }
+        query.setQueryString(string);
+        return query;
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    protected static Tokens tokenize(String string) {
+        StringBuilder key = new StringBuilder(string.length());
+        List<LiteralToken> values = new ArrayList<>();
+        Scanner scanner = new Scanner(new StringReader(string));
+        int previous = -1;
+        for (;;) {
+            java_cup.runtime.Symbol symbol;
+            try {
+                symbol = scanner.next_token();
+            } catch (IOException e) {
+                throw new QueryParseException(e);
+            }
+            int type = symbol.sym;
+            if (type == sym.EOF) {
+                break;
+            }
+            boolean literal = type == sym.STRING || type == sym.INTEGER || type == sym.DOUBLE;
+            if (literal && previous != sym.LIMIT && previous != sym.OFFSET) {
+                // type is part of the key so that the template literal has the same type
+                key.append('?').append(type);
+                values.add(new LiteralToken(type, (String) symbol.value, previous));
+            } else {
+                key.append(symbol.value);
+            }
+            key.append(' ');
+            previous = type;
+        }
+        return new Tokens(key.toString(), values);
+    }
+
+    /**
+     * Creates a template from a freshly parsed query, or returns {@link #NOT_CACHEABLE} if the literals of the query
+     * cannot be mapped unambiguously to the literal tokens.
+     */
+    protected static Template createTemplate(SQLQuery query, Tokens tokens) {
+        RecordingTransformer recorder = new RecordingTransformer();
+        SQLQuery copy = recorder.transform(query);
+        List<Literal> literals = recorder.literals;
+        if (literals.size() != tokens.values.size()) {
+            return NOT_CACHEABLE;
+        }
+        Binder[] binders = new Binder[literals.size()];
+        for (int i = 0; i < binders.length; i++) {
+            Binder binder = Binder.of(literals.get(i), tokens.values.get(i));
+            if (binder == null) {
+                return NOT_CACHEABLE;
+            }
+            binders[i] = binder;
+        }
+        return new Template(copy, binders);
+    }
+
+    /**
+     * The normalized key of a query and the values of its literal tokens.
+     */
+    protected static class Tokens {
+
+        protected final String key;
+
+        protected final List<LiteralToken> values;
+
+        protected Tokens(String key, List<LiteralToken> values) {
+            this.key = key;
+            this.values = values;
+        }
+    }
+
+    protected static class LiteralToken {
+
+        protected final int type;
+
+        protected final String value;
+
+        protected final int previous;
+
+        protected LiteralToken(int type, String value, int previous) {
+            this.type = type;
+            this.value = value;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * A cached query template. The template query is never returned to callers, only copies of it.
+     */
+    protected static class Template {
+
+        protected final SQLQuery query;
+
+        protected final Binder[] binders;
+
+        protected Template(SQLQuery query, Binder[] binders) {
+            this.query = query;
+            this.binders = binders;
+        }
+    }
+
+    /**
+     * Knows how to create a literal from a literal token.
+     */
+    protected enum Binder {
+
+        STRING {
+            @Override
+            protected Literal bind(String value) {
+                return new StringLiteral(value);
+            }
+        },
+
+        INTEGER {
+            @Override
+            protected Literal bind(String value) {
+                return new IntegerLiteral(value);
+            }
+        },
+
+        NEGATIVE_INTEGER {
+            @Override
+            protected Literal bind(String value) {
+                return new IntegerLiteral('-' + value);
+            }
+        },
+
+        DOUBLE {
+            @Override
+            protected Literal bind(String value) {
+                return new DoubleLiteral(value);
+            }
+        },
+
+        NEGATIVE_DOUBLE {
+            @Override
+            protected Literal bind(String value) {
+                return new DoubleLiteral('-' + value);
+            }
+        },
+
+        DATE {
+            @Override
+            protected Literal bind(String value) {
+                return new DateLiteral(value, true);
+            }
+        },
+
+        TIMESTAMP {
+            @Override
+            protected Literal bind(String value) {
+                return new DateLiteral(value, false);
+            }
+        };
+
+        protected abstract Literal bind(String value);
+
+        /**
+         * Finds the binder that recreates the given literal from the given token, or {@code null} if none does.
+         */
+        protected static Binder of(Literal literal, LiteralToken token) {
+            Binder binder;
+            if (literal instanceof StringLiteral && token.type == sym.STRING) {
+                binder = STRING;
+            } else if (literal instanceof DateLiteral && token.type == sym.STRING) {
+                if (token.previous == sym.DATE) {
+                    binder = DATE;
+                } else if (token.previous == sym.TIMESTAMP) {
+                    binder = TIMESTAMP;
+                } else {
+                    return null;
+                }
+            } else if (literal instanceof IntegerLiteral && token.type == sym.INTEGER) {
+                binder = token.previous == sym.SUB ? NEGATIVE_INTEGER : INTEGER;
+            } else if (literal instanceof DoubleLiteral && token.type == sym.DOUBLE) {
+                binder = token.previous == sym.SUB ? NEGATIVE_DOUBLE : DOUBLE;
+            } else {
+                return null;
+            }
+            Literal bound;
+            try {
+                bound = binder.bind(token.value);
+            } catch (RuntimeException e) {
+                return null;
+            }
+            if (!bound.equals(literal)) {
+                return null;
+            }
+            if (binder == NEGATIVE_INTEGER && bound.equals(INTEGER.bind(token.value))
+                    || binder == NEGATIVE_DOUBLE && bound.equals(DOUBLE.bind(token.value))) {
+                // zero preceded by a minus: cannot tell a negative literal from a subtraction
+                return null;
+            }
+            return binder;
+        }
+    }
+
+    /**
+     * Copies a query while recording its literals in traversal order.
+     */
+    protected static class RecordingTransformer extends IdentityQueryTransformer {
+
+        protected final List<Literal> literals = new ArrayList<>();
+
+        @Override
+        public Literal transform(Literal node) {
+            literals.add(node);
+            return node;
+        }
+    }
+
+    /**
+     * Copies a query template while replacing its literals, in traversal order, with new values.
+     */
+    protected static class RebindingTransformer extends IdentityQueryTransformer {
+
+        protected final Binder[] binders;
+
+        protected final List<LiteralToken> values;
+
+        protected int index;
+
+        protected RebindingTransformer(Binder[] binders, List<LiteralToken> values) {
+            this.binders = binders;
+            this.values = values;
+        }
+
+        @Override
+        public SelectList transform(SelectList node) {
+            SelectList list = new SelectList();
+            for (Entry<String, Operand> es : node.entrySet()) {
+                String key = es.getKey();
+                Operand operand = es.getValue();
+                Operand transformed = transform(operand);
+                if (key.equals(operand.toString())) {
+                    // key was derived from the operand (no alias), derive it again
+                    key = transformed.toString();
+                }
+                list.put(key, transformed);
+            }
+            return list;
+        }
+
+        @Override
+        public Literal transform(Literal node) {
+            int i = index++;
+            try {
+                return binders[i].bind(values.get(i).value);
+            } catch (RuntimeException e) {
+                throw new QueryParseException(e);
+            }
+        }
+    }
+
+}
@@ -48,7 +48,16 @@ public final class SQLQueryParser {
         }
     }
 
+    /**
+     * Parses a query.
+     * <p>
+     * Parsed queries are cached by shape (see {@link SQLQueryCache}), the returned query is always a new instance.
+     */
     public static SQLQuery parse(String string) throws QueryParseException {
+        SQLQueryCache cache = SQLQueryCache.getInstance();
+        if (cache != null) {
+            return cache.parse(string);
+        }
         SQLQuery query = parse(new StringReader(string));
         query.setQueryString(string);
         return query;
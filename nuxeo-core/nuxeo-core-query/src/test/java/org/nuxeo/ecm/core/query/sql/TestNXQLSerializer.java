@@ -0,0 +1,75 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.Predicate;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+
+public class TestNXQLSerializer {
+
+    protected static final Predicate NO_FILE = new Predicate(new Reference("ecm:primaryType"), Operator.NOTEQ,
+            new StringLiteral("File"));
+
+    @Test
+    public void testSerialize() {
+        SQLQuery query = SQLQueryParser.parse("SELECT * FROM Document WHERE dc:title = 'foo' OR ecm:isProxy = 1");
+        query = query.withPredicate(new Predicate(query.where.predicate, Operator.AND, NO_FILE));
+        assertEquals("SELECT * FROM Document WHERE (((dc:title = 'foo') OR (ecm:isProxy = 1))"
+                + " AND (ecm:primaryType <> 'File'))", NXQLSerializer.serialize(query));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        for (String nxql : Arrays.asList( //
+                "SELECT * FROM Document", //
+                "SELECT DISTINCT ecm:uuid, dc:title AS title FROM File, Note AS n WHERE ecm:isProxy = 0", //
+                "SELECT COUNT(ecm:uuid) FROM Document WHERE ecm:parentId = 'abc'", //
+                "SELECT * FROM LOCATION Document WHERE dc:title = 'foo' ORDER BY dc:title DESC, dc:created", //
+                "SELECT * FROM Document WHERE dc:title = 'a\\'b\\\\c' AND dc:description LIKE 'x%'", //
+                "SELECT * FROM Document WHERE NOT (ecm:primaryType IN ('File', 'Note') OR dc:nature IS NULL)", //
+                "SELECT * FROM Document WHERE dc:created BETWEEN DATE '2019-01-01' AND TIMESTAMP '2019-02-01 00:00'", //
+                "SELECT * FROM Document WHERE DATE(dc:modified) >= DATE '2019-01-01' AND dc:issued < NOW('-P1D')", //
+                "SELECT * FROM Document WHERE ecm:path STARTSWITH '/foo' AND ecm:fulltext = 'bar'", //
+                "SELECT * FROM Document WHERE /*+ES: INDEX(dc:title.fulltext) */ dc:title = 'foo'", //
+                "SELECT * FROM Document WHERE my:int > -5 AND my:double <= 1.5 AND files/*/file/name IS NOT NULL", //
+                "SELECT * FROM Document WHERE ecm:uuid NOT IN ('a', 'b') ORDER BY dc:title LIMIT 10 OFFSET 20")) {
+            SQLQuery query = SQLQueryParser.parse(nxql);
+            String serialized = NXQLSerializer.serializeChecked(query);
+            assertNotNull(nxql, serialized);
+            assertEquals(nxql, query, SQLQueryParser.parse(serialized));
+        }
+    }
+
+    @Test
+    public void testNotSerializable() {
+        SQLQuery query = SQLQueryParser.parse("SELECT * FROM Document");
+        // parsed back as a binary expression, not as a multi-expression
+        query = query.withPredicate(new MultiExpression(Operator.AND, Arrays.asList(NO_FILE, NO_FILE)));
+        assertNull(NXQLSerializer.serializeChecked(query));
+    }
+
+}
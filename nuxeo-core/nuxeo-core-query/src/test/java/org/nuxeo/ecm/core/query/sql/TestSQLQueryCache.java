@@ -0,0 +1,86 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+
+public class TestSQLQueryCache {
+
+    protected SQLQueryCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new SQLQueryCache(10);
+    }
+
+    protected void assertSameAsParser(String query) {
+        SQLQuery expected = SQLQueryParser.parse(new java.io.StringReader(query));
+        SQLQuery actual = cache.parse(query);
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(query, actual.getQueryString());
+    }
+
+    @Test
+    public void testRebinding() {
+        String[] queries = { //
+                "SELECT * FROM Document WHERE dc:title = 'foo' AND ecm:isProxy = 0",
+                "SELECT * FROM Document WHERE dc:title = 'bar' AND ecm:isProxy = 1",
+                "SELECT * FROM Document WHERE ecm:uuid IN ('a', 'b') AND dc:created > TIMESTAMP '2007-01-30T01:02:03.000Z'",
+                "SELECT * FROM Document WHERE ecm:uuid IN ('c', 'd') AND dc:created > TIMESTAMP '2019-11-12T01:02:03.000Z'",
+                "SELECT * FROM Document WHERE p BETWEEN -1 AND 2.5 ORDER BY dc:title DESC",
+                "SELECT * FROM Document WHERE p BETWEEN -7 AND 3.5 ORDER BY dc:title DESC",
+                "SELECT p FROM t WHERE DATE(title) = DATE '2007-01-30'",
+                "SELECT p FROM t WHERE DATE(title) = DATE '2019-02-28'",
+                "SELECT * FROM Document WHERE p LIKE 'a%' LIMIT 10 OFFSET 5",
+                "SELECT * FROM Document WHERE p LIKE 'b%' LIMIT 20 OFFSET 5", };
+        for (String query : queries) {
+            assertSameAsParser(query);
+        }
+        // one shape per pair of queries, except LIMIT which is part of the shape
+        assertEquals(6, cache.size());
+    }
+
+    @Test
+    public void testSelectListKeys() {
+        assertSameAsParser("SELECT 'foo', dc:title FROM Document");
+        SQLQuery query = cache.parse("SELECT 'bar', dc:title FROM Document");
+        assertEquals("'bar'", query.select.elements.keySet().iterator().next());
+    }
+
+    @Test
+    public void testSubtractionIsNotCached() {
+        assertSameAsParser("SELECT p FROM t WHERE p - 0 = 2");
+        assertSameAsParser("SELECT p FROM t WHERE p - 5 = 2");
+        assertSameAsParser("SELECT p FROM t WHERE p - 2 = 3");
+        assertSameAsParser("SELECT p FROM t WHERE p - 4 = 1");
+    }
+
+    @Test
+    public void testReturnsNewInstances() {
+        String nxql = "SELECT * FROM Document WHERE dc:title = 'foo'";
+        SQLQuery q1 = cache.parse(nxql);
+        q1.limit = 5;
+        SQLQuery q2 = cache.parse(nxql);
+        assertNotSame(q1, q2);
+        assertEquals(0, q2.limit);
+    }
+
+}
@@ -0,0 +1,304 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.State;
+
+/**
+ * A compact, immutable binary encoding of a {@link State}, used by the {@link DBSCachingRepository} to keep many
+ * documents in memory with a low overhead and a known size.
+ * <p>
+ * The encoding starts with a table of the top-level keys and of the offsets of their values, so that a subset of the
+ * keys can be decoded without decoding the whole state. Each decode returns new objects, so callers are free to modify
+ * them.
+ * <p>
+ * Only the value types that can be stored in a DBS {@link State} are supported: {@link String}, {@link Long},
+ * {@link Double}, {@link Boolean}, {@link Calendar}, arrays of those, {@link List} and nested {@link State}.
+ *
+ * @since 11.1
+ */
+public class CompactState {
+
+    protected static final byte NULL = 0;
+
+    protected static final byte STRING = 1;
+
+    protected static final byte LONG = 2;
+
+    protected static final byte DOUBLE = 3;
+
+    protected static final byte TRUE = 4;
+
+    protected static final byte FALSE = 5;
+
+    protected static final byte CALENDAR = 6;
+
+    protected static final byte STATE = 7;
+
+    protected static final byte LIST = 8;
+
+    protected static final byte ARRAY = 9;
+
+    protected final byte[] bytes;
+
+    protected CompactState(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Encodes a {@link State}.
+     *
+     * @return the compact state, or {@code null} if the state contains values that cannot be encoded
+     */
+    public static CompactState of(State state) {
+        try {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(data);
+            List<String> keys = new ArrayList<>(state.size());
+            List<Integer> offsets = new ArrayList<>(state.size());
+            for (Entry<String, Serializable> en : state.entrySet()) {
+                keys.add(en.getKey());
+                offsets.add(Integer.valueOf(out.size()));
+                writeValue(out, en.getValue());
+            }
+            out.flush();
+            ByteArrayOutputStream result = new ByteArrayOutputStream(data.size() + 16 * keys.size() + 4);
+            DataOutputStream header = new DataOutputStream(result);
+            header.writeInt(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                writeString(header, keys.get(i));
+                header.writeInt(offsets.get(i).intValue());
+            }
+            header.flush();
+            data.writeTo(result);
+            return new CompactState(result.toByteArray());
+        } catch (UnsupportedOperationException e) {
+            return null;
+        } catch (IOException e) { // cannot happen, in-memory streams
+            throw new NuxeoException(e);
+        }
+    }
+
+    /**
+     * Gets the size of the encoded state, in bytes.
+     */
+    public int getSize() {
+        return bytes.length;
+    }
+
+    /**
+     * Decodes the whole state.
+     */
+    public State toState() {
+        return toState(null);
+    }
+
+    /**
+     * Decodes the given keys of the state.
+     *
+     * @param keys the keys to decode, or {@code null} for all of them
+     */
+    public State toState(Collection<String> keys) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        int size = buf.getInt();
+        String[] names = new String[size];
+        int[] offsets = new int[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = readString(buf);
+            offsets[i] = buf.getInt();
+        }
+        int dataStart = buf.position();
+        State state = new State(keys == null ? size : keys.size());
+        for (int i = 0; i < size; i++) {
+            if (keys != null && !keys.contains(names[i])) {
+                continue;
+            }
+            buf.position(dataStart + offsets[i]);
+            Serializable value = readValue(buf);
+            if (value != null) {
+                state.put(names[i], value);
+            }
+        }
+        return state;
+    }
+
+    protected static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof State) {
+            State state = (State) value;
+            out.writeByte(STATE);
+            out.writeInt(state.size());
+            for (Entry<String, Serializable> en : state.entrySet()) {
+                writeString(out, en.getKey());
+                writeValue(out, en.getValue());
+            }
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object v : list) {
+                writeValue(out, v);
+            }
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            out.writeByte(ARRAY);
+            out.writeByte(getArrayType(array.getClass().getComponentType()));
+            out.writeInt(array.length);
+            for (Object v : array) {
+                writeValue(out, v);
+            }
+        } else {
+            writeScalar(out, value);
+        }
+    }
+
+    protected static void writeScalar(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong(((Long) value).longValue());
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Double) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+        } else if (value instanceof Calendar) {
+            Calendar cal = (Calendar) value;
+            out.writeByte(CALENDAR);
+            out.writeLong(cal.getTimeInMillis());
+            writeString(out, cal.getTimeZone().getID());
+        } else {
+            throw new UnsupportedOperationException(value.getClass().getName());
+        }
+    }
+
+    protected static byte getArrayType(Class<?> klass) {
+        if (klass == String.class) {
+            return STRING;
+        } else if (klass == Long.class) {
+            return LONG;
+        } else if (klass == Double.class) {
+            return DOUBLE;
+        } else if (klass == Boolean.class) {
+            return TRUE;
+        } else if (klass == Calendar.class) {
+            return CALENDAR;
+        } else if (klass == Object.class) {
+            return NULL;
+        }
+        throw new UnsupportedOperationException(klass.getName());
+    }
+
+    protected static Class<?> getArrayClass(byte type) {
+        switch (type) {
+        case STRING:
+            return String.class;
+        case LONG:
+            return Long.class;
+        case DOUBLE:
+            return Double.class;
+        case TRUE:
+            return Boolean.class;
+        case CALENDAR:
+            return Calendar.class;
+        default:
+            return Object.class;
+        }
+    }
+
+    protected static Serializable readValue(ByteBuffer buf) {
+        byte type = buf.get();
+        switch (type) {
+        case NULL:
+            return null;
+        case STRING:
+            return readString(buf);
+        case LONG:
+            return Long.valueOf(buf.getLong());
+        case DOUBLE:
+            return Double.valueOf(buf.getDouble());
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case CALENDAR:
+            long millis = buf.getLong();
+            Calendar cal = new GregorianCalendar(TimeZone.getTimeZone(readString(buf)));
+            cal.setTimeInMillis(millis);
+            return cal;
+        case STATE:
+            int size = buf.getInt();
+            State state = new State(size);
+            for (int i = 0; i < size; i++) {
+                String key = readString(buf);
+                Serializable value = readValue(buf);
+                if (value != null) {
+                    state.put(key, value);
+                }
+            }
+            return state;
+        case LIST:
+            int length = buf.getInt();
+            ArrayList<Serializable> list = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                list.add(readValue(buf));
+            }
+            return list;
+        case ARRAY:
+            Class<?> klass = getArrayClass(buf.get());
+            Object[] array = (Object[]) Array.newInstance(klass, buf.getInt());
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readValue(buf);
+            }
+            return array;
+        default:
+            throw new NuxeoException("Invalid compact state type: " + type);
+        }
+    }
+
+    protected static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    protected static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        String string = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return string;
+    }
+
+}
@@ -18,6 +18,7 @@
  */
 package org.nuxeo.ecm.core.storage.dbs;
 
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ACP;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PARENT_ID;
@@ -27,10 +28,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.logging.Log;
@@ -44,9 +47,11 @@ import org.nuxeo.ecm.core.blob.BlobManager;
 import org.nuxeo.ecm.core.model.LockManager;
 import org.nuxeo.ecm.core.model.Session;
 import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
+import org.nuxeo.ecm.core.security.InheritedACLCache;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.cluster.ClusterService;
 import org.nuxeo.runtime.metrics.MetricsService;
@@ -55,7 +60,6 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Ordering;
 
 /**
@@ -71,19 +75,41 @@ public class DBSCachingRepository implements DBSRepository {
 
     private final Cache<String, State> cache;
 
+    /**
+     * Cache of compact states, used instead of {@link #cache} when the cache is configured as compact.
+     *
+     * @since 11.1
+     */
+    private final Cache<String, CompactState> compactCache;
+
+    /** The document cache in use, {@link #cache} or {@link #compactCache}. */
+    private final Cache<String, ?> documentCache;
+
     private final Cache<String, String> childCache;
 
     private DBSClusterInvalidator clusterInvalidator;
 
     private final DBSInvalidations invalidations;
 
+    /** @since 11.1 */
+    private final InheritedACLCache inheritedACLCache;
+
     protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
 
     public DBSCachingRepository(DBSRepository repository, DBSRepositoryDescriptor descriptor) {
         this.repository = repository;
         // Init caches
-        cache = newCache(descriptor);
-        registry.registerAll(GuavaCacheMetric.of(cache, "nuxeo", "repositories", repository.getName(), "cache"));
+        if (descriptor.isCacheCompact()) {
+            cache = null;
+            compactCache = newCompactCache(descriptor);
+            documentCache = compactCache;
+        } else {
+            cache = newCache(descriptor);
+            compactCache = null;
+            documentCache = cache;
+        }
+        registry.registerAll(
+                GuavaCacheMetric.of(documentCache, "nuxeo", "repositories", repository.getName(), "cache"));
         childCache = newCache(descriptor);
         registry.registerAll(
                 GuavaCacheMetric.of(childCache, "nuxeo", "repositories", repository.getName(), "childCache"));
@@ -91,19 +117,39 @@ public class DBSCachingRepository implements DBSRepository {
             log.info(String.format("DBS cache activated on '%s' repository", repository.getName()));
         }
         invalidations = new DBSInvalidations();
+        inheritedACLCache = new InheritedACLCache(repository.getName());
         initClusterInvalidator(descriptor);
     }
 
     protected <T> Cache<String, T> newCache(DBSRepositoryDescriptor descriptor) {
+        CacheBuilder<Object, Object> builder = newCacheBuilder(descriptor);
+        if (descriptor.cacheMaxSize != null) {
+            builder = builder.maximumSize(descriptor.cacheMaxSize.longValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates the cache of compact states, bounded by their size in bytes if configured.
+     *
+     * @since 11.1
+     */
+    protected Cache<String, CompactState> newCompactCache(DBSRepositoryDescriptor descriptor) {
+        if (descriptor.cacheMaxBytes == null) {
+            return newCache(descriptor);
+        }
+        return newCacheBuilder(descriptor).maximumWeight(descriptor.cacheMaxBytes.longValue())
+                                          .weigher((String id, CompactState state) -> state.getSize())
+                                          .build();
+    }
+
+    protected CacheBuilder<Object, Object> newCacheBuilder(DBSRepositoryDescriptor descriptor) {
         CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
         builder = builder.expireAfterWrite(descriptor.cacheTTL.longValue(), TimeUnit.MINUTES).recordStats();
         if (descriptor.cacheConcurrencyLevel != null) {
             builder = builder.concurrencyLevel(descriptor.cacheConcurrencyLevel.intValue());
         }
-        if (descriptor.cacheMaxSize != null) {
-            builder = builder.maximumSize(descriptor.cacheMaxSize.longValue());
-        }
-        return builder.build();
+        return builder;
     }
 
     protected void initClusterInvalidator(DBSRepositoryDescriptor descriptor) {
@@ -150,8 +196,9 @@ public class DBSCachingRepository implements DBSRepository {
     public void shutdown() {
         repository.shutdown();
         // Clear caches
-        cache.invalidateAll();
+        documentCache.invalidateAll();
         childCache.invalidateAll();
+        inheritedACLCache.close();
         // Remove metrics
         String cacheName = MetricRegistry.name("nuxeo", "repositories", repository.getName(), "cache");
         String childCacheName = MetricRegistry.name("nuxeo", "repositories", repository.getName(), "childCache");
@@ -168,7 +215,7 @@ public class DBSCachingRepository implements DBSRepository {
 
     @Override
     public State readState(String id) {
-        State state = cache.getIfPresent(id);
+        State state = getCachedState(id);
         if (state == null) {
             state = repository.readState(id);
             if (state != null) {
@@ -180,13 +227,20 @@ public class DBSCachingRepository implements DBSRepository {
 
     @Override
     public State readPartialState(String id, Collection<String> keys) {
+        if (compactCache != null) {
+            // compact states can be partially decoded
+            CompactState compactState = compactCache.getIfPresent(id);
+            if (compactState != null) {
+                return compactState.toState(keys == null || keys.isEmpty() ? null : keys);
+            }
+        }
         // bypass caches, as the goal of this method is to not trash caches for one-shot reads
         return repository.readPartialState(id, keys);
     }
 
     @Override
     public List<State> readStates(List<String> ids) {
-        ImmutableMap<String, State> statesMap = cache.getAllPresent(ids);
+        Map<String, State> statesMap = getAllCachedStates(ids);
         List<String> idsToRetrieve = new ArrayList<>(ids);
         idsToRetrieve.removeAll(statesMap.keySet());
         // Read missing states from repository
@@ -215,13 +269,46 @@ public class DBSCachingRepository implements DBSRepository {
     @Override
     public void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
         repository.updateState(id, diff, changeTokenUpdater);
+        // invalidate documents first, so that inherited ACLs are not recomputed from stale cached states
         invalidate(id);
+        if (isInheritedACLChange(diff)) {
+            inheritedACLCache.invalidate(Collections.singleton(id));
+        }
+    }
+
+    @Override
+    public void updateStates(List<StateUpdate> updates) {
+        try {
+            repository.updateStates(updates);
+        } finally {
+            // some updates may have been done even in case of failure
+            invalidateAll(updates.stream().map(update -> update.id).collect(Collectors.toList()));
+            inheritedACLCache.invalidate(updates.stream()
+                                                .filter(update -> isInheritedACLChange(update.diff))
+                                                .map(update -> update.id)
+                                                .collect(Collectors.toSet()));
+        }
     }
 
     @Override
     public void deleteStates(Set<String> ids) {
         repository.deleteStates(ids);
         invalidateAll(ids);
+        inheritedACLCache.invalidate(ids);
+    }
+
+    /**
+     * Checks if a diff changes the ACLs inherited by the children of the document: its ACP or its parent.
+     *
+     * @since 11.1
+     */
+    protected boolean isInheritedACLChange(StateDiff diff) {
+        return diff.containsKey(KEY_ACP) || diff.containsKey(KEY_PARENT_ID);
+    }
+
+    @Override
+    public InheritedACLCache getInheritedACLCache() {
+        return inheritedACLCache;
     }
 
     @Override
@@ -231,7 +318,7 @@ public class DBSCachingRepository implements DBSRepository {
         String childCacheKey = computeChildCacheKey(parentId, name);
         String stateId = childCache.getIfPresent(childCacheKey);
         if (stateId != null) {
-            State state = cache.getIfPresent(stateId);
+            State state = getCachedState(stateId);
             if (state != null) {
                 // As we don't have invalidation for childCache we need to check if retrieved state is the right one
                 // and not a previous document which was moved or renamed
@@ -248,10 +335,36 @@ public class DBSCachingRepository implements DBSRepository {
         return state;
     }
 
+    private State getCachedState(String id) {
+        if (compactCache != null) {
+            CompactState compactState = compactCache.getIfPresent(id);
+            return compactState == null ? null : compactState.toState();
+        }
+        return cache.getIfPresent(id);
+    }
+
+    private Map<String, State> getAllCachedStates(List<String> ids) {
+        if (compactCache != null) {
+            Map<String, State> states = new HashMap<>();
+            compactCache.getAllPresent(ids).forEach((id, compactState) -> states.put(id, compactState.toState()));
+            return states;
+        }
+        return cache.getAllPresent(ids);
+    }
+
     private void putInCache(State state) {
         if (state != null) {
             String stateId = state.get(KEY_ID).toString();
-            cache.put(stateId, state);
+            if (compactCache != null) {
+                CompactState compactState = CompactState.of(state);
+                if (compactState == null) {
+                    // unsupported values, don't cache
+                    return;
+                }
+                compactCache.put(stateId, compactState);
+            } else {
+                cache.put(stateId, state);
+            }
             Object stateParentId = state.get(KEY_PARENT_ID);
             if (stateParentId != null) {
                 childCache.put(computeChildCacheKey(stateParentId.toString(), state.get(KEY_NAME).toString()), stateId);
@@ -268,7 +381,7 @@ public class DBSCachingRepository implements DBSRepository {
     }
 
     private void invalidateAll(Collection<String> ids) {
-        cache.invalidateAll(ids);
+        documentCache.invalidateAll(ids);
         if (clusterInvalidator != null) {
             synchronized (invalidations) {
                 invalidations.addAll(ids);
@@ -291,10 +404,13 @@ public class DBSCachingRepository implements DBSRepository {
         if (clusterInvalidator != null) {
             DBSInvalidations invalidations = clusterInvalidator.receiveInvalidations();
             if (invalidations.all) {
-                cache.invalidateAll();
+                documentCache.invalidateAll();
                 childCache.invalidateAll();
+                inheritedACLCache.invalidateAll();
             } else if (invalidations.ids != null) {
-                cache.invalidateAll(invalidations.ids);
+                documentCache.invalidateAll(invalidations.ids);
+                // we don't know what changed remotely, invalidate the subtrees of all modified documents
+                inheritedACLCache.invalidate(invalidations.ids);
             }
         }
     }
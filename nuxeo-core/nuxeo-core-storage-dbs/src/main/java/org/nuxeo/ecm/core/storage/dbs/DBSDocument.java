@@ -535,11 +535,7 @@ public class DBSDocument extends BaseDocument<State> {
     @Override
     public List<Document> getVersions() {
         List<String> ids = session.getVersionsIds(getVersionSeriesId());
-        List<Document> versions = new ArrayList<>();
-        for (String id : ids) {
-            versions.add(session.getDocument(id));
-        }
-        return versions;
+        return session.getDocuments(ids);
     }
 
     @Override
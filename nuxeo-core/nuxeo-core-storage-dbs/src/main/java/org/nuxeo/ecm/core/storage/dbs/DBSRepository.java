@@ -31,9 +31,11 @@ import org.nuxeo.ecm.core.blob.BlobManager;
 import org.nuxeo.ecm.core.model.LockManager;
 import org.nuxeo.ecm.core.model.Repository;
 import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
+import org.nuxeo.ecm.core.security.InheritedACLCache;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 
 /**
  * Interface for a {@link Repository} for Document-Based Storage.
@@ -144,6 +146,18 @@ public interface DBSRepository extends Repository, LockManager {
      */
     void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater);
 
+    /**
+     * Updates documents.
+     * <p>
+     * If an update fails, the updates following it may or may not have been done.
+     *
+     * @param updates the updates to do
+     * @since 11.1
+     */
+    default void updateStates(List<StateUpdate> updates) {
+        updates.forEach(update -> updateState(update.id, update.diff, update.changeTokenUpdater));
+    }
+
     /**
      * Deletes a set of document.
      *
@@ -317,6 +331,17 @@ public interface DBSRepository extends Repository, LockManager {
 
     }
 
+    /**
+     * Gets the cache of the ACLs inherited by the children of documents, or {@code null} if there is none.
+     * <p>
+     * The cache is only available when the repository can invalidate it, which is the case of the caching layer.
+     *
+     * @since 11.1
+     */
+    default InheritedACLCache getInheritedACLCache() {
+        return null;
+    }
+
     /**
      * Abstracts queries with operators.
      *
@@ -116,6 +116,33 @@ public class DBSRepositoryDescriptor implements Cloneable {
     @XNode("cache@concurrencyLevel")
     public Integer cacheConcurrencyLevel;
 
+    /**
+     * Whether the cached states are kept in a compact binary form, see {@link CompactState}.
+     *
+     * @since 11.1
+     */
+    @XNode("cache@compact")
+    private Boolean cacheCompact;
+
+    /** @since 11.1 */
+    public boolean isCacheCompact() {
+        return defaultFalse(cacheCompact);
+    }
+
+    /** @since 11.1 */
+    public void setCacheCompact(boolean compact) {
+        cacheCompact = Boolean.valueOf(compact);
+    }
+
+    /**
+     * The maximum size in bytes of the compact states kept in cache. Used instead of {@link #cacheMaxSize} for the
+     * document cache when the cache is compact.
+     *
+     * @since 11.1
+     */
+    @XNode("cache@maxBytes")
+    public Long cacheMaxBytes;
+
     /** @since 8.10 */
     @XNode("clustering/invalidatorClass")
     public Class<? extends DBSClusterInvalidator> clusterInvalidatorClass;
@@ -171,6 +198,12 @@ public class DBSRepositoryDescriptor implements Cloneable {
         if (other.cacheConcurrencyLevel != null) {
             cacheConcurrencyLevel = other.cacheConcurrencyLevel;
         }
+        if (other.cacheCompact != null) {
+            cacheCompact = other.cacheCompact;
+        }
+        if (other.cacheMaxBytes != null) {
+            cacheMaxBytes = other.cacheMaxBytes;
+        }
         if (other.clusterInvalidatorClass != null) {
             clusterInvalidatorClass = other.clusterInvalidatorClass;
         }
@@ -80,6 +80,7 @@ import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -140,6 +141,8 @@ import org.nuxeo.ecm.core.schema.types.Type;
 import org.nuxeo.ecm.core.schema.types.primitives.BooleanType;
 import org.nuxeo.ecm.core.schema.types.primitives.DateType;
 import org.nuxeo.ecm.core.schema.types.primitives.StringType;
+import org.nuxeo.ecm.core.security.InheritedACLCache;
+import org.nuxeo.ecm.core.security.InheritedACLCache.InheritedACL;
 import org.nuxeo.ecm.core.storage.ExpressionEvaluator;
 import org.nuxeo.ecm.core.storage.QueryOptimizer;
 import org.nuxeo.ecm.core.storage.State;
@@ -186,6 +189,22 @@ public class DBSSession implements Session<QueryFilter> {
 
     protected boolean isLatestVersionDisabled = false;
 
+    /**
+     * Whether this transaction changed ACPs or parents, in which case the repository cache of inherited ACLs, which
+     * reflects saved state, is not used anymore by this session.
+     *
+     * @since 11.1
+     */
+    protected boolean inheritedACLsChanged;
+
+    /**
+     * The generation of the repository cache of inherited ACLs when the transient states of this session were last
+     * cleared. All the states read by this session since then were read after this generation.
+     *
+     * @since 11.1
+     */
+    protected long inheritedACLGeneration;
+
     public DBSSession(DBSRepository repository) {
         this.repository = repository;
         transaction = new DBSTransactionState(repository, this);
@@ -197,6 +216,7 @@ public class DBSSession implements Session<QueryFilter> {
         queryTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repository.getName(), "queries"));
         LOG_MIN_DURATION_NS = Long.parseLong(Framework.getProperty(LOG_MIN_DURATION_KEY, "-1")) * 1000000;
         isLatestVersionDisabled = Framework.isBooleanPropertyTrue(DISABLED_ISLATESTVERSION_PROPERTY);
+        resetInheritedACLGeneration();
     }
 
     @Override
@@ -222,6 +242,7 @@ public class DBSSession implements Session<QueryFilter> {
             transaction.save();
             if (!TransactionHelper.isTransactionActiveOrMarkedRollback()) {
                 transaction.commit();
+                resetInheritedACLGeneration();
             }
         } finally {
             timerContext.stop();
@@ -230,14 +251,29 @@ public class DBSSession implements Session<QueryFilter> {
 
     public void begin() {
         transaction.begin();
+        resetInheritedACLGeneration();
     }
 
     public void commit() {
         transaction.commit();
+        inheritedACLsChanged = false;
+        resetInheritedACLGeneration();
     }
 
     public void rollback() {
         transaction.rollback();
+        inheritedACLsChanged = false;
+        resetInheritedACLGeneration();
+    }
+
+    /**
+     * Records the generation of the inherited ACLs cache, called when no transient state is held.
+     *
+     * @since 11.1
+     */
+    protected void resetInheritedACLGeneration() {
+        InheritedACLCache cache = repository.getInheritedACLCache();
+        inheritedACLGeneration = cache == null ? 0 : cache.getGeneration();
     }
 
     protected BlobManager getBlobManager() {
@@ -355,6 +391,7 @@ public class DBSSession implements Session<QueryFilter> {
             // sort children in order
             docStates.sort(POS_COMPARATOR);
         }
+        prefetchProxyTargets(docStates);
         List<Document> children = new ArrayList<>(docStates.size());
         for (DBSDocumentState docState : docStates) {
             try {
@@ -408,6 +445,11 @@ public class DBSSession implements Session<QueryFilter> {
         throw new DocumentNotFoundException(id);
     }
 
+    @Override
+    public List<Document> getDocumentsByUUIDs(List<String> uuids) {
+        return getDocuments(uuids);
+    }
+
     @Override
     public Document getRootDocument() {
         return getDocument(getRootId());
@@ -425,6 +467,7 @@ public class DBSSession implements Session<QueryFilter> {
 
     protected List<Document> getDocuments(List<String> ids) {
         List<DBSDocumentState> docStates = transaction.getStatesForUpdate(ids);
+        prefetchProxyTargets(docStates);
         List<Document> docs = new ArrayList<>(ids.size());
         for (DBSDocumentState docState : docStates) {
             try {
@@ -437,6 +480,27 @@ public class DBSSession implements Session<QueryFilter> {
         return docs;
     }
 
+    /**
+     * Fetches in one batch the targets of the proxies among the given states, so that they are not fetched one by one
+     * when creating the documents.
+     *
+     * @since 11.1
+     */
+    protected void prefetchProxyTargets(List<DBSDocumentState> docStates) {
+        Set<String> targetIds = new LinkedHashSet<>();
+        for (DBSDocumentState docState : docStates) {
+            if (TRUE.equals(docState.get(KEY_IS_PROXY))) {
+                String targetId = (String) docState.get(KEY_PROXY_TARGET_ID);
+                if (targetId != null) {
+                    targetIds.add(targetId);
+                }
+            }
+        }
+        if (!targetIds.isEmpty()) {
+            transaction.getStatesForUpdate(targetIds);
+        }
+    }
+
     protected DBSDocument getDocument(DBSDocumentState docState) {
         return getDocument(docState, true);
     }
@@ -855,6 +919,7 @@ public class DBSSession implements Session<QueryFilter> {
         // do the move
         sourceState.put(KEY_NAME, name);
         sourceState.put(KEY_PARENT_ID, parentId);
+        inheritedACLsChanged(sourceId);
 
         // update ancestors on all sub-children
         Object[] oldAncestorIds = (Object[]) sourceState.get(KEY_ANCESTOR_IDS);
@@ -1065,6 +1130,7 @@ public class DBSSession implements Session<QueryFilter> {
             docStates = transaction.getKeyValuedStates(KEY_PROXY_VERSION_SERIES_ID, versionSeriesId);
         }
 
+        prefetchProxyTargets(docStates);
         String parentId = folder == null ? null : folder.getUUID();
         List<Document> documents = new ArrayList<>(docStates.size());
         for (DBSDocumentState docState : docStates) {
@@ -1108,6 +1174,7 @@ public class DBSSession implements Session<QueryFilter> {
     @Override
     public Document importDocument(String id, Document parent, String name, String typeName,
             Map<String, Serializable> properties) {
+        inheritedACLsChanged(id);
         String parentId = parent == null ? null : parent.getUUID();
         boolean isProxy = typeName.equals(CoreSession.IMPORT_PROXY_TYPE);
         Map<String, Serializable> props = new HashMap<>();
@@ -1296,9 +1363,28 @@ public class DBSSession implements Session<QueryFilter> {
     }
 
     protected ACL getInheritedACLs(Document doc) {
-        doc = doc.getParent();
+        Document parent = doc.getParent();
+        if (parent == null) {
+            return null;
+        }
+        InheritedACLCache cache = repository.getInheritedACLCache();
+        if (cache == null || inheritedACLsChanged) {
+            return computeInheritedACLs(parent).acl;
+        }
+        // not cached if an invalidation happened since the states of this session were read
+        return cache.get(parent.getUUID(), inheritedACLGeneration, () -> computeInheritedACLs(parent));
+    }
+
+    /**
+     * Computes the ACL inherited by the children of a document, walking up its ancestors.
+     *
+     * @since 11.1
+     */
+    protected InheritedACL computeInheritedACLs(Document doc) {
+        Set<String> ids = new HashSet<>();
         ACL merged = null;
         while (doc != null) {
+            ids.add(doc.getUUID());
             ACP acp = getACP(doc);
             if (acp != null) {
                 ACL acl = acp.getMergedACLs(ACL.INHERITED_ACL);
@@ -1313,7 +1399,21 @@ public class DBSSession implements Session<QueryFilter> {
             }
             doc = doc.getParent();
         }
-        return merged;
+        return new InheritedACL(merged, ids);
+    }
+
+    /**
+     * Records that the ACLs inherited from a document changed in this transaction.
+     *
+     * @since 11.1
+     */
+    protected void inheritedACLsChanged(String id) {
+        inheritedACLsChanged = true;
+        InheritedACLCache cache = repository.getInheritedACLCache();
+        if (cache != null) {
+            // entries computed by this session from transient state
+            cache.invalidate(Collections.singleton(id));
+        }
     }
 
     protected ACP getACP(Document doc) {
@@ -1334,6 +1434,7 @@ public class DBSSession implements Session<QueryFilter> {
         String id = doc.getUUID();
         DBSDocumentState docState = transaction.getStateForUpdate(id);
         docState.put(KEY_ACP, acpToMem(acp));
+        inheritedACLsChanged(id);
 
         // update read acls
         transaction.updateTreeReadAcls(id);
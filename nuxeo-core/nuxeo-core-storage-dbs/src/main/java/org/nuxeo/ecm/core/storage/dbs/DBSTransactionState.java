@@ -787,6 +787,8 @@ public class DBSTransactionState {
         if (!statesToCreate.isEmpty()) {
             repository.createStates(statesToCreate);
         }
+        List<StateUpdate> updates = new ArrayList<>();
+        List<DBSDocumentState> updatedStates = new ArrayList<>();
         for (DBSDocumentState docState : transientStates.values()) {
             String id = docState.getId();
             if (transientCreated.contains(id)) {
@@ -794,32 +796,36 @@ public class DBSTransactionState {
             }
             StateDiff diff = docState.getStateChange();
             if (diff != null) {
-                try {
-                    if (undoLog != null) {
-                        if (!undoLog.containsKey(id)) {
-                            undoLog.put(id, StateHelper.deepCopy(docState.getOriginalState()));
-                        }
-                        // else there's already a create or an update in the undo log so original info is enough
+                if (undoLog != null) {
+                    if (!undoLog.containsKey(id)) {
+                        undoLog.put(id, StateHelper.deepCopy(docState.getOriginalState()));
                     }
-                    ChangeTokenUpdater changeTokenUpdater;
-                    if (session.changeTokenEnabled) {
-                        // increment system change token
-                        Long base = (Long) docState.get(KEY_SYS_CHANGE_TOKEN);
-                        docState.put(KEY_SYS_CHANGE_TOKEN, DeltaLong.valueOf(base, 1));
-                        diff.put(KEY_SYS_CHANGE_TOKEN, DeltaLong.valueOf(base, 1));
-                        // update change token if applicable (user change)
-                        if (userChangeIds.contains(id)) {
-                            changeTokenUpdater = new ChangeTokenUpdater(docState);
-                        } else {
-                            changeTokenUpdater = null;
-                        }
+                    // else there's already a create or an update in the undo log so original info is enough
+                }
+                ChangeTokenUpdater changeTokenUpdater;
+                if (session.changeTokenEnabled) {
+                    // increment system change token
+                    Long base = (Long) docState.get(KEY_SYS_CHANGE_TOKEN);
+                    docState.put(KEY_SYS_CHANGE_TOKEN, DeltaLong.valueOf(base, 1));
+                    diff.put(KEY_SYS_CHANGE_TOKEN, DeltaLong.valueOf(base, 1));
+                    // update change token if applicable (user change)
+                    if (userChangeIds.contains(id)) {
+                        changeTokenUpdater = new ChangeTokenUpdater(docState);
                     } else {
                         changeTokenUpdater = null;
                     }
-                    repository.updateState(id, diff, changeTokenUpdater);
-                } finally {
-                    docState.setNotDirty();
+                } else {
+                    changeTokenUpdater = null;
                 }
+                updates.add(new StateUpdate(id, diff, changeTokenUpdater));
+                updatedStates.add(docState);
+            }
+        }
+        if (!updates.isEmpty()) {
+            try {
+                repository.updateStates(updates);
+            } finally {
+                updatedStates.forEach(DBSDocumentState::setNotDirty);
             }
         }
         transientCreated.clear();
@@ -871,6 +877,26 @@ public class DBSTransactionState {
         }
     }
 
+    /**
+     * An update to a document, see {@link DBSRepository#updateStates}.
+     *
+     * @since 11.1
+     */
+    public static class StateUpdate {
+
+        public final String id;
+
+        public final StateDiff diff;
+
+        public final ChangeTokenUpdater changeTokenUpdater;
+
+        public StateUpdate(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
+            this.id = id;
+            this.diff = diff;
+            this.changeTokenUpdater = changeTokenUpdater;
+        }
+    }
+
     protected void applyUndoLog() {
         Set<String> deletes = new HashSet<>();
         for (Entry<String, State> es : undoLog.entrySet()) {
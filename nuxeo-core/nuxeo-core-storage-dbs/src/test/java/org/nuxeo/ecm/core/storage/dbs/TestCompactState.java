@@ -0,0 +1,90 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.StateHelper;
+
+public class TestCompactState {
+
+    protected static State newState() {
+        State state = new State();
+        state.put("ecm:id", "123");
+        state.put("ecm:name", "déjà vu");
+        state.put("ecm:isProxy", Boolean.FALSE);
+        state.put("dc:count", Long.valueOf(42));
+        state.put("dc:ratio", Double.valueOf(0.5));
+        Calendar cal = new GregorianCalendar(TimeZone.getTimeZone("Europe/Paris"));
+        cal.setTimeInMillis(1234567890123L);
+        state.put("dc:created", cal);
+        state.put("dc:subjects", new String[] { "foo", "bar" });
+        state.put("ecm:ancestorIds", new Object[] { "1", "2" });
+        State acl = new State();
+        acl.put("name", "local");
+        List<Serializable> acls = new ArrayList<>();
+        acls.add(acl);
+        state.put("ecm:acp", (Serializable) acls);
+        State complex = new State();
+        complex.put("street", "main");
+        complex.put("number", Long.valueOf(1));
+        state.put("addr", complex);
+        return state;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        State state = newState();
+        CompactState compactState = CompactState.of(state);
+        State decoded = compactState.toState();
+        assertTrue(StateHelper.equalsStrict(state, decoded));
+        assertEquals(String[].class, decoded.get("dc:subjects").getClass());
+        assertEquals(Object[].class, decoded.get("ecm:ancestorIds").getClass());
+        assertEquals(state.get("dc:created"), decoded.get("dc:created"));
+        // each decode returns new objects
+        assertNotSame(decoded.get("addr"), compactState.toState().get("addr"));
+    }
+
+    @Test
+    public void testPartialDecode() {
+        CompactState compactState = CompactState.of(newState());
+        State partial = compactState.toState(Arrays.asList("ecm:name", "addr", "missing"));
+        assertEquals(2, partial.size());
+        assertEquals("déjà vu", partial.get("ecm:name"));
+        assertEquals("main", ((State) partial.get("addr")).get("street"));
+    }
+
+    @Test
+    public void testUnsupportedValue() {
+        State state = new State();
+        state.put("foo", Integer.valueOf(1));
+        assertNull(CompactState.of(state));
+    }
+
+}
@@ -19,9 +19,11 @@
 package org.nuxeo.ecm.core.storage.dbs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -40,8 +42,10 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 import org.nuxeo.runtime.test.runner.Deploy;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
@@ -138,6 +142,61 @@ public class TestDBSCachingRepository {
         verify(subRepository, times(2)).readState(eq(id));
     }
 
+    @Test
+    public void testUpdateStates() {
+        String id1 = "ID1";
+        String id2 = "ID2";
+
+        // First add the states in cache
+        repository.readState(id1);
+        repository.readState(id2);
+        repository.readState(id1);
+        repository.readState(id2);
+        verify(subRepository, times(1)).readState(eq(id1));
+        verify(subRepository, times(1)).readState(eq(id2));
+
+        // Second update these states in one call
+        List<StateUpdate> updates = Arrays.asList(new StateUpdate(id1, mock(StateDiff.class), null),
+                new StateUpdate(id2, mock(StateDiff.class), null));
+        repository.updateStates(updates);
+        verify(subRepository, times(1)).updateStates(eq(updates));
+
+        // Check states are no longer in cache
+        repository.readState(id1);
+        repository.readState(id2);
+        verify(subRepository, times(2)).readState(eq(id1));
+        verify(subRepository, times(2)).readState(eq(id2));
+    }
+
+    @Test
+    public void testUpdateStatesFailure() {
+        String id1 = "ID1";
+        String id2 = "ID2";
+
+        // First add the states in cache
+        repository.readState(id1);
+        repository.readState(id2);
+        verify(subRepository, times(1)).readState(eq(id1));
+        verify(subRepository, times(1)).readState(eq(id2));
+
+        // Second fail to update these states, the first update may have been done
+        List<StateUpdate> updates = Arrays.asList(new StateUpdate(id1, mock(StateDiff.class), null),
+                new StateUpdate(id2, mock(StateDiff.class), null));
+        doThrow(new ConcurrentUpdateException(id2)).when(subRepository).updateStates(eq(updates));
+        try {
+            repository.updateStates(updates);
+            fail("should fail with a concurrent update");
+        } catch (ConcurrentUpdateException e) {
+            assertEquals(id2, e.getMessage());
+        }
+
+        // Check states are no longer in cache
+        repository.readState(id1);
+        repository.readState(id2);
+        verify(subRepository, times(2)).readState(eq(id1));
+        verify(subRepository, times(2)).readState(eq(id2));
+    }
+
     @Test
     public void testDeleteStates() {
         String id = "ID";
@@ -27,6 +27,8 @@ import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_LOCK_CREATED;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_LOCK_OWNER;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PARENT_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PROXY_TARGET_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_VERSION_SERIES_ID;
 
 import java.io.Serializable;
 import java.lang.reflect.Array;
@@ -35,6 +37,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -44,6 +47,7 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import javax.resource.spi.ConnectionManager;
@@ -78,6 +82,9 @@ import org.nuxeo.runtime.api.Framework;
  * <p>
  * Internally, the repository is a map from id to document object.
  * <p>
+ * Secondary indexes are maintained on the parent id and name, the ancestor ids, the proxy target id and the version
+ * series id, so that the corresponding lookups don't have to scan all the documents.
+ * <p>
  * A document object is a JSON-like document stored as a Map recursively containing the data, see {@link DBSDocument}
  * for the description of the document.
  *
@@ -97,6 +104,27 @@ public class MemRepository extends DBSRepositoryBase {
      */
     protected Map<String, State> states;
 
+    /**
+     * Index of the documents by parent id and name.
+     *
+     * @since 11.1
+     */
+    protected MemIndex childIndex;
+
+    /**
+     * Index of the documents by ancestor id.
+     *
+     * @since 11.1
+     */
+    protected MemIndex ancestorsIndex;
+
+    /**
+     * Indexes of the documents by value of a single-valued key, usable by {@link #queryKeyValue}.
+     *
+     * @since 11.1
+     */
+    protected Map<String, MemIndex> keyIndexes;
+
     public MemRepository(ConnectionManager cm, MemRepositoryDescriptor descriptor) {
         super(cm, descriptor.name, descriptor);
         initRepository();
@@ -111,13 +139,48 @@ public class MemRepository extends DBSRepositoryBase {
     public void shutdown() {
         super.shutdown();
         states = null;
+        childIndex = null;
+        ancestorsIndex = null;
+        keyIndexes = null;
     }
 
     protected void initRepository() {
         states = new ConcurrentHashMap<>();
+        initIndexes();
         initRoot();
     }
 
+    /**
+     * @since 11.1
+     */
+    protected void initIndexes() {
+        childIndex = new MemIndex(state -> {
+            Object parentId = state.get(KEY_PARENT_ID);
+            Object name = state.get(KEY_NAME);
+            return parentId == null || name == null ? Collections.emptyList()
+                    : Collections.singletonList(Arrays.asList(parentId, name));
+        });
+        ancestorsIndex = new MemIndex(state -> {
+            Object[] array = (Object[]) state.get(KEY_ANCESTOR_IDS);
+            return array == null ? Collections.emptyList() : Arrays.asList(array.clone());
+        });
+        keyIndexes = new HashMap<>();
+        for (String key : Arrays.asList(KEY_PARENT_ID, KEY_PROXY_TARGET_ID, KEY_VERSION_SERIES_ID)) {
+            keyIndexes.put(key, new MemIndex(state -> {
+                Object value = state.get(key);
+                return value == null ? Collections.emptyList() : Collections.singletonList(value);
+            }));
+        }
+    }
+
+    protected List<MemIndex> getIndexes() {
+        List<MemIndex> indexes = new ArrayList<>(keyIndexes.size() + 2);
+        indexes.add(childIndex);
+        indexes.add(ancestorsIndex);
+        indexes.addAll(keyIndexes.values());
+        return indexes;
+    }
+
     @Override
     public String generateNewId() {
         if (DEBUG_UUIDS) {
@@ -176,7 +239,13 @@ public class MemRepository extends DBSRepositoryBase {
         }
         state = StateHelper.deepCopy(state, true); // thread-safe
         StateHelper.resetDeltas(state);
-        states.put(id, state);
+        synchronized (state) {
+            // index before publishing the state, so that a lookup never misses it once it is readable
+            for (MemIndex index : getIndexes()) {
+                index.add(id, index.getValues(state));
+            }
+            states.put(id, state);
+        }
     }
 
     @Override
@@ -189,7 +258,12 @@ public class MemRepository extends DBSRepositoryBase {
             throw new ConcurrentUpdateException("Missing: " + id);
         }
         synchronized (state) {
-            // synchronization needed for atomic change token
+            // synchronization needed for atomic change token and index maintenance
+            List<MemIndex> indexes = getIndexes();
+            List<Collection<Object>> oldValues = new ArrayList<>(indexes.size());
+            for (MemIndex index : indexes) {
+                oldValues.add(index.getValues(state));
+            }
             if (changeTokenUpdater != null) {
                 for (Entry<String, Serializable> en : changeTokenUpdater.getConditions().entrySet()) {
                     if (!Objects.equals(state.get(en.getKey()), en.getValue())) {
@@ -201,6 +275,9 @@ public class MemRepository extends DBSRepositoryBase {
                 }
             }
             applyDiff(state, diff);
+            for (int i = 0; i < indexes.size(); i++) {
+                indexes.get(i).update(id, oldValues.get(i), state);
+            }
         }
     }
 
@@ -209,17 +286,24 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: REMOVE " + ids);
         }
+        List<MemIndex> indexes = getIndexes();
         for (String id : ids) {
-            if (states.remove(id) == null) {
+            State state = states.remove(id);
+            if (state == null) {
                 log.debug("Missing on remove: " + id);
+                continue;
+            }
+            synchronized (state) {
+                for (MemIndex index : indexes) {
+                    index.remove(id, index.getValues(state));
+                }
             }
         }
     }
 
     @Override
     public State readChildState(String parentId, String name, Set<String> ignored) {
-        // TODO optimize by maintaining a parent/child index
-        for (State state : states.values()) {
+        for (State state : getStates(childIndex, Arrays.asList(parentId, name))) {
             if (ignored.contains(state.get(KEY_ID))) {
                 continue;
             }
@@ -245,7 +329,7 @@ public class MemRepository extends DBSRepositoryBase {
             log.trace("Mem: QUERY " + key + " = " + value);
         }
         List<State> list = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : getStates(key, value)) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -266,8 +350,9 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + key1 + " = " + value1 + " AND " + key2 + " = " + value2);
         }
+        Collection<State> candidates = keyIndexes.containsKey(key1) ? getStates(key1, value1) : getStates(key2, value2);
         List<State> list = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : candidates) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -293,15 +378,42 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + KEY_ANCESTOR_IDS + " = " + rootId);
         }
-        Stream<State> stream = states.values() //
-                                     .stream()
-                                     .filter(state -> hasAncestor(state, rootId));
+        Stream<State> stream = getStates(ancestorsIndex, rootId).stream() //
+                                                                 .filter(state -> hasAncestor(state, rootId));
         if (limit != 0) {
             stream = stream.limit(limit);
         }
         return stream;
     }
 
+    /**
+     * Gets the candidate states for a key/value lookup, using an index if the key is indexed. The caller must still
+     * check the value of the returned states.
+     *
+     * @since 11.1
+     */
+    protected Collection<State> getStates(String key, Object value) {
+        MemIndex index = keyIndexes.get(key);
+        return index == null ? states.values() : getStates(index, value);
+    }
+
+    /**
+     * Gets the states indexed under the given value. The caller must still check the value of the returned states, as
+     * they may have been concurrently updated.
+     *
+     * @since 11.1
+     */
+    protected List<State> getStates(MemIndex index, Object value) {
+        List<State> list = new ArrayList<>();
+        for (String id : index.get(value)) {
+            State state = states.get(id);
+            if (state != null) {
+                list.add(state);
+            }
+        }
+        return list;
+    }
+
     protected static boolean hasAncestor(State state, String id) {
         Object[] array = (Object[]) state.get(KEY_ANCESTOR_IDS);
         return array == null ? false : Arrays.asList(array).contains(id);
@@ -312,7 +424,7 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + key + " = " + value);
         }
-        for (State state : states.values()) {
+        for (State state : getStates(key, value)) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -647,4 +759,68 @@ public class MemRepository extends DBSRepositoryBase {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * A hash index from values computed from a document to the ids of the documents having them.
+     *
+     * @since 11.1
+     */
+    protected static class MemIndex {
+
+        protected final Map<Object, Set<String>> map = new ConcurrentHashMap<>();
+
+        protected final Function<State, Collection<Object>> valuesFunction;
+
+        public MemIndex(Function<State, Collection<Object>> valuesFunction) {
+            this.valuesFunction = valuesFunction;
+        }
+
+        /**
+         * Computes the values under which a document is indexed.
+         */
+        public Collection<Object> getValues(State state) {
+            return valuesFunction.apply(state);
+        }
+
+        public Set<String> get(Object value) {
+            Set<String> ids = map.get(value);
+            return ids == null ? Collections.emptySet() : ids;
+        }
+
+        public void add(String id, Collection<Object> values) {
+            for (Object value : values) {
+                map.compute(value, (k, ids) -> {
+                    if (ids == null) {
+                        ids = ConcurrentHashMap.newKeySet();
+                    }
+                    ids.add(id);
+                    return ids;
+                });
+            }
+        }
+
+        public void remove(String id, Collection<Object> values) {
+            for (Object value : values) {
+                map.computeIfPresent(value, (k, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+
+        /**
+         * Updates the index for a document whose indexed values were previously the given ones.
+         */
+        public void update(String id, Collection<Object> oldValues, State state) {
+            Collection<Object> newValues = getValues(state);
+            if (newValues.equals(oldValues)) {
+                return;
+            }
+            // add before removing so that concurrent lookups never miss the document
+            add(id, newValues);
+            List<Object> removed = new ArrayList<>(oldValues);
+            removed.removeAll(newValues);
+            remove(id, removed);
+        }
+    }
+
 }
@@ -0,0 +1,173 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PARENT_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PROXY_TARGET_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_VERSION_SERIES_ID;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.ecm.core.storage.mem.MemRepository.MemIndex;
+
+/**
+ * Checks that the lookups using the secondary indexes give the same results as a scan of all the documents.
+ */
+public class TestMemRepositoryIndexes {
+
+    protected static final List<String> IDS = Arrays.asList("root", "f1", "f2", "d1", "d2", "p1", "v1");
+
+    protected static final List<String> KEYS = Arrays.asList(KEY_PARENT_ID, KEY_PROXY_TARGET_ID,
+            KEY_VERSION_SERIES_ID, KEY_NAME);
+
+    protected MemRepository repository;
+
+    @Before
+    public void setUp() {
+        // no runtime needed to exercise the states and their indexes
+        repository = mock(MemRepository.class, CALLS_REAL_METHODS);
+        repository.states = new ConcurrentHashMap<>();
+        repository.initIndexes();
+    }
+
+    protected static State state(Serializable... values) {
+        State state = new State();
+        for (int i = 0; i < values.length; i += 2) {
+            state.put((String) values[i], values[i + 1]);
+        }
+        return state;
+    }
+
+    protected static StateDiff diff(Serializable... values) {
+        StateDiff diff = new StateDiff();
+        for (int i = 0; i < values.length; i += 2) {
+            diff.put((String) values[i], values[i + 1]);
+        }
+        return diff;
+    }
+
+    protected static List<String> ids(Stream<State> states) {
+        return states.map(state -> (String) state.get(KEY_ID)).sorted().collect(Collectors.toList());
+    }
+
+    protected List<String> scan(String key, Object value) {
+        return ids(repository.states.values().stream().filter(state -> value.equals(state.get(key))));
+    }
+
+    protected List<String> scanDescendants(String id) {
+        return ids(repository.states.values().stream().filter(state -> {
+            Object[] ancestorIds = (Object[]) state.get(KEY_ANCESTOR_IDS);
+            return ancestorIds != null && Arrays.asList(ancestorIds).contains(id);
+        }));
+    }
+
+    protected static List<String> sorted(Collection<String> ids) {
+        return ids.stream().sorted().collect(Collectors.toList());
+    }
+
+    protected void assertIndexesMatchScan() {
+        for (String value : IDS) {
+            for (String key : KEYS) {
+                assertEquals(key + "=" + value, scan(key, value),
+                        ids(repository.queryKeyValue(key, value, Collections.emptySet()).stream()));
+                // no stale entries left in the index either
+                MemIndex index = repository.keyIndexes.get(key);
+                if (index != null) {
+                    assertEquals("index " + key + "=" + value, scan(key, value), sorted(index.get(value)));
+                }
+            }
+            assertEquals("descendants of " + value, scanDescendants(value),
+                    ids(repository.getDescendants(value, Collections.emptySet())));
+            assertEquals("ancestors index " + value, scanDescendants(value),
+                    sorted(repository.ancestorsIndex.get(value)));
+            for (String name : IDS) {
+                List<String> children = ids(repository.states.values()
+                                                             .stream()
+                                                             .filter(state -> value.equals(state.get(KEY_PARENT_ID))
+                                                                     && name.equals(state.get(KEY_NAME))));
+                State child = repository.readChildState(value, name, Collections.emptySet());
+                assertEquals(value + "/" + name, children,
+                        child == null ? Collections.emptyList() : Collections.singletonList(child.get(KEY_ID)));
+                assertEquals("child index " + value + "/" + name, children,
+                        sorted(repository.childIndex.get(Arrays.asList(value, name))));
+            }
+        }
+        assertEquals(scan(KEY_PARENT_ID, "f1").stream().filter(scan(KEY_NAME, "d1")::contains).collect(
+                Collectors.toList()),
+                ids(repository.queryKeyValue(KEY_PARENT_ID, "f1", KEY_NAME, "d1", Collections.emptySet()).stream()));
+    }
+
+    @Test
+    public void testIndexesAfterUpdates() {
+        repository.createState(state(KEY_ID, "root", KEY_NAME, ""));
+        repository.createState(state(KEY_ID, "f1", KEY_PARENT_ID, "root", KEY_NAME, "f1", //
+                KEY_ANCESTOR_IDS, new Object[] { "root" }));
+        repository.createState(state(KEY_ID, "f2", KEY_PARENT_ID, "root", KEY_NAME, "f2", //
+                KEY_ANCESTOR_IDS, new Object[] { "root" }));
+        repository.createState(state(KEY_ID, "d1", KEY_PARENT_ID, "f1", KEY_NAME, "d1", //
+                KEY_ANCESTOR_IDS, new Object[] { "root", "f1" }));
+        repository.createState(state(KEY_ID, "d2", KEY_PARENT_ID, "f1", KEY_NAME, "d2", //
+                KEY_ANCESTOR_IDS, new Object[] { "root", "f1" }, KEY_VERSION_SERIES_ID, "d2"));
+        repository.createState(state(KEY_ID, "v1", KEY_VERSION_SERIES_ID, "d2"));
+        repository.createState(state(KEY_ID, "p1", KEY_PARENT_ID, "f2", KEY_NAME, "p1", //
+                KEY_ANCESTOR_IDS, new Object[] { "root", "f2" }, KEY_PROXY_TARGET_ID, "d1"));
+        assertIndexesMatchScan();
+
+        // rename
+        repository.updateState("d1", diff(KEY_NAME, "f2"), null);
+        assertIndexesMatchScan();
+
+        // move d2 under f2, as done for a move with the descendants
+        repository.updateState("d2", diff(KEY_PARENT_ID, "f2", KEY_ANCESTOR_IDS, new Object[] { "root", "f2" }),
+                null);
+        assertIndexesMatchScan();
+
+        // move f2 under f1, its descendants get new ancestors
+        repository.updateState("f2", diff(KEY_PARENT_ID, "f1", KEY_ANCESTOR_IDS, new Object[] { "root", "f1" }),
+                null);
+        repository.updateState("d2", diff(KEY_ANCESTOR_IDS, new Object[] { "root", "f1", "f2" }), null);
+        repository.updateState("p1", diff(KEY_ANCESTOR_IDS, new Object[] { "root", "f1", "f2" }), null);
+        assertIndexesMatchScan();
+
+        // retarget the proxy, change the version series, clear a parent
+        repository.updateState("p1", diff(KEY_PROXY_TARGET_ID, "d2"), null);
+        repository.updateState("v1", diff(KEY_VERSION_SERIES_ID, "d1"), null);
+        repository.updateState("d1", diff(KEY_PARENT_ID, null, KEY_ANCESTOR_IDS, null), null);
+        assertIndexesMatchScan();
+
+        repository.deleteStates(new HashSet<>(Arrays.asList("d2", "p1")));
+        assertIndexesMatchScan();
+    }
+
+}
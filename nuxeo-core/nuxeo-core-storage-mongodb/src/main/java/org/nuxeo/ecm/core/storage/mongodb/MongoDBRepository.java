@@ -46,6 +46,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -81,16 +82,24 @@ import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryBase;
 import org.nuxeo.ecm.core.storage.dbs.DBSStateFlattener;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.mongodb.MongoDBConnectionService;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 import com.mongodb.Block;
 import com.mongodb.QueryOperators;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.CountOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
@@ -98,7 +107,9 @@ import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 
@@ -148,6 +159,15 @@ public class MongoDBRepository extends DBSRepositoryBase {
 
     protected static final String COUNTER_FIELD = "seq";
 
+    /** @since 11.1 */
+    public static final int DEFAULT_BULK_WRITE_BATCH_SIZE = 100;
+
+    /** @since 11.1 */
+    protected static final String BULK_WRITES_METRIC = "bulkWrites";
+
+    /** @since 11.1 */
+    protected static final String BULK_WRITE_SIZE_METRIC = "bulkWriteSize";
+
     protected final MongoCollection<Document> coll;
 
     protected final MongoCollection<Document> countersColl;
@@ -171,6 +191,18 @@ public class MongoDBRepository extends DBSRepositoryBase {
 
     protected final CursorService<MongoCursor<Document>, Document, String> cursorService;
 
+    /** @since 11.1 */
+    protected final int bulkWriteBatchSize;
+
+    /** @since 11.1 */
+    protected final boolean bulkWriteOrdered;
+
+    /** @since 11.1 */
+    protected final Timer bulkWriteTimer;
+
+    /** @since 11.1 */
+    protected final Histogram bulkWriteSizeHistogram;
+
     public MongoDBRepository(ConnectionManager cm, MongoDBRepositoryDescriptor descriptor) {
         super(cm, descriptor.name, descriptor);
         MongoDBConnectionService mongoService = Framework.getService(MongoDBConnectionService.class);
@@ -191,6 +223,12 @@ public class MongoDBRepository extends DBSRepositoryBase {
         }
         converter = new MongoDBConverter(useCustomId ? null : KEY_ID);
         cursorService = new CursorService<>(ob -> (String) ob.get(converter.keyToBson(KEY_ID)));
+        Integer bwbs = descriptor.bulkWriteBatchSize;
+        bulkWriteBatchSize = bwbs == null ? DEFAULT_BULK_WRITE_BATCH_SIZE : bwbs.intValue();
+        bulkWriteOrdered = !Boolean.FALSE.equals(descriptor.bulkWriteOrdered);
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        bulkWriteTimer = registry.timer(getBulkWriteMetricName(BULK_WRITES_METRIC));
+        bulkWriteSizeHistogram = registry.histogram(getBulkWriteMetricName(BULK_WRITE_SIZE_METRIC));
         initRepository();
     }
 
@@ -203,6 +241,14 @@ public class MongoDBRepository extends DBSRepositoryBase {
     public void shutdown() {
         super.shutdown();
         cursorService.clear();
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        registry.remove(getBulkWriteMetricName(BULK_WRITES_METRIC));
+        registry.remove(getBulkWriteMetricName(BULK_WRITE_SIZE_METRIC));
+    }
+
+    /** @since 11.1 */
+    protected String getBulkWriteMetricName(String metric) {
+        return MetricRegistry.name("nuxeo", "repositories", getName(), metric);
     }
 
     protected void initRepository() {
@@ -329,24 +375,7 @@ public class MongoDBRepository extends DBSRepositoryBase {
     public void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
         List<Document> updates = converter.diffToBson(diff);
         for (Document update : updates) {
-            Document filter = new Document(idKey, id);
-            if (changeTokenUpdater == null) {
-                log.trace("MongoDB: UPDATE {}: {}", id, update);
-            } else {
-                // assume bson is identical to dbs internals
-                // condition works even if value is null
-                Map<String, Serializable> conditions = changeTokenUpdater.getConditions();
-                Map<String, Serializable> tokenUpdates = changeTokenUpdater.getUpdates();
-                if (update.containsKey(MONGODB_SET)) {
-                    ((Document) update.get(MONGODB_SET)).putAll(tokenUpdates);
-                } else {
-                    Document set = new Document();
-                    set.putAll(tokenUpdates);
-                    update.put(MONGODB_SET, set);
-                }
-                log.trace("MongoDB: UPDATE {}: IF {} THEN {}", id, conditions, update);
-                filter.putAll(conditions);
-            }
+            Document filter = getUpdateFilter(id, update, changeTokenUpdater);
             UpdateResult w = coll.updateMany(filter, update);
             if (w.getModifiedCount() != 1) {
                 log.trace("MongoDB:    -> CONCURRENT UPDATE: {}", id);
@@ -357,6 +386,81 @@ public class MongoDBRepository extends DBSRepositoryBase {
         }
     }
 
+    /**
+     * Computes the filter for an update, adding the change token conditions and updates if needed.
+     */
+    protected Document getUpdateFilter(String id, Document update, ChangeTokenUpdater changeTokenUpdater) {
+        Document filter = new Document(idKey, id);
+        if (changeTokenUpdater == null) {
+            log.trace("MongoDB: UPDATE {}: {}", id, update);
+        } else {
+            // assume bson is identical to dbs internals
+            // condition works even if value is null
+            Map<String, Serializable> conditions = changeTokenUpdater.getConditions();
+            Map<String, Serializable> tokenUpdates = changeTokenUpdater.getUpdates();
+            if (update.containsKey(MONGODB_SET)) {
+                ((Document) update.get(MONGODB_SET)).putAll(tokenUpdates);
+            } else {
+                Document set = new Document();
+                set.putAll(tokenUpdates);
+                update.put(MONGODB_SET, set);
+            }
+            log.trace("MongoDB: UPDATE {}: IF {} THEN {}", id, conditions, update);
+            filter.putAll(conditions);
+        }
+        return filter;
+    }
+
+    /**
+     * Sends the updates to MongoDB in bulk writes of at most {@link #bulkWriteBatchSize} updates.
+     * <p>
+     * When the bulk writes are unordered, several updates of the same document are never sent in the same bulk write,
+     * so that they are still applied in order.
+     *
+     * @since 11.1
+     */
+    @Override
+    public void updateStates(List<StateUpdate> updates) {
+        if (bulkWriteBatchSize <= 1) {
+            updates.forEach(update -> updateState(update.id, update.diff, update.changeTokenUpdater));
+            return;
+        }
+        List<WriteModel<Document>> models = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (StateUpdate update : updates) {
+            for (Document bson : converter.diffToBson(update.diff)) {
+                if (models.size() >= bulkWriteBatchSize || (!bulkWriteOrdered && ids.contains(update.id))) {
+                    bulkWrite(models, ids);
+                }
+                Document filter = getUpdateFilter(update.id, bson, update.changeTokenUpdater);
+                models.add(new UpdateOneModel<>(filter, bson));
+                ids.add(update.id);
+            }
+        }
+        if (!models.isEmpty()) {
+            bulkWrite(models, ids);
+        }
+    }
+
+    protected void bulkWrite(List<WriteModel<Document>> models, List<String> ids) {
+        bulkWriteSizeHistogram.update(models.size());
+        BulkWriteResult w;
+        Timer.Context timerContext = bulkWriteTimer.time();
+        try {
+            w = coll.bulkWrite(models, new BulkWriteOptions().ordered(bulkWriteOrdered));
+        } finally {
+            timerContext.stop();
+        }
+        if (w.getModifiedCount() != models.size()) {
+            // we cannot know which update failed, report all the documents of the batch
+            Set<String> batchIds = new LinkedHashSet<>(ids);
+            log.trace("MongoDB:    -> CONCURRENT UPDATE: {}", batchIds);
+            throw new ConcurrentUpdateException(String.join(", ", batchIds));
+        }
+        models.clear();
+        ids.clear();
+    }
+
     @Override
     public void deleteStates(Set<String> ids) {
         Bson filter = Filters.in(idKey, ids);
@@ -55,6 +55,22 @@ public class MongoDBRepositoryDescriptor extends DBSRepositoryDescriptor {
     @XNode("sequenceBlockSize")
     public Integer sequenceBlockSize;
 
+    /**
+     * The maximum number of updates sent in one MongoDB bulk write when saving, {@code 1} to disable bulk writes.
+     *
+     * @since 11.1
+     */
+    @XNode("bulkWrite@batchSize")
+    public Integer bulkWriteBatchSize;
+
+    /**
+     * Whether bulk writes are ordered. Unordered bulk writes can be executed in parallel by MongoDB.
+     *
+     * @since 11.1
+     */
+    @XNode("bulkWrite@ordered")
+    public Boolean bulkWriteOrdered;
+
     @Override
     public MongoDBRepositoryDescriptor clone() {
         return (MongoDBRepositoryDescriptor) super.clone();
@@ -74,6 +90,12 @@ public class MongoDBRepositoryDescriptor extends DBSRepositoryDescriptor {
         if (other.sequenceBlockSize != null) {
             sequenceBlockSize = other.sequenceBlockSize;
         }
+        if (other.bulkWriteBatchSize != null) {
+            bulkWriteBatchSize = other.bulkWriteBatchSize;
+        }
+        if (other.bulkWriteOrdered != null) {
+            bulkWriteOrdered = other.bulkWriteOrdered;
+        }
     }
 
 }
@@ -0,0 +1,150 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.mongodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
+import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+
+/**
+ * Checks how the document updates are split into MongoDB bulk writes.
+ *
+ * @since 11.1
+ */
+public class TestMongoDBRepositoryBulkWrite {
+
+    protected MongoDBRepository repository;
+
+    /** The ids of the documents updated by each bulk write. */
+    protected List<List<String>> bulkWrites = new ArrayList<>();
+
+    protected List<Boolean> bulkWritesOrdered = new ArrayList<>();
+
+    /** The number of updates of each bulk write reported as not done. */
+    protected List<Integer> notModified = new ArrayList<>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        // no database needed to check the bulk writes sent
+        MongoCollection<Document> coll = mock(MongoCollection.class);
+        doAnswer(invocation -> {
+            List<WriteModel<Document>> models = (List<WriteModel<Document>>) invocation.getArguments()[0];
+            BulkWriteOptions options = (BulkWriteOptions) invocation.getArguments()[1];
+            bulkWrites.add(models.stream()
+                                 .map(model -> ((Document) ((UpdateOneModel<Document>) model).getFilter()).getString(
+                                         KEY_ID))
+                                 .collect(Collectors.toList()));
+            bulkWritesOrdered.add(Boolean.valueOf(options.isOrdered()));
+            int missing = notModified.size() >= bulkWrites.size() ? notModified.get(bulkWrites.size() - 1) : 0;
+            int modified = models.size() - missing;
+            return BulkWriteResult.acknowledged(0, modified, 0, Integer.valueOf(modified), Collections.emptyList());
+        }).when(coll).bulkWrite(any(List.class), any(BulkWriteOptions.class));
+        repository = mock(MongoDBRepository.class, CALLS_REAL_METHODS);
+        repository.idKey = KEY_ID;
+        FieldUtils.writeField(repository, "coll", coll, true);
+        FieldUtils.writeField(repository, "converter", new MongoDBConverter(), true);
+        FieldUtils.writeField(repository, "bulkWriteTimer", new Timer(), true);
+        FieldUtils.writeField(repository, "bulkWriteSizeHistogram", new Histogram(new UniformReservoir()), true);
+    }
+
+    protected void setBulkWrite(int batchSize, boolean ordered) throws Exception {
+        FieldUtils.writeField(repository, "bulkWriteBatchSize", Integer.valueOf(batchSize), true);
+        FieldUtils.writeField(repository, "bulkWriteOrdered", Boolean.valueOf(ordered), true);
+    }
+
+    protected static List<StateUpdate> updates(String... ids) {
+        List<StateUpdate> updates = new ArrayList<>();
+        for (String id : ids) {
+            StateDiff diff = new StateDiff();
+            diff.put("dc:title", "title of " + id);
+            updates.add(new StateUpdate(id, diff, null));
+        }
+        return updates;
+    }
+
+    @Test
+    public void testBatchSplitting() throws Exception {
+        setBulkWrite(3, true);
+        repository.updateStates(updates("a", "b", "c", "d", "e", "f", "g"));
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c"), Arrays.asList("d", "e", "f"),
+                Collections.singletonList("g")), bulkWrites);
+        assertEquals(Arrays.asList(Boolean.TRUE, Boolean.TRUE, Boolean.TRUE), bulkWritesOrdered);
+    }
+
+    @Test
+    public void testOrderedSameDocument() throws Exception {
+        setBulkWrite(10, true);
+        repository.updateStates(updates("a", "b", "a", "c"));
+        // the updates of a document are applied in order within an ordered bulk write
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b", "a", "c")), bulkWrites);
+        assertEquals(Collections.singletonList(Boolean.TRUE), bulkWritesOrdered);
+    }
+
+    @Test
+    public void testUnorderedSameDocument() throws Exception {
+        setBulkWrite(10, false);
+        repository.updateStates(updates("a", "b", "a", "c", "d", "c"));
+        // the updates of a document are never in the same unordered bulk write
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("a", "c", "d"),
+                Collections.singletonList("c")), bulkWrites);
+        assertEquals(Arrays.asList(Boolean.FALSE, Boolean.FALSE, Boolean.FALSE), bulkWritesOrdered);
+    }
+
+    @Test
+    public void testPartialFailure() throws Exception {
+        setBulkWrite(2, true);
+        // the second bulk write has an update not done, for instance because of a change token condition
+        notModified.addAll(Arrays.asList(0, 1));
+        try {
+            repository.updateStates(updates("a", "b", "c", "d", "e"));
+            fail("should fail with a concurrent update");
+        } catch (ConcurrentUpdateException e) {
+            // the documents of the failed bulk write are reported
+            assertEquals("c, d", e.getMessage());
+        }
+        // the updates following the failed bulk write are not sent
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d")), bulkWrites);
+    }
+
+}
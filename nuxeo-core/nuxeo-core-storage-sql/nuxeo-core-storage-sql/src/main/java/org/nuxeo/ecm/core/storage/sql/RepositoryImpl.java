@@ -22,6 +22,8 @@ package org.nuxeo.ecm.core.storage.sql;
 import java.io.Serializable;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.naming.Reference;
@@ -35,10 +37,12 @@ import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.repository.FulltextConfiguration;
 import org.nuxeo.ecm.core.model.LockManager;
+import org.nuxeo.ecm.core.security.InheritedACLCache;
 import org.nuxeo.ecm.core.storage.lock.LockManagerService;
 import org.nuxeo.ecm.core.storage.sql.Session.PathResolver;
 import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCBackend;
 import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCClusterInvalidator;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.cluster.ClusterService;
 import org.nuxeo.runtime.metrics.MetricsService;
@@ -88,6 +92,12 @@ public class RepositoryImpl implements Repository {
 
     private Model model;
 
+    /** Cache of the SQL generated for NXQL queries. */
+    protected final QueryPlanCache queryPlanCache;
+
+    /** Cache of the ACLs inherited by the children of a document. */
+    protected final InheritedACLCache inheritedACLCache;
+
     /**
      * Transient id for this repository assigned by the server on first connection. This is not persisted.
      */
@@ -96,7 +106,14 @@ public class RepositoryImpl implements Repository {
     public RepositoryImpl(RepositoryDescriptor repositoryDescriptor) {
         this.repositoryDescriptor = repositoryDescriptor;
         sessions = new CopyOnWriteArrayList<>();
-        invalidationsPropagator = new InvalidationsPropagator();
+        invalidationsPropagator = new InvalidationsPropagator() {
+            @Override
+            public void propagateInvalidations(Invalidations invalidations, InvalidationsQueue skipQueue) {
+                super.propagateInvalidations(invalidations, skipQueue);
+                // after the sessions' queues, so that a session seeing the new generation will see the invalidations
+                invalidateInheritedACLs(invalidations);
+            }
+        };
 
         repositoryUp = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryDescriptor.name,
                 "instance-up"));
@@ -104,6 +121,10 @@ public class RepositoryImpl implements Repository {
         sessionCount = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryDescriptor.name,
                 "sessions"));
         createMetricsGauges();
+        queryPlanCache = new QueryPlanCache(repositoryDescriptor.name);
+        // without caching mapper, local invalidations are not propagated
+        inheritedACLCache = getCachingMapperClass() == null ? new InheritedACLCache(repositoryDescriptor.name, 0)
+                : new InheritedACLCache(repositoryDescriptor.name);
 
         initRepository();
     }
@@ -194,6 +215,51 @@ public class RepositoryImpl implements Repository {
         return model;
     }
 
+    /**
+     * Gets the cache of the SQL generated for NXQL queries.
+     *
+     * @since 11.1
+     */
+    public QueryPlanCache getQueryPlanCache() {
+        return queryPlanCache;
+    }
+
+    /**
+     * Gets the cache of the ACLs inherited by the children of a document.
+     *
+     * @since 11.1
+     */
+    public InheritedACLCache getInheritedACLCache() {
+        return inheritedACLCache;
+    }
+
+    /**
+     * Invalidates the inherited ACLs depending on modified or deleted ACLs or hierarchy rows.
+     *
+     * @since 11.1
+     */
+    protected void invalidateInheritedACLs(Invalidations invalidations) {
+        if (invalidations.all) {
+            inheritedACLCache.invalidateAll();
+            return;
+        }
+        Set<String> ids = new HashSet<>();
+        addInheritedACLIds(invalidations.modified, ids);
+        addInheritedACLIds(invalidations.deleted, ids);
+        inheritedACLCache.invalidate(ids);
+    }
+
+    protected static void addInheritedACLIds(Set<RowId> rowIds, Set<String> ids) {
+        if (rowIds == null) {
+            return;
+        }
+        for (RowId rowId : rowIds) {
+            if (Model.ACL_TABLE_NAME.equals(rowId.tableName) || Model.HIER_TABLE_NAME.equals(rowId.tableName)) {
+                ids.add(String.valueOf(rowId.id));
+            }
+        }
+    }
+
     public InvalidationsPropagator getInvalidationsPropagator() {
         return invalidationsPropagator;
     }
@@ -384,6 +450,8 @@ public class RepositoryImpl implements Repository {
         closeAllSessions();
         model = null;
         backend.shutdown();
+        queryPlanCache.close();
+        inheritedACLCache.close();
 
         registry.remove(MetricRegistry.name(RepositoryImpl.class, getName(), "cache-size"));
         registry.remove(MetricRegistry.name(PersistenceContext.class, getName(), "cache-size"));
@@ -434,6 +502,8 @@ public class RepositoryImpl implements Repository {
         if (lockManager != null) {
             lockManager.clearLockManagerCaches();
         }
+        queryPlanCache.clear();
+        inheritedACLCache.invalidateAll();
         return n;
     }
 
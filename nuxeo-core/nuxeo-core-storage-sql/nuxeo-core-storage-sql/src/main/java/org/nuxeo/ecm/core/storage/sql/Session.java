@@ -22,14 +22,17 @@ import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import javax.resource.cci.Connection;
 
 import org.nuxeo.ecm.core.api.IterableQueryResult;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.ScrollResult;
+import org.nuxeo.ecm.core.api.security.ACL;
 import org.nuxeo.ecm.core.model.LockManager;
 import org.nuxeo.ecm.core.query.QueryFilter;
+import org.nuxeo.ecm.core.security.InheritedACLCache.InheritedACL;
 
 /**
  * The session is the main high level access point to data from the underlying database.
@@ -493,6 +496,17 @@ public interface Session extends Connection {
      */
     void requireReadAclsUpdate();
 
+    /**
+     * Gets the ACL inherited by the children of a node, using the repository cache of inherited ACLs when the ACLs and
+     * hierarchy were not changed by this transaction.
+     *
+     * @param id the node id
+     * @param loader the loader computing the inherited ACL
+     * @return the inherited ACL, or {@code null} if nothing is inherited
+     * @since 11.1
+     */
+    ACL getInheritedACL(Serializable id, Supplier<InheritedACL> loader);
+
     /**
      * Update only the read ACLs that have changed.
      */
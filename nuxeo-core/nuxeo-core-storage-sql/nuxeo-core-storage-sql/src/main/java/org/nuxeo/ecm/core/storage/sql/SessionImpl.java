@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import javax.resource.ResourceException;
@@ -60,6 +61,8 @@ import org.nuxeo.ecm.core.query.QueryFilter;
 import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.core.schema.DocumentType;
 import org.nuxeo.ecm.core.schema.SchemaManager;
+import org.nuxeo.ecm.core.security.InheritedACLCache;
+import org.nuxeo.ecm.core.security.InheritedACLCache.InheritedACL;
 import org.nuxeo.ecm.core.storage.FulltextExtractorWork;
 import org.nuxeo.ecm.core.storage.sql.PersistenceContext.PathAndId;
 import org.nuxeo.ecm.core.storage.sql.RowMapper.NodeInfo;
@@ -120,6 +123,15 @@ public class SessionImpl implements Session, XAResource {
 
     private boolean readAclsChanged;
 
+    /**
+     * Whether this transaction changed ACLs or the hierarchy, in which case the repository cache of inherited ACLs is
+     * not used.
+     */
+    private boolean inheritedACLsChanged;
+
+    /** The generation of the inherited ACLs cache when invalidations were last processed. */
+    private long inheritedACLGeneration;
+
     // @since 5.7
     protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
 
@@ -142,6 +154,7 @@ public class SessionImpl implements Session, XAResource {
         changeTokenEnabled = repository.isChangeTokenEnabled();
         live = true;
         readAclsChanged = false;
+        inheritedACLGeneration = repository.getInheritedACLCache().getGeneration();
 
         saveTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repository.getName(), "saves"));
         queryTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repository.getName(), "queries"));
@@ -310,6 +323,7 @@ public class SessionImpl implements Session, XAResource {
             flush();
             if (!inTransaction) {
                 sendInvalidationsToOthers();
+                inheritedACLsChanged = false;
                 // as we don't have a way to know when the next
                 // non-transactional
                 // statement will start, process invalidations immediately
@@ -433,6 +447,8 @@ public class SessionImpl implements Session, XAResource {
      * Called pre-transaction by start or transactionless save;
      */
     protected void processReceivedInvalidations() {
+        // read before processing, invalidations are propagated to the cache after the sessions
+        inheritedACLGeneration = repository.getInheritedACLCache().getGeneration();
         context.processReceivedInvalidations();
     }
 
@@ -1229,6 +1245,16 @@ public class SessionImpl implements Session, XAResource {
     @Override
     public void requireReadAclsUpdate() {
         readAclsChanged = true;
+        inheritedACLsChanged = true;
+    }
+
+    @Override
+    public ACL getInheritedACL(Serializable id, Supplier<InheritedACL> loader) {
+        InheritedACLCache cache = repository.getInheritedACLCache();
+        if (inheritedACLsChanged || !cache.isEnabled()) {
+            return loader.get().acl;
+        }
+        return cache.get(String.valueOf(id), inheritedACLGeneration, loader);
     }
 
     @Override
@@ -1393,6 +1419,7 @@ public class SessionImpl implements Session, XAResource {
 
     protected void commitDone() throws XAException {
         inTransaction = false;
+        inheritedACLsChanged = false;
         try {
             try {
                 sendInvalidationsToOthers();
@@ -1415,6 +1442,7 @@ public class SessionImpl implements Session, XAResource {
             }
         } finally {
             inTransaction = false;
+            inheritedACLsChanged = false;
             // no invalidations to send
             checkThreadEnd();
         }
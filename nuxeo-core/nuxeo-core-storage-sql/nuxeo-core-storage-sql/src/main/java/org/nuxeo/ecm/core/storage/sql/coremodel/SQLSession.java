@@ -61,6 +61,7 @@ import org.nuxeo.ecm.core.query.QueryFilter;
 import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.core.schema.DocumentType;
 import org.nuxeo.ecm.core.schema.SchemaManager;
+import org.nuxeo.ecm.core.security.InheritedACLCache.InheritedACL;
 import org.nuxeo.ecm.core.storage.sql.ACLRow;
 import org.nuxeo.ecm.core.storage.sql.Model;
 import org.nuxeo.ecm.core.storage.sql.Node;
@@ -190,6 +191,15 @@ public class SQLSession implements Session<QueryFilter> {
         return doc;
     }
 
+    @Override
+    public List<Document> getDocumentsByUUIDs(List<String> uuids) {
+        List<Serializable> ids = new ArrayList<>(uuids.size());
+        for (String uuid : uuids) {
+            ids.add(idFromString(uuid));
+        }
+        return getDocumentsById(ids);
+    }
+
     @Override
     public Document resolvePath(String path) throws DocumentNotFoundException {
         if (path.endsWith("/") && path.length() > 1) {
@@ -885,9 +895,23 @@ public class SQLSession implements Session<QueryFilter> {
     }
 
     protected ACL getInheritedACLs(Document doc) {
-        doc = doc.getParent();
+        Document parent = doc.getParent();
+        if (parent == null) {
+            return null;
+        }
+        return session.getInheritedACL(((SQLDocument) parent).getNode().getId(), () -> computeInheritedACLs(parent));
+    }
+
+    /**
+     * Computes the ACL inherited by the children of a document, walking up its ancestors.
+     *
+     * @since 11.1
+     */
+    protected InheritedACL computeInheritedACLs(Document doc) {
+        Set<String> ids = new HashSet<>();
         ACL merged = null;
         while (doc != null) {
+            ids.add(doc.getUUID());
             ACP acp = getACP(doc);
             if (acp != null) {
                 ACL acl = acp.getMergedACLs(ACL.INHERITED_ACL);
@@ -902,7 +926,7 @@ public class SQLSession implements Session<QueryFilter> {
             }
             doc = doc.getParent();
         }
-        return merged;
+        return new InheritedACL(merged, ids);
     }
 
     @Override
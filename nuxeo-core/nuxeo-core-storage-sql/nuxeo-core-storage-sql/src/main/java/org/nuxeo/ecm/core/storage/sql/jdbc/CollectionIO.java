@@ -22,6 +22,7 @@ import java.io.Serializable;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.List;
 
 import org.nuxeo.ecm.core.storage.sql.Model;
@@ -40,11 +41,45 @@ public interface CollectionIO {
     Serializable getCurrentFromResultSet(ResultSet rs, List<Column> columns, Model model, Serializable[] returnId,
             int[] returnPos) throws SQLException;
 
+    /**
+     * Gets the values to insert for the given row updates, as an array of column values for each database row.
+     *
+     * @since 11.1
+     */
+    List<Serializable[]> getInsertValues(List<RowUpdate> rowus, List<Column> columns);
+
     /**
      * Sets the values of a fragment to a SQL prepared statement, and executes the statement for each value. Uses
      * batching if possible.
+     *
+     * @deprecated since 11.1, use {@link #getInsertValues} instead
      */
-    void executeInserts(PreparedStatement ps, List<RowUpdate> rowus, List<Column> columns, boolean supportsBatchUpdates,
-            String sql, JDBCConnection connection) throws SQLException;
+    @Deprecated
+    default void executeInserts(PreparedStatement ps, List<RowUpdate> rowus, List<Column> columns,
+            boolean supportsBatchUpdates, String sql, JDBCConnection connection) throws SQLException {
+        List<Serializable[]> values = getInsertValues(rowus, columns);
+        boolean batched = supportsBatchUpdates && values.size() > 1;
+        String loggedSql = batched ? sql + " -- BATCHED" : sql;
+        int batch = 0;
+        for (Serializable[] v : values) {
+            for (int i = 0; i < v.length; i++) {
+                columns.get(i).setToPreparedStatement(ps, i + 1, v[i]);
+            }
+            if (connection.logger.isLogEnabled()) {
+                connection.logger.logSQL(loggedSql, Arrays.asList(v));
+            }
+            if (batched) {
+                ps.addBatch();
+                batch++;
+                if (batch % JDBCRowMapper.UPDATE_BATCH_SIZE == 0 || batch == values.size()) {
+                    ps.executeBatch();
+                    connection.countExecute();
+                }
+            } else {
+                ps.execute();
+                connection.countExecute();
+            }
+        }
+    }
 
 }
@@ -678,6 +678,17 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         return null;
     }
 
+    /**
+     * Builds a query using the given query maker, going through the repository query plan cache.
+     *
+     * @since 11.1
+     */
+    protected QueryMaker.Query buildQuery(QueryMaker queryMaker, PathResolver pathResolver, String query,
+            QueryFilter queryFilter, Object... params) {
+        QueryPlanCache queryPlanCache = repository.getQueryPlanCache();
+        return queryPlanCache.buildQuery(queryMaker, sqlInfo, model, pathResolver, query, queryFilter, params);
+    }
+
     protected void prepareUserReadAcls(QueryFilter queryFilter) {
         String sql = dialect.getPrepareUserReadAclsSql();
         Serializable principals = queryFilter.getPrincipals();
@@ -770,7 +781,7 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         if (queryMaker == null) {
             throw new NuxeoException("No QueryMaker accepts query: " + queryType + ": " + query);
         }
-        QueryMaker.Query q = queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter, params);
+        QueryMaker.Query q = buildQuery(queryMaker, pathResolver, query, queryFilter, params);
 
         if (q == null) {
             logger.log("Query cannot return anything due to conflicting clauses");
@@ -933,7 +944,7 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
     @SuppressWarnings("resource") // PreparedStatement + ResultSet for cursor, must not be closed
     protected ScrollResult<String> scrollSearch(String query, QueryFilter queryFilter, int batchSize, int keepAliveSeconds) {
         QueryMaker queryMaker = findQueryMaker("NXQL");
-        QueryMaker.Query q = queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter);
+        QueryMaker.Query q = buildQuery(queryMaker, pathResolver, query, queryFilter);
         if (q == null) {
             logger.log("Query cannot return anything due to conflicting clauses");
             throw new NuxeoException("Query cannot return anything due to conflicting clauses");
@@ -514,24 +514,100 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         if (sql == null) {
             throw new NuxeoException("Unknown table: " + tableName);
         }
-        boolean batched = supportsBatchUpdates && rows.size() > 1;
-        String loggedSql = batched ? sql + " -- BATCHED" : sql;
         List<Column> columns = sqlInfo.getInsertColumns(tableName);
+        List<Serializable[]> values = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Serializable[] v = new Serializable[columns.size()];
+            int i = 0;
+            for (Column column : columns) {
+                v[i++] = row.get(column.getKey());
+            }
+            values.add(v);
+        }
+        insertRows(tableName, columns, values);
+    }
+
+    /**
+     * Updates multiple collection rows, all for the same table.
+     */
+    protected void insertCollectionRows(String tableName, List<RowUpdate> rowus) {
+        if (rowus.isEmpty()) {
+            return;
+        }
+        List<Column> columns = sqlInfo.getInsertColumns(tableName);
+        CollectionIO io = getCollectionIO(tableName);
+        insertRows(tableName, columns, io.getInsertValues(rowus, columns));
+    }
+
+    /**
+     * Inserts rows into a table, given the values of their insert columns.
+     * <p>
+     * If the dialect supports it, the rows are inserted by chunks using multi-row {@code INSERT} statements, otherwise
+     * JDBC batching is used if possible. In both cases the number of rows per round trip is bounded by the dialect.
+     *
+     * @since 11.1
+     */
+    protected void insertRows(String tableName, List<Column> columns, List<Serializable[]> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        int batchSize = Math.max(1, dialect.getMaximumRowsPerBatch());
+        int size = values.size();
+        if (dialect.supportsMultiRowInsert() && size > 1 && !columns.isEmpty()) {
+            int chunkSize = Math.max(1, Math.min(batchSize, dialect.getMaximumParameters() / columns.size()));
+            if (chunkSize > 1) {
+                for (int start = 0; start < size; start += chunkSize) {
+                    int end = Math.min(start + chunkSize, size);
+                    insertRowsMulti(tableName, columns, values.subList(start, end));
+                }
+                return;
+            }
+        }
+        insertRowsBatched(tableName, columns, values, batchSize);
+    }
+
+    protected void insertRowsMulti(String tableName, List<Column> columns, List<Serializable[]> values) {
+        String sql = sqlInfo.getInsertSql(tableName, values.size());
+        if (logger.isLogEnabled()) {
+            String loggedSql = values.size() > 1 ? sqlInfo.getInsertSql(tableName) + " -- MULTI-ROW" : sql;
+            for (Serializable[] v : values) {
+                logger.logSQL(loggedSql, Arrays.asList(v));
+            }
+        }
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 1;
+            for (Serializable[] v : values) {
+                for (int j = 0; j < v.length; j++) {
+                    columns.get(j).setToPreparedStatement(ps, i++, v[j]);
+                }
+            }
+            ps.execute();
+            countExecute();
+        } catch (SQLException e) {
+            checkConcurrentUpdate(e);
+            throw new NuxeoException("Could not insert: " + sqlInfo.getInsertSql(tableName), e);
+        }
+    }
+
+    protected void insertRowsBatched(String tableName, List<Column> columns, List<Serializable[]> values,
+            int batchSize) {
+        String sql = sqlInfo.getInsertSql(tableName);
+        boolean batched = supportsBatchUpdates && values.size() > 1;
+        String loggedSql = batched ? sql + " -- BATCHED" : sql;
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             int batch = 0;
-            for (Iterator<Row> rowIt = rows.iterator(); rowIt.hasNext();) {
-                Row row = rowIt.next();
+            for (Iterator<Serializable[]> it = values.iterator(); it.hasNext();) {
+                Serializable[] v = it.next();
                 if (logger.isLogEnabled()) {
-                    logger.logSQL(loggedSql, columns, row);
+                    logger.logSQL(loggedSql, Arrays.asList(v));
                 }
-                int i = 1;
-                for (Column column : columns) {
-                    column.setToPreparedStatement(ps, i++, row.get(column.getKey()));
+                for (int i = 0; i < v.length; i++) {
+                    columns.get(i).setToPreparedStatement(ps, i + 1, v[i]);
                 }
                 if (batched) {
                     ps.addBatch();
                     batch++;
-                    if (batch % UPDATE_BATCH_SIZE == 0 || !rowIt.hasNext()) {
+                    if (batch % batchSize == 0 || !it.hasNext()) {
                         ps.executeBatch();
                         countExecute();
                     }
@@ -553,24 +629,6 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
     }
 
-    /**
-     * Updates multiple collection rows, all for the same table.
-     */
-    protected void insertCollectionRows(String tableName, List<RowUpdate> rowus) {
-        if (rowus.isEmpty()) {
-            return;
-        }
-        String sql = sqlInfo.getInsertSql(tableName);
-        List<Column> columns = sqlInfo.getInsertColumns(tableName);
-        CollectionIO io = getCollectionIO(tableName);
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            io.executeInserts(ps, rowus, columns, supportsBatchUpdates, sql, this);
-        } catch (SQLException e) {
-            checkConcurrentUpdate(e);
-            throw new NuxeoException("Could not insert: " + sql, e);
-        }
-    }
-
     /**
      * Updates multiple simple rows, all for the same table.
      */
@@ -0,0 +1,280 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import org.nuxeo.ecm.core.api.impl.FacetFilter;
+import org.nuxeo.ecm.core.query.QueryFilter;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.storage.sql.Model;
+import org.nuxeo.ecm.core.storage.sql.Session.PathResolver;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryMaker.Query;
+import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.Dialect;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Per-repository cache of the SQL generated by a {@link QueryMaker} for a query.
+ * <p>
+ * The cache key is made of the query maker, the query, the facet filter, the permissions and the query transformers of
+ * the {@link QueryFilter}. The principals of the query filter are not part of the key (unless there are query
+ * transformers, which may depend on them): they are only used as parameters of the security clause, and are rebound
+ * in the parameters of the cached query for each execution.
+ * <p>
+ * Queries whose generated SQL depends on something else than the key are not cached: queries with maker-specific
+ * parameters, queries using {@code NOW()}, queries referencing {@code ecm:isTrashed} or {@code ecm:tag} (whose
+ * translation depends on the {@code TrashService} features and on the {@code tag-storage} migration state), and
+ * queries whose generation needed to resolve a path.
+ *
+ * @since 11.1
+ */
+public class QueryPlanCache {
+
+    /** Property defining the maximum number of queries kept in each repository cache, {@code 0} to disable it. */
+    public static final String CACHE_SIZE_PROP = "nuxeo.vcs.query.plan.cache.size";
+
+    public static final long DEFAULT_CACHE_SIZE = 1000;
+
+    protected static final Pattern NOW_PATTERN = Pattern.compile("\\bNOW\\s*\\(", Pattern.CASE_INSENSITIVE);
+
+    /** References to properties whose translation depends on a migration state. */
+    protected static final Pattern MIGRATED_PROPERTY_PATTERN = Pattern.compile("\\becm:(isTrashed|tag)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /** Marker for queries that cannot match anything. */
+    protected static final Plan NO_MATCH = new Plan(null, null);
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final String repositoryName;
+
+    protected final Cache<List<Object>, Plan> cache;
+
+    protected final Counter hits;
+
+    protected final Counter misses;
+
+    public QueryPlanCache(String repositoryName) {
+        this(repositoryName, getConfiguredCacheSize());
+    }
+
+    public QueryPlanCache(String repositoryName, long maxSize) {
+        this.repositoryName = repositoryName;
+        cache = maxSize > 0 ? CacheBuilder.newBuilder().maximumSize(maxSize).build() : null;
+        hits = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "queryPlanCache", "hit"));
+        misses = registry.counter(
+                MetricRegistry.name("nuxeo", "repositories", repositoryName, "queryPlanCache", "miss"));
+    }
+
+    protected static long getConfiguredCacheSize() {
+        String value = Framework.getProperty(CACHE_SIZE_PROP);
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_CACHE_SIZE;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return DEFAULT_CACHE_SIZE;
+        }
+    }
+
+    /**
+     * Builds a query using the given query maker, or returns a copy of a previously built query with the principals
+     * of the query filter rebound.
+     *
+     * @return the query, or {@code null} if the query cannot match anything
+     */
+    public Query buildQuery(QueryMaker queryMaker, SQLInfo sqlInfo, Model model, PathResolver pathResolver,
+            String query, QueryFilter queryFilter, Object... params) {
+        if (cache == null || !isCacheable(query, params)) {
+            return queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter, params);
+        }
+        List<Object> key = getKey(queryMaker, query, queryFilter);
+        Plan plan = cache.getIfPresent(key);
+        if (plan == NO_MATCH) {
+            hits.inc();
+            return null;
+        } else if (plan != null) {
+            hits.inc();
+            return plan.bind(getPrincipalsParam(sqlInfo.dialect, queryFilter));
+        }
+        misses.inc();
+        RecordingPathResolver recordingPathResolver = new RecordingPathResolver(pathResolver);
+        Query q = queryMaker.buildQuery(sqlInfo, model, recordingPathResolver, query, queryFilter, params);
+        if (!recordingPathResolver.used) {
+            if (q == null) {
+                cache.put(key, NO_MATCH);
+            } else {
+                plan = Plan.of(q, getPrincipalsParam(sqlInfo.dialect, queryFilter));
+                if (plan != null) {
+                    cache.put(key, plan);
+                }
+            }
+        }
+        return q;
+    }
+
+    /**
+     * Checks if the SQL generated for a query depends only on the cache key and may be cached.
+     */
+    protected static boolean isCacheable(String query, Object... params) {
+        return (params == null || params.length == 0) && !NOW_PATTERN.matcher(query).find()
+                && !MIGRATED_PROPERTY_PATTERN.matcher(query).find();
+    }
+
+    protected List<Object> getKey(QueryMaker queryMaker, String query, QueryFilter queryFilter) {
+        FacetFilter facetFilter = queryFilter.getFacetFilter();
+        List<Object> facets = facetFilter == null ? null
+                : Arrays.asList(facetFilter.required, facetFilter.excluded, facetFilter.shortcut);
+        String[] permissions = queryFilter.getPermissions();
+        String[] principals = queryFilter.getPrincipals();
+        Collection<SQLQuery.Transformer> transformers = queryFilter.getQueryTransformers();
+        List<Object> transformerClasses;
+        Object principalsKey;
+        if (transformers == null || transformers.isEmpty()) {
+            transformerClasses = Collections.emptyList();
+            principalsKey = Boolean.valueOf(principals != null);
+        } else {
+            // transformers may depend on the principal, make it part of the key
+            transformerClasses = new ArrayList<>(transformers.size());
+            for (SQLQuery.Transformer transformer : transformers) {
+                transformerClasses.add(transformer.getClass().getName());
+            }
+            principalsKey = principals == null ? null : Arrays.asList(principals);
+        }
+        return Arrays.asList(queryMaker.getClass().getName(), query, facets,
+                permissions == null ? null : Arrays.asList(permissions), principalsKey, transformerClasses);
+    }
+
+    /**
+     * Gets the principals in the form used as a parameter of the security clause.
+     */
+    protected static Serializable getPrincipalsParam(Dialect dialect, QueryFilter queryFilter) {
+        String[] principals = queryFilter.getPrincipals();
+        if (principals == null) {
+            return null;
+        }
+        if (!dialect.supportsArrays()) {
+            return String.join(Dialect.ARRAY_SEP, principals);
+        }
+        return principals;
+    }
+
+    /**
+     * Clears the cache. Must be called when something outside the key changes the generated SQL.
+     */
+    public void clear() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    public void close() {
+        clear();
+        String name = MetricRegistry.name("nuxeo", "repositories", repositoryName, "queryPlanCache");
+        registry.removeMatching((n, metric) -> n.startsWith(name));
+    }
+
+    /**
+     * A built query, with the positions of the principals in its parameters.
+     */
+    protected static class Plan {
+
+        protected final Query query;
+
+        protected final int[] principalsSlots;
+
+        protected Plan(Query query, int[] principalsSlots) {
+            this.query = query;
+            this.principalsSlots = principalsSlots;
+        }
+
+        /**
+         * Creates a plan from a freshly built query, or returns {@code null} if the principals cannot be found in the
+         * query parameters.
+         */
+        protected static Plan of(Query query, Serializable principals) {
+            List<Serializable> params = new ArrayList<>(query.selectParams);
+            int[] slots = new int[params.size()];
+            int n = 0;
+            if (principals != null) {
+                for (int i = 0; i < params.size(); i++) {
+                    if (Objects.deepEquals(params.get(i), principals)) {
+                        slots[n++] = i;
+                    }
+                }
+                if (n == 0) {
+                    return null;
+                }
+            }
+            Query template = new Query();
+            template.selectInfo = query.selectInfo;
+            template.selectParams = params;
+            return new Plan(template, Arrays.copyOf(slots, n));
+        }
+
+        protected Query bind(Serializable principals) {
+            List<Serializable> params = new ArrayList<>(query.selectParams);
+            for (int slot : principalsSlots) {
+                params.set(slot, principals);
+            }
+            Query q = new Query();
+            q.selectInfo = query.selectInfo;
+            q.selectParams = params;
+            return q;
+        }
+    }
+
+    /**
+     * Path resolver recording whether it was used, in which case the generated query depends on the current
+     * repository content and cannot be cached.
+     */
+    protected static class RecordingPathResolver implements PathResolver {
+
+        protected final PathResolver pathResolver;
+
+        protected boolean used;
+
+        protected RecordingPathResolver(PathResolver pathResolver) {
+            this.pathResolver = pathResolver;
+        }
+
+        @Override
+        public Serializable getIdForPath(String path) {
+            used = true;
+            return pathResolver.getIdForPath(path);
+        }
+    }
+
+}
@@ -90,6 +90,8 @@ public class SQLInfo {
 
     private final Map<String, String> insertSqlMap; // statement
 
+    private final Map<String, Insert> insertMap;
+
     private final Map<String, List<Column>> insertColumnsMap;
 
     private final Map<String, String> deleteSqlMap; // statement
@@ -167,6 +169,7 @@ public class SQLInfo {
         selectComplexChildrenIdsAndTypesSqlIncludeSpecialChildren = null;
 
         insertSqlMap = new HashMap<>();
+        insertMap = new HashMap<>();
         insertColumnsMap = new HashMap<>();
 
         deleteSqlMap = new HashMap<>();
@@ -283,6 +286,23 @@ public class SQLInfo {
         return insertSqlMap.get(tableName);
     }
 
+    /**
+     * Returns the SQL {@code INSERT} to add several rows with one statement, for dialects supporting it.
+     *
+     * @param tableName the table name
+     * @param rows the number of rows
+     * @return the SQL {@code INSERT} statement, or {@code null} for an unknown table
+     * @see Dialect#supportsMultiRowInsert
+     * @since 11.1
+     */
+    public String getInsertSql(String tableName, int rows) {
+        if (rows == 1) {
+            return getInsertSql(tableName);
+        }
+        Insert insert = insertMap.get(tableName);
+        return insert == null ? null : insert.getStatement(rows);
+    }
+
     /**
      * Returns the list of columns to use for an {@INSERT} statement {@link #getInsertSql}.
      *
@@ -1048,7 +1068,6 @@ public class SQLInfo {
             selectComplexChildrenIdsAndTypesSqlIncludeSpecialChildren = select.getStatement();
         }
 
-        // TODO optimize multiple inserts into one statement for collections
         protected void postProcessInsert() {
             // insert (implicitly auto-generated sequences not included)
             Collection<Column> columns = table.getColumns();
@@ -1063,6 +1082,7 @@ public class SQLInfo {
                 insert.addColumn(column);
             }
             insertSqlMap.put(tableName, insert.getStatement());
+            insertMap.put(tableName, insert);
             insertColumnsMap.put(tableName, insertColumns);
         }
 
@@ -1357,6 +1357,34 @@ public abstract class Dialect {
         return true;
     }
 
+    /**
+     * Does the dialect support inserting several rows with one statement:
+     * {@code INSERT INTO foo (a, b) VALUES (?, ?), (?, ?)}.
+     *
+     * @since 11.1
+     */
+    public boolean supportsMultiRowInsert() {
+        return false;
+    }
+
+    /**
+     * Gets the maximum number of rows written by one multi-row insert or one JDBC batch.
+     *
+     * @since 11.1
+     */
+    public int getMaximumRowsPerBatch() {
+        return 100;
+    }
+
+    /**
+     * Gets the maximum number of parameters of a prepared statement.
+     *
+     * @since 11.1
+     */
+    public int getMaximumParameters() {
+        return Integer.MAX_VALUE;
+    }
+
     /**
      * Registers return parameters.
      * <p>
@@ -408,6 +408,16 @@ public class DialectH2 extends Dialect {
         return sql + String.format(" LIMIT %d OFFSET %d", limit, offset);
     }
 
+    @Override
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
+    @Override
+    public int getMaximumRowsPerBatch() {
+        return 1000;
+    }
+
     public String getUsersSeparator() {
         if (usersSeparator == null) {
             return DEFAULT_USERS_SEPARATOR;
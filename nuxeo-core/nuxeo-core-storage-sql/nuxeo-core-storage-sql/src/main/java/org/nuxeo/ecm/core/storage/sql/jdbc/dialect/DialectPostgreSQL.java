@@ -1271,6 +1271,22 @@ public class DialectPostgreSQL extends Dialect {
         return sql + String.format(" LIMIT %d OFFSET %d", limit, offset);
     }
 
+    @Override
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
+    @Override
+    public int getMaximumRowsPerBatch() {
+        return 1000;
+    }
+
+    @Override
+    public int getMaximumParameters() {
+        // the wire protocol sends the number of parameters as a 16-bit integer
+        return Short.MAX_VALUE;
+    }
+
     @Override
     public boolean supportsWith() {
         return false; // don't activate until proven useful
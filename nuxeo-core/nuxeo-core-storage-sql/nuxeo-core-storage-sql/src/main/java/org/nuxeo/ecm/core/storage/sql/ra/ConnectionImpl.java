@@ -24,6 +24,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import javax.resource.ResourceException;
 import javax.resource.cci.ConnectionFactory;
@@ -37,8 +38,10 @@ import org.nuxeo.ecm.core.api.IterableQueryResult;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.ScrollResult;
+import org.nuxeo.ecm.core.api.security.ACL;
 import org.nuxeo.ecm.core.model.LockManager;
 import org.nuxeo.ecm.core.query.QueryFilter;
+import org.nuxeo.ecm.core.security.InheritedACLCache.InheritedACL;
 import org.nuxeo.ecm.core.storage.sql.Mapper;
 import org.nuxeo.ecm.core.storage.sql.Model;
 import org.nuxeo.ecm.core.storage.sql.Node;
@@ -414,6 +417,11 @@ public class ConnectionImpl implements Session {
         }
     }
 
+    @Override
+    public ACL getInheritedACL(Serializable id, Supplier<InheritedACL> loader) {
+        return getSession().getInheritedACL(id, loader);
+    }
+
     @Override
     public void updateReadAcls() {
         getSession().updateReadAcls();
@@ -0,0 +1,99 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryMaker.Query;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache.Plan;
+import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.SQLInfoSelect;
+
+public class TestQueryPlanCache {
+
+    protected static Query newQuery(Serializable... params) {
+        Query q = new Query();
+        q.selectInfo = new SQLInfoSelect("SELECT ...", null);
+        q.selectParams = new ArrayList<>(Arrays.asList(params));
+        return q;
+    }
+
+    @Test
+    public void testRebindPrincipals() {
+        String[] bob = { "bob", "members", "Everyone" };
+        Query q = newQuery("foo", bob, Long.valueOf(3), bob.clone());
+        Plan plan = Plan.of(q, bob);
+        assertArrayEquals(new int[] { 1, 3 }, plan.principalsSlots);
+
+        String[] alice = { "alice", "Everyone" };
+        Query q2 = plan.bind(alice);
+        assertSame(q.selectInfo, q2.selectInfo);
+        List<Serializable> params = q2.selectParams;
+        assertEquals(4, params.size());
+        assertEquals("foo", params.get(0));
+        assertSame(alice, params.get(1));
+        assertEquals(Long.valueOf(3), params.get(2));
+        assertSame(alice, params.get(3));
+        // template not modified
+        assertSame(bob, plan.query.selectParams.get(1));
+    }
+
+    @Test
+    public void testJoinedPrincipals() {
+        Query q = newQuery("bob|Everyone", "foo");
+        Plan plan = Plan.of(q, "bob|Everyone");
+        Query q2 = plan.bind("alice|Everyone");
+        assertEquals(Arrays.asList("alice|Everyone", "foo"), q2.selectParams);
+    }
+
+    @Test
+    public void testNoPrincipals() {
+        Query q = newQuery("foo");
+        Plan plan = Plan.of(q, null);
+        assertEquals(0, plan.principalsSlots.length);
+        assertEquals(Arrays.asList("foo"), plan.bind(null).selectParams);
+    }
+
+    @Test
+    public void testPrincipalsNotFound() {
+        Query q = newQuery("foo");
+        assertNull(Plan.of(q, new String[] { "bob" }));
+    }
+
+    @Test
+    public void testCacheable() {
+        assertTrue(QueryPlanCache.isCacheable("SELECT * FROM Document WHERE dc:title = 'foo'"));
+        assertTrue(QueryPlanCache.isCacheable("SELECT * FROM Document WHERE ecm:tags = 'foo'"));
+        assertFalse(QueryPlanCache.isCacheable("SELECT * FROM Document WHERE dc:title = ?", "foo"));
+        assertFalse(QueryPlanCache.isCacheable("SELECT * FROM Document WHERE dc:modified < NOW('-P1D')"));
+        // translation depends on the TrashService features
+        assertFalse(QueryPlanCache.isCacheable("SELECT * FROM Document WHERE ecm:isTrashed = 0"));
+        // translation depends on the tag-storage migration state
+        assertFalse(QueryPlanCache.isCacheable("SELECT * FROM Document WHERE ecm:tag = 'foo'"));
+        assertFalse(QueryPlanCache.isCacheable("SELECT ecm:uuid FROM Document WHERE ecm:tag/*1 = 'foo'"));
+    }
+
+}
@@ -19,7 +19,9 @@
 package org.nuxeo.ecm.core.storage.sql.jdbc.dialect;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -38,7 +40,12 @@ import org.junit.runner.RunWith;
 import org.nuxeo.ecm.core.storage.FulltextQueryAnalyzer;
 import org.nuxeo.ecm.core.storage.FulltextQueryAnalyzer.FulltextQuery;
 import org.nuxeo.ecm.core.storage.FulltextQueryAnalyzer.Op;
+import org.nuxeo.ecm.core.storage.sql.ColumnType;
 import org.nuxeo.ecm.core.storage.sql.RepositoryDescriptor;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.Column;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.Insert;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.Table;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.TableImpl;
 
 @RunWith(JMock.class)
 public class TestDialectQuerySyntax {
@@ -388,4 +395,19 @@ public class TestDialectQuerySyntax {
         assertDialectFT("\"foo bar*\"", "\"foo bar*\"");
     }
 
+    @Test
+    public void testMultiRowInsert() throws Exception {
+        dialect = new DialectPostgreSQL(metadata, repositoryDescriptor);
+        assertTrue(dialect.supportsMultiRowInsert());
+        Table table = new TableImpl(dialect, "foo", "foo");
+        Insert insert = new Insert(table);
+        insert.addColumn(new Column(table, "id", ColumnType.STRING, "id"));
+        insert.addColumn(new Column(table, "pos", ColumnType.LONG, "pos"));
+        assertEquals("INSERT INTO \"foo\" (\"id\", \"pos\") VALUES (?, ?)", insert.getStatement());
+        assertEquals("INSERT INTO \"foo\" (\"id\", \"pos\") VALUES (?, ?), (?, ?), (?, ?)", insert.getStatement(3));
+
+        dialect = new DialectOracle(metadata, repositoryDescriptor);
+        assertFalse(dialect.supportsMultiRowInsert());
+    }
+
 }
@@ -0,0 +1,131 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.nuxeo.ecm.core.api.security.SecurityConstants.READ;
+
+import java.util.Collections;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.CloseableCoreSession;
+import org.nuxeo.ecm.core.api.CoreInstance;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.impl.UserPrincipal;
+import org.nuxeo.ecm.core.api.security.ACE;
+import org.nuxeo.ecm.core.api.security.ACP;
+import org.nuxeo.ecm.core.api.security.impl.ACLImpl;
+import org.nuxeo.ecm.core.api.security.impl.ACPImpl;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.HotDeployer;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+/**
+ * Tests that the repository cache of inherited ACLs never keeps an ACL computed from states read by a session before
+ * they were changed by another session.
+ *
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreFeature.class)
+@RepositoryConfig(cleanup = Granularity.METHOD)
+public class TestDBSInheritedACLCache {
+
+    @Inject
+    protected CoreFeature coreFeature;
+
+    @Inject
+    protected CoreSession session;
+
+    @Inject
+    protected HotDeployer deployer;
+
+    @Before
+    public void setUp() throws Exception {
+        // cannot be done through @Deploy, because the framework variables
+        // about repository configuration aren't ready yet
+        assumeTrue(coreFeature.getStorageConfiguration().isDBSMem());
+        deployer.deploy("org.nuxeo.ecm.core.test.tests:OSGI-INF/test-repo-mem-cache-contrib.xml");
+    }
+
+    protected static ACP newACP(ACE... aces) {
+        ACP acp = new ACPImpl();
+        ACLImpl acl = new ACLImpl();
+        for (ACE ace : aces) {
+            acl.add(ace);
+        }
+        acp.addACL(acl);
+        return acp;
+    }
+
+    protected boolean bobCanRead(CoreSession session, DocumentRef ref) {
+        return session.hasPermission(new UserPrincipal("bob", Collections.emptyList(), false, false), ref, READ);
+    }
+
+    protected void runInOtherThread(Runnable runnable) throws InterruptedException {
+        Thread thread = new Thread(() -> TransactionHelper.runInTransaction(runnable));
+        thread.start();
+        thread.join();
+    }
+
+    @Test
+    public void testRevokedACEIsNotCachedFromStaleState() throws Exception {
+        DocumentModel folder = session.createDocumentModel("/", "folder", "Folder");
+        folder = session.createDocument(folder);
+        session.setACP(folder.getRef(), newACP(new ACE("bob", READ, true)), true);
+        DocumentModel doc = session.createDocumentModel("/folder", "doc", "File");
+        doc = session.createDocument(doc);
+        session.save();
+        DocumentRef folderRef = folder.getRef();
+        DocumentRef docRef = doc.getRef();
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+
+        // this session reads the parent
+        session.getDocument(folderRef);
+
+        // another session revokes the ACE and saves
+        runInOtherThread(() -> {
+            try (CloseableCoreSession otherSession = CoreInstance.openCoreSession(session.getRepositoryName())) {
+                otherSession.setACP(folderRef, newACP(), true);
+                otherSession.save();
+            }
+        });
+
+        // this session checks the child using its stale parent, which must not be cached for others
+        assertTrue(bobCanRead(session, docRef));
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+
+        // a fresh session doesn't see the removed permission
+        try (CloseableCoreSession freshSession = CoreInstance.openCoreSession(session.getRepositoryName())) {
+            assertFalse(bobCanRead(freshSession, docRef));
+        }
+    }
+
+}
@@ -43,6 +43,7 @@ import static org.nuxeo.ecm.core.api.security.SecurityConstants.WRITE_SECURITY;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -65,6 +66,7 @@ import org.nuxeo.ecm.core.api.DocumentSecurityException;
 import org.nuxeo.ecm.core.api.NuxeoPrincipal;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.PathRef;
+import org.nuxeo.ecm.core.api.impl.DocumentModelImpl;
 import org.nuxeo.ecm.core.api.impl.UserPrincipal;
 import org.nuxeo.ecm.core.api.security.ACE;
 import org.nuxeo.ecm.core.api.security.ACL;
@@ -906,6 +908,43 @@ public class TestSQLRepositorySecurity {
         assertEquals(nbDocs, numberOfReadableDocuments(secondUser));
     }
 
+    @Test
+    public void testGetDocumentsByIds() {
+        DocumentModel folder = session.createDocument(session.createDocumentModel("/", "folder", "Folder"));
+        ACP acp = new ACPImpl();
+        acp.getOrCreateACL().add(new ACE(SecurityConstants.EVERYONE, SecurityConstants.EVERYTHING, false));
+        folder.setACP(acp, true);
+        DocumentModel doc1 = session.createDocument(session.createDocumentModel("/folder", "doc1", "File"));
+        DocumentModel doc2 = session.createDocument(session.createDocumentModel("/folder", "doc2", "File"));
+        acp = new ACPImpl();
+        acp.getOrCreateACL().add(new ACE("bob", BROWSE, true));
+        doc1.setACP(acp, true);
+        session.save();
+
+        List<String> ids = Arrays.asList(doc2.getId(), "00000000-0000-0000-0000-000000000000", doc1.getId());
+        DocumentModelList docs = session.getDocuments(ids, true, null);
+        assertEquals(Arrays.asList(doc2.getId(), doc1.getId()), getIds(docs));
+        try (CloseableCoreSession bobSession = openSessionAs("bob")) {
+            docs = bobSession.getDocuments(ids, true, null);
+            assertEquals(Arrays.asList(doc1.getId()), getIds(docs));
+            docs = bobSession.getDocuments(ids, false, null);
+            assertEquals(Arrays.asList(doc2.getId(), doc1.getId()), getIds(docs));
+        }
+
+        // prefetch of the requested schemas only
+        docs = session.getDocuments(Arrays.asList(doc1.getId()), false, Collections.singleton("common"));
+        DocumentModelImpl doc = (DocumentModelImpl) docs.get(0);
+        assertTrue(doc.isSchemaLoaded("common"));
+        assertFalse(doc.isSchemaLoaded("dublincore"));
+        assertEquals("doc1", doc.getName());
+    }
+
+    protected static List<String> getIds(DocumentModelList docs) {
+        List<String> ids = new ArrayList<>();
+        docs.forEach(doc -> ids.add(doc.getId()));
+        return ids;
+    }
+
     protected int numberOfReadableDocuments(String username) {
         try (CloseableCoreSession userSession = openSessionAs(username)) {
             String nxql = "SELECT ecm:uuid FROM Document";
@@ -0,0 +1,68 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.bulk;
+
+import static org.nuxeo.ecm.core.bulk.BulkServiceImpl.STATUS_STREAM;
+import static org.nuxeo.lib.stream.computation.AbstractComputation.INPUT_1;
+import static org.nuxeo.lib.stream.computation.AbstractComputation.OUTPUT_1;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.bulk.action.computation.AbstractBulkComputation;
+import org.nuxeo.lib.stream.computation.Topology;
+import org.nuxeo.runtime.stream.StreamProcessorTopology;
+
+/**
+ * @since 11.1
+ */
+public class CollectIdsAction implements StreamProcessorTopology {
+
+    public static final String ACTION_NAME = "collectIds";
+
+    /**
+     * The number of times each document id has been processed.
+     */
+    public static final Map<String, Integer> PROCESSED = new ConcurrentHashMap<>();
+
+    @Override
+    public Topology getTopology(Map<String, String> options) {
+        return Topology.builder()
+                       .addComputation(CollectIdsComputation::new, Arrays.asList(INPUT_1 + ":" + ACTION_NAME, //
+                               OUTPUT_1 + ":" + STATUS_STREAM))
+                       .build();
+    }
+
+    /**
+     * A computation that counts the documents it processes.
+     */
+    public static class CollectIdsComputation extends AbstractBulkComputation {
+
+        public CollectIdsComputation() {
+            super(ACTION_NAME);
+        }
+
+        @Override
+        protected void compute(CoreSession session, List<String> ids, Map<String, Serializable> properties) {
+            ids.forEach(id -> PROCESSED.merge(id, 1, Integer::sum));
+        }
+    }
+
+}
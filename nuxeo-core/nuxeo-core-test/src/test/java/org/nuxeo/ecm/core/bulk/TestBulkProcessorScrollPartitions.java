@@ -0,0 +1,147 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.nuxeo.ecm.core.bulk.message.BulkStatus.State.ABORTED;
+import static org.nuxeo.ecm.core.bulk.message.BulkStatus.State.COMPLETED;
+import static org.nuxeo.lib.stream.computation.AbstractComputation.INPUT_1;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.bulk.TestBulkScrollerFailover.CapturingContext;
+import org.nuxeo.ecm.core.bulk.computation.BulkScrollerComputation;
+import org.nuxeo.ecm.core.bulk.message.BulkCommand;
+import org.nuxeo.ecm.core.bulk.message.BulkStatus;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+/**
+ * Checks the bulk commands whose query is scrolled concurrently on several ranges of document ids.
+ *
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreFeature.class)
+@Deploy("org.nuxeo.ecm.core.test.tests:OSGI-INF/bulk-scroll-partitions-contrib.xml")
+public class TestBulkProcessorScrollPartitions {
+
+    protected static final int NB_DOCS = 100;
+
+    @Inject
+    protected BulkService service;
+
+    @Inject
+    protected CoreSession session;
+
+    protected Set<String> docIds = new HashSet<>();
+
+    @Before
+    public void setUp() {
+        // the query can only be split into ranges of UUIDs
+        assumeTrue(TestBulkScrollerFailover.UUID_PATTERN.matcher(session.getRootDocument().getId()).matches());
+        for (int i = 0; i < NB_DOCS; i++) {
+            DocumentModel doc = session.createDocumentModel("/", "doc" + i, "File");
+            docIds.add(session.createDocument(doc).getId());
+        }
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+        CollectIdsAction.PROCESSED.clear();
+    }
+
+    @Test
+    public void testConcurrentScroll() throws InterruptedException {
+        String commandId = service.submit(
+                new BulkCommand.Builder(CollectIdsAction.ACTION_NAME, "SELECT * FROM File", "Administrator").repository(
+                        session.getRepositoryName()).build());
+        assertTrue("Bulk action didn't finish", service.await(commandId, Duration.ofSeconds(60)));
+
+        BulkStatus status = service.getStatus(commandId);
+        assertEquals(COMPLETED, status.getState());
+        assertEquals(NB_DOCS, status.getTotal());
+        assertEquals(NB_DOCS, status.getProcessed());
+        assertFalse(status.hasError());
+        // every document is processed exactly once
+        assertEquals(docIds, CollectIdsAction.PROCESSED.keySet());
+        CollectIdsAction.PROCESSED.forEach((id, count) -> assertEquals(id, 1, count.intValue()));
+    }
+
+    /**
+     * A scroller that aborts its command after receiving a given number of scroll batches.
+     */
+    protected class AbortingScroller extends BulkScrollerComputation {
+
+        protected int batchesBeforeAbort;
+
+        protected AbortingScroller(int batchesBeforeAbort) {
+            super("bulk/scroller", 1, 2, 60, 4, false);
+            this.batchesBeforeAbort = batchesBeforeAbort;
+        }
+
+        @Override
+        protected boolean isAbortedCommand(String commandId) {
+            // called for each scroll batch received
+            if (batchesBeforeAbort-- == 0) {
+                service.abort(commandId);
+            }
+            return super.isAbortedCommand(commandId);
+        }
+    }
+
+    @Test
+    public void testAbortConcurrentScroll() {
+        BulkCommand command = new BulkCommand.Builder(CollectIdsAction.ACTION_NAME, "SELECT * FROM File",
+                "Administrator").repository(session.getRepositoryName()).bucket(3).batch(3).build();
+        Record record = Record.of(command.getId(), BulkCodecs.getCommandCodec().encode(command));
+        CapturingContext context = new CapturingContext();
+
+        // abort while the ranges are being scrolled
+        BulkScrollerComputation scroller = new AbortingScroller(NB_DOCS / 8);
+        scroller.init(context);
+        try {
+            scroller.processRecord(context, INPUT_1, record);
+        } finally {
+            scroller.destroy();
+        }
+        assertEquals(ABORTED, service.getStatus(command.getId()).getState());
+        // the buckets produced before the abort are not produced again, the others are not produced
+        List<String> produced = TestBulkScrollerFailover.getDocumentIds(context.buckets);
+        assertFalse(produced.isEmpty());
+        assertTrue(produced.size() < NB_DOCS);
+        assertEquals(produced.size(), new HashSet<>(produced).size());
+        assertTrue(docIds.containsAll(produced));
+        // no status with the scroll total is sent for an aborted command
+        context.statuses.forEach(status -> assertEquals(0, status.getTotal()));
+    }
+
+}
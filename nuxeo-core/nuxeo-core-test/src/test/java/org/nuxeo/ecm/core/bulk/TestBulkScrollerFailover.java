@@ -0,0 +1,190 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static org.nuxeo.ecm.core.bulk.BulkServiceImpl.STATUS_STREAM;
+import static org.nuxeo.lib.stream.computation.AbstractComputation.INPUT_1;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.bulk.computation.BulkScrollerComputation;
+import org.nuxeo.ecm.core.bulk.message.BulkBucket;
+import org.nuxeo.ecm.core.bulk.message.BulkCommand;
+import org.nuxeo.ecm.core.bulk.message.BulkStatus;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.internals.ComputationContextImpl;
+import org.nuxeo.lib.stream.log.LogOffset;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+/**
+ * Checks that a bulk command scroll resumed after a failover produces every document exactly once.
+ *
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreFeature.class)
+public class TestBulkScrollerFailover {
+
+    protected static final Pattern UUID_PATTERN = Pattern.compile(
+            "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    protected static final int NB_DOCS = 100;
+
+    @Inject
+    protected CoreSession session;
+
+    protected Set<String> docIds = new HashSet<>();
+
+    @Before
+    public void setUp() {
+        // the query can only be split into ranges of UUIDs
+        assumeTrue(UUID_PATTERN.matcher(session.getRootDocument().getId()).matches());
+        for (int i = 0; i < NB_DOCS; i++) {
+            DocumentModel doc = session.createDocumentModel("/", "doc" + i, "File");
+            docIds.add(session.createDocument(doc).getId());
+        }
+        TransactionHelper.commitOrRollbackTransaction();
+    }
+
+    /**
+     * Captures the records instead of appending them to the streams.
+     */
+    protected static class CapturingContext extends ComputationContextImpl {
+
+        protected final List<Record> buckets = new ArrayList<>();
+
+        protected final List<BulkStatus> statuses = new ArrayList<>();
+
+        protected CapturingContext() {
+            super(null, null);
+        }
+
+        @Override
+        public void produceRecord(String streamName, Record record) {
+            produceRecordImmediate(streamName, record);
+        }
+
+        @Override
+        public LogOffset produceRecordImmediate(String streamName, Record record) {
+            if (STATUS_STREAM.equals(streamName)) {
+                statuses.add(BulkCodecs.getStatusCodec().decode(record.getData()));
+            } else {
+                buckets.add(record);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A scroller whose node dies after receiving a given number of scroll batches.
+     */
+    protected static class FailingScroller extends BulkScrollerComputation {
+
+        protected int batchesBeforeFailure;
+
+        protected FailingScroller(int scrollPartitions, int batchesBeforeFailure) {
+            super("bulk/scroller", 1, 2, 60, scrollPartitions, true);
+            this.batchesBeforeFailure = batchesBeforeFailure;
+        }
+
+        @Override
+        protected boolean isAbortedCommand(String commandId) {
+            // called for each scroll batch received
+            if (batchesBeforeFailure-- == 0) {
+                throw new IllegalStateException("Simulated failure");
+            }
+            return super.isAbortedCommand(commandId);
+        }
+    }
+
+    @Test
+    public void testResumeSingleScroll() {
+        testResume(1);
+    }
+
+    @Test
+    public void testResumeConcurrentScroll() {
+        testResume(4);
+    }
+
+    protected void testResume(int scrollPartitions) {
+        BulkCommand command = new BulkCommand.Builder("setProperties", "SELECT * FROM File",
+                "Administrator").repository(session.getRepositoryName()).bucket(3).batch(3).build();
+        Record record = Record.of(command.getId(), BulkCodecs.getCommandCodec().encode(command));
+        CapturingContext context = new CapturingContext();
+
+        // the node dies in the middle of the scroll
+        FailingScroller scroller = new FailingScroller(scrollPartitions, NB_DOCS / 4);
+        scroller.init(context);
+        try {
+            scroller.processRecord(context, INPUT_1, record);
+            fail("Scroll should have failed");
+        } catch (IllegalStateException e) {
+            assertEquals("Simulated failure", e.getMessage());
+        } finally {
+            scroller.destroy();
+        }
+        List<String> produced = getDocumentIds(context.buckets);
+        assertFalse(produced.isEmpty());
+        assertTrue(produced.size() < NB_DOCS);
+
+        // the command record is processed again by another node
+        BulkScrollerComputation other = new FailingScroller(scrollPartitions, -1);
+        other.init(context);
+        try {
+            other.processRecord(context, INPUT_1, record);
+        } finally {
+            other.destroy();
+        }
+        produced = getDocumentIds(context.buckets);
+        assertEquals(NB_DOCS, produced.size());
+        assertEquals(docIds, new HashSet<>(produced));
+        Set<String> keys = new HashSet<>();
+        context.buckets.forEach(bucket -> assertTrue(bucket.getKey(), keys.add(bucket.getKey())));
+        BulkStatus last = context.statuses.get(context.statuses.size() - 1);
+        assertEquals(NB_DOCS, last.getTotal());
+        TransactionHelper.startTransaction();
+    }
+
+    protected static List<String> getDocumentIds(List<Record> records) {
+        List<String> ids = new ArrayList<>();
+        for (Record record : records) {
+            BulkBucket bucket = BulkCodecs.getBucketCodec().decode(record.getData());
+            ids.addAll(bucket.getIds());
+        }
+        return ids;
+    }
+
+}
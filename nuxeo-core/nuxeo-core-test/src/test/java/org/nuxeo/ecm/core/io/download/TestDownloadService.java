@@ -328,6 +328,48 @@ public class TestDownloadService {
         }
     }
 
+    @Test
+    public void testFileBlobDownload() throws Exception {
+        doTestFileBlobDownload(null, CONTENT);
+    }
+
+    @Test
+    public void testFileBlobDownloadByteRange() throws Exception {
+        doTestFileBlobDownload("bytes=5-8", CONTENT.substring(5, 9));
+    }
+
+    protected void doTestFileBlobDownload(String range, String expected) throws Exception {
+        Blob blob = new FileBlob(new ByteArrayInputStream(CONTENT.getBytes("UTF-8")));
+        blob.setFilename("myFile.txt");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn("GET");
+        when(req.getHeader("Range")).thenReturn(range);
+        // the container could send the file, but the blob is not in a binary store
+        when(req.getAttribute("org.apache.tomcat.sendfile.support")).thenReturn(TRUE);
+
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        ServletOutputStream sos = new DummyServletOutputStream() {
+            @Override
+            public void write(int b) {
+                out.write(b);
+            }
+        };
+        @SuppressWarnings("resource")
+        PrintWriter printWriter = new PrintWriter(sos);
+        when(resp.getOutputStream()).thenReturn(sos);
+        when(resp.getWriter()).thenReturn(printWriter);
+
+        DownloadContext context = DownloadContext.builder(req, resp)
+                                                 .blob(blob)
+                                                 .build();
+        downloadService.downloadBlob(context);
+
+        verify(resp).setContentLengthLong(eq((long) expected.getBytes("UTF-8").length));
+        assertEquals(expected, out.toString("UTF-8"));
+    }
+
     @Test
     @Deploy("org.nuxeo.ecm.core.test.tests:OSGI-INF/test-download-service-permission.xml")
     public void testDownloadPermission() throws Exception {
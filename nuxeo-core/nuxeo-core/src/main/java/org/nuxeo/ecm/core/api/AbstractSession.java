@@ -54,6 +54,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -97,6 +98,7 @@ import org.nuxeo.ecm.core.schema.FacetNames;
 import org.nuxeo.ecm.core.schema.SchemaManager;
 import org.nuxeo.ecm.core.schema.types.CompositeType;
 import org.nuxeo.ecm.core.schema.types.Schema;
+import org.nuxeo.ecm.core.security.CompiledACP;
 import org.nuxeo.ecm.core.security.LockSecurityPolicy;
 import org.nuxeo.ecm.core.security.SecurityService;
 import org.nuxeo.runtime.api.Framework;
@@ -156,6 +158,13 @@ public abstract class AbstractSession implements CoreSession, Serializable {
 
     protected Counter updateDocumentCount;
 
+    /**
+     * The compiled principals to check for the session principal, computed on first permission check.
+     *
+     * @since 11.1
+     */
+    protected transient CompiledACP.Principals compiledPrincipals;
+
     protected void createMetrics() {
         createDocumentCount = registry.counter(
                 MetricRegistry.name("nuxeo.repositories", getRepositoryName(), "documents", "create"));
@@ -297,7 +306,14 @@ public abstract class AbstractSession implements CoreSession, Serializable {
         // this method.
         // -> cache ACP at securitymanager level or try to reuse the ACP when
         // it is known
-        return getSecurityService().checkPermission(doc, getPrincipal(), permission);
+        NuxeoPrincipal principal = getPrincipal();
+        if (principal.isAdministrator()) {
+            return true;
+        }
+        if (compiledPrincipals == null) {
+            compiledPrincipals = SecurityService.getCompiledPrincipalsToCheck(principal);
+        }
+        return getSecurityService().checkPermission(doc, principal, compiledPrincipals, permission);
         // return doc.getSession().getSecurityManager().checkPermission(doc,
         // getPrincipal().getName(), permission);
     }
@@ -955,6 +971,24 @@ public abstract class AbstractSession implements CoreSession, Serializable {
         return new DocumentModelListImpl(docs);
     }
 
+    @Override
+    public DocumentModelList getDocuments(List<String> ids, boolean checkRead, Set<String> schemas) {
+        if (ids.isEmpty()) {
+            return new DocumentModelListImpl(0);
+        }
+        boolean checkPermission = checkRead && !isAdministrator();
+        String[] schemasArray = schemas == null ? null : schemas.toArray(new String[0]);
+        List<Document> docs = getSession().getDocumentsByUUIDs(ids);
+        DocumentModelListImpl models = new DocumentModelListImpl(docs.size());
+        for (Document doc : docs) {
+            if (checkPermission && !hasPermission(doc, BROWSE)) {
+                continue;
+            }
+            models.add(DocumentModelFactory.createDocumentModel(doc, getSessionId(), schemasArray));
+        }
+        return models;
+    }
+
     @Override
     public DocumentModelList getFiles(DocumentRef parent) {
         Document doc = resolveReference(parent);
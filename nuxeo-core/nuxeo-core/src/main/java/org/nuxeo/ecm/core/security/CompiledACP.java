@@ -0,0 +1,253 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.security;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.nuxeo.ecm.core.api.security.ACE;
+import org.nuxeo.ecm.core.api.security.ACL;
+import org.nuxeo.ecm.core.api.security.ACP;
+import org.nuxeo.ecm.core.api.security.Access;
+import org.nuxeo.ecm.core.api.security.SecurityConstants;
+
+/**
+ * An {@link ACP} compiled for fast permission checks.
+ * <p>
+ * Principal and permission names are interned into integer ids. The effective ACEs of the ACP are compiled to arrays of
+ * ids, the principals to check to a sorted array of ids, and the permissions to check to a bitset, so that evaluating
+ * an ACE is an array lookup and a bit test instead of nested loops of string comparisons.
+ * <p>
+ * {@link #getAccess} gives the same result as {@link ACP#getAccess(String[], String[])}.
+ * <p>
+ * Only the names of the principals and permissions to check, and those of the ACPs explicitly compiled with
+ * {@link #compile(ACP)}, are interned. The names of ACEs that are only evaluated are looked up without being interned:
+ * a name that was never interned cannot match any principal or permission to check.
+ *
+ * @since 11.1
+ */
+public class CompiledACP {
+
+    protected static final int UNKNOWN_ID = -1;
+
+    protected static final Ids PRINCIPAL_IDS = new Ids();
+
+    protected static final Ids PERMISSION_IDS = new Ids();
+
+    protected static final int EVERYONE_ID = PRINCIPAL_IDS.get(SecurityConstants.EVERYONE);
+
+    protected static final int EVERYTHING_ID = PERMISSION_IDS.get(SecurityConstants.EVERYTHING);
+
+    protected final int[] principalIds;
+
+    protected final int[] permissionIds;
+
+    protected final BitSet granted;
+
+    protected CompiledACP(int[] principalIds, int[] permissionIds, BitSet granted) {
+        this.principalIds = principalIds;
+        this.permissionIds = permissionIds;
+        this.granted = granted;
+    }
+
+    /**
+     * Compiles the effective ACEs of an ACP, in order.
+     */
+    public static CompiledACP compile(ACP acp) {
+        return compile(acp, true);
+    }
+
+    /**
+     * Compiles the effective ACEs of an ACP, in order.
+     * <p>
+     * If {@code intern} is {@code false}, the names of the ACEs are not interned, and the compiled ACP must only be
+     * checked against principals and permissions compiled before it.
+     */
+    protected static CompiledACP compile(ACP acp, boolean intern) {
+        int n = 0;
+        for (ACL acl : acp.getACLs()) {
+            n += acl.size();
+        }
+        int[] principalIds = new int[n];
+        int[] permissionIds = new int[n];
+        BitSet granted = new BitSet(n);
+        int i = 0;
+        for (ACL acl : acp.getACLs()) {
+            for (ACE ace : acl) {
+                // only check for effective ACEs
+                if (!ace.isEffective()) {
+                    continue;
+                }
+                principalIds[i] = intern ? PRINCIPAL_IDS.get(ace.getUsername())
+                        : PRINCIPAL_IDS.lookup(ace.getUsername());
+                permissionIds[i] = intern ? PERMISSION_IDS.get(ace.getPermission())
+                        : PERMISSION_IDS.lookup(ace.getPermission());
+                granted.set(i, ace.isGranted());
+                i++;
+            }
+        }
+        return new CompiledACP(Arrays.copyOf(principalIds, i), Arrays.copyOf(permissionIds, i), granted);
+    }
+
+    /**
+     * Compiles the principals to check, as returned by {@link SecurityService#getPrincipalsToCheck}.
+     */
+    public static Principals compilePrincipals(String[] principals) {
+        return new Principals(principals);
+    }
+
+    /**
+     * Compiles the permissions to check, as returned by {@link SecurityService#getPermissionsToCheck}.
+     */
+    public static Permissions compilePermissions(String[] permissions) {
+        return new Permissions(permissions);
+    }
+
+    /**
+     * Gets the access given by the first matching effective ACE of an ACP, without compiling it.
+     * <p>
+     * This is preferable to {@link #compile} when the ACP is checked only once. The names of the ACEs are not
+     * interned.
+     */
+    public static Access getAccess(ACP acp, Principals principals, Permissions permissions) {
+        for (ACL acl : acp.getACLs()) {
+            for (ACE ace : acl) {
+                if (ace.isEffective() && principals.matches(PRINCIPAL_IDS.lookup(ace.getUsername()))
+                        && permissions.matches(PERMISSION_IDS.lookup(ace.getPermission()))) {
+                    return ace.isGranted() ? Access.GRANT : Access.DENY;
+                }
+            }
+        }
+        return Access.UNKNOWN;
+    }
+
+    /**
+     * Gets the access given by the first matching ACE.
+     */
+    public Access getAccess(Principals principals, Permissions permissions) {
+        for (int i = 0; i < principalIds.length; i++) {
+            if (principals.matches(principalIds[i]) && permissions.matches(permissionIds[i])) {
+                return granted.get(i) ? Access.GRANT : Access.DENY;
+            }
+        }
+        return Access.UNKNOWN;
+    }
+
+    public int size() {
+        return principalIds.length;
+    }
+
+    /**
+     * Compiled principals to check.
+     * <p>
+     * The ids are kept in a sorted array rather than a bitset, as principal ids include user names and are not bounded.
+     */
+    public static class Principals {
+
+        protected final String[] principals;
+
+        protected final int[] ids;
+
+        protected Principals(String[] principals) {
+            this.principals = principals;
+            int[] ids = new int[principals.length];
+            for (int i = 0; i < principals.length; i++) {
+                ids[i] = PRINCIPAL_IDS.get(principals[i]);
+            }
+            Arrays.sort(ids);
+            this.ids = ids;
+        }
+
+        /**
+         * Gets the principals to check. The returned array must not be modified.
+         */
+        public String[] getPrincipals() {
+            return principals;
+        }
+
+        protected boolean matches(int aceId) {
+            if (aceId == EVERYONE_ID) {
+                return ids.length > 0;
+            }
+            return aceId != UNKNOWN_ID && Arrays.binarySearch(ids, aceId) >= 0;
+        }
+    }
+
+    /**
+     * Compiled permissions to check.
+     */
+    public static class Permissions {
+
+        protected final String[] permissions;
+
+        protected final BitSet ids = new BitSet();
+
+        protected Permissions(String[] permissions) {
+            this.permissions = permissions;
+            for (String permission : permissions) {
+                int id = PERMISSION_IDS.get(permission);
+                if (id != UNKNOWN_ID) {
+                    ids.set(id);
+                }
+                // RESTRICTED_READ needs special handling, is not implied by EVERYTHING
+                if (!SecurityConstants.RESTRICTED_READ.equals(permission)) {
+                    ids.set(EVERYTHING_ID);
+                }
+            }
+        }
+
+        /**
+         * Gets the permissions to check. The returned array must not be modified.
+         */
+        public String[] getPermissions() {
+            return permissions;
+        }
+
+        protected boolean matches(int aceId) {
+            return aceId != UNKNOWN_ID && ids.get(aceId);
+        }
+    }
+
+    /**
+     * Interned names. Ids are never reused nor freed, so the names of the principals checked by all the sessions of
+     * the JVM are kept, which is why names found only in evaluated ACEs are looked up without being interned.
+     */
+    protected static class Ids {
+
+        protected final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+        protected final AtomicInteger next = new AtomicInteger();
+
+        protected int get(String name) {
+            if (name == null) {
+                return UNKNOWN_ID;
+            }
+            return ids.computeIfAbsent(name, k -> Integer.valueOf(next.getAndIncrement())).intValue();
+        }
+
+        /**
+         * Gets the id of a name without interning it, or {@link #UNKNOWN_ID} if it was never interned.
+         */
+        protected int lookup(String name) {
+            Integer id = name == null ? null : ids.get(name);
+            return id == null ? UNKNOWN_ID : id.intValue();
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.security;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.nuxeo.ecm.core.api.security.ACL;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Per-repository cache of the ACLs inherited by the children of a document, keyed by document id.
+ * <p>
+ * Each entry remembers the ids of the documents that were walked to compute it (the document itself and its ancestors
+ * up to the first one blocking inheritance). Invalidating a document id removes all the entries that depend on it,
+ * which is the whole subtree below it.
+ * <p>
+ * A computed value is only put in the cache if no invalidation happened since the generation at which the caller's
+ * view of the repository was current, so that a value computed from stale data cannot be cached after the
+ * invalidation that made it stale.
+ *
+ * @since 11.1
+ */
+public class InheritedACLCache {
+
+    /** Property defining the maximum number of entries kept in each repository cache, {@code 0} to disable it. */
+    public static final String CACHE_SIZE_PROP = "nuxeo.security.inherited.acl.cache.size";
+
+    public static final long DEFAULT_CACHE_SIZE = 10_000;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final String repositoryName;
+
+    protected final Cache<String, InheritedACL> cache;
+
+    protected final AtomicLong generation = new AtomicLong();
+
+    protected final Counter hits;
+
+    protected final Counter misses;
+
+    /**
+     * An ACL inherited from a document, with the ids of the documents it was computed from.
+     */
+    public static class InheritedACL {
+
+        /** The inherited ACL, or {@code null} if nothing is inherited. */
+        public final ACL acl;
+
+        public final Set<String> ids;
+
+        public InheritedACL(ACL acl, Set<String> ids) {
+            this.acl = acl;
+            this.ids = ids;
+        }
+    }
+
+    public InheritedACLCache(String repositoryName) {
+        this(repositoryName, getConfiguredCacheSize());
+    }
+
+    public InheritedACLCache(String repositoryName, long maxSize) {
+        this.repositoryName = repositoryName;
+        cache = maxSize > 0 ? CacheBuilder.newBuilder().maximumSize(maxSize).build() : null;
+        hits = registry.counter(
+                MetricRegistry.name("nuxeo", "repositories", repositoryName, "inheritedACLCache", "hit"));
+        misses = registry.counter(
+                MetricRegistry.name("nuxeo", "repositories", repositoryName, "inheritedACLCache", "miss"));
+    }
+
+    protected static long getConfiguredCacheSize() {
+        String value = Framework.getProperty(CACHE_SIZE_PROP);
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_CACHE_SIZE;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return DEFAULT_CACHE_SIZE;
+        }
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Gets the current generation, incremented by each invalidation.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Gets the ACL inherited by the children of a document, computing it if it is not in the cache.
+     *
+     * @param id the document id
+     * @param viewGeneration the generation at which the caller's view of the repository was current
+     * @param loader the loader computing the inherited ACL
+     * @return a copy of the inherited ACL, or {@code null} if nothing is inherited
+     */
+    public ACL get(String id, long viewGeneration, Supplier<InheritedACL> loader) {
+        InheritedACL inherited = cache == null ? null : cache.getIfPresent(id);
+        if (inherited != null) {
+            hits.inc();
+        } else {
+            inherited = loader.get();
+            if (cache != null) {
+                misses.inc();
+                synchronized (this) {
+                    if (generation.get() == viewGeneration) {
+                        cache.put(id, inherited);
+                    }
+                }
+            }
+        }
+        return inherited.acl == null ? null : (ACL) inherited.acl.clone();
+    }
+
+    /**
+     * Invalidates the entries depending on the given document ids, which covers their subtrees.
+     */
+    public void invalidate(Collection<String> ids) {
+        if (cache == null || ids.isEmpty()) {
+            return;
+        }
+        Set<String> idSet = ids instanceof Set ? (Set<String>) ids : new HashSet<>(ids);
+        synchronized (this) {
+            generation.incrementAndGet();
+            cache.asMap().values().removeIf(inherited -> !Collections.disjoint(inherited.ids, idSet));
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache == null) {
+            return;
+        }
+        synchronized (this) {
+            generation.incrementAndGet();
+            cache.invalidateAll();
+        }
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    public void close() {
+        invalidateAll();
+        String name = MetricRegistry.name("nuxeo", "repositories", repositoryName, "inheritedACLCache");
+        registry.removeMatching((n, metric) -> n.startsWith(name));
+    }
+
+}
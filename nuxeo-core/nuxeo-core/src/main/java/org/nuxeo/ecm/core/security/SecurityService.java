@@ -24,6 +24,8 @@ package org.nuxeo.ecm.core.security;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -64,6 +66,9 @@ public class SecurityService extends DefaultComponent {
 
     private SecurityPolicyService securityPolicyService;
 
+    /** Compiled permissions to check, by permission. */
+    private final Map<String, CompiledACP.Permissions> compiledPermissions = new ConcurrentHashMap<>();
+
     // private SecurityManager securityManager;
 
     @Override
@@ -82,6 +87,7 @@ public class SecurityService extends DefaultComponent {
 
     @Override
     public void registerContribution(Object contribution, String extensionPoint, ComponentInstance contributor) {
+        compiledPermissions.clear();
         if (PERMISSIONS_EXTENSION_POINT.equals(extensionPoint) && contribution instanceof PermissionDescriptor) {
             permissionProvider.registerDescriptor((PermissionDescriptor) contribution);
         } else if (PERMISSIONS_VISIBILITY_EXTENSION_POINT.equals(extensionPoint)
@@ -94,6 +100,7 @@ public class SecurityService extends DefaultComponent {
 
     @Override
     public void unregisterContribution(Object contribution, String extensionPoint, ComponentInstance contributor) {
+        compiledPermissions.clear();
         if (PERMISSIONS_EXTENSION_POINT.equals(extensionPoint) && contribution instanceof PermissionDescriptor) {
             permissionProvider.unregisterDescriptor((PermissionDescriptor) contribution);
         } else if (PERMISSIONS_VISIBILITY_EXTENSION_POINT.equals(extensionPoint)
@@ -124,16 +131,29 @@ public class SecurityService extends DefaultComponent {
         if (principal.isAdministrator()) {
             return true;
         }
+        return checkPermission(doc, principal, getCompiledPrincipalsToCheck(principal), permission);
+    }
+
+    /**
+     * Checks a permission using principals to check that were compiled beforehand, typically once per session.
+     *
+     * @param principals the compiled principals to check for the given principal
+     * @since 11.1
+     */
+    public boolean checkPermission(Document doc, NuxeoPrincipal principal, CompiledACP.Principals principals,
+            String permission) {
+        if (principal.isAdministrator()) {
+            return true;
+        }
         // fully check each ACE in turn
-        String[] resolvedPermissions = getPermissionsToCheck(permission);
-        String[] additionalPrincipals = getPrincipalsToCheck(principal);
+        CompiledACP.Permissions permissions = getCompiledPermissionsToCheck(permission);
 
         // get the ordered list of ACE
         ACP acp = doc.getSession().getMergedACP(doc);
 
         // check pluggable policies
-        Access access = securityPolicyService.checkPermission(doc, acp, principal, permission, resolvedPermissions,
-                additionalPrincipals);
+        Access access = securityPolicyService.checkPermission(doc, acp, principal, permission,
+                permissions.getPermissions(), principals.getPrincipals());
         if (access != null && !Access.UNKNOWN.equals(access)) {
             return access.toBoolean();
         }
@@ -141,7 +161,7 @@ public class SecurityService extends DefaultComponent {
         if (acp == null) {
             return false; // no ACP on that doc - by default deny
         }
-        access = acp.getAccess(additionalPrincipals, resolvedPermissions);
+        access = CompiledACP.getAccess(acp, principals, permissions);
 
         return access.toBoolean();
     }
@@ -157,16 +177,23 @@ public class SecurityService extends DefaultComponent {
             return permissions;
         }
 
-        String[] additionalPrincipals = getPrincipalsToCheck(principal);
+        CompiledACP.Principals principals = getCompiledPrincipalsToCheck(principal);
+        List<CompiledACP.Permissions> permissionsToCheck = new ArrayList<>(permissions.size());
+        for (String permission : permissions) {
+            permissionsToCheck.add(getCompiledPermissionsToCheck(permission));
+        }
         ACP acp = doc.getSession().getMergedACP(doc);
+        // principals and permissions are compiled first, so the ACE names don't need to be interned
+        CompiledACP compiledACP = acp == null ? null : CompiledACP.compile(acp, false);
 
         List<String> result = new ArrayList<>();
+        int i = 0;
         for(String permission : permissions) {
-            String[] resolvedPermissions = getPermissionsToCheck(permission);
-            Access access = securityPolicyService.checkPermission(doc, acp, principal, permission, resolvedPermissions,
-                additionalPrincipals);
+            CompiledACP.Permissions resolvedPermissions = permissionsToCheck.get(i++);
+            Access access = securityPolicyService.checkPermission(doc, acp, principal, permission,
+                    resolvedPermissions.getPermissions(), principals.getPrincipals());
             if (access == null || Access.UNKNOWN.equals(access)) {
-                access = acp == null ? null : acp.getAccess(additionalPrincipals, resolvedPermissions);
+                access = compiledACP == null ? null : compiledACP.getAccess(principals, resolvedPermissions);
             }
             if (access != null && access.toBoolean()) {
                 result.add(permission);
@@ -196,6 +223,28 @@ public class SecurityService extends DefaultComponent {
         }
     }
 
+    /**
+     * Gets the compiled form of {@link #getPermissionsToCheck}, which is cached.
+     *
+     * @since 11.1
+     */
+    public CompiledACP.Permissions getCompiledPermissionsToCheck(String permission) {
+        if (permission == null) {
+            return CompiledACP.compilePermissions(getPermissionsToCheck(permission));
+        }
+        return compiledPermissions.computeIfAbsent(permission,
+                p -> CompiledACP.compilePermissions(getPermissionsToCheck(p)));
+    }
+
+    /**
+     * Gets the compiled form of {@link #getPrincipalsToCheck}.
+     *
+     * @since 11.1
+     */
+    public static CompiledACP.Principals getCompiledPrincipalsToCheck(NuxeoPrincipal principal) {
+        return CompiledACP.compilePrincipals(getPrincipalsToCheck(principal));
+    }
+
     public static String[] getPrincipalsToCheck(NuxeoPrincipal principal) {
         List<String> userGroups = principal.getAllGroups();
         if (userGroups == null) {
@@ -0,0 +1,118 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.nuxeo.ecm.core.api.security.SecurityConstants.EVERYONE;
+import static org.nuxeo.ecm.core.api.security.SecurityConstants.EVERYTHING;
+import static org.nuxeo.ecm.core.api.security.SecurityConstants.READ;
+import static org.nuxeo.ecm.core.api.security.SecurityConstants.RESTRICTED_READ;
+import static org.nuxeo.ecm.core.api.security.SecurityConstants.WRITE;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.security.ACE;
+import org.nuxeo.ecm.core.api.security.ACL;
+import org.nuxeo.ecm.core.api.security.ACP;
+import org.nuxeo.ecm.core.api.security.Access;
+import org.nuxeo.ecm.core.api.security.impl.ACLImpl;
+import org.nuxeo.ecm.core.api.security.impl.ACPImpl;
+
+public class TestCompiledACP {
+
+    protected static final String[][] PRINCIPALS = { //
+            { "bob", EVERYONE }, //
+            { "members", "alice", EVERYONE }, //
+            { "g1", "g2", "g3", "carol", EVERYONE }, //
+            { "dave" }, //
+            {} };
+
+    protected static final String[][] PERMISSIONS = { //
+            { READ, "ReadWrite", EVERYTHING }, //
+            { WRITE, "ReadWrite", EVERYTHING }, //
+            { RESTRICTED_READ, EVERYTHING }, //
+            { RESTRICTED_READ }, //
+            { READ } };
+
+    protected static ACP newACP() {
+        ACP acp = new ACPImpl();
+        ACL local = new ACLImpl(ACL.LOCAL_ACL);
+        local.add(new ACE("bob", WRITE, false));
+        local.add(new ACE("g2", READ, true));
+        ACE archived = new ACE("dave", EVERYTHING, true);
+        Calendar end = new GregorianCalendar();
+        end.add(Calendar.DAY_OF_MONTH, -1);
+        archived.setEnd(end);
+        local.add(archived);
+        local.add(new ACE("alice", EVERYTHING, true));
+        acp.addACL(local);
+        ACL inherited = new ACLImpl(ACL.INHERITED_ACL);
+        inherited.add(new ACE("members", "ReadWrite", true));
+        inherited.add(new ACE("g3", RESTRICTED_READ, true));
+        inherited.add(new ACE(EVERYONE, READ, false));
+        inherited.add(new ACE(EVERYONE, EVERYTHING, false));
+        acp.addACL(inherited);
+        return acp;
+    }
+
+    @Test
+    public void testSameAsACP() {
+        ACP acp = newACP();
+        CompiledACP compiled = CompiledACP.compile(acp);
+        // the archived ACE is not compiled
+        assertEquals(7, compiled.size());
+        for (String[] principals : PRINCIPALS) {
+            CompiledACP.Principals cprincipals = CompiledACP.compilePrincipals(principals);
+            for (String[] permissions : PERMISSIONS) {
+                CompiledACP.Permissions cpermissions = CompiledACP.compilePermissions(permissions);
+                Access expected = acp.getAccess(principals, permissions);
+                String message = String.join(",", principals) + " / " + String.join(",", permissions);
+                assertEquals(message, expected, compiled.getAccess(cprincipals, cpermissions));
+                assertEquals(message, expected, CompiledACP.getAccess(acp, cprincipals, cpermissions));
+            }
+        }
+    }
+
+    @Test
+    public void testAccess() {
+        CompiledACP compiled = CompiledACP.compile(newACP());
+        CompiledACP.Permissions read = CompiledACP.compilePermissions(PERMISSIONS[0]);
+        CompiledACP.Permissions write = CompiledACP.compilePermissions(PERMISSIONS[1]);
+        CompiledACP.Principals bob = CompiledACP.compilePrincipals(PRINCIPALS[0]);
+        CompiledACP.Principals members = CompiledACP.compilePrincipals(PRINCIPALS[1]);
+        assertEquals(Access.DENY, compiled.getAccess(bob, read));
+        assertEquals(Access.DENY, compiled.getAccess(bob, write));
+        assertEquals(Access.GRANT, compiled.getAccess(members, read));
+        assertEquals(Access.GRANT, compiled.getAccess(members, write));
+    }
+
+    @Test
+    public void testEvaluatedNamesAreNotInterned() {
+        ACP acp = newACP();
+        acp.getOrCreateACL().add(0, new ACE("notinterned-user", "notinterned-perm", true));
+        CompiledACP.Principals bob = CompiledACP.compilePrincipals(PRINCIPALS[0]);
+        CompiledACP.Permissions write = CompiledACP.compilePermissions(PERMISSIONS[1]);
+
+        assertEquals(Access.DENY, CompiledACP.getAccess(acp, bob, write));
+        assertEquals(Access.DENY, CompiledACP.compile(acp, false).getAccess(bob, write));
+        assertFalse(CompiledACP.PRINCIPAL_IDS.ids.containsKey("notinterned-user"));
+        assertFalse(CompiledACP.PERMISSION_IDS.ids.containsKey("notinterned-perm"));
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.security.ACL;
+import org.nuxeo.ecm.core.api.security.impl.ACLImpl;
+import org.nuxeo.ecm.core.security.InheritedACLCache.InheritedACL;
+
+public class TestInheritedACLCache {
+
+    protected InheritedACLCache cache;
+
+    protected AtomicInteger loads;
+
+    @Before
+    public void setUp() {
+        cache = new InheritedACLCache("test", 100);
+        loads = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+    }
+
+    protected ACL get(String id, String... ancestors) {
+        return cache.get(id, cache.getGeneration(), () -> load(id, ancestors));
+    }
+
+    protected InheritedACL load(String id, String... ancestors) {
+        loads.incrementAndGet();
+        HashSet<String> ids = new HashSet<>(Arrays.asList(ancestors));
+        ids.add(id);
+        return new InheritedACL(new ACLImpl(ACL.INHERITED_ACL), ids);
+    }
+
+    @Test
+    public void testCached() {
+        ACL acl1 = get("c", "b", "a");
+        ACL acl2 = get("c", "b", "a");
+        assertEquals(1, loads.get());
+        assertNotNull(acl1);
+        // copies are returned
+        assertNotSame(acl1, acl2);
+    }
+
+    @Test
+    public void testNothingInherited() {
+        assertNull(cache.get("a", cache.getGeneration(), () -> new InheritedACL(null, Collections.singleton("a"))));
+        assertNull(cache.get("a", cache.getGeneration(), () -> new InheritedACL(null, Collections.singleton("a"))));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testSubtreeInvalidation() {
+        get("a");
+        get("b", "a");
+        get("c", "b", "a");
+        get("x");
+        assertEquals(4, cache.size());
+        cache.invalidate(Collections.singleton("b"));
+        assertEquals(2, cache.size());
+        get("a");
+        get("x");
+        assertEquals(4, loads.get());
+        get("c", "b", "a");
+        assertEquals(5, loads.get());
+    }
+
+    @Test
+    public void testStaleValueNotCached() {
+        long generation = cache.getGeneration();
+        // invalidation happening while the caller's view is stale
+        cache.invalidate(Collections.singleton("a"));
+        cache.get("b", generation, () -> load("b", "a"));
+        assertEquals(0, cache.size());
+        get("b", "a");
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        cache.close();
+        cache = new InheritedACLCache("test", 0);
+        get("a");
+        get("a");
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -513,6 +513,11 @@ public class ElasticSearchComponent extends DefaultComponent
         return esi.source(doc);
     }
 
+    @Override
+    public boolean supportsPartialUpdate() {
+        return esi != null && esi.supportsPartialUpdate();
+    }
+
     // ES Search ===============================================================
     @Override
     public DocumentModelList query(NxQueryBuilder queryBuilder) {
@@ -121,6 +121,16 @@ public final class ElasticSearchConstants {
 
     public static final String INDEX_BULK_MAX_SIZE_PROPERTY = "elasticsearch.index.bulkMaxSize";
 
+    /**
+     * Property to disable the partial update of indexed documents, when only some of their properties changed.
+     * <p>
+     * Partial updates are only used when external versioning is disabled on the client ({@code useExternalVersion}
+     * set to {@code false}), with the default configuration the documents are always fully indexed.
+     *
+     * @since 11.1
+     */
+    public static final String INDEX_PARTIAL_UPDATE_PROPERTY = "elasticsearch.index.partialUpdate";
+
     public static final String DISABLE_AUTO_INDEXING = "disableAutoIndexing";
 
     public static final String ES_SYNC_INDEXING_FLAG = "ESSyncIndexing";
@@ -102,4 +102,14 @@ public interface ElasticSearchIndexing {
      * @since 10.3
      */
     BytesReference source(DocumentModel doc) throws IOException;
+
+    /**
+     * Checks if the indexed documents can be partially updated when only some of their properties changed. When they
+     * cannot, the changed properties don't need to be computed.
+     *
+     * @since 11.1
+     */
+    default boolean supportsPartialUpdate() {
+        return false;
+    }
 }
@@ -20,11 +20,15 @@ package org.nuxeo.elasticsearch.bulk;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.bulk.BackoffPolicy;
 import org.elasticsearch.action.bulk.BulkItemResponse;
@@ -54,6 +58,12 @@ import org.nuxeo.runtime.api.Framework;
  * A computation that submits elasticsearch requests using the bulk API.
  * <p>
  * Note that the retry policy is handled by the elasticsearch bulk processor.
+ * <p>
+ * Since 11.1, up to {@code concurrentRequests} bulk requests can be in flight, the bulk processor blocks the
+ * computation when this limit is reached. Requests still rejected by elasticsearch because it is overloaded (HTTP 429)
+ * after the bulk processor retries are submitted again, and the computation slows down its consumption using a backoff
+ * delay that doubles on each rejection and halves on each successful bulk. A checkpoint is only done once all the
+ * requests are indexed.
  *
  * @since 10.3
  */
@@ -62,12 +72,18 @@ public class BulkIndexComputation extends AbstractComputation implements BulkPro
 
     public static final String NAME = "bulkIndex";
 
+    /** @since 11.1 */
+    protected static final long MAX_BACKOFF_MS = 30_000;
+
     protected final int esBulkSize;
 
     protected final int esBulkActions;
 
     protected final int flushIntervalMs;
 
+    /** @since 11.1 */
+    protected final int concurrentRequests;
+
     protected BulkProcessor bulkProcessor;
 
     protected Codec<DataBucket> codec;
@@ -78,11 +94,47 @@ public class BulkIndexComputation extends AbstractComputation implements BulkPro
 
     protected volatile boolean abort;
 
+    /** @since 11.1 */
+    protected long initialBackoffMs;
+
+    /** @since 11.1 */
+    protected int maxRetries;
+
+    /**
+     * The current backoff delay, adapted to the rejections of elasticsearch.
+     *
+     * @since 11.1
+     */
+    protected final AtomicLong backoffMs = new AtomicLong();
+
+    /**
+     * The requests rejected by elasticsearch, to be submitted again.
+     *
+     * @since 11.1
+     */
+    protected final Queue<DocWriteRequest<?>> rejected = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of bulk requests in flight, used as a monitor to wait for their completion.
+     *
+     * @since 11.1
+     */
+    protected int inFlight;
+
     public BulkIndexComputation(int esBulkSize, int esBulkActions, int flushInterval) {
+        this(esBulkSize, esBulkActions, flushInterval, 0);
+    }
+
+    /**
+     * @param concurrentRequests the maximum number of bulk requests in flight, {@code 0} to execute them synchronously
+     * @since 11.1
+     */
+    public BulkIndexComputation(int esBulkSize, int esBulkActions, int flushInterval, int concurrentRequests) {
         super(NAME, 1, 1);
         this.esBulkSize = esBulkSize;
         this.esBulkActions = esBulkActions;
         this.flushIntervalMs = flushInterval * 1000;
+        this.concurrentRequests = concurrentRequests;
     }
 
     @Override
@@ -92,9 +144,11 @@ public class BulkIndexComputation extends AbstractComputation implements BulkPro
         continueOnFailure = context.getPolicy().continueOnFailure();
         long backoffDelayMs = context.getPolicy().getRetryPolicy().getDelay().toMillis();
         int retries = context.getPolicy().getRetryPolicy().getMaxRetries();
+        initialBackoffMs = Math.max(backoffDelayMs, 1);
+        maxRetries = retries;
 
         bulkProcessor = getESClient().bulkProcessorBuilder(this)
-                                     .setConcurrentRequests(0)
+                                     .setConcurrentRequests(concurrentRequests)
                                      .setBulkSize(new ByteSizeValue(esBulkSize, ByteSizeUnit.BYTES))
                                      .setBulkActions(esBulkActions)
                                      .setBackoffPolicy(BackoffPolicy.exponentialBackoff(
@@ -112,18 +166,133 @@ public class BulkIndexComputation extends AbstractComputation implements BulkPro
             return;
         }
         if (updates) {
-            // flush is sync because bulkProcessor is initialized with setConcurrentRequests(0)
-            bulkProcessor.flush();
+            if (!flushAll()) {
+                context.askForTermination();
+                log.error("Terminate computation due to previous error");
+                return;
+            }
             context.askForCheckpoint();
             updates = false;
         }
         context.setTimer("flush", System.currentTimeMillis() + flushIntervalMs);
     }
 
+    /**
+     * Flushes the bulk processor and waits until all the requests, including the rejected ones, are indexed.
+     *
+     * @return {@code false} if the computation must abort
+     * @since 11.1
+     */
+    protected boolean flushAll() {
+        int rounds = 0;
+        for (;;) {
+            resubmitRejected();
+            bulkProcessor.flush();
+            awaitInFlight();
+            if (abort) {
+                return false;
+            }
+            if (rejected.isEmpty()) {
+                return true;
+            }
+            if (++rounds > maxRetries) {
+                log.error(String.format("Elasticsearch keeps rejecting %d requests after %d retries", rejected.size(),
+                        maxRetries));
+                rejected.clear();
+                if (!continueOnFailure) {
+                    abort = true;
+                    return false;
+                }
+                return true;
+            }
+            backoff();
+        }
+    }
+
+    /**
+     * Submits again the requests rejected by elasticsearch.
+     *
+     * @since 11.1
+     */
+    protected void resubmitRejected() {
+        DocWriteRequest<?> request;
+        while ((request = rejected.poll()) != null) {
+            bulkProcessor.add(request);
+        }
+    }
+
+    /**
+     * Waits for the current backoff delay, to slow down the consumption of records when elasticsearch is overloaded.
+     *
+     * @since 11.1
+     */
+    protected void backoff() {
+        long delay = backoffMs.get();
+        if (delay <= 0) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Elasticsearch is overloaded, waiting %d ms", delay));
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException(e);
+        }
+    }
+
+    /**
+     * Waits until no bulk request is in flight.
+     *
+     * @since 11.1
+     */
+    protected synchronized void awaitInFlight() {
+        try {
+            while (inFlight > 0) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException(e);
+        }
+    }
+
+    protected synchronized void bulkStarted() {
+        inFlight++;
+    }
+
+    protected synchronized void bulkDone() {
+        inFlight--;
+        notifyAll();
+    }
+
+    protected void rejected(Iterable<DocWriteRequest<?>> requests) {
+        requests.forEach(rejected::add);
+        backoffMs.updateAndGet(delay -> Math.min(Math.max(delay * 2, initialBackoffMs), MAX_BACKOFF_MS));
+    }
+
+    protected void accepted() {
+        backoffMs.updateAndGet(delay -> delay / 2 < initialBackoffMs ? 0 : delay / 2);
+    }
+
+    protected static boolean isRejection(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof ElasticsearchException
+                    && ((ElasticsearchException) t).status() == RestStatus.TOO_MANY_REQUESTS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void processRecord(ComputationContext context, String inputStream, Record record) {
         DataBucket in = codec.decode(record.getData());
         if (in.getCount() > 0) {
+            // backpressure when elasticsearch is overloaded
+            backoff();
+            resubmitRejected();
             BulkRequest bulkRequest = decodeRequest(in);
             for (DocWriteRequest<?> request : bulkRequest.requests()) {
                 bulkProcessor.add(request);
@@ -164,6 +333,7 @@ public class BulkIndexComputation extends AbstractComputation implements BulkPro
     // the following methods are called from a different thread than the computation
     @Override
     public void beforeBulk(long executionId, BulkRequest request) {
+        bulkStarted();
         if (log.isDebugEnabled()) {
             log.debug(String.format("Creating elasticsearch bulk %s with %d action", executionId,
                     request.numberOfActions()));
@@ -172,23 +342,50 @@ public class BulkIndexComputation extends AbstractComputation implements BulkPro
 
     @Override
     public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+        try {
+            processResponse(executionId, request, response);
+        } finally {
+            bulkDone();
+        }
+    }
+
+    protected void processResponse(long executionId, BulkRequest request, BulkResponse response) {
         if (log.isDebugEnabled()) {
             log.debug(String.format("After bulk: %s, actions: %d, status: %s", executionId, request.numberOfActions(),
                     response.status()));
         }
         if (!response.hasFailures()) {
+            accepted();
             return;
         }
-        MutableBoolean inError = new MutableBoolean(false);
-        Arrays.stream(response.getItems()).filter(BulkItemResponse::isFailed).forEach(item -> {
-            if (item.getFailure().getStatus() != RestStatus.CONFLICT) {
+        boolean inError = false;
+        List<DocWriteRequest<?>> rejectedRequests = new ArrayList<>();
+        for (BulkItemResponse item : response.getItems()) {
+            if (!item.isFailed()) {
+                continue;
+            }
+            RestStatus status = item.getFailure().getStatus();
+            DocWriteRequest<?> rejectedRequest = status == RestStatus.TOO_MANY_REQUESTS ? getRequest(request, item)
+                    : null;
+            if (rejectedRequest != null) {
+                rejectedRequests.add(rejectedRequest);
+            } else if (status != RestStatus.CONFLICT) {
                 log.warn("Failure in bulk indexing: " + item.getFailureMessage());
-                inError.setTrue();
+                inError = true;
             } else if (log.isDebugEnabled()) {
                 log.debug("Skipping version conflict: " + item.getFailureMessage());
             }
-        });
-        if (inError.isTrue()) {
+        }
+        if (rejectedRequests.isEmpty()) {
+            accepted();
+        } else {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Elasticsearch bulk %s has %d rejected actions", executionId,
+                        rejectedRequests.size()));
+            }
+            rejected(rejectedRequests);
+        }
+        if (inError) {
             log.error(String.format("Elasticsearch bulk %s returns with failures: %s", executionId,
                     response.buildFailureMessage()));
             if (!continueOnFailure) {
@@ -197,12 +394,42 @@ public class BulkIndexComputation extends AbstractComputation implements BulkPro
         }
     }
 
+    /**
+     * Finds the request of a bulk item. The item id cannot be used as an index in the bulk request: after retries by
+     * the bulk processor, it is an index in the last retried request, which only contains the requests failed so far.
+     *
+     * @return the request, or {@code null} if not found
+     * @since 11.1
+     */
+    protected static DocWriteRequest<?> getRequest(BulkRequest request, BulkItemResponse item) {
+        DocWriteRequest<?> found = null;
+        for (DocWriteRequest<?> req : request.requests()) {
+            if (item.getId().equals(req.id())) {
+                // the last one if the doc is written several times
+                found = req;
+            }
+        }
+        return found;
+    }
+
     @Override
     public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
-        log.error(String.format("Elasticsearch bulk %s fails, contains %d actions", executionId,
-                request.numberOfActions()), failure);
-        if (!continueOnFailure) {
-            abort = true;
+        try {
+            if (isRejection(failure)) {
+                if (log.isDebugEnabled()) {
+                    log.debug(String.format("Elasticsearch bulk %s rejected, contains %d actions", executionId,
+                            request.numberOfActions()));
+                }
+                rejected(request.requests());
+                return;
+            }
+            log.error(String.format("Elasticsearch bulk %s fails, contains %d actions", executionId,
+                    request.numberOfActions()), failure);
+            if (!continueOnFailure) {
+                abort = true;
+            }
+        } finally {
+            bulkDone();
         }
     }
 }
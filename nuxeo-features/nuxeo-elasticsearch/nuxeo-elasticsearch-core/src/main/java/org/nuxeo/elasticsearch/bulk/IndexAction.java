@@ -51,6 +51,18 @@ public class IndexAction implements StreamProcessorTopology {
 
     public static final int BULK_FLUSH_INTERVAL_DEFAULT = 10;
 
+    /** @since 11.1 */
+    public static final String ES_BULK_CONCURRENT_REQUESTS_OPTION = "esBulkConcurrentRequests";
+
+    /** @since 11.1 */
+    public static final int ES_BULK_CONCURRENT_REQUESTS_DEFAULT = 2;
+
+    /** @since 11.1 */
+    public static final String ES_MAX_RECORD_SIZE_OPTION = "esMaxRecordSizeBytes";
+
+    /** @since 11.1 */
+    public static final int ES_MAX_RECORD_SIZE_DEFAULT = (int) IndexRequestComputation.MAX_RECORD_SIZE;
+
     public static final String INDEX_UPDATE_ALIAS_PARAM = "updateAlias";
 
     public static final String REFRESH_INDEX_PARAM = "refresh";
@@ -60,11 +72,15 @@ public class IndexAction implements StreamProcessorTopology {
         int esBulkSize = getOptionAsInteger(options, ES_BULK_SIZE_OPTION, ES_BULK_SIZE_DEFAULT);
         int esBulkActions = getOptionAsInteger(options, ES_BULK_ACTION_OPTION, ES_BULK_ACTION_DEFAULT);
         int esBulkFlushInterval = getOptionAsInteger(options, BULK_FLUSH_INTERVAL_OPTION, BULK_FLUSH_INTERVAL_DEFAULT);
+        int esConcurrentRequests = getOptionAsInteger(options, ES_BULK_CONCURRENT_REQUESTS_OPTION,
+                ES_BULK_CONCURRENT_REQUESTS_DEFAULT);
+        int esMaxRecordSize = getOptionAsInteger(options, ES_MAX_RECORD_SIZE_OPTION, ES_MAX_RECORD_SIZE_DEFAULT);
         return Topology.builder()
-                       .addComputation(IndexRequestComputation::new, Arrays.asList(INPUT_1 + ":" + ACTION_NAME, //
-                               OUTPUT_1 + ":" + BulkIndexComputation.NAME))
-                       .addComputation(() -> new BulkIndexComputation(esBulkSize, esBulkActions, esBulkFlushInterval),
-                               Arrays.asList(INPUT_1 + ":" + BulkIndexComputation.NAME, //
+                       .addComputation(() -> new IndexRequestComputation(Math.min(esMaxRecordSize, esBulkSize),
+                               esBulkActions), Arrays.asList(INPUT_1 + ":" + ACTION_NAME, //
+                                       OUTPUT_1 + ":" + BulkIndexComputation.NAME))
+                       .addComputation(() -> new BulkIndexComputation(esBulkSize, esBulkActions, esBulkFlushInterval,
+                               esConcurrentRequests), Arrays.asList(INPUT_1 + ":" + BulkIndexComputation.NAME, //
                                        OUTPUT_1 + ":" + STATUS_STREAM))
                        .addComputation(() -> new IndexCompletionComputation(),
                                Collections.singletonList(INPUT_1 + ":" + DONE_STREAM))
@@ -64,20 +64,46 @@ public class IndexRequestComputation extends AbstractBulkComputation {
 
     protected static final String INDEX_OPTION = "indexName";
 
+    /** @since 11.1 */
+    protected final long maxRecordSize;
+
+    /** @since 11.1 */
+    protected final int maxRecordActions;
+
     protected BulkRequest bulkRequest;
 
-    protected List<BulkRequest> bulkRequests = new ArrayList<>();
+    /**
+     * The serialized requests of the current bucket.
+     *
+     * @since 11.1
+     */
+    protected List<DataBucket> dataBuckets = new ArrayList<>();
+
+    /** @since 11.1 */
+    protected int count;
 
     protected String bucketKey;
 
     public IndexRequestComputation() {
+        this(MAX_RECORD_SIZE, IndexAction.ES_BULK_ACTION_DEFAULT);
+    }
+
+    /**
+     * @param maxRecordSize the maximum size of the requests written in a record
+     * @param maxRecordActions the maximum number of requests written in a record
+     * @since 11.1
+     */
+    public IndexRequestComputation(long maxRecordSize, int maxRecordActions) {
         super(ACTION_NAME, 1);
+        this.maxRecordSize = maxRecordSize;
+        this.maxRecordActions = maxRecordActions;
     }
 
     @Override
     public void startBucket(String bucketKey) {
         this.bucketKey = bucketKey;
-        bulkRequests.clear();
+        dataBuckets.clear();
+        count = 0;
         bulkRequest = new BulkRequest();
     }
 
@@ -99,33 +125,44 @@ public class IndexRequestComputation extends AbstractBulkComputation {
     }
 
     protected void append(IndexRequest indexRequest) {
-        if (bulkRequest.estimatedSizeInBytes() + indexRequest.source().length() > MAX_RECORD_SIZE) {
-            if (bulkRequest.numberOfActions() > 0) {
-                // Create multiple elastic bulk requests when we exceed the record size
-                bulkRequests.add(bulkRequest);
-                bulkRequest = new BulkRequest();
-            }
-            if (indexRequest.source().length() > MAX_RECORD_SIZE) {
+        int size = indexRequest.source().length();
+        if (bulkRequest.numberOfActions() >= maxRecordActions
+                || bulkRequest.estimatedSizeInBytes() + size > maxRecordSize) {
+            // Create multiple elastic bulk requests when we exceed the record size
+            flushBulkRequest();
+            if (size > maxRecordSize) {
                 log.warn(String.format("Indexing request for doc: %s, is too large: %d, max record size: %d",
-                        indexRequest.id(), indexRequest.source().length(), MAX_RECORD_SIZE));
+                        indexRequest.id(), size, maxRecordSize));
             }
         }
         bulkRequest.add(indexRequest);
     }
 
+    /**
+     * Serializes the current bulk request, so that the documents sources are not kept until the end of the bucket.
+     *
+     * @since 11.1
+     */
+    protected void flushBulkRequest() {
+        int actions = bulkRequest == null ? 0 : bulkRequest.numberOfActions();
+        if (actions == 0) {
+            return;
+        }
+        dataBuckets.add(new DataBucket(getCurrentCommand().getId(), actions, toBytes(bulkRequest)));
+        count += actions;
+        bulkRequest = new BulkRequest();
+    }
+
     @Override
     public void endBucket(ComputationContext context, BulkStatus delta) {
         long bucketSize = delta.getProcessed();
-        bulkRequests.add(bulkRequest);
+        flushBulkRequest();
         String commandId = getCurrentCommand().getId();
         int i = 0;
-        int count = 0;
-        for (BulkRequest request : bulkRequests) {
-            DataBucket dataBucket = new DataBucket(commandId, request.numberOfActions(), toBytes(request));
+        for (DataBucket dataBucket : dataBuckets) {
             // use distinct key to distribute the message evenly between partitions
             String key = bucketKey + "-" + i++;
             context.produceRecord(OUTPUT_1, Record.of(key, BulkCodecs.getDataBucketCodec().encode(dataBucket)));
-            count += request.numberOfActions();
         }
         if (count < bucketSize) {
             log.warn(String.format("Command: %s offset: %s created %d documents out of %d, %d not accessible",
@@ -135,7 +172,7 @@ public class IndexRequestComputation extends AbstractBulkComputation {
                     Record.of(bucketKey + "-missing", BulkCodecs.getDataBucketCodec().encode(dataBucket)));
         }
         bulkRequest = null;
-        bulkRequests.clear();
+        dataBuckets.clear();
     }
 
     protected String getIndexName(CoreSession session, Map<String, Serializable> properties) {
@@ -24,9 +24,12 @@ import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
@@ -76,6 +79,14 @@ public class IndexingCommand implements Serializable {
 
     protected List<String> schemas;
 
+    /**
+     * The xpaths of the top-level properties changed by an {@link Type#UPDATE}, or {@code null} if the whole document
+     * must be indexed.
+     *
+     * @since 11.1
+     */
+    protected Set<String> dirtyProperties;
+
     protected long order;
 
     protected transient String sessionId;
@@ -177,6 +188,7 @@ public class IndexingCommand implements Serializable {
     public boolean merge(IndexingCommand other) {
         if (canBeMerged(other)) {
             merge(other.sync, other.recurse);
+            mergeDirtyProperties(other.dirtyProperties);
             return true;
         }
         return false;
@@ -187,6 +199,17 @@ public class IndexingCommand implements Serializable {
         this.recurse = this.recurse || recurse;
     }
 
+    /**
+     * @since 11.1
+     */
+    protected void mergeDirtyProperties(Set<String> dirtyProperties) {
+        if (this.dirtyProperties == null || dirtyProperties == null) {
+            this.dirtyProperties = null;
+        } else {
+            this.dirtyProperties.addAll(dirtyProperties);
+        }
+    }
+
     protected boolean canBeMerged(IndexingCommand other) {
         if (type != other.type) {
             return false;
@@ -231,6 +254,13 @@ public class IndexingCommand implements Serializable {
         jsonGen.writeBooleanField("recurse", recurse);
         jsonGen.writeBooleanField("sync", sync);
         jsonGen.writeNumberField("order", getOrder());
+        if (dirtyProperties != null) {
+            jsonGen.writeArrayFieldStart("dirty");
+            for (String xpath : dirtyProperties) {
+                jsonGen.writeString(xpath);
+            }
+            jsonGen.writeEndArray();
+        }
         jsonGen.writeEndObject();
     }
 
@@ -273,6 +303,9 @@ public class IndexingCommand implements Serializable {
                 cmd.recurse = value.booleanValue();
             } else if ("sync".equals(key)) {
                 cmd.sync = value.booleanValue();
+            } else if ("dirty".equals(key)) {
+                cmd.dirtyProperties = new HashSet<>();
+                value.forEach(xpath -> cmd.dirtyProperties.add(xpath.textValue()));
             }
         }
         if (cmd.targetDocumentId == null) {
@@ -313,6 +346,36 @@ public class IndexingCommand implements Serializable {
         }
     }
 
+    /**
+     * Gets the xpaths of the top-level properties changed by an update, in the form {@code schema:name}.
+     *
+     * @return the changed properties, or {@code null} if the whole document must be indexed
+     * @since 11.1
+     */
+    public Set<String> getDirtyProperties() {
+        return dirtyProperties;
+    }
+
+    /**
+     * Sets the xpaths of the top-level properties changed by an update. An empty collection means that only system
+     * properties changed, {@code null} that the whole document must be indexed.
+     *
+     * @since 11.1
+     */
+    public void setDirtyProperties(Collection<String> dirtyProperties) {
+        this.dirtyProperties = dirtyProperties == null ? null : new HashSet<>(dirtyProperties);
+    }
+
+    /**
+     * Checks if the indexed document can be partially updated from the system properties and the dirty properties,
+     * instead of being fully written.
+     *
+     * @since 11.1
+     */
+    public boolean isPartialUpdate() {
+        return type == Type.UPDATE && !recurse && dirtyProperties != null;
+    }
+
     @Override
     public String toString() {
         try {
@@ -20,6 +20,7 @@
 package org.nuxeo.elasticsearch.commands;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -51,7 +52,17 @@ public class IndexingCommands {
     }
 
     public void add(Type type, boolean sync, boolean recurse) {
+        add(type, sync, recurse, null);
+    }
+
+    /**
+     * @param dirtyProperties the properties changed by an update, or {@code null} if the whole document must be
+     *            indexed
+     * @since 11.1
+     */
+    public void add(Type type, boolean sync, boolean recurse, Collection<String> dirtyProperties) {
         IndexingCommand cmd = new IndexingCommand(targetDocument, type, sync, recurse);
+        cmd.setDirtyProperties(dirtyProperties);
         add(cmd);
     }
 
@@ -73,6 +84,8 @@ public class IndexingCommands {
             if (existing.merge(command)) {
                 return;
             }
+            // later changes are merged in the existing command only
+            command.setDirtyProperties(null);
         } else if (commandTypes.contains(Type.INSERT)) {
             if (command.type == Type.DELETE) {
                 // index and delete in the same tx
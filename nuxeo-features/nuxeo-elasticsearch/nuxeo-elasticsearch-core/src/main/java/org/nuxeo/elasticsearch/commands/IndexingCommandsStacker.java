@@ -34,10 +34,14 @@ import static org.nuxeo.ecm.core.api.event.DocumentEventTypes.DOCUMENT_REMOVED;
 import static org.nuxeo.ecm.core.api.event.DocumentEventTypes.DOCUMENT_RESTORED;
 import static org.nuxeo.ecm.core.api.event.DocumentEventTypes.DOCUMENT_SECURITY_UPDATED;
 import static org.nuxeo.ecm.core.api.event.DocumentEventTypes.DOCUMENT_TAG_UPDATED;
+import static org.nuxeo.ecm.core.api.event.DocumentEventTypes.DOCUMENT_UPDATED;
 import static org.nuxeo.ecm.core.api.trash.TrashService.DOCUMENT_TRASHED;
 import static org.nuxeo.ecm.core.api.trash.TrashService.DOCUMENT_UNTRASHED;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -46,8 +50,11 @@ import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.IdRef;
 import org.nuxeo.ecm.core.api.LifeCycleConstants;
+import org.nuxeo.ecm.core.api.event.CoreEventConstants;
+import org.nuxeo.ecm.core.api.model.Property;
 import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
 import org.nuxeo.elasticsearch.ElasticSearchConstants;
+import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.commands.IndexingCommand.Type;
 import org.nuxeo.runtime.api.Framework;
 
@@ -97,7 +104,79 @@ public abstract class IndexingCommandsStacker {
             return;
         }
         boolean sync = isSynchronous(docCtx, doc);
-        stackCommand(doc, eventId, sync);
+        Set<String> dirtyProperties = doc == docCtx.getSourceDocument() ? getDirtyProperties(docCtx, eventId) : null;
+        stackCommand(doc, eventId, sync, dirtyProperties);
+    }
+
+    /**
+     * Gets the properties changed by an event, when a partial update of the indexed document is enough.
+     * <p>
+     * A document save stacks an update without dirty properties before the save, the properties actually changed are
+     * added after the save by comparing the saved document to the previous one. This way the changes done by the
+     * listeners running after this one, or by the pre-save versioning, are taken into account.
+     *
+     * @return the xpaths of the changed top-level properties, or {@code null} if the whole document must be indexed
+     * @since 11.1
+     */
+    protected Set<String> getDirtyProperties(DocumentEventContext docCtx, String eventId) {
+        if (!isPartialUpdateSupported()) {
+            // don't compare the documents for nothing
+            return null;
+        }
+        DocumentModel previous = (DocumentModel) docCtx.getProperty(CoreEventConstants.PREVIOUS_DOCUMENT_MODEL);
+        switch (eventId) {
+        case BINARYTEXT_UPDATED:
+        case DOCUMENT_TAG_UPDATED:
+        case LifeCycleConstants.TRANSITION_EVENT:
+            // only system properties are changed
+            return Collections.emptySet();
+        case BEFORE_DOC_UPDATE:
+            // changed properties are known after the save
+            return previous == null ? null : Collections.emptySet();
+        case DOCUMENT_UPDATED:
+            IndexingCommands cmds = getCommands(docCtx.getSourceDocument());
+            IndexingCommand update = cmds == null ? null : cmds.find(Type.UPDATE);
+            if (previous == null || update == null || !update.isPartialUpdate()) {
+                // no need to compare, the whole document is indexed
+                return null;
+            }
+            return getChangedProperties(previous, docCtx.getSourceDocument());
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Checks if the indexing service can partially update the indexed documents.
+     *
+     * @since 11.1
+     */
+    protected boolean isPartialUpdateSupported() {
+        ElasticSearchIndexing esi = Framework.getService(ElasticSearchIndexing.class);
+        return esi != null && esi.supportsPartialUpdate();
+    }
+
+    /**
+     * Compares the top-level properties of two states of a document.
+     *
+     * @return the xpaths of the changed properties, or {@code null} if the facets changed
+     * @since 11.1
+     */
+    protected Set<String> getChangedProperties(DocumentModel previous, DocumentModel doc) {
+        if (!previous.getFacets().equals(doc.getFacets())) {
+            // schemas may have been added or removed
+            return null;
+        }
+        Set<String> xpaths = new HashSet<>();
+        for (String schema : doc.getSchemas()) {
+            for (Property property : doc.getPropertyObjects(schema)) {
+                String xpath = schema + ':' + property.getField().getName().getLocalName();
+                if (!property.isSameAs(previous.getProperty(xpath))) {
+                    xpaths.add(xpath);
+                }
+            }
+        }
+        return xpaths;
     }
 
     protected boolean isSynchronous(DocumentEventContext docCtx, DocumentModel doc) {
@@ -117,6 +196,15 @@ public abstract class IndexingCommandsStacker {
     }
 
     protected void stackCommand(DocumentModel doc, String eventId, boolean sync) {
+        stackCommand(doc, eventId, sync, null);
+    }
+
+    /**
+     * @param dirtyProperties the properties changed by an update, or {@code null} if the whole document must be
+     *            indexed
+     * @since 11.1
+     */
+    protected void stackCommand(DocumentModel doc, String eventId, boolean sync, Set<String> dirtyProperties) {
         IndexingCommands cmds = getOrCreateCommands(doc);
         Type type;
         boolean recurse = false;
@@ -144,6 +232,10 @@ public abstract class IndexingCommandsStacker {
             }
             type = Type.UPDATE;
             break;
+        case DOCUMENT_UPDATED:
+            // proxies and versions already handled before the update
+            type = Type.UPDATE;
+            break;
         case ABOUT_TO_CHECKIN:
             if (indexIsLatestVersion()) {
                 String query = String.format(
@@ -180,7 +272,7 @@ public abstract class IndexingCommandsStacker {
             cmds.add(type, true, false);
             cmds.add(type, false, true);
         } else {
-            cmds.add(type, sync, recurse);
+            cmds.add(type, sync, recurse, dirtyProperties);
         }
     }
 
@@ -23,15 +23,20 @@ package org.nuxeo.elasticsearch.core;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.CHILDREN_FIELD;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.DOC_TYPE;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_MAX_SIZE_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_PARTIAL_UPDATE_PROPERTY;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.PATH_FIELD;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
@@ -42,6 +47,7 @@ import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.unit.TimeValue;
@@ -85,6 +91,9 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
     // send the bulk indexing command when this size is reached, optimal is 5-10m
     private static final int DEFAULT_MAX_BULK_SIZE = 5 * 1024 * 1024;
 
+    // partial updates of the same doc by concurrent workers
+    private static final int UPDATE_RETRY_ON_CONFLICT = 3;
+
     private final ElasticSearchAdminImpl esa;
 
     private final Timer deleteTimer;
@@ -95,6 +104,8 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
 
     private final boolean useExternalVersion;
 
+    private final boolean usePartialUpdate;
+
     private JsonESDocumentWriter jsonESDocumentWriter;
 
     protected static final JsonFactory JSON_FACTORY = new JsonFactory();
@@ -107,6 +118,7 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         bulkIndexTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "service", "bulkIndex"));
         this.jsonESDocumentWriter = new JsonESDocumentWriter();// default writer
         this.useExternalVersion = esa.useExternalVersion();
+        this.usePartialUpdate = !Framework.isBooleanPropertyFalse(INDEX_PARTIAL_UPDATE_PROPERTY);
     }
 
     /**
@@ -163,7 +175,9 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
 
     void processBulkIndexCommands(List<IndexingCommand> cmds) {
         BulkRequest bulkRequest = new BulkRequest();
+        Map<String, IndexingCommand> updateCmds = new HashMap<>();
         Set<String> docIds = new HashSet<>(cmds.size());
+        Set<String> fullIndexIds = getDocIdsWithSeveralCommands(cmds);
         int bulkSize = 0;
         final int maxBulkSize = getMaxBulkSize();
         for (IndexingCommand cmd : cmds) {
@@ -175,10 +189,19 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
                 continue;
             }
             try {
-                IndexRequest idxRequest = buildEsIndexingRequest(cmd);
-                if (idxRequest != null) {
-                    bulkSize += idxRequest.source().length();
-                    bulkRequest.add(idxRequest);
+                if (!fullIndexIds.contains(cmd.getTargetDocumentId()) && canUsePartialUpdate(cmd)) {
+                    UpdateRequest updateRequest = buildEsUpdateRequest(cmd);
+                    if (updateRequest != null) {
+                        bulkSize += updateRequest.doc().source().length();
+                        bulkRequest.add(updateRequest);
+                        updateCmds.put(cmd.getTargetDocumentId(), cmd);
+                    }
+                } else {
+                    IndexRequest idxRequest = buildEsIndexingRequest(cmd);
+                    if (idxRequest != null) {
+                        bulkSize += idxRequest.source().length();
+                        bulkRequest.add(idxRequest);
+                    }
                 }
             } catch (BlobNotFoundException be) {
                 log.info("Ignore indexing command in bulk, blob does not exists anymore: " + cmd);
@@ -191,11 +214,55 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
             }
             if (bulkSize > maxBulkSize) {
                 log.warn("Max bulk size reached " + bulkSize + ", sending bulk command");
-                sendBulkCommand(bulkRequest, bulkSize);
+                indexMissingDocuments(sendBulkCommand(bulkRequest, bulkSize), updateCmds);
                 bulkRequest = new BulkRequest();
+                updateCmds = new HashMap<>();
                 bulkSize = 0;
             }
         }
+        indexMissingDocuments(sendBulkCommand(bulkRequest, bulkSize), updateCmds);
+    }
+
+    /**
+     * Gets the docs targeted by several commands, they are fully indexed as their commands may describe different
+     * changes.
+     */
+    Set<String> getDocIdsWithSeveralCommands(List<IndexingCommand> cmds) {
+        Set<String> docIds = new HashSet<>(cmds.size());
+        Set<String> ret = new HashSet<>();
+        for (IndexingCommand cmd : cmds) {
+            if (cmd.getType() != Type.DELETE && cmd.getType() != Type.UPDATE_DIRECT_CHILDREN
+                    && !docIds.add(cmd.getTargetDocumentId())) {
+                ret.add(cmd.getTargetDocumentId());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Fully indexes the docs whose partial update failed because they are not yet in the index.
+     */
+    void indexMissingDocuments(BulkResponse response, Map<String, IndexingCommand> updateCmds) {
+        if (response == null || !response.hasFailures()) {
+            return;
+        }
+        BulkRequest bulkRequest = new BulkRequest();
+        int bulkSize = 0;
+        for (BulkItemResponse item : response.getItems()) {
+            if (!isMissingDocument(item)) {
+                continue;
+            }
+            IndexingCommand cmd = updateCmds.get(item.getId());
+            try {
+                IndexRequest idxRequest = buildEsIndexingRequest(cmd);
+                if (idxRequest != null) {
+                    bulkSize += idxRequest.source().length();
+                    bulkRequest.add(idxRequest);
+                }
+            } catch (BlobNotFoundException | DocumentNotFoundException e) {
+                log.info("Ignore indexing command in bulk, doc or blob does not exists anymore: " + cmd);
+            }
+        }
         sendBulkCommand(bulkRequest, bulkSize);
     }
 
@@ -204,7 +271,7 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         return Integer.parseInt(value);
     }
 
-    void sendBulkCommand(BulkRequest bulkRequest, int bulkSize) {
+    BulkResponse sendBulkCommand(BulkRequest bulkRequest, int bulkSize) {
         if (bulkRequest.numberOfActions() > 0) {
             if (log.isDebugEnabled()) {
                 logDebugMessageTruncated(String.format(
@@ -215,7 +282,9 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
             if (response.hasFailures()) {
                 logBulkFailure(response);
             }
+            return response;
         }
+        return null;
     }
 
     void logBulkFailure(BulkResponse response) {
@@ -226,6 +295,8 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
             if (item.isFailed()) {
                 if (item.getFailure().getStatus() == RestStatus.CONFLICT) {
                     sb.append("\n  ").append(item.getFailureMessage());
+                } else if (isMissingDocument(item)) {
+                    sb.append("\n  ").append(item.getId()).append(" not yet indexed, indexing the whole doc");
                 } else {
                     isError = true;
                 }
@@ -238,6 +309,14 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         }
     }
 
+    /**
+     * Checks if the item is a partial update that failed because the doc is not yet in the index.
+     */
+    boolean isMissingDocument(BulkItemResponse item) {
+        return item.isFailed() && item.getOpType() == DocWriteRequest.OpType.UPDATE
+                && item.getFailure().getStatus() == RestStatus.NOT_FOUND;
+    }
+
     void refreshIfNeeded(List<IndexingCommand> cmds) {
         for (IndexingCommand cmd : cmds) {
             if (refreshIfNeeded(cmd))
@@ -274,6 +353,9 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
     }
 
     void processIndexCommand(IndexingCommand cmd) {
+        if (canUsePartialUpdate(cmd) && processUpdateCommand(cmd)) {
+            return;
+        }
         IndexRequest request;
         try {
             request = buildEsIndexingRequest(cmd);
@@ -303,6 +385,36 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         }
     }
 
+    /**
+     * Partially updates the indexed doc.
+     *
+     * @return {@code false} if the doc is not yet in the index and must be fully indexed
+     */
+    boolean processUpdateCommand(IndexingCommand cmd) {
+        UpdateRequest request;
+        try {
+            request = buildEsUpdateRequest(cmd);
+        } catch (BlobNotFoundException | DocumentNotFoundException e) {
+            request = null;
+        } catch (IllegalStateException e) {
+            log.error("Fail to create request for indexing command: " + cmd, e);
+            return true;
+        }
+        if (request == null) {
+            log.info("Cancel indexing command because target document does not exists anymore: " + cmd);
+            return true;
+        }
+        if (log.isDebugEnabled()) {
+            logDebugMessageTruncated(
+                    String.format("Update request: curl -XPOST 'http://localhost:9200/%s/%s/%s/_update' -d '%s'",
+                            getWriteIndexForRepository(cmd.getRepositoryName()), DOC_TYPE,
+                            cmd.getTargetDocumentId(), request.toString()),
+                    MAX_CURL_LINE);
+        }
+        BulkResponse response = sendBulkCommand(new BulkRequest().add(request), request.doc().source().length());
+        return !isMissingDocument(response.getItems()[0]);
+    }
+
     void logDebugMessageTruncated(String msg, int maxSize) {
         if (log.isTraceEnabled() || msg.length() < maxSize) {
             // in trace mode we output the full message
@@ -422,6 +534,55 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         }
     }
 
+    /**
+     * Partial updates cannot be used with external versioning: Elasticsearch update requests do not support it, so a
+     * partial update could be overwritten by an older full indexing, and all the indexing commands are ordered.
+     *
+     * @since 11.1
+     */
+    @Override
+    public boolean supportsPartialUpdate() {
+        return usePartialUpdate && !useExternalVersion && jsonESDocumentWriter.supportsPartialUpdate();
+    }
+
+    /**
+     * Checks if the indexed doc can be partially updated instead of being fully written.
+     *
+     * @since 11.1
+     */
+    protected boolean canUsePartialUpdate(IndexingCommand cmd) {
+        return cmd.isPartialUpdate() && supportsPartialUpdate();
+    }
+
+    /**
+     * Return a partial update request or null if the doc does not exists anymore.
+     *
+     * @throws java.lang.IllegalStateException if the command is not attached to a session
+     * @since 11.1
+     */
+    UpdateRequest buildEsUpdateRequest(IndexingCommand cmd) {
+        DocumentModel doc = cmd.getTargetDocument();
+        if (doc == null) {
+            return null;
+        }
+        try {
+            BytesReference source = updateSource(doc, cmd.getDirtyProperties());
+            return new UpdateRequest(getWriteIndexForRepository(cmd.getRepositoryName()), DOC_TYPE,
+                    cmd.getTargetDocumentId()).doc(BytesReference.toBytes(source), XContentType.JSON)
+                                              .retryOnConflict(UPDATE_RETRY_ON_CONFLICT);
+        } catch (IOException e) {
+            throw new NuxeoException("Unable to create update request for Document " + cmd.getTargetDocumentId(), e);
+        }
+    }
+
+    protected BytesReference updateSource(DocumentModel doc, Collection<String> xpaths) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        try (JsonGenerator jsonGen = JSON_FACTORY.createGenerator(out)) {
+            jsonESDocumentWriter.writeESDocumentUpdate(jsonGen, doc, xpaths);
+            return out.bytes();
+        }
+    }
+
     protected String getWriteIndexForRepository(String repository) {
         return esa.getWriteIndexName(esa.getIndexNameForRepository(repository));
     }
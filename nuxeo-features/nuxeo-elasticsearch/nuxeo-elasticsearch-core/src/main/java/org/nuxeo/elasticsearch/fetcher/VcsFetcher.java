@@ -20,10 +20,10 @@ package org.nuxeo.elasticsearch.fetcher;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.text.Text;
@@ -34,36 +34,57 @@ import org.nuxeo.ecm.core.api.CoreInstance;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.impl.DocumentModelListImpl;
-import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.platform.query.api.PageProvider;
 
 /**
+ * Fetches the documents of the hits from the repository.
+ * <p>
+ * Since 11.1 the documents are loaded directly by id using {@link CoreSession#getDocuments(List, boolean, Set)},
+ * without going through an NXQL query, and returned in the order of the hits.
+ *
  * @since 6.0
  */
 public class VcsFetcher extends Fetcher {
 
-    private static final int CHUNK_SIZE = 100;
+    protected final Set<String> schemas;
 
     public VcsFetcher(CoreSession session, SearchResponse response, Map<String, String> repoNames) {
+        this(session, response, repoNames, null);
+    }
+
+    /**
+     * @param schemas the schemas to prefetch, or {@code null} for the default prefetched schemas
+     * @since 11.1
+     */
+    public VcsFetcher(CoreSession session, SearchResponse response, Map<String, String> repoNames,
+            Set<String> schemas) {
         super(session, response, repoNames);
+        this.schemas = schemas;
     }
 
     @Override
     public DocumentModelListImpl fetchDocuments() {
         Map<String, List<String>> repoHits = getHitsPerRepository();
-        List<DocumentModel> docs = fetchFromVcs(repoHits);
-        sortResults(docs);
-        addHighlights(docs);
+        Map<String, DocumentModel> docs = fetchFromVcs(repoHits);
         DocumentModelListImpl ret = new DocumentModelListImpl(docs.size());
-        if (!docs.isEmpty()) {
-            ret.addAll(docs);
+        for (SearchHit hit : getResponse().getHits()) {
+            DocumentModel doc = docs.get(getRepoForIndex(hit.getIndex()) + hit.getId());
+            if (doc == null) {
+                // deleted or not readable
+                continue;
+            }
+            addHighlights(doc, hit);
+            ret.add(doc);
         }
         return ret;
     }
 
+    /**
+     * Fetches the documents, keyed by repository name and id.
+     */
     @SuppressWarnings("resource") // session closed only if we opened it
-    protected List<DocumentModel> fetchFromVcs(Map<String, List<String>> repoHits) {
-        List<DocumentModel> docs = new ArrayList<>();
+    protected Map<String, DocumentModel> fetchFromVcs(Map<String, List<String>> repoHits) {
+        Map<String, DocumentModel> docs = new HashMap<>();
         String openSessionRepository = getSession().getRepositoryName();
         for (String repo : repoHits.keySet()) {
             boolean closeSession;
@@ -76,7 +97,10 @@ public class VcsFetcher extends Fetcher {
                 closeSession = true;
             }
             try {
-                docs.addAll(fetchFromVcs(repoHits.get(repo), session));
+                // the ES query was filtered on ecm:racl, but the index is updated asynchronously: check in memory
+                for (DocumentModel doc : session.getDocuments(repoHits.get(repo), true, schemas)) {
+                    docs.put(repo + doc.getId(), doc);
+                }
             } finally {
                 if (closeSession) {
                     ((CloseableCoreSession) session).close();
@@ -96,81 +120,21 @@ public class VcsFetcher extends Fetcher {
         return ret;
     }
 
-    private List<DocumentModel> fetchFromVcs(List<String> ids, CoreSession session) {
-        List<DocumentModel> ret = null;
-        int size = ids.size();
-        int start = 0;
-        int end = Math.min(CHUNK_SIZE, size);
-        boolean done = false;
-        while (!done) {
-            List<DocumentModel> docs = fetchFromVcsChunk(ids.subList(start, end), session);
-            if (ret == null) {
-                ret = docs;
-            } else {
-                ret.addAll(docs);
-            }
-            if (end >= ids.size()) {
-                done = true;
-            } else {
-                start = end;
-                end = Math.min(start + CHUNK_SIZE, size);
-            }
-        }
-        return ret;
-    }
-
-    private List<DocumentModel> fetchFromVcsChunk(final List<String> ids, CoreSession session) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM Document, Relation WHERE ecm:uuid IN (");
-        for (int i = 0; i < ids.size(); i++) {
-            sb.append(NXQL.escapeString(ids.get(i)));
-            if (i < ids.size() - 1) {
-                sb.append(", ");
-            }
-        }
-        sb.append(")");
-        return session.query(sb.toString());
-    }
-
-    private void addHighlights(List<DocumentModel> docs) {
-        for (SearchHit hit : getResponse().getHits()) {
-            for (DocumentModel doc : docs) {
-                String docId = doc.getRepositoryName() + doc.getId();
-                String hitId = getRepoForIndex(hit.getIndex()) + hit.getId();
-                if (docId.equals(hitId)) {
-                    // Add highlight if it exists
-                    Map<String, HighlightField> esHighlights = hit.getHighlightFields();
-                    if (!esHighlights.isEmpty()) {
-                        Map<String, List<String>> fields = new HashMap<>();
-                        for (Map.Entry<String, HighlightField> entry : esHighlights.entrySet()) {
-                            String field = entry.getKey();
-                            List<String> list = new ArrayList<>();
-                            for (Text fragment : entry.getValue().getFragments()) {
-                                list.add(fragment.toString());
-                            }
-                            fields.put(field, list);
-                        }
-                        doc.putContextData(PageProvider.HIGHLIGHT_CTX_DATA, (Serializable) fields);
-                    }
-                    break;
+    private void addHighlights(DocumentModel doc, SearchHit hit) {
+        // Add highlight if it exists
+        Map<String, HighlightField> esHighlights = hit.getHighlightFields();
+        if (!esHighlights.isEmpty()) {
+            Map<String, List<String>> fields = new HashMap<>();
+            for (Map.Entry<String, HighlightField> entry : esHighlights.entrySet()) {
+                String field = entry.getKey();
+                List<String> list = new ArrayList<>();
+                for (Text fragment : entry.getValue().getFragments()) {
+                    list.add(fragment.toString());
                 }
+                fields.put(field, list);
             }
+            doc.putContextData(PageProvider.HIGHLIGHT_CTX_DATA, (Serializable) fields);
         }
     }
 
-    private void sortResults(List<DocumentModel> docs) {
-        final List<String> ids = new ArrayList<>();
-        for (SearchHit hit : getResponse().getHits()) {
-            ids.add(getRepoForIndex(hit.getIndex()) + hit.getId());
-        }
-
-        docs.sort(new Comparator<DocumentModel>() {
-            @Override
-            public int compare(DocumentModel a, DocumentModel b) {
-                return ids.indexOf(a.getRepositoryName() + a.getId()) - ids.indexOf(b.getRepositoryName() + b.getId());
-            }
-        });
-
-    }
-
 }
@@ -38,6 +38,7 @@ import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentRef;
 import org.nuxeo.ecm.core.api.model.Property;
+import org.nuxeo.ecm.core.api.model.PropertyNotFoundException;
 import org.nuxeo.ecm.core.api.security.ACE;
 import org.nuxeo.ecm.core.api.security.ACL;
 import org.nuxeo.ecm.core.api.security.ACP;
@@ -183,6 +184,46 @@ public class JsonESDocumentWriter {
         jg.flush();
     }
 
+    /**
+     * Writes the source of a partial update of an indexed document: the system properties and the given top-level
+     * properties. Null and empty values are written so that they replace the indexed ones.
+     *
+     * @param xpaths the xpaths of the top-level properties to write, in the form {@code schema:name}
+     * @since 11.1
+     */
+    public void writeESDocumentUpdate(JsonGenerator jg, DocumentModel doc, Collection<String> xpaths)
+            throws IOException {
+        jg.writeStartObject();
+        writeSystemProperties(jg, doc);
+        SchemaManager schemaManager = Framework.getService(SchemaManager.class);
+        for (String xpath : xpaths) {
+            Property property;
+            try {
+                property = doc.getProperty(xpath);
+            } catch (PropertyNotFoundException e) {
+                continue;
+            }
+            String schema = xpath.substring(0, xpath.indexOf(':'));
+            String prefix = schemaManager.getSchema(schema).getNamespace().prefix;
+            if (prefix == null || prefix.length() == 0) {
+                prefix = schema;
+            }
+            JSONPropertyWriter.create().prefix(prefix).writeProperty(jg, property);
+        }
+        jg.writeEndObject();
+        jg.flush();
+    }
+
+    /**
+     * Checks if {@link #writeESDocumentUpdate} writes the properties the same way as {@link #writeESDocument}.
+     * Subclasses customizing how properties are written must override this method to allow partial updates.
+     *
+     * @since 11.1
+     */
+    public boolean supportsPartialUpdate() {
+        return getClass() == JsonESDocumentWriter.class;
+    }
+
     protected static void writeProperties(JsonGenerator jg, DocumentModel doc, String schema, ServletRequest request)
             throws IOException {
         Collection<Property> properties = doc.getPropertyObjects(schema);
@@ -22,8 +22,10 @@ package org.nuxeo.elasticsearch.provider;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -58,6 +60,13 @@ public class ElasticSearchNxqlPageProvider extends CoreQueryDocumentPageProvider
 
     public static final String SEARCH_ON_ALL_REPOSITORIES_PROPERTY = "searchAllRepositories";
 
+    /**
+     * Comma-separated list of the schemas to prefetch when fetching the documents from the repository.
+     *
+     * @since 11.1
+     */
+    public static final String FETCH_SCHEMAS_PROPERTY = "fetchSchemas";
+
     // @since 9.2
     public static final String ES_MAX_RESULT_WINDOW_PROPERTY = "org.nuxeo.elasticsearch.provider.maxResultWindow";
 
@@ -104,6 +113,7 @@ public class ElasticSearchNxqlPageProvider extends CoreQueryDocumentPageProvider
                 nxQuery.searchOnAllRepositories();
             }
             nxQuery.useUnrestrictedSession(useUnrestrictedSession());
+            nxQuery.fetchSchemas(getFetchSchemas());
 
             List<String> highlightFields = getHighlights();
             if (highlightFields != null && !highlightFields.isEmpty()) {
@@ -182,6 +192,23 @@ public class ElasticSearchNxqlPageProvider extends CoreQueryDocumentPageProvider
         return ret;
     }
 
+    /**
+     * @since 11.1
+     */
+    protected Set<String> getFetchSchemas() {
+        String value = (String) getProperties().get(FETCH_SCHEMAS_PROPERTY);
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        Set<String> schemas = new LinkedHashSet<>();
+        for (String schema : value.split(",")) {
+            if (!schema.isBlank()) {
+                schemas.add(schema.trim());
+            }
+        }
+        return schemas;
+    }
+
     protected boolean searchOnAllRepositories() {
         String value = (String) getProperties().get(SEARCH_ON_ALL_REPOSITORIES_PROPERTY);
         if (value == null) {
@@ -103,6 +103,8 @@ public class NxQueryBuilder {
 
     protected boolean useUnrestrictedSession;
 
+    protected Set<String> fetchSchemas;
+
     public NxQueryBuilder(CoreSession coreSession) {
         session = coreSession;
         repositories.add(coreSession.getRepositoryName());
@@ -193,6 +195,17 @@ public class NxQueryBuilder {
         return this;
     }
 
+    /**
+     * Restricts the schemas prefetched when fetching the documents from the repository.
+     *
+     * @param schemas the schemas, or {@code null} for the default prefetched schemas
+     * @since 11.1
+     */
+    public NxQueryBuilder fetchSchemas(Set<String> schemas) {
+        fetchSchemas = schemas;
+        return this;
+    }
+
     /**
      * Fetch the documents using VCS (database) engine. This is done by default
      */
@@ -469,7 +482,7 @@ public class NxQueryBuilder {
         if (isFetchFromElasticsearch()) {
             return new EsFetcher(session, response, repoNames, hitDocConsumer);
         }
-        return new VcsFetcher(session, response, repoNames);
+        return new VcsFetcher(session, response, repoNames, fetchSchemas);
     }
 
     /**
@@ -22,10 +22,14 @@ package org.nuxeo.elasticsearch.test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.ACL_FIELD;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.DOC_TYPE;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -33,6 +37,9 @@ import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 
 import org.apache.commons.lang3.SystemUtils;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.junit.Assert;
 import org.junit.Before;
@@ -42,6 +49,13 @@ import org.nuxeo.ecm.core.api.CloseableCoreSession;
 import org.nuxeo.ecm.core.api.CoreInstance;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.PathRef;
+import org.nuxeo.ecm.core.api.impl.DocumentModelImpl;
+import org.nuxeo.ecm.core.api.security.ACE;
+import org.nuxeo.ecm.core.api.security.ACL;
+import org.nuxeo.ecm.core.api.security.ACP;
+import org.nuxeo.ecm.core.api.security.SecurityConstants;
+import org.nuxeo.ecm.core.api.security.impl.ACPImpl;
 import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.ecm.platform.query.api.PageProvider;
 import org.nuxeo.ecm.platform.query.api.PageProviderDefinition;
@@ -1001,6 +1015,80 @@ public class TestPageProvider {
         }
     }
 
+    /**
+     * The documents of the hits are fetched from the repository in the order of the hits, with the requested schemas,
+     * and only if they are still readable.
+     *
+     * @since 11.1
+     */
+    @Test
+    public void ICanFetchHitsFromTheRepository() throws Exception {
+        int n = 150; // more than a chunk of ids
+        startTransaction();
+        DocumentModel folder = session.createDocumentModel("/", "folder", "Folder");
+        folder = session.createDocument(folder);
+        ACP acp = new ACPImpl();
+        ACL acl = ACPImpl.newACL(ACL.LOCAL_ACL);
+        acl.add(new ACE("bob", SecurityConstants.READ, true));
+        acl.add(ACE.BLOCK);
+        acp.addACL(acl);
+        session.setACP(folder.getRef(), acp, true);
+        // created in a different order than the sort order
+        for (int k = 0; k < n; k++) {
+            String name = String.format("doc%03d", (k * 37) % n);
+            DocumentModel doc = session.createDocumentModel("/folder", name, "File");
+            doc.setPropertyValue("dc:title", name);
+            session.createDocument(doc);
+        }
+        TransactionHelper.commitOrRollbackTransaction();
+        waitForCompletion();
+
+        // revoke the access to a document, but keep it readable in the index as if it was not yet reindexed
+        startTransaction();
+        DocumentModel revoked = session.getDocument(new PathRef("/folder/doc042"));
+        acp = new ACPImpl();
+        acl = ACPImpl.newACL(ACL.LOCAL_ACL);
+        acl.add(ACE.BLOCK);
+        acp.addACL(acl);
+        session.setACP(revoked.getRef(), acp, true);
+        TransactionHelper.commitOrRollbackTransaction();
+        waitForCompletion();
+        String indexName = esa.getWriteIndexName(esa.getIndexNameForRepository(session.getRepositoryName()));
+        UpdateRequest request = new UpdateRequest(indexName, DOC_TYPE, revoked.getId()).doc(
+                Collections.singletonMap(ACL_FIELD, Collections.singletonList("bob")));
+        BulkResponse response = esa.getClient().bulk(new BulkRequest().add(request));
+        assertFalse(response.buildFailureMessage(), response.hasFailures());
+        esa.refresh();
+
+        startTransaction();
+        PageProviderService pps = Framework.getService(PageProviderService.class);
+        PageProviderDefinition ppdef = pps.getPageProviderDefinition("NXQL_PP_FETCH_SCHEMAS");
+        HashMap<String, Serializable> props = new HashMap<>();
+        try (CloseableCoreSession bobSession = CoreInstance.openCoreSession(session.getRepositoryName(), "bob")) {
+            props.put(ElasticSearchNativePageProvider.CORE_SESSION_PROPERTY, (Serializable) bobSession);
+            PageProvider<DocumentModel> pp = (PageProvider<DocumentModel>) pps.getPageProvider(
+                    "NXQL_PP_FETCH_SCHEMAS", ppdef, null, null, null, 0L, props);
+            List<DocumentModel> docs = pp.getCurrentPage();
+            // the revoked document is still a hit
+            assertEquals(n, pp.getResultsCount());
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (i != 42) {
+                    expected.add(String.format("doc%03d", i));
+                }
+            }
+            List<String> names = new ArrayList<>();
+            for (DocumentModel doc : docs) {
+                names.add(doc.getName());
+                DocumentModelImpl docImpl = (DocumentModelImpl) doc;
+                assertTrue(docImpl.isSchemaLoaded("file"));
+                assertFalse(docImpl.isSchemaLoaded("dublincore"));
+                assertFalse(docImpl.isSchemaLoaded("common"));
+            }
+            assertEquals(expected, names);
+        }
+    }
+
     protected void assertEqualsEvenUnderWindows(String expected, String actual) {
         if (SystemUtils.IS_OS_WINDOWS) {
             // make tests pass under Windows
@@ -0,0 +1,306 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.elasticsearch.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.DOC_TYPE;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.ecm.platform.tag.FacetedTagService;
+import org.nuxeo.ecm.platform.tag.TagService;
+import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
+import org.nuxeo.elasticsearch.api.ElasticSearchService;
+import org.nuxeo.elasticsearch.commands.IndexingCommand;
+import org.nuxeo.elasticsearch.commands.IndexingCommand.Type;
+import org.nuxeo.elasticsearch.query.NxQueryBuilder;
+import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+/**
+ * Checks that documents indexed through partial updates are indexed the same way as by a full reindex.
+ * <p>
+ * A marker field is added directly to the indexed source of the documents: it is kept by a partial update and dropped
+ * by a full index request.
+ *
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features({ RepositoryElasticSearchFeature.class })
+@Deploy("org.nuxeo.ecm.platform.tag")
+@Deploy("org.nuxeo.ecm.automation.core")
+@Deploy("org.nuxeo.elasticsearch.core.test:elasticsearch-test-contrib.xml")
+@Deploy("org.nuxeo.elasticsearch.core.test:elasticsearch-test-partial-update-contrib.xml")
+public class TestPartialUpdateIndexing {
+
+    protected static final String MARKER = "test:partialUpdateMarker";
+
+    @Inject
+    protected CoreFeature coreFeature;
+
+    @Inject
+    protected CoreSession session;
+
+    @Inject
+    protected ElasticSearchService ess;
+
+    @Inject
+    protected ElasticSearchIndexing esi;
+
+    @Inject
+    protected ElasticSearchAdmin esa;
+
+    @Inject
+    protected TagService tagService;
+
+    @Inject
+    protected WorkManager workManager;
+
+    @Before
+    public void setupIndex() throws Exception {
+        esa.initIndexes(true);
+    }
+
+    protected void nextTransaction() throws Exception {
+        TransactionHelper.commitOrRollbackTransaction();
+        workManager.awaitCompletion(20, TimeUnit.SECONDS);
+        esa.prepareWaitForIndexing().get(20, TimeUnit.SECONDS);
+        esa.refresh();
+        TransactionHelper.startTransaction();
+    }
+
+    protected String getIndexName() {
+        return esa.getWriteIndexName(esa.getIndexNameForRepository(session.getRepositoryName()));
+    }
+
+    protected Map<String, Object> getSource(String id) {
+        GetResponse response = esa.getClient().get(new GetRequest(getIndexName(), DOC_TYPE, id));
+        return response.isExists() ? response.getSource() : null;
+    }
+
+    protected void mark(String id) {
+        UpdateRequest request = new UpdateRequest(getIndexName(), DOC_TYPE, id).doc(
+                Collections.singletonMap(MARKER, "partial"));
+        BulkResponse response = esa.getClient().bulk(new BulkRequest().add(request));
+        assertFalse(response.buildFailureMessage(), response.hasFailures());
+        esa.refresh();
+    }
+
+    protected void unindex(String id) {
+        esa.getClient().delete(new DeleteRequest(getIndexName(), DOC_TYPE, id));
+        esa.refresh();
+    }
+
+    protected DocumentModel createFile(String name) throws Exception {
+        DocumentModel doc = session.createDocumentModel("/", name, "File");
+        doc.setPropertyValue("dc:title", name);
+        doc.setPropertyValue("dc:description", "desc");
+        Blob blob = Blobs.createBlob("some content", "text/plain", "UTF-8", "test.txt");
+        doc.setPropertyValue("file:content", (Serializable) blob);
+        doc = session.createDocument(doc);
+        nextTransaction();
+        mark(doc.getId());
+        return session.getDocument(doc.getRef());
+    }
+
+    protected List<String> queryIds(String nxql) {
+        DocumentModelList docs = ess.query(new NxQueryBuilder(session).nxql(nxql).limit(10));
+        List<String> ids = new ArrayList<>();
+        docs.forEach(doc -> ids.add(doc.getId()));
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Checks that the indexed doc was partially updated, and that a full reindex of the doc gives the same source and
+     * the same search results.
+     */
+    protected void assertSameAsFullReindex(DocumentModel doc, boolean partial, String... nxqls) {
+        String id = doc.getId();
+        Map<String, Object> source = getSource(id);
+        assertEquals(Boolean.valueOf(partial), Boolean.valueOf(source.remove(MARKER) != null));
+        List<List<String>> results = new ArrayList<>();
+        for (String nxql : nxqls) {
+            results.add(queryIds(nxql));
+        }
+
+        esi.indexNonRecursive(new IndexingCommand(session.getDocument(doc.getRef()), Type.INSERT, true, false));
+        esa.refresh();
+
+        Map<String, Object> fullSource = getSource(id);
+        assertFalse(fullSource.containsKey(MARKER));
+        // a partial update writes nulls and empty values that a full index request omits
+        assertEquals(normalize(fullSource), normalize(source));
+        for (int i = 0; i < nxqls.length; i++) {
+            assertEquals(nxqls[i], queryIds(nxqls[i]), results.get(i));
+        }
+        mark(id);
+    }
+
+    /**
+     * Removes null values and empty lists and maps.
+     */
+    @SuppressWarnings("unchecked")
+    protected static Object normalize(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> map = new HashMap<>();
+            for (Entry<String, Object> es : ((Map<String, Object>) value).entrySet()) {
+                Object v = normalize(es.getValue());
+                if (v != null) {
+                    map.put(es.getKey(), v);
+                }
+            }
+            return map.isEmpty() ? null : map;
+        } else if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object v : (List<Object>) value) {
+                list.add(normalize(v));
+            }
+            return list.isEmpty() ? null : list;
+        }
+        return value;
+    }
+
+    @Test
+    public void testClearScalar() throws Exception {
+        DocumentModel doc = createFile("file");
+
+        doc.setPropertyValue("dc:description", null);
+        doc = session.saveDocument(doc);
+        nextTransaction();
+
+        Map<String, Object> source = getSource(doc.getId());
+        assertTrue(source.containsKey("dc:description"));
+        assertNull(source.get("dc:description"));
+        assertSameAsFullReindex(doc, true, //
+                "SELECT * FROM File WHERE dc:description IS NULL", //
+                "SELECT * FROM File WHERE dc:description = 'desc'");
+    }
+
+    @Test
+    public void testClearComplexSubField() throws Exception {
+        DocumentModel doc = createFile("file");
+
+        Blob blob = (Blob) doc.getPropertyValue("file:content");
+        blob.setEncoding(null);
+        doc.setPropertyValue("file:content", (Serializable) blob);
+        doc = session.saveDocument(doc);
+        nextTransaction();
+
+        assertSameAsFullReindex(doc, true, //
+                "SELECT * FROM File WHERE file:content/encoding IS NULL", //
+                "SELECT * FROM File WHERE file:content/encoding = 'UTF-8'", //
+                "SELECT * FROM File WHERE file:content/name = 'test.txt'");
+    }
+
+    @Test
+    public void testLifeCycleTransition() throws Exception {
+        DocumentModel doc = createFile("file");
+
+        session.followTransition(doc, "approve");
+        nextTransaction();
+
+        assertSameAsFullReindex(doc, true, //
+                "SELECT * FROM File WHERE ecm:currentLifeCycleState = 'approved'", //
+                "SELECT * FROM File WHERE ecm:currentLifeCycleState = 'project'");
+    }
+
+    @Test
+    public void testTag() throws Exception {
+        boolean facetedTags = tagService instanceof FacetedTagService;
+        assumeTrue("DBS does not support tags based on SQL relations",
+                !coreFeature.getStorageConfiguration().isDBS() || facetedTags);
+        DocumentModel doc = createFile("file");
+
+        tagService.tag(session, doc.getId(), "mytag");
+        session.save();
+        nextTransaction();
+
+        // the tag may add a facet, in which case the doc is fully indexed
+        assertSameAsFullReindex(doc, getSource(doc.getId()).containsKey(MARKER), //
+                "SELECT * FROM File WHERE ecm:tag = 'mytag'");
+
+        tagService.tag(session, doc.getId(), "othertag");
+        tagService.untag(session, doc.getId(), "mytag");
+        session.save();
+        nextTransaction();
+
+        assertSameAsFullReindex(doc, true, //
+                "SELECT * FROM File WHERE ecm:tag = 'mytag'", //
+                "SELECT * FROM File WHERE ecm:tag = 'othertag'");
+    }
+
+    @Test
+    public void testMissingDocumentIsFullyIndexed() throws Exception {
+        DocumentModel doc1 = createFile("file1");
+        DocumentModel doc2 = createFile("file2");
+        unindex(doc1.getId());
+        assertNull(getSource(doc1.getId()));
+
+        // single command
+        doc1.setPropertyValue("dc:title", "new title");
+        doc1 = session.saveDocument(doc1);
+        nextTransaction();
+
+        assertSameAsFullReindex(doc1, false, "SELECT * FROM File WHERE dc:title = 'new title'");
+        assertEquals(1, queryIds("SELECT * FROM File WHERE dc:title = 'new title'").size());
+
+        // bulk of commands
+        unindex(doc1.getId());
+        doc1.setPropertyValue("dc:title", "newer title");
+        doc1 = session.saveDocument(doc1);
+        doc2.setPropertyValue("dc:title", "newer title");
+        doc2 = session.saveDocument(doc2);
+        nextTransaction();
+
+        assertSameAsFullReindex(doc1, false, "SELECT * FROM File WHERE dc:title = 'newer title'");
+        assertSameAsFullReindex(doc2, true, "SELECT * FROM File WHERE dc:title = 'newer title'");
+        assertEquals(2, queryIds("SELECT * FROM File WHERE dc:title = 'newer title'").size());
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.elasticsearch.test.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.bulk.BulkCodecs;
+import org.nuxeo.ecm.core.bulk.CoreBulkFeature;
+import org.nuxeo.ecm.core.bulk.message.DataBucket;
+import org.nuxeo.elasticsearch.api.ESClient;
+import org.nuxeo.elasticsearch.bulk.BulkIndexComputation;
+import org.nuxeo.lib.stream.computation.ComputationMetadataMapping;
+import org.nuxeo.lib.stream.computation.ComputationPolicy;
+import org.nuxeo.lib.stream.computation.ComputationPolicyBuilder;
+import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.internals.ComputationContextImpl;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+import net.jodah.failsafe.RetryPolicy;
+
+/**
+ * Checks the handling of requests rejected by an overloaded elasticsearch, using a stub client.
+ *
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreBulkFeature.class)
+public class TestBulkIndexComputation {
+
+    protected static final String INDEX = "nxutest";
+
+    protected static final int MAX_RETRIES = 2;
+
+    /** Number of times each doc is still rejected. */
+    protected final Map<String, Integer> rejections = new ConcurrentHashMap<>();
+
+    /** Number of times each doc was submitted. */
+    protected final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+
+    protected final Set<String> indexed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Executes a bulk, rejecting with a 429 the docs that must still be rejected.
+     */
+    protected void bulk(BulkRequest request, ActionListener<BulkResponse> listener) {
+        List<DocWriteRequest<?>> requests = request.requests();
+        BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+        for (int i = 0; i < items.length; i++) {
+            String id = requests.get(i).id();
+            attempts.merge(id, Integer.valueOf(1), Integer::sum);
+            if (rejections.getOrDefault(id, Integer.valueOf(0)).intValue() > 0) {
+                rejections.merge(id, Integer.valueOf(-1), Integer::sum);
+                items[i] = new BulkItemResponse(i, OpType.INDEX, new BulkItemResponse.Failure(INDEX, "doc", id,
+                        new EsRejectedExecutionException("rejected execution")));
+            } else {
+                indexed.add(id);
+                items[i] = new BulkItemResponse(i, OpType.INDEX,
+                        new IndexResponse(new ShardId(INDEX, "_na_", 0), "doc", id, 1, 1, 1, true));
+            }
+        }
+        listener.onResponse(new BulkResponse(items, 1));
+    }
+
+    protected BulkIndexComputation newComputation() {
+        ESClient client = mock(ESClient.class);
+        when(client.bulkProcessorBuilder(any(BulkProcessor.Listener.class))).then(
+                invocation -> BulkProcessor.builder(this::bulk, (BulkProcessor.Listener) invocation.getArguments()[0]));
+        return new BulkIndexComputation(1024 * 1024, 2, 1, 2) {
+            @Override
+            protected ESClient getESClient() {
+                return client;
+            }
+        };
+    }
+
+    protected ComputationPolicy newPolicy(boolean continueOnFailure) {
+        return new ComputationPolicyBuilder().retryPolicy(
+                new RetryPolicy().withMaxRetries(MAX_RETRIES).withDelay(1, TimeUnit.MILLISECONDS))
+                                             .continueOnFailure(continueOnFailure)
+                                             .build();
+    }
+
+    protected Record newRecord(String... ids) throws IOException {
+        BulkRequest request = new BulkRequest();
+        for (String id : ids) {
+            request.add(new IndexRequest(INDEX, "doc", id).source("{\"ecm:uuid\":\"" + id + "\"}", XContentType.JSON));
+        }
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            request.writeTo(out);
+            DataBucket bucket = new DataBucket("commandId", ids.length, BytesReference.toBytes(out.bytes()));
+            return Record.of("commandId", BulkCodecs.getDataBucketCodec().encode(bucket));
+        }
+    }
+
+    @Test
+    public void testRejectedRequestsAreIndexedBeforeCheckpoint() throws Exception {
+        // still rejected once the bulk processor is done with its own retries
+        rejections.put("id1", Integer.valueOf(MAX_RETRIES + 2));
+        BulkIndexComputation comp = newComputation();
+        List<String> indexedAtCheckpoint = new ArrayList<>();
+        ComputationContextImpl context = new ComputationContextImpl(null,
+                new ComputationMetadataMapping(comp.metadata(), Collections.emptyMap()), newPolicy(false)) {
+            @Override
+            public void askForCheckpoint() {
+                indexedAtCheckpoint.addAll(indexed);
+                super.askForCheckpoint();
+            }
+        };
+        comp.init(context);
+        try {
+            comp.processRecord(context, "i1", newRecord("id0", "id1", "id2"));
+            comp.processTimer(context, "flush", System.currentTimeMillis());
+
+            assertFalse(context.requireTerminate());
+            assertTrue(context.requireCheckpoint());
+            Collections.sort(indexedAtCheckpoint);
+            assertEquals(Arrays.asList("id0", "id1", "id2"), indexedAtCheckpoint);
+            // submitted again by the computation after the bulk processor retries
+            assertEquals(Integer.valueOf(MAX_RETRIES + 3), attempts.get("id1"));
+            assertEquals(Integer.valueOf(1), attempts.get("id0"));
+        } finally {
+            comp.destroy();
+        }
+    }
+
+    @Test
+    public void testAbortWhenStillRejectedAfterMaxRetries() throws Exception {
+        rejections.put("id1", Integer.valueOf(Integer.MAX_VALUE));
+        BulkIndexComputation comp = newComputation();
+        ComputationContextImpl context = new ComputationContextImpl(null,
+                new ComputationMetadataMapping(comp.metadata(), Collections.emptyMap()), newPolicy(false));
+        comp.init(context);
+        try {
+            comp.processRecord(context, "i1", newRecord("id0", "id1"));
+            comp.processTimer(context, "flush", System.currentTimeMillis());
+
+            assertTrue(context.requireTerminate());
+            assertFalse(context.requireCheckpoint());
+            assertTrue(indexed.contains("id0"));
+            assertFalse(indexed.contains("id1"));
+            // the bulk processor retries, then the computation submits again up to max retries times
+            assertEquals(Integer.valueOf((MAX_RETRIES + 1) * (MAX_RETRIES + 1)), attempts.get("id1"));
+        } finally {
+            comp.destroy();
+        }
+    }
+
+    @Test
+    public void testContinueWhenStillRejectedAfterMaxRetries() throws Exception {
+        rejections.put("id1", Integer.valueOf(Integer.MAX_VALUE));
+        BulkIndexComputation comp = newComputation();
+        ComputationContextImpl context = new ComputationContextImpl(null,
+                new ComputationMetadataMapping(comp.metadata(), Collections.emptyMap()), newPolicy(true));
+        comp.init(context);
+        try {
+            comp.processRecord(context, "i1", newRecord("id0", "id1"));
+            comp.processTimer(context, "flush", System.currentTimeMillis());
+
+            assertFalse(context.requireTerminate());
+            assertTrue(context.requireCheckpoint());
+            assertTrue(indexed.contains("id0"));
+            assertFalse(indexed.contains("id1"));
+        } finally {
+            comp.destroy();
+        }
+    }
+
+}
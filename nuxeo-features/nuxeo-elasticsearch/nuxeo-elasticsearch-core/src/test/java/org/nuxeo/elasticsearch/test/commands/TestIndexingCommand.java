@@ -18,6 +18,10 @@
  */
 package org.nuxeo.elasticsearch.test.commands;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -103,6 +107,44 @@ public class TestIndexingCommand {
         Assert.assertTrue(cmd2.isRecurse());
     }
 
+    @Test
+    public void testJsonWithDirtyProperties() throws Exception {
+        DocumentModel doc = new MockDocumentModel("foo");
+        IndexingCommand cmd = new IndexingCommand(doc, Type.UPDATE, false, false);
+        cmd.setDirtyProperties(Arrays.asList("dublincore:title", "files:files"));
+        String json = cmd.toJSON();
+        IndexingCommand cmd2 = IndexingCommand.fromJSON(json);
+        Assert.assertTrue(cmd2.isPartialUpdate());
+        Assert.assertEquals(cmd.getDirtyProperties(), cmd2.getDirtyProperties());
+        // only system properties changed
+        cmd.setDirtyProperties(Collections.emptySet());
+        cmd2 = IndexingCommand.fromJSON(cmd.toJSON());
+        Assert.assertTrue(cmd2.isPartialUpdate());
+        Assert.assertTrue(cmd2.getDirtyProperties().isEmpty());
+    }
+
+    @Test
+    public void testMergeDirtyProperties() throws Exception {
+        DocumentModel doc = new MockDocumentModel("foo");
+        IndexingCommand cmd = new IndexingCommand(doc, Type.UPDATE, false, false);
+        Assert.assertFalse(cmd.isPartialUpdate());
+        cmd.setDirtyProperties(Collections.singleton("dublincore:title"));
+        Assert.assertTrue(cmd.isPartialUpdate());
+        IndexingCommand cmd2 = new IndexingCommand(doc, Type.UPDATE, true, false);
+        cmd2.setDirtyProperties(Collections.singleton("dublincore:modified"));
+        Assert.assertTrue(cmd.merge(cmd2));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("dublincore:title", "dublincore:modified")),
+                cmd.getDirtyProperties());
+        // the whole document is indexed if one of the merged commands needs it
+        Assert.assertTrue(cmd.merge(new IndexingCommand(doc, Type.UPDATE, false, false)));
+        Assert.assertNull(cmd.getDirtyProperties());
+        Assert.assertFalse(cmd.isPartialUpdate());
+        // only updates can be partial
+        cmd = new IndexingCommand(doc, Type.UPDATE_SECURITY, false, false);
+        cmd.setDirtyProperties(Collections.emptySet());
+        Assert.assertFalse(cmd.isPartialUpdate());
+    }
+
     @Test
     public void testInvalidJson() throws Exception {
         DocumentModel doc = new MockDocumentModel("foo");
@@ -19,7 +19,10 @@
 package org.nuxeo.elasticsearch.test.commands;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -27,6 +30,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.LifeCycleConstants;
 import org.nuxeo.ecm.core.api.event.DocumentEventTypes;
 import org.nuxeo.ecm.core.api.impl.DocumentModelImpl;
 import org.nuxeo.elasticsearch.commands.IndexingCommand;
@@ -215,6 +219,61 @@ public class TestIndexingCommandsStacker extends IndexingCommandsStacker {
         Assert.assertEquals(1, flushedAsyncCommands.size());
     }
 
+    @Test
+    public void shouldMergeDirtyProperties() throws Exception {
+
+        DocumentModel doc1 = new MockDocumentModel("1");
+        DocumentModel doc2 = new MockDocumentModel("2");
+        DocumentModel doc3 = new MockDocumentModel("3", true);
+
+        // save
+        stackCommand(doc1, DocumentEventTypes.BEFORE_DOC_UPDATE, false, Collections.emptySet());
+        stackCommand(doc1, DocumentEventTypes.DOCUMENT_UPDATED, false, Collections.singleton("dublincore:title"));
+        // second save and transition
+        stackCommand(doc1, DocumentEventTypes.BEFORE_DOC_UPDATE, false, Collections.emptySet());
+        stackCommand(doc1, DocumentEventTypes.DOCUMENT_UPDATED, false, Collections.singleton("dublincore:modified"));
+        stackCommand(doc1, LifeCycleConstants.TRANSITION_EVENT, false, Collections.emptySet());
+
+        // save with an unknown change
+        stackCommand(doc2, DocumentEventTypes.BEFORE_DOC_UPDATE, false, Collections.emptySet());
+        stackCommand(doc2, DocumentEventTypes.DOCUMENT_CHECKEDOUT, false);
+
+        // save and move
+        stackCommand(doc3, DocumentEventTypes.BEFORE_DOC_UPDATE, false, Collections.emptySet());
+        stackCommand(doc3, DocumentEventTypes.DOCUMENT_MOVED, false);
+
+        IndexingCommand cmd1 = getCommands(doc1).getCommands().get(0);
+        Assert.assertEquals(1, getCommands(doc1).getCommands().size());
+        Assert.assertTrue(cmd1.isPartialUpdate());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("dublincore:title", "dublincore:modified")),
+                cmd1.getDirtyProperties());
+
+        IndexingCommand cmd2 = getCommands(doc2).getCommands().get(0);
+        Assert.assertEquals(1, getCommands(doc2).getCommands().size());
+        Assert.assertFalse(cmd2.isPartialUpdate());
+        Assert.assertNull(cmd2.getDirtyProperties());
+
+        IndexingCommand cmd3 = getCommands(doc3).getCommands().get(0);
+        Assert.assertEquals(1, getCommands(doc3).getCommands().size());
+        Assert.assertTrue(cmd3.isRecurse());
+        Assert.assertFalse(cmd3.isPartialUpdate());
+    }
+
+    @Test
+    public void shouldIndexWholeDocumentWhenCreated() throws Exception {
+
+        DocumentModel doc1 = new MockDocumentModel("1");
+
+        stackCommand(doc1, DocumentEventTypes.DOCUMENT_CREATED, false);
+        stackCommand(doc1, DocumentEventTypes.BEFORE_DOC_UPDATE, false, Collections.emptySet());
+        stackCommand(doc1, DocumentEventTypes.DOCUMENT_UPDATED, false, Collections.singleton("dublincore:title"));
+
+        IndexingCommands ic1 = getCommands(doc1);
+        Assert.assertEquals(1, ic1.getCommands().size());
+        Assert.assertEquals(Type.INSERT, ic1.getCommands().get(0).getType());
+        Assert.assertFalse(ic1.getCommands().get(0).isPartialUpdate());
+    }
+
     public final class MockDocumentModel extends DocumentModelImpl {
 
         private static final long serialVersionUID = 1L;
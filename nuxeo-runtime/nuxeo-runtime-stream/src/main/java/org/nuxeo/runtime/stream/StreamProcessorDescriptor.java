@@ -174,6 +174,14 @@ public class StreamProcessorDescriptor implements Descriptor {
         @XNode("@batchThreshold")
         public Duration batchThreshold = DEFAULT_BATCH_THRESHOLD;
 
+        // @since 11.1 number of records read in a row by the computation thread
+        @XNode("@readBatchCapacity")
+        public Integer readBatchCapacity = DEFAULT_BATCH_CAPACITY;
+
+        // @since 11.1 maximum wait for the next records of a read batch
+        @XNode("@readBatchLinger")
+        public Duration readBatchLinger = Duration.ZERO;
+
         protected int getSkipFirstFailures() {
             return Integer.parseInt(
                     Framework.getProperty(RECOVERY_SKIP_FIRST_FAILURES_OPTION, Integer.toString(skipFirstFailures)));
@@ -185,6 +193,7 @@ public class StreamProcessorDescriptor implements Descriptor {
                                                                TimeUnit.MILLISECONDS);
             return new ComputationPolicyBuilder().retryPolicy(retryPolicy)
                                                  .batchPolicy(batchCapacity, batchThreshold)
+                                                 .readBatchPolicy(readBatchCapacity, readBatchLinger)
                                                  .continueOnFailure(continueOnFailure)
                                                  .skipFirstFailures(getSkipFirstFailures());
         }
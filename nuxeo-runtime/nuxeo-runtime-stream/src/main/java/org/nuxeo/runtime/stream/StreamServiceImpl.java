@@ -39,6 +39,7 @@ import org.nuxeo.lib.stream.computation.log.LogStreamManager;
 import org.nuxeo.lib.stream.log.LogManager;
 import org.nuxeo.lib.stream.log.chronicle.ChronicleLogManager;
 import org.nuxeo.lib.stream.log.kafka.KafkaLogManager;
+import org.nuxeo.lib.stream.log.mmap.MMapLogManager;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.codec.CodecService;
 import org.nuxeo.runtime.kafka.KafkaConfigService;
@@ -86,6 +87,8 @@ public class StreamServiceImpl extends DefaultComponent implements StreamService
             }
             if ("kafka".equalsIgnoreCase(config.type)) {
                 logManagers.put(name, createKafkaLogManager(config));
+            } else if ("mmap".equalsIgnoreCase(config.type)) {
+                logManagers.put(name, createMMapLogManager(config));
             } else {
                 logManagers.put(name, createChronicleLogManager(config));
             }
@@ -113,6 +116,19 @@ public class StreamServiceImpl extends DefaultComponent implements StreamService
         return new ChronicleLogManager(path, retention);
     }
 
+    /**
+     * @since 11.1
+     */
+    protected LogManager createMMapLogManager(LogConfigDescriptor config) {
+        String basePath = config.options.getOrDefault("basePath", null);
+        String directory = config.options.getOrDefault("directory", config.getId());
+        Path path = getChroniclePath(basePath, directory);
+        String segmentSize = config.options.get("segmentSize");
+        String retention = getChronicleRetention(config.options.getOrDefault("retention", null));
+        return new MMapLogManager(path,
+                segmentSize == null ? MMapLogManager.DEFAULT_SEGMENT_SIZE : Integer.parseInt(segmentSize), retention);
+    }
+
     protected String getChronicleRetention(String retention) {
         return retention != null ? retention : Framework.getProperty(NUXEO_STREAM_RET_DURATION_PROP, "4d");
     }
@@ -19,9 +19,11 @@
  */
 package org.nuxeo.lib.stream.computation;
 
+import java.util.List;
+
 /**
- * Computation receives records from input streams one at a time, it can produce record on its output streams. A timer
- * processing can be used for windowing computation.
+ * Computation receives records from input streams one at a time, or in batches, it can produce record on its output
+ * streams. A timer processing can be used for windowing computation.
  *
  * @since 9.3
  */
@@ -53,6 +55,26 @@ public interface Computation {
      */
     void processRecord(ComputationContext context, String inputStreamName, Record record);
 
+    /**
+     * Process incoming records read in a row from one of the computation's input streams, when the read batch policy
+     * allows to read several records in a row. The default implementation calls {@link #processRecord} for each record.
+     * <p>
+     * When this method is not overridden, the records are passed one at a time to {@link #processRecord}, so that a
+     * failing record is retried or skipped on its own. Otherwise, if the processing fails, the whole batch is retried,
+     * or skipped when the policy continues on failure. A checkpoint asked during the processing is done once all the
+     * records are processed.
+     *
+     * @param context The computation context object provided by the system.
+     * @param inputStreamName Name of the input stream that provides the records.
+     * @param records The records, in the order of the stream.
+     * @since 11.1
+     */
+    default void processRecords(ComputationContext context, String inputStreamName, List<Record> records) {
+        for (Record record : records) {
+            processRecord(context, inputStreamName, record);
+        }
+    }
+
     /**
      * Process a timer callback previously set via {@link ComputationContext#setTimer(String, long)}.
      *
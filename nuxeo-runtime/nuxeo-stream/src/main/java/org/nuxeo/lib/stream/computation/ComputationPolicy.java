@@ -46,12 +46,18 @@ public class ComputationPolicy {
 
     protected final int skipFirstFailures;
 
+    protected final int readBatchCapacity;
+
+    protected final Duration readBatchLinger;
+
     public ComputationPolicy(ComputationPolicyBuilder builder) {
         batchCapacity = builder.batchCapacity;
         batchThreshold = builder.batchThreshold;
         skipFailure = builder.skipFailure;
         retryPolicy = builder.retryPolicy;
         skipFirstFailures = builder.skipFirstFailures;
+        readBatchCapacity = builder.readBatchCapacity;
+        readBatchLinger = builder.readBatchLinger;
     }
 
     public RetryPolicy getRetryPolicy() {
@@ -74,6 +80,20 @@ public class ComputationPolicy {
         return skipFirstFailures;
     }
 
+    /**
+     * @since 11.1
+     */
+    public int getReadBatchCapacity() {
+        return readBatchCapacity;
+    }
+
+    /**
+     * @since 11.1
+     */
+    public Duration getReadBatchLinger() {
+        return readBatchLinger;
+    }
+
     /**
      * @deprecated since 10.3 use {@link #continueOnFailure()} instead
      */
@@ -86,6 +106,7 @@ public class ComputationPolicy {
     public String toString() {
         return "ComputationPolicy{" + "maxRetries=" + retryPolicy.getMaxRetries() + ", delay=" + retryPolicy.getDelay()
                 + ", delayMax=" + retryPolicy.getMaxDelay() + ", continueOnFailure=" + skipFailure + ", batchCapacity="
-                + batchCapacity + ", batchThreshold=" + batchThreshold + '}';
+                + batchCapacity + ", batchThreshold=" + batchThreshold + ", readBatchCapacity=" + readBatchCapacity
+                + ", readBatchLinger=" + readBatchLinger + '}';
     }
 }
@@ -43,6 +43,10 @@ public class ComputationPolicyBuilder {
 
     protected Duration batchThreshold = Duration.ofSeconds(DEFAULT_BATCH_THRESHOLD_SECOND);
 
+    protected int readBatchCapacity = DEFAULT_BATCH_CAPACITY;
+
+    protected Duration readBatchLinger = Duration.ZERO;
+
     public ComputationPolicyBuilder() {
         // Empty constructor
     }
@@ -61,6 +65,25 @@ public class ComputationPolicyBuilder {
         return this;
     }
 
+    /**
+     * Defines how many records the computation thread reads and processes in a row before handling timers, and how
+     * long it waits for the next record of a batch.
+     * <p>
+     * Records read in a row from the same input stream are passed together to
+     * {@link Computation#processRecords(ComputationContext, String, java.util.List)}, and the per read overhead of the
+     * processing loop is paid once per batch. The first read of a batch keeps the usual read timeout, it is not adapted
+     * to the lag of the input streams.
+     *
+     * @param capacity the maximum number of records read in a row
+     * @param linger the maximum duration to wait for the next records once a first record has been read
+     * @since 11.1
+     */
+    public ComputationPolicyBuilder readBatchPolicy(int capacity, Duration linger) {
+        readBatchCapacity = Math.max(1, capacity);
+        readBatchLinger = linger == null ? Duration.ZERO : linger;
+        return this;
+    }
+
     /**
      * Defines what to do in case of failure during the batch processing.
      */
@@ -19,7 +19,9 @@
 package org.nuxeo.lib.stream.computation.log;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,12 +34,14 @@ import java.util.stream.Collectors;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.lib.stream.computation.Computation;
+import org.nuxeo.lib.stream.computation.ComputationContext;
 import org.nuxeo.lib.stream.computation.ComputationMetadataMapping;
 import org.nuxeo.lib.stream.computation.ComputationPolicy;
 import org.nuxeo.lib.stream.computation.Record;
 import org.nuxeo.lib.stream.computation.Watermark;
 import org.nuxeo.lib.stream.computation.internals.ComputationContextImpl;
 import org.nuxeo.lib.stream.computation.internals.WatermarkMonotonicInterval;
+import org.nuxeo.lib.stream.log.LogOffset;
 import org.nuxeo.lib.stream.log.LogPartition;
 import org.nuxeo.lib.stream.log.LogRecord;
 import org.nuxeo.lib.stream.log.LogTailer;
@@ -64,6 +68,9 @@ public class ComputationRunner implements Runnable, RebalanceListener {
 
     protected static final long INACTIVITY_BREAK_MS = 100;
 
+    // @since 11.1
+    protected static final int MAX_INITIAL_BATCH_SIZE = 100;
+
     private static final Log log = LogFactory.getLog(ComputationRunner.class);
 
     protected final LogStreamManager streamManager;
@@ -130,6 +137,9 @@ public class ComputationRunner implements Runnable, RebalanceListener {
     // @since 11.1
     protected boolean recordActivity;
 
+    // @since 11.1
+    protected boolean batchProcessing;
+
     @SuppressWarnings("unchecked")
     public ComputationRunner(Supplier<Computation> supplier, ComputationMetadataMapping metadata,
             List<LogPartition> defaultAssignment, LogStreamManager streamManager, ComputationPolicy policy) {
@@ -176,6 +186,7 @@ public class ComputationRunner implements Runnable, RebalanceListener {
         threadName = Thread.currentThread().getName();
         boolean interrupted = false;
         computation = supplier.get();
+        batchProcessing = overridesProcessRecords(computation);
         log.debug(metadata.name() + ": Init");
         registerMetrics();
         try {
@@ -320,55 +331,139 @@ public class ComputationRunner implements Runnable, RebalanceListener {
         if (tailer == null) {
             return false;
         }
+        // read up to readBatchCapacity records in a row, when the computation processes records in batches the records
+        // read from the same stream are processed together, the checkpoint is done once all the records read are
+        // processed so that it never commits the offset of a record not yet processed
+        int capacity = policy.getReadBatchCapacity();
         Duration timeoutRead = getTimeoutDuration();
-        LogRecord<Record> logRecord = null;
-        try {
-            logRecord = tailer.read(timeoutRead);
-        } catch (RebalanceException e) {
-            // the revoke has done a checkpoint we can continue
-        }
-        Record record;
-        if (logRecord != null) {
-            record = logRecord.message();
-            String stream = logRecord.offset().partition().name();
-            Record filteredRecord = streamManager.getFilter(stream).afterRead(record, logRecord.offset());
-            if (filteredRecord == null) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Filtering skip record: " + record);
+        long lingerDeadline = 0;
+        boolean processed = false;
+        List<Record> batch = new ArrayList<>(batchProcessing ? Math.min(capacity, MAX_INITIAL_BATCH_SIZE) : 0);
+        String batchStream = null;
+        LogOffset batchOffset = null;
+        for (int i = 0; i < capacity; i++) {
+            LogRecord<Record> logRecord = null;
+            try {
+                logRecord = tailer.read(timeoutRead);
+            } catch (RebalanceException e) {
+                // the revoke has done a checkpoint we can continue
+            }
+            if (logRecord == null) {
+                break;
+            }
+            if (i == 0) {
+                lingerDeadline = System.currentTimeMillis() + policy.getReadBatchLinger().toMillis();
+            }
+            Record record = readLogRecord(logRecord);
+            if (record != null) {
+                String from = metadata.reverseMap(logRecord.offset().partition().name());
+                processed = true;
+                if (!batchProcessing) {
+                    // each record is processed, retried or skipped on its own before reading the next one
+                    processRecordsWithRetry(from, logRecord.offset(), Collections.singletonList(record));
+                    checkRecordFlags(record);
+                    checkSourceLowWatermark();
+                    checkpointIfNecessary();
+                    if (context.requireTerminate()) {
+                        break;
+                    }
+                } else {
+                    if (!batch.isEmpty() && !from.equals(batchStream)) {
+                        processRecordsWithRetry(batchStream, batchOffset, batch);
+                        batch = new ArrayList<>(Math.min(capacity - i, MAX_INITIAL_BATCH_SIZE));
+                        if (context.requireTerminate()) {
+                            // the record read but not processed must be read again, the checkpoint must not commit it
+                            tailer.seek(logRecord.offset());
+                            break;
+                        }
+                    }
+                    batchStream = from;
+                    batchOffset = logRecord.offset();
+                    batch.add(record);
+                    checkRecordFlags(record);
                 }
-                return false;
-            } else if (filteredRecord != record) {
-                logRecord = new LogRecord<>(filteredRecord, logRecord.offset());
-                record = filteredRecord;
             }
-            lastReadTime = System.currentTimeMillis();
-            inRecords++;
-            lowWatermark.mark(record.getWatermark());
-            context.setLastOffset(logRecord.offset());
-            String from = metadata.reverseMap(stream);
-            processRecordWithRetry(from, record);
-            checkRecordFlags(record);
+            if (stop) {
+                break;
+            }
+            timeoutRead = Duration.ofMillis(Math.max(0, lingerDeadline - System.currentTimeMillis()));
+        }
+        if (!batch.isEmpty() && !context.requireTerminate()) {
+            processRecordsWithRetry(batchStream, batchOffset, batch);
+        }
+        if (processed) {
             checkSourceLowWatermark();
             setThreadName("record");
             checkpointIfNecessary();
-            return true;
         }
-        return false;
+        return processed;
     }
 
-    protected void processRecordWithRetry(String from, Record record) {
+    /**
+     * Accounts for a record read from the tailer.
+     *
+     * @return the record to process, or {@code null} if the record has been filtered out
+     * @since 11.1
+     */
+    protected Record readLogRecord(LogRecord<Record> logRecord) {
+        Record record = logRecord.message();
+        Record filteredRecord = streamManager.getFilter(logRecord.offset().partition().name())
+                                             .afterRead(record, logRecord.offset());
+        if (filteredRecord == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Filtering skip record: " + record);
+            }
+            return null;
+        }
+        lastReadTime = System.currentTimeMillis();
+        inRecords++;
+        lowWatermark.mark(filteredRecord.getWatermark());
+        return filteredRecord;
+    }
+
+    /**
+     * Processes records read in a row from the same stream. On failure, the retry and the fallback apply to all the
+     * records passed, a computation that does not override {@link Computation#processRecords} gets them one at a time.
+     *
+     * @param offset the offset of the last record
+     * @since 11.1
+     */
+    protected void processRecordsWithRetry(String from, LogOffset offset, List<Record> records) {
+        context.setLastOffset(offset);
         runningCount.inc();
         try (Timer.Context ignored = processRecordTimer.time()) {
             Failsafe.with(policy.getRetryPolicy())
                     .onRetry(failure -> computation.processRetry(context, failure))
                     .onFailure(failure -> computation.processFailure(context, failure))
                     .withFallback(() -> processFallback(context))
-                    .run(() -> computation.processRecord(context, from, record));
+                    .run(() -> {
+                        if (records.size() == 1) {
+                            computation.processRecord(context, from, records.get(0));
+                        } else {
+                            computation.processRecords(context, from, records);
+                        }
+                    });
         } finally {
             runningCount.dec();
         }
     }
 
+    /**
+     * Checks if the computation processes the records read in a row by itself. Otherwise they are processed one at a
+     * time, so that a failing record is retried or skipped on its own.
+     *
+     * @since 11.1
+     */
+    protected static boolean overridesProcessRecords(Computation computation) {
+        try {
+            return computation.getClass()
+                              .getMethod("processRecords", ComputationContext.class, String.class, List.class)
+                              .getDeclaringClass() != Computation.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
     protected void processFallback(ComputationContextImpl context) {
         if (policy.continueOnFailure()) {
             log.error(String.format("Skip record after failure: %s", context.getLastOffset()));
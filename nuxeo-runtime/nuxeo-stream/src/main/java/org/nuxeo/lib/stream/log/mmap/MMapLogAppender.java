@@ -0,0 +1,248 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import static org.nuxeo.lib.stream.codec.NoCodec.NO_CODEC;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.codec.SerializableCodec;
+import org.nuxeo.lib.stream.log.LogLag;
+import org.nuxeo.lib.stream.log.LogOffset;
+import org.nuxeo.lib.stream.log.LogPartition;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.internals.CloseableLogAppender;
+import org.nuxeo.lib.stream.log.internals.LogOffsetImpl;
+
+/**
+ * Memory-mapped implementation of LogAppender.
+ * <p>
+ * Offsets are sequential per partition, starting at 0, and the committed offset of a group is the offset of the next
+ * record to process.
+ *
+ * @since 11.1
+ */
+public class MMapLogAppender<M extends Externalizable> implements CloseableLogAppender<M> {
+    private static final Log log = LogFactory.getLog(MMapLogAppender.class);
+
+    public static final String METADATA_FILE = "metadata.mmap";
+
+    protected static final String PARTITION_PREFIX = "P-";
+
+    protected static final int POLL_INTERVAL_MS = 10;
+
+    protected static final int MAX_PARTITIONS = 100;
+
+    protected final Path basePath;
+
+    protected final String name;
+
+    protected final MMapLogMetadata metadata;
+
+    protected final List<MMapPartition> partitions;
+
+    protected final int nbPartitions;
+
+    protected final Codec<M> codec;
+
+    protected final Codec<M> encodingCodec;
+
+    // keep track of created tailers to make sure they are closed before the log
+    protected final ConcurrentLinkedQueue<MMapLogTailer<M>> tailers = new ConcurrentLinkedQueue<>();
+
+    protected volatile boolean closed;
+
+    protected MMapLogAppender(Codec<M> codec, Path basePath, MMapLogMetadata metadata, Duration retention) {
+        Objects.requireNonNull(codec);
+        this.codec = codec;
+        if (NO_CODEC.equals(codec)) {
+            this.encodingCodec = new SerializableCodec<>();
+        } else {
+            this.encodingCodec = codec;
+        }
+        this.basePath = basePath;
+        this.name = basePath.getFileName().toString();
+        this.metadata = metadata;
+        this.nbPartitions = metadata.getPartitions();
+        this.partitions = new ArrayList<>(nbPartitions);
+        for (int i = 0; i < nbPartitions; i++) {
+            partitions.add(new MMapPartition(basePath.resolve(String.format("%s%02d", PARTITION_PREFIX, i)),
+                    metadata, i, retention));
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Opened: " + toString());
+        }
+    }
+
+    /**
+     * Creates a new Log.
+     *
+     * @param retention the retention of the sealed segments, {@link Duration#ZERO} to keep them until the Log is
+     *            deleted
+     */
+    public static <M extends Externalizable> MMapLogAppender<M> create(Codec<M> codec, Path basePath, int size,
+            int segmentSize, Duration retention) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Number of partitions must be > 0");
+        }
+        if (size > MAX_PARTITIONS) {
+            throw new IllegalArgumentException(
+                    String.format("Cannot create more than: %d partitions for log: %s, requested: %d", MAX_PARTITIONS,
+                            basePath, size));
+        }
+        if (exists(basePath)) {
+            throw new IllegalArgumentException("Cannot create Log, already exists: " + basePath);
+        }
+        try {
+            Files.createDirectories(basePath);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid path to create Log: " + basePath, e);
+        }
+        MMapLogMetadata metadata = MMapLogMetadata.create(basePath.resolve(METADATA_FILE), size, segmentSize,
+                MMapLogMetadata.DEFAULT_MAX_GROUPS);
+        return new MMapLogAppender<>(codec, basePath, metadata, retention);
+    }
+
+    /**
+     * Opens an existing Log.
+     *
+     * @param retention the retention of the sealed segments, {@link Duration#ZERO} to keep them until the Log is
+     *            deleted
+     */
+    public static <M extends Externalizable> MMapLogAppender<M> open(Codec<M> codec, Path basePath,
+            Duration retention) {
+        if (!exists(basePath)) {
+            throw new IllegalArgumentException("Cannot open Log, invalid path: " + basePath);
+        }
+        return new MMapLogAppender<>(codec, basePath, MMapLogMetadata.open(basePath.resolve(METADATA_FILE)),
+                retention);
+    }
+
+    public static boolean exists(Path basePath) {
+        return basePath.resolve(METADATA_FILE).toFile().isFile();
+    }
+
+    /**
+     * Gets the number of partitions of a Log without opening it.
+     */
+    public static int partitions(Path basePath) {
+        return MMapLogMetadata.readPartitions(basePath.resolve(METADATA_FILE));
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public int size() {
+        return nbPartitions;
+    }
+
+    @Override
+    public LogOffset append(int partition, M message) {
+        long offset = partitions.get(partition).append(encodingCodec.encode(message));
+        LogOffset ret = new LogOffsetImpl(name, partition, offset);
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("append to %s, value: %s", ret, message));
+        }
+        return ret;
+    }
+
+    public LogTailer<M> createTailer(LogPartition partition, String group, Codec<M> codec) {
+        MMapLogTailer<M> tailer = new MMapLogTailer<>(codec, partitions.get(partition.partition()), metadata,
+                partition, group);
+        tailers.add(tailer);
+        return tailer;
+    }
+
+    public LogLag getLag(int partition, String group) {
+        MMapPartition mmapPartition = partitions.get(partition);
+        long first = mmapPartition.firstOffset();
+        long end = mmapPartition.endOffset();
+        long pos = metadata.getCommittedOffset(group, partition);
+        if (pos == 0) {
+            pos = first;
+        }
+        return new LogLag(pos, end, end - pos, end - first);
+    }
+
+    public List<String> getGroups() {
+        return metadata.getGroups();
+    }
+
+    @Override
+    public boolean waitFor(LogOffset offset, String group, Duration timeout) throws InterruptedException {
+        if (!name.equals(offset.partition().name())) {
+            throw new IllegalArgumentException(name + " can not wait for an offset with a different Log: " + offset);
+        }
+        int partition = offset.partition().partition();
+        boolean ret = isProcessed(group, partition, offset.offset());
+        if (ret) {
+            return true;
+        }
+        final long timeoutMs = timeout.toMillis();
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        final long delay = Math.min(POLL_INTERVAL_MS, timeoutMs);
+        while (!ret && System.currentTimeMillis() < deadline) {
+            Thread.sleep(delay);
+            ret = isProcessed(group, partition, offset.offset());
+        }
+        return ret;
+    }
+
+    protected boolean isProcessed(String group, int partition, long offset) {
+        return metadata.getCommittedOffset(group, partition) > offset;
+    }
+
+    @Override
+    public boolean closed() {
+        return closed;
+    }
+
+    @Override
+    public Codec<M> getCodec() {
+        return codec;
+    }
+
+    @Override
+    public void close() {
+        log.debug("Closing: " + toString());
+        tailers.stream().filter(Objects::nonNull).forEach(MMapLogTailer::close);
+        tailers.clear();
+        partitions.forEach(MMapPartition::close);
+        partitions.clear();
+        closed = true;
+    }
+
+    @Override
+    public String toString() {
+        return "MMapLogAppender{" + "basePath=" + basePath + ", nbPartitions=" + nbPartitions + ", closed=" + closed
+                + ", codec=" + codec + '}';
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.nuxeo.lib.stream.codec.NoCodec.NO_CODEC;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.log.LogLag;
+import org.nuxeo.lib.stream.log.LogPartition;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.RebalanceListener;
+import org.nuxeo.lib.stream.log.internals.AbstractLogManager;
+import org.nuxeo.lib.stream.log.internals.CloseableLogAppender;
+
+/**
+ * Memory-mapped implementation of LogManager, for single-node deployments.
+ * <p>
+ * Each partition is a sequence of memory-mapped segment files, appenders reserve space in the current segment with a
+ * compare-and-set and never lock. The committed offsets of the consumer groups are stored in a memory-mapped metadata
+ * file next to the partitions. The Logs can be shared by several managers of the same JVM, but not by several
+ * processes.
+ * <p>
+ * Without retention the segments are only removed when the Log is deleted. With a retention, a sealed segment is
+ * deleted once it is older than the retention and all its records have been committed by every consumer group, so a
+ * group that stops consuming keeps the segments it has not yet processed.
+ *
+ * @since 11.1
+ */
+public class MMapLogManager extends AbstractLogManager {
+    private static final Log log = LogFactory.getLog(MMapLogManager.class);
+
+    /** The default segment size, the maximum size of a record is a bit less. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    protected final Path basePath;
+
+    protected final int segmentSize;
+
+    protected final Duration retention;
+
+    public MMapLogManager(Path basePath) {
+        this(basePath, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MMapLogManager(Path basePath, int segmentSize) {
+        this(basePath, segmentSize, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param basePath the base path.
+     * @param segmentSize the size of the segment files of the created Logs, at most 1GB
+     * @param retentionDuration the retention duration of the sealed segments, expressed as: 15s, 30m, 1h, 4d ...
+     *            (where 's' is expressing a duration in seconds, 'm' in minutes,'h' in hours and 'd' in days),
+     *            {@code null} or {@code 0d} to keep the segments until the Log is deleted
+     */
+    public MMapLogManager(Path basePath, int segmentSize, String retentionDuration) {
+        if (segmentSize <= MMapSegment.HEADER_SIZE || segmentSize > MMapSegment.MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.basePath = basePath;
+        this.segmentSize = segmentSize;
+        this.retention = decodeRetention(retentionDuration);
+    }
+
+    protected static Duration decodeRetention(String retentionDuration) {
+        if (retentionDuration == null || retentionDuration.isEmpty()) {
+            return Duration.ZERO;
+        }
+        String period = retentionDuration.substring(retentionDuration.length() - 1);
+        long amount;
+        try {
+            amount = Long.parseLong(retentionDuration.substring(0, retentionDuration.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid retention duration: " + retentionDuration, e);
+        }
+        switch (period) {
+        case "s":
+            return Duration.ofSeconds(amount);
+        case "m":
+            return Duration.ofMinutes(amount);
+        case "h":
+            return Duration.ofHours(amount);
+        case "d":
+            return Duration.ofDays(amount);
+        default:
+            throw new IllegalArgumentException("Unknown retention period: " + retentionDuration);
+        }
+    }
+
+    public String getBasePath() {
+        return basePath.toAbsolutePath().toString();
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return MMapLogAppender.exists(basePath.resolve(name));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void create(String name, int size) {
+        MMapLogAppender.create(NO_CODEC, basePath.resolve(name), size, segmentSize, retention).close();
+    }
+
+    @Override
+    protected int getSize(String name) {
+        // only called when no appender is open, read the header instead of mapping the metadata
+        return MMapLogAppender.partitions(basePath.resolve(name));
+    }
+
+    @Override
+    public boolean delete(String name) {
+        Path path = basePath.resolve(name);
+        if (path.toFile().isDirectory()) {
+            log.info("Removing Log directory: " + path);
+            try {
+                deleteDirectory(path.toFile());
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot remove Log directory: " + path, e);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Applies a function to the appender of a Log, without registering an appender with an unknown codec.
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> T withAppender(String name, Function<MMapLogAppender<?>, T> function) {
+        MMapLogAppender<?> appender = (MMapLogAppender<?>) appenders.get(name);
+        if (appender != null) {
+            return function.apply(appender);
+        }
+        if (!exists(name)) {
+            throw new IllegalArgumentException("Unknown Log: " + name);
+        }
+        try (MMapLogAppender<Externalizable> tmp = MMapLogAppender.open(NO_CODEC, basePath.resolve(name), retention)) {
+            return function.apply(tmp);
+        }
+    }
+
+    @Override
+    public List<LogLag> getLagPerPartition(String name, String group) {
+        return withAppender(name, appender -> IntStream.range(0, appender.size())
+                                                       .mapToObj(partition -> appender.getLag(partition, group))
+                                                       .collect(Collectors.toList()));
+    }
+
+    @Override
+    public String toString() {
+        return "MMapLogManager{" + "basePath=" + basePath + ", segmentSize=" + segmentSize + ", retention="
+                + retention + '}';
+    }
+
+    @Override
+    public List<String> listAll() {
+        try (Stream<Path> paths = Files.list(basePath)) {
+            return paths.filter(MMapLogAppender::exists)
+                        .map(Path::getFileName)
+                        .map(Path::toString)
+                        .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid base path: " + basePath, e);
+        }
+    }
+
+    @Override
+    public List<String> listConsumerGroups(String name) {
+        return withAppender(name, MMapLogAppender::getGroups);
+    }
+
+    @Override
+    public <M extends Externalizable> CloseableLogAppender<M> createAppender(String name, Codec<M> codec) {
+        return MMapLogAppender.open(codec, basePath.resolve(name), retention);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected <M extends Externalizable> LogTailer<M> doCreateTailer(Collection<LogPartition> partitions, String group,
+            Codec<M> codec) {
+        Collection<MMapLogTailer<M>> pTailers = new ArrayList<>(partitions.size());
+        partitions.forEach(partition -> pTailers.add(
+                (MMapLogTailer<M>) ((MMapLogAppender<M>) getAppender(partition.name(), codec)).createTailer(
+                        partition, group, codec)));
+        if (pTailers.size() == 1) {
+            return pTailers.iterator().next();
+        }
+        return new MMapCompoundLogTailer<>(pTailers, group);
+    }
+
+    @Override
+    protected <M extends Externalizable> LogTailer<M> doSubscribe(String group, Collection<String> names,
+            RebalanceListener listener, Codec<M> codec) {
+        throw new UnsupportedOperationException("subscribe is not supported by MMap implementation");
+    }
+
+}
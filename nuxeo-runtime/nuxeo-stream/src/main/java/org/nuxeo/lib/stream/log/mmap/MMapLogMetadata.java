@@ -0,0 +1,266 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.nuxeo.lib.stream.StreamRuntimeException;
+
+/**
+ * The memory-mapped metadata of a Log: its number of partitions, its segment size and the committed offsets of its
+ * consumer groups.
+ * <p>
+ * The file starts with a header, followed by a fixed number of group slots. Each slot holds the group name and the
+ * committed offset of each partition. Committed offsets are read and written with acquire/release semantics, so that
+ * tailers and appenders waiting for a group see each other's commits without locking.
+ *
+ * @since 11.1
+ */
+public class MMapLogMetadata {
+
+    protected static final int MAGIC = 0x4e584d4c; // NXML
+
+    protected static final int VERSION = 1;
+
+    protected static final int HEADER_SIZE = 64;
+
+    protected static final int MAGIC_INDEX = 0;
+
+    protected static final int VERSION_INDEX = 4;
+
+    protected static final int PARTITIONS_INDEX = 8;
+
+    protected static final int SEGMENT_SIZE_INDEX = 12;
+
+    protected static final int MAX_GROUPS_INDEX = 16;
+
+    protected static final int GROUP_COUNT_INDEX = 20;
+
+    protected static final int GROUP_NAME_SIZE = 256;
+
+    protected static final int MAX_GROUP_NAME_LENGTH = GROUP_NAME_SIZE - 4;
+
+    public static final int DEFAULT_MAX_GROUPS = 128;
+
+    protected static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    protected static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    protected final Path path;
+
+    protected final MappedByteBuffer buffer;
+
+    protected final int partitions;
+
+    protected final int segmentSize;
+
+    protected final int maxGroups;
+
+    protected final int slotSize;
+
+    protected final Map<String, Integer> slots = new ConcurrentHashMap<>();
+
+    protected MMapLogMetadata(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        buffer.order(ByteOrder.nativeOrder());
+        if (buffer.getInt(MAGIC_INDEX) != MAGIC || buffer.getInt(VERSION_INDEX) != VERSION) {
+            throw new IllegalArgumentException("Invalid Log metadata file: " + path);
+        }
+        partitions = buffer.getInt(PARTITIONS_INDEX);
+        segmentSize = buffer.getInt(SEGMENT_SIZE_INDEX);
+        maxGroups = buffer.getInt(MAX_GROUPS_INDEX);
+        slotSize = getSlotSize(partitions);
+    }
+
+    protected static int getSlotSize(int partitions) {
+        return GROUP_NAME_SIZE + Long.BYTES * partitions;
+    }
+
+    public static MMapLogMetadata create(Path path, int partitions, int segmentSize, int maxGroups) {
+        MappedByteBuffer buffer = MMapSegment.map(path, HEADER_SIZE + (long) maxGroups * getSlotSize(partitions));
+        buffer.order(ByteOrder.nativeOrder());
+        buffer.putInt(VERSION_INDEX, VERSION);
+        buffer.putInt(PARTITIONS_INDEX, partitions);
+        buffer.putInt(SEGMENT_SIZE_INDEX, segmentSize);
+        buffer.putInt(MAX_GROUPS_INDEX, maxGroups);
+        // the magic is written last, an incomplete file is invalid
+        INT.setRelease(buffer, MAGIC_INDEX, MAGIC);
+        return new MMapLogMetadata(path, buffer);
+    }
+
+    public static MMapLogMetadata open(Path path) {
+        return new MMapLogMetadata(path, MMapSegment.map(path, -1));
+    }
+
+    /**
+     * Reads the number of partitions of a Log from the header of its metadata file, without mapping it.
+     */
+    public static int readPartitions(Path path) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot read Log metadata: " + path, e);
+        }
+        if (header.hasRemaining() || header.getInt(MAGIC_INDEX) != MAGIC || header.getInt(VERSION_INDEX) != VERSION) {
+            throw new IllegalArgumentException("Invalid Log metadata file: " + path);
+        }
+        return header.getInt(PARTITIONS_INDEX);
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    protected int getGroupCount() {
+        return (int) INT.getAcquire(buffer, GROUP_COUNT_INDEX);
+    }
+
+    protected int getCommittedOffsetIndex(int slot, int partition) {
+        if (partition < 0 || partition >= partitions) {
+            throw new IndexOutOfBoundsException("Invalid partition: " + partition + " for Log: " + path);
+        }
+        return HEADER_SIZE + slot * slotSize + GROUP_NAME_SIZE + Long.BYTES * partition;
+    }
+
+    protected String readGroupName(int slot) {
+        int index = HEADER_SIZE + slot * slotSize;
+        byte[] bytes = new byte[buffer.getInt(index)];
+        ByteBuffer name = buffer.duplicate();
+        name.position(index + 4);
+        name.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Finds the slot of a group, or returns {@code -1} if the group has never committed.
+     */
+    protected int findSlot(String group) {
+        Integer slot = slots.get(group);
+        if (slot != null) {
+            return slot;
+        }
+        int count = getGroupCount();
+        for (int i = 0; i < count; i++) {
+            String name = readGroupName(i);
+            slots.putIfAbsent(name, i);
+            if (name.equals(group)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    protected int getOrCreateSlot(String group) {
+        int slot = findSlot(group);
+        if (slot >= 0) {
+            return slot;
+        }
+        byte[] bytes = group.getBytes(UTF_8);
+        if (bytes.length > MAX_GROUP_NAME_LENGTH) {
+            throw new IllegalArgumentException("Group name too long: " + group);
+        }
+        // registering a group is rare, use a lock shared by all the instances on the same file
+        synchronized (MMapLogMetadata.class) {
+            slot = findSlot(group);
+            if (slot >= 0) {
+                return slot;
+            }
+            slot = getGroupCount();
+            if (slot >= maxGroups) {
+                throw new IllegalStateException(
+                        String.format("Cannot register group: %s, Log: %s has already %d groups", group, path,
+                                maxGroups));
+            }
+            int index = HEADER_SIZE + slot * slotSize;
+            ByteBuffer name = buffer.duplicate();
+            name.position(index + 4);
+            name.put(bytes);
+            buffer.putInt(index, bytes.length);
+            INT.setRelease(buffer, GROUP_COUNT_INDEX, slot + 1);
+            slots.put(group, slot);
+            return slot;
+        }
+    }
+
+    /**
+     * Gets the committed offset of a group, i.e. the offset of the next record to process, or {@code 0} if the group
+     * has never committed.
+     */
+    public long getCommittedOffset(String group, int partition) {
+        int slot = findSlot(group);
+        if (slot < 0) {
+            return 0;
+        }
+        return (long) LONG.getAcquire(buffer, getCommittedOffsetIndex(slot, partition));
+    }
+
+    /**
+     * Gets the lowest committed offset of a partition among all the groups, or {@link Long#MAX_VALUE} if there is no
+     * group. The records below it have been processed by every group.
+     */
+    public long getMinCommittedOffset(int partition) {
+        int count = getGroupCount();
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, (long) LONG.getAcquire(buffer, getCommittedOffsetIndex(i, partition)));
+        }
+        return min;
+    }
+
+    public void commit(String group, int partition, long offset) {
+        int slot = getOrCreateSlot(group);
+        LONG.setRelease(buffer, getCommittedOffsetIndex(slot, partition), offset);
+    }
+
+    public List<String> getGroups() {
+        int count = getGroupCount();
+        List<String> groups = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            groups.add(readGroupName(i));
+        }
+        return groups;
+    }
+
+    @Override
+    public String toString() {
+        return "MMapLogMetadata{" + "path=" + path + ", partitions=" + partitions + ", segmentSize=" + segmentSize
+                + ", groups=" + getGroupCount() + '}';
+    }
+
+}
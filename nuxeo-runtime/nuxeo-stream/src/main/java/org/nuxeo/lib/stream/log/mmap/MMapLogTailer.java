@@ -0,0 +1,290 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import static org.nuxeo.lib.stream.codec.NoCodec.NO_CODEC;
+
+import java.io.Externalizable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.codec.SerializableCodec;
+import org.nuxeo.lib.stream.log.LogOffset;
+import org.nuxeo.lib.stream.log.LogPartition;
+import org.nuxeo.lib.stream.log.LogRecord;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.internals.LogOffsetImpl;
+import org.nuxeo.lib.stream.log.internals.LogPartitionGroup;
+
+/**
+ * Memory-mapped implementation of LogTailer on a single partition.
+ *
+ * @since 11.1
+ */
+public class MMapLogTailer<M extends Externalizable> implements LogTailer<M> {
+    private static final Log log = LogFactory.getLog(MMapLogTailer.class);
+
+    protected static final long POLL_INTERVAL_MS = 10L;
+
+    // keep track of all tailers on the same namespace index even from different log
+    protected static final Set<LogPartitionGroup> tailersId = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    protected final MMapPartition mmapPartition;
+
+    protected final MMapLogMetadata metadata;
+
+    protected final LogPartitionGroup id;
+
+    protected final LogPartition partition;
+
+    protected final Codec<M> codec;
+
+    protected final Codec<M> decodeCodec;
+
+    protected MMapSegment segment;
+
+    protected int position;
+
+    protected long offset;
+
+    protected volatile boolean closed;
+
+    public MMapLogTailer(Codec<M> codec, MMapPartition mmapPartition, MMapLogMetadata metadata,
+            LogPartition partition, String group) {
+        Objects.requireNonNull(group);
+        this.codec = codec;
+        if (NO_CODEC.equals(codec)) {
+            this.decodeCodec = new SerializableCodec<>();
+        } else {
+            this.decodeCodec = codec;
+        }
+        this.mmapPartition = mmapPartition;
+        this.metadata = metadata;
+        this.partition = partition;
+        this.id = new LogPartitionGroup(group, partition.name(), partition.partition());
+        registerTailer();
+        toLastCommitted();
+    }
+
+    protected void registerTailer() {
+        if (!tailersId.add(id)) {
+            throw new IllegalArgumentException("A tailer for this partition and group already exists: " + id);
+        }
+    }
+
+    protected void unregisterTailer() {
+        tailersId.remove(id);
+    }
+
+    @Override
+    public LogRecord<M> read(Duration timeout) throws InterruptedException {
+        LogRecord<M> ret = read();
+        if (ret != null) {
+            return ret;
+        }
+        long timeoutMs = timeout.toMillis();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long delay = Math.min(POLL_INTERVAL_MS, timeoutMs);
+        while (ret == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(delay);
+            ret = read();
+        }
+        return ret;
+    }
+
+    protected LogRecord<M> read() {
+        if (closed) {
+            throw new IllegalStateException("The tailer has been closed.");
+        }
+        for (;;) {
+            if (segment.isPublished(position)) {
+                M value = decodeCodec.decode(segment.read(position));
+                LogRecord<M> ret = new LogRecord<>(value, new LogOffsetImpl(partition, offset));
+                position = segment.nextPosition(position);
+                offset++;
+                return ret;
+            }
+            if (segment.isSkipped(position)) {
+                // lost by a stopped process
+                position = segment.nextPosition(position);
+                offset++;
+                continue;
+            }
+            if (!segment.isEnd(position)) {
+                // no record or a record not yet published
+                return null;
+            }
+            MMapSegment next = mmapPartition.getNext(segment);
+            if (next == null) {
+                return null;
+            }
+            segment = next;
+            position = 0;
+        }
+    }
+
+    /**
+     * Moves to the record with the given offset, walking the records of the segment containing it.
+     */
+    protected void moveTo(long target) {
+        MMapSegment seg = mmapPartition.getSegment(target);
+        int pos = 0;
+        long current = seg.getBaseOffset();
+        if (target < current) {
+            throw new IllegalStateException("Unable to seek to offset: " + target + " before the start of " + id);
+        }
+        while (current < target) {
+            if (seg.isPublished(pos) || seg.isSkipped(pos)) {
+                pos = seg.nextPosition(pos);
+                current++;
+            } else if (seg.isEnd(pos)) {
+                MMapSegment next = mmapPartition.getNext(seg);
+                if (next == null) {
+                    throw new IllegalStateException("Unable to seek to offset: " + target + " after the end of " + id);
+                }
+                seg = next;
+                pos = 0;
+            } else if (current >= seg.getEndOffset()) {
+                throw new IllegalStateException("Unable to seek to offset: " + target + " after the end of " + id);
+            } else {
+                // the record is reserved but not yet published
+                Thread.onSpinWait();
+            }
+        }
+        segment = seg;
+        position = pos;
+        offset = current;
+    }
+
+    @Override
+    public LogOffset commit(LogPartition partition) {
+        if (!this.partition.equals(partition)) {
+            throw new IllegalArgumentException("Cannot commit this partition: " + partition + " from " + id);
+        }
+        metadata.commit(id.group, partition.partition(), offset);
+        if (log.isTraceEnabled()) {
+            log.trace(String.format("Commit %s:+%d", id, offset));
+        }
+        return new LogOffsetImpl(partition, offset);
+    }
+
+    @Override
+    public void commit() {
+        commit(partition);
+    }
+
+    @Override
+    public void toEnd() {
+        log.debug(String.format("toEnd: %s", id));
+        MMapSegment tail = mmapPartition.getTail();
+        long state = tail.getState();
+        segment = tail;
+        position = MMapSegment.position(state);
+        offset = tail.getBaseOffset() + MMapSegment.count(state);
+    }
+
+    @Override
+    public void toStart() {
+        log.debug(String.format("toStart: %s", id));
+        segment = mmapPartition.getFirst();
+        position = 0;
+        offset = segment.getBaseOffset();
+    }
+
+    @Override
+    public void toLastCommitted() {
+        long committed = metadata.getCommittedOffset(id.group, id.partition);
+        if (committed > 0) {
+            log.debug(String.format("toLastCommitted: %s, found: %d", id, committed));
+            moveTo(committed);
+        } else {
+            log.debug(String.format("toLastCommitted: %s, not found, move toStart", id));
+            toStart();
+        }
+    }
+
+    @Override
+    public void seek(LogOffset offset) {
+        if (!this.partition.equals(offset.partition())) {
+            throw new IllegalStateException(
+                    "Cannot seek, tailer " + this + " has no assignment for partition: " + offset);
+        }
+        log.debug("Seek to " + offset + " from tailer: " + this);
+        moveTo(offset.offset());
+    }
+
+    @Override
+    public void reset() {
+        reset(partition);
+    }
+
+    @Override
+    public void reset(LogPartition partition) {
+        if (!this.partition.equals(partition)) {
+            throw new IllegalArgumentException("Cannot reset this partition: " + partition + " from " + id);
+        }
+        log.info("Reset offset for partition: " + partition + " from tailer: " + this);
+        toStart();
+        commit(partition);
+    }
+
+    @Override
+    public LogOffset offsetForTimestamp(LogPartition partition, long timestamp) {
+        throw new UnsupportedOperationException("MMapLog does not support seek by timestamp");
+    }
+
+    @Override
+    public Collection<LogPartition> assignments() {
+        return Collections.singletonList(partition);
+    }
+
+    @Override
+    public String group() {
+        return id.group;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            log.debug("Closing: " + toString());
+            unregisterTailer();
+            closed = true;
+        }
+    }
+
+    @Override
+    public boolean closed() {
+        return closed;
+    }
+
+    @Override
+    public Codec<M> getCodec() {
+        return codec;
+    }
+
+    @Override
+    public String toString() {
+        return "MMapLogTailer{" + "id=" + id + ", offset=" + offset + ", closed=" + closed + ", codec=" + codec + '}';
+    }
+
+}
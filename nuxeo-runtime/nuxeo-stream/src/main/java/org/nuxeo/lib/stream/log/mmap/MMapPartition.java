@@ -0,0 +1,277 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.StreamRuntimeException;
+
+/**
+ * A partition of a memory-mapped Log, made of a sequence of segment files named after the offset of their first
+ * record.
+ * <p>
+ * Appends are lock-free, only the creation of a new segment when the current one is full is synchronized.
+ * <p>
+ * When a retention is set, the sealed segments older than the retention whose records have been committed by all the
+ * groups are deleted when the partition is opened and each time a new segment is used.
+ *
+ * @since 11.1
+ */
+public class MMapPartition {
+    private static final Log log = LogFactory.getLog(MMapPartition.class);
+
+    protected static final String SEGMENT_SUFFIX = ".seg";
+
+    // number of partition instances of this JVM using each segment file, guarded by MMapPartition.class
+    protected static final Map<Path, Integer> SEGMENT_USERS = new HashMap<>();
+
+    protected final Path path;
+
+    protected final int segmentSize;
+
+    protected final MMapLogMetadata metadata;
+
+    protected final int partition;
+
+    protected final Duration retention;
+
+    protected final ConcurrentSkipListMap<Long, MMapSegment> segments = new ConcurrentSkipListMap<>();
+
+    protected volatile MMapSegment tail;
+
+    /**
+     * Opens a partition, creating its first segment if needed.
+     *
+     * @param path the directory of the partition
+     * @param metadata the metadata of the Log, holding the committed offsets
+     * @param partition the index of the partition
+     * @param retention the retention of the sealed segments, {@link Duration#ZERO} to keep them until the Log is
+     *            deleted
+     */
+    public MMapPartition(Path path, MMapLogMetadata metadata, int partition, Duration retention) {
+        this.path = path;
+        this.segmentSize = metadata.getSegmentSize();
+        this.metadata = metadata;
+        this.partition = partition;
+        this.retention = retention;
+        // segment files are also created by other instances on the same Log
+        synchronized (MMapPartition.class) {
+            try {
+                Files.createDirectories(path);
+                try (Stream<Path> paths = Files.list(path)) {
+                    paths.filter(MMapPartition::isSegmentFile).forEach(this::openSegment);
+                }
+            } catch (IOException e) {
+                throw new StreamRuntimeException("Cannot open partition: " + path, e);
+            }
+            if (segments.isEmpty()) {
+                createSegment(0);
+            }
+            tail = segments.lastEntry().getValue();
+            purge();
+        }
+    }
+
+    protected static boolean isSegmentFile(Path path) {
+        return path.getFileName().toString().endsWith(SEGMENT_SUFFIX);
+    }
+
+    protected static String getSegmentFileName(long baseOffset) {
+        return String.format("%020d%s", baseOffset, SEGMENT_SUFFIX);
+    }
+
+    protected MMapSegment openSegment(Path file) {
+        MMapSegment segment = MMapSegment.open(file);
+        if (addSegmentUser(file) == 1) {
+            // no appender of this JVM uses the segment, recover the records lost by a stopped process
+            segment.recover();
+        }
+        segments.put(segment.getBaseOffset(), segment);
+        return segment;
+    }
+
+    protected MMapSegment createSegment(long baseOffset) {
+        Path file = path.resolve(getSegmentFileName(baseOffset));
+        if (file.toFile().exists()) {
+            return openSegment(file);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Creating segment: " + file);
+        }
+        MMapSegment segment = MMapSegment.create(file, baseOffset, segmentSize);
+        addSegmentUser(file);
+        segments.put(baseOffset, segment);
+        return segment;
+    }
+
+    protected static int addSegmentUser(Path file) {
+        return SEGMENT_USERS.merge(file.toAbsolutePath().normalize(), 1, Integer::sum);
+    }
+
+    protected static void removeSegmentUser(Path file) {
+        SEGMENT_USERS.computeIfPresent(file.toAbsolutePath().normalize(), (f, n) -> n == 1 ? null : n - 1);
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @return the offset of the record
+     */
+    public long append(byte[] data) {
+        if (MMapSegment.recordSize(data.length) > tail.getDataCapacity()) {
+            throw new IllegalArgumentException(String.format("Record of %d bytes is too large for partition: %s",
+                    data.length, path));
+        }
+        for (;;) {
+            MMapSegment segment = tail;
+            long offset = segment.append(data);
+            if (offset >= 0) {
+                return offset;
+            }
+            roll(segment);
+        }
+    }
+
+    protected void roll(MMapSegment full) {
+        synchronized (MMapPartition.class) {
+            if (tail == full) {
+                tail = getOrCreateSegment(full.getEndOffset());
+                purge();
+            }
+        }
+    }
+
+    /**
+     * Deletes the sealed segments older than the retention whose records have been committed by all the groups, the
+     * age of a segment being given by the creation time of the next one. Must be called with the lock held.
+     * <p>
+     * Segments deleted by another instance of this JVM are only dropped, the instances still reading them keep a valid
+     * mapping until they move to the next segment.
+     */
+    protected void purge() {
+        if (retention.isZero()) {
+            return;
+        }
+        long limit = System.currentTimeMillis() - retention.toMillis();
+        long committed = metadata.getMinCommittedOffset(partition);
+        for (;;) {
+            MMapSegment first = getFirst();
+            if (first == tail) {
+                return;
+            }
+            Path file = first.getPath();
+            if (file.toFile().exists()) {
+                MMapSegment next = getNext(first);
+                if (next == null || next.getCreationTime() > limit || first.getEndOffset() > committed) {
+                    return;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Deleting segment: " + file);
+                }
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // a mapped file cannot be deleted on some systems, it is retried when the partition is reopened
+                    log.warn("Cannot delete segment: " + file + ", " + e.getMessage());
+                }
+            }
+            segments.remove(first.getBaseOffset());
+            removeSegmentUser(file);
+        }
+    }
+
+    protected MMapSegment getOrCreateSegment(long baseOffset) {
+        MMapSegment segment = segments.get(baseOffset);
+        if (segment == null) {
+            segment = createSegment(baseOffset);
+        }
+        return segment;
+    }
+
+    public MMapSegment getFirst() {
+        return segments.firstEntry().getValue();
+    }
+
+    /**
+     * Gets the last segment, following the segments created by other instances on the same Log.
+     */
+    public MMapSegment getTail() {
+        MMapSegment segment = tail;
+        MMapSegment next;
+        while (segment.isSealed() && (next = getNext(segment)) != null) {
+            segment = next;
+        }
+        return segment;
+    }
+
+    /**
+     * Gets the segment containing the given offset.
+     */
+    public MMapSegment getSegment(long offset) {
+        Map.Entry<Long, MMapSegment> entry = segments.floorEntry(offset);
+        return entry == null ? getFirst() : entry.getValue();
+    }
+
+    /**
+     * Gets the segment following a sealed segment, or {@code null} if it is not yet created.
+     */
+    public MMapSegment getNext(MMapSegment segment) {
+        long baseOffset = segment.getEndOffset();
+        MMapSegment next = segments.get(baseOffset);
+        if (next == null) {
+            // may have been created by another instance
+            Path file = path.resolve(getSegmentFileName(baseOffset));
+            if (file.toFile().exists()) {
+                synchronized (MMapPartition.class) {
+                    next = getOrCreateSegment(baseOffset);
+                }
+            }
+        }
+        return next;
+    }
+
+    public long firstOffset() {
+        return getFirst().getBaseOffset();
+    }
+
+    public long endOffset() {
+        return getTail().getEndOffset();
+    }
+
+    public void close() {
+        // mappings are released when the buffers are garbage collected
+        synchronized (MMapPartition.class) {
+            segments.values().forEach(segment -> removeSegmentUser(segment.getPath()));
+        }
+        segments.clear();
+        tail = null;
+    }
+
+    @Override
+    public String toString() {
+        return "MMapPartition{" + "path=" + path + ", segments=" + segments.size() + '}';
+    }
+
+}
@@ -0,0 +1,305 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.StreamRuntimeException;
+
+/**
+ * A memory-mapped segment file of a partition.
+ * <p>
+ * The segment starts with a header holding its state, the offset of its first record and its creation time, followed
+ * by the records.
+ * The state is a single long packing the number of records and the position of the end of the reserved space, so that
+ * concurrent appenders can reserve space for a record with a single compare-and-set. A record is made of a marker, a
+ * length and the payload, it is published by writing the marker with a release store once the payload is written.
+ * <p>
+ * When a record does not fit in the remaining space, the segment is sealed and a new segment is used for the next
+ * records.
+ * <p>
+ * Records reserved but never published, because the process stopped while appending, are turned into skipped records
+ * by {@link #recover} when the segment is opened again.
+ *
+ * @since 11.1
+ */
+public class MMapSegment {
+    private static final Log log = LogFactory.getLog(MMapSegment.class);
+
+    protected static final int HEADER_SIZE = 64;
+
+    protected static final int STATE_INDEX = 0;
+
+    protected static final int BASE_OFFSET_INDEX = 8;
+
+    protected static final int CREATION_TIME_INDEX = 16;
+
+    protected static final int RECORD_HEADER_SIZE = 8;
+
+    protected static final int PUBLISHED = 1;
+
+    protected static final int SKIPPED = 2;
+
+    protected static final long SEALED = 0x8000_0000L;
+
+    protected static final long POSITION_MASK = 0x7FFF_FFFFL;
+
+    /** Segments are limited to 1GB so that positions and sizes fit in an int. */
+    public static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    protected static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    protected static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    protected final Path path;
+
+    protected final MappedByteBuffer buffer;
+
+    protected final long baseOffset;
+
+    protected final int dataCapacity;
+
+    protected MMapSegment(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        buffer.order(ByteOrder.nativeOrder());
+        baseOffset = buffer.getLong(BASE_OFFSET_INDEX);
+        dataCapacity = buffer.capacity() - HEADER_SIZE;
+    }
+
+    /**
+     * Creates a new segment file. A zero-filled segment is empty, only the base offset needs to be written.
+     */
+    public static MMapSegment create(Path path, long baseOffset, int size) {
+        if (size <= HEADER_SIZE || size > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Invalid segment size: " + size);
+        }
+        MappedByteBuffer buffer = map(path, size);
+        buffer.order(ByteOrder.nativeOrder());
+        buffer.putLong(BASE_OFFSET_INDEX, baseOffset);
+        buffer.putLong(CREATION_TIME_INDEX, System.currentTimeMillis());
+        return new MMapSegment(path, buffer);
+    }
+
+    /**
+     * Opens an existing segment file.
+     */
+    public static MMapSegment open(Path path) {
+        return new MMapSegment(path, map(path, -1));
+    }
+
+    protected static MappedByteBuffer map(Path path, long size) {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (size > 0) {
+                file.setLength(size);
+            } else {
+                size = file.length();
+            }
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot map segment: " + path, e);
+        }
+    }
+
+    /**
+     * Gets the space used by a record with a payload of the given length, records are 8 bytes aligned.
+     */
+    public static int recordSize(int length) {
+        return (RECORD_HEADER_SIZE + length + 7) & ~7;
+    }
+
+    public int getDataCapacity() {
+        return dataCapacity;
+    }
+
+    public long getBaseOffset() {
+        return baseOffset;
+    }
+
+    /**
+     * Gets the creation time of the segment in milliseconds, which is also the time the previous segment was sealed.
+     */
+    public long getCreationTime() {
+        return buffer.getLong(CREATION_TIME_INDEX);
+    }
+
+    protected long getState() {
+        return (long) LONG.getVolatile(buffer, STATE_INDEX);
+    }
+
+    protected static int position(long state) {
+        return (int) (state & POSITION_MASK);
+    }
+
+    protected static long count(long state) {
+        return state >>> 32;
+    }
+
+    /**
+     * Gets the offset following the last reserved record.
+     */
+    public long getEndOffset() {
+        return baseOffset + count(getState());
+    }
+
+    public boolean isSealed() {
+        return (getState() & SEALED) != 0;
+    }
+
+    /**
+     * Reserves space for a record of the given size.
+     *
+     * @return the reservation, i.e. the state before the reservation, or {@code -1} if the segment is full, in which
+     *         case it is sealed
+     */
+    protected long reserve(int size) {
+        for (;;) {
+            long state = getState();
+            if ((state & SEALED) != 0) {
+                return -1;
+            }
+            long end = position(state) + (long) size;
+            if (end > dataCapacity) {
+                if (LONG.compareAndSet(buffer, STATE_INDEX, state, state | SEALED)) {
+                    return -1;
+                }
+                continue;
+            }
+            long next = ((count(state) + 1) << 32) | end;
+            if (LONG.compareAndSet(buffer, STATE_INDEX, state, next)) {
+                return state;
+            }
+        }
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @return the offset of the record, or {@code -1} if the segment is full
+     */
+    public long append(byte[] data) {
+        long reservation = reserve(recordSize(data.length));
+        if (reservation < 0) {
+            return -1;
+        }
+        int index = HEADER_SIZE + position(reservation);
+        buffer.putInt(index + 4, data.length);
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(index + RECORD_HEADER_SIZE);
+        payload.put(data);
+        INT.setRelease(buffer, index, PUBLISHED);
+        return baseOffset + count(reservation);
+    }
+
+    /**
+     * Checks if a record has been published at the given position.
+     */
+    public boolean isPublished(int position) {
+        return position + RECORD_HEADER_SIZE <= dataCapacity
+                && (int) INT.getAcquire(buffer, HEADER_SIZE + position) == PUBLISHED;
+    }
+
+    /**
+     * Checks if the record at the given position has been skipped by a recovery, it has no payload.
+     */
+    public boolean isSkipped(int position) {
+        return position + RECORD_HEADER_SIZE <= dataCapacity
+                && (int) INT.getAcquire(buffer, HEADER_SIZE + position) == SKIPPED;
+    }
+
+    /**
+     * Replaces the records reserved but never published by skipped records.
+     * <p>
+     * The records following the first unpublished one cannot be located without its length, which may not have been
+     * written, so they are all skipped. The number of records is kept so that the offsets of the next segments stay
+     * valid. Must only be called when no appender uses the segment.
+     */
+    public void recover() {
+        long state = getState();
+        long count = count(state);
+        int end = position(state);
+        int position = 0;
+        long n = 0;
+        while (n < count && (isPublished(position) || isSkipped(position))) {
+            position = nextPosition(position);
+            n++;
+        }
+        if (n == count) {
+            return;
+        }
+        log.warn(String.format("Skipping %d records reserved but not published in segment: %s", count - n, path));
+        for (int i = HEADER_SIZE + position; i < HEADER_SIZE + end; i += Long.BYTES) {
+            buffer.putLong(i, 0);
+        }
+        // a skipped record only uses its header, it fits in the space reserved by the lost record
+        for (long i = n; i < count; i++) {
+            buffer.putInt(HEADER_SIZE + position + 4, 0);
+            INT.setRelease(buffer, HEADER_SIZE + position, SKIPPED);
+            position += RECORD_HEADER_SIZE;
+        }
+        LONG.setVolatile(buffer, STATE_INDEX, (state & SEALED) | (count << 32) | position);
+    }
+
+    /**
+     * Checks if the given position is past the last record of a sealed segment.
+     */
+    public boolean isEnd(int position) {
+        long state = getState();
+        return (state & SEALED) != 0 && position >= position(state);
+    }
+
+    /**
+     * Gets the position of the record following the published or skipped record at the given position.
+     */
+    public int nextPosition(int position) {
+        return position + recordSize(buffer.getInt(HEADER_SIZE + position + 4));
+    }
+
+    /**
+     * Reads the payload of the published record at the given position.
+     */
+    public byte[] read(int position) {
+        int index = HEADER_SIZE + position;
+        byte[] data = new byte[buffer.getInt(index + 4)];
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(index + RECORD_HEADER_SIZE);
+        payload.get(data);
+        return data;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        long state = getState();
+        return "MMapSegment{" + "path=" + path + ", baseOffset=" + baseOffset + ", count=" + count(state)
+                + ", position=" + position(state) + ", sealed=" + ((state & SEALED) != 0) + '}';
+    }
+
+}
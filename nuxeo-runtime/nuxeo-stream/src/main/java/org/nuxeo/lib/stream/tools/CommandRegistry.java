@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.nuxeo.lib.stream.tools.command.AppendCommand;
+import org.nuxeo.lib.stream.tools.command.BenchCommand;
 import org.nuxeo.lib.stream.tools.command.CatCommand;
 import org.nuxeo.lib.stream.tools.command.Command;
 import org.nuxeo.lib.stream.tools.command.CopyCommand;
@@ -56,6 +57,7 @@ public class CommandRegistry {
         ret.add(new AppendCommand());
         ret.add(new TestCommand());
         ret.add(new MonitorCommand());
+        ret.add(new BenchCommand());
         return ret;
     }
 }
@@ -0,0 +1,225 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.lib.stream.tools.command;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.log.LogAppender;
+import org.nuxeo.lib.stream.log.LogManager;
+import org.nuxeo.lib.stream.log.LogRecord;
+import org.nuxeo.lib.stream.log.LogTailer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Measures the append and tail throughput of the LogManager on a dedicated Log.
+ *
+ * @since 11.1
+ */
+public class BenchCommand extends Command {
+    private static final Log log = LogFactory.getLog(BenchCommand.class);
+
+    protected static final String NAME = "bench";
+
+    protected static final String DEFAULT_LOG_NAME = "bench";
+
+    protected static final String GROUP = "tools-bench";
+
+    protected static final int DEFAULT_PARTITIONS = 4;
+
+    protected static final int DEFAULT_COUNT = 100_000;
+
+    protected static final int DEFAULT_SIZE = 1024;
+
+    protected static final Duration READ_TIMEOUT = Duration.ofSeconds(10);
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void updateOptions(Options options) {
+        options.addOption(Option.builder("l")
+                                .longOpt("log-name")
+                                .desc("Name of the Log to create for the benchmark, it must not exist, default: "
+                                        + DEFAULT_LOG_NAME)
+                                .hasArg()
+                                .argName("LOG_NAME")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("partitions")
+                                .desc("Number of partitions of the Log, default: " + DEFAULT_PARTITIONS)
+                                .hasArg()
+                                .argName("PARTITIONS")
+                                .build());
+        options.addOption(Option.builder("n")
+                                .longOpt("count")
+                                .desc("Number of records to append then tail, default: " + DEFAULT_COUNT)
+                                .hasArg()
+                                .argName("COUNT")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("size")
+                                .desc("Size in bytes of the record data, default: " + DEFAULT_SIZE)
+                                .hasArg()
+                                .argName("SIZE")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("codec")
+                                .desc("Codec used to write and read the records: java, avro, avroBinary, avroJson")
+                                .hasArg()
+                                .argName("CODEC")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("keep")
+                                .desc("Do not delete the Log after the benchmark")
+                                .build());
+        options.addOption(Option.builder().longOpt("json").desc("Output the results as JSON").build());
+    }
+
+    @Override
+    public boolean run(LogManager manager, CommandLine cmd) throws InterruptedException {
+        String name = cmd.getOptionValue("log-name", DEFAULT_LOG_NAME);
+        int partitions = Integer.parseInt(cmd.getOptionValue("partitions", String.valueOf(DEFAULT_PARTITIONS)));
+        int count = Integer.parseInt(cmd.getOptionValue("count", String.valueOf(DEFAULT_COUNT)));
+        int size = Integer.parseInt(cmd.getOptionValue("size", String.valueOf(DEFAULT_SIZE)));
+        Codec<Record> codec = getRecordCodec(cmd.getOptionValue("codec"));
+        if (manager.exists(name)) {
+            throw new IllegalArgumentException("Log: " + name + " already exists, choose another name");
+        }
+        manager.createIfNotExists(name, partitions);
+        try {
+            Result append = append(manager, name, codec, count, size);
+            Result tail = tail(manager, name, codec, count);
+            render(cmd.hasOption("json"), manager, name, codec, partitions, size, append, tail);
+            return tail.count == count;
+        } finally {
+            if (!cmd.hasOption("keep") && !manager.delete(name)) {
+                log.warn("Cannot delete Log: " + name + ", please delete it manually");
+            }
+        }
+    }
+
+    protected Result append(LogManager manager, String name, Codec<Record> codec, int count, int size) {
+        LogAppender<Record> appender = manager.getAppender(name, codec);
+        // pre-generate the records so that only the append is measured, random data is not compressible
+        Random random = new Random();
+        List<Record> records = new ArrayList<>(Math.min(count, 1000));
+        for (int i = 0; i < Math.min(count, 1000); i++) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            records.add(Record.of("key-" + i, data));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Record record = records.get(i % records.size());
+            appender.append(record.getKey(), record);
+        }
+        return new Result(count, (long) count * size, System.nanoTime() - start);
+    }
+
+    protected Result tail(LogManager manager, String name, Codec<Record> codec, int count)
+            throws InterruptedException {
+        long bytes = 0;
+        int read = 0;
+        long start = System.nanoTime();
+        try (LogTailer<Record> tailer = manager.createTailer(GROUP, name, codec)) {
+            while (read < count) {
+                LogRecord<Record> record = tailer.read(READ_TIMEOUT);
+                if (record == null) {
+                    log.error(String.format("Timeout after reading %d records out of %d", read, count));
+                    break;
+                }
+                bytes += record.message().getData().length;
+                read++;
+            }
+            tailer.commit();
+        }
+        return new Result(read, bytes, System.nanoTime() - start);
+    }
+
+    protected void render(boolean json, LogManager manager, String name, Codec<Record> codec, int partitions,
+            int size, Result append, Result tail) {
+        if (json) {
+            ObjectMapper mapper = new ObjectMapper();
+            ObjectNode node = mapper.createObjectNode();
+            node.put("manager", manager.toString());
+            node.put("log", name);
+            node.put("partitions", partitions);
+            node.put("codec", codec.getName());
+            node.put("size", size);
+            append.toJson(node.putObject("append"));
+            tail.toJson(node.putObject("tail"));
+            log.info(node.toString());
+            return;
+        }
+        log.info("# Bench " + manager);
+        log.info(String.format("## Log: %s partitions: %d, codec: %s, record data size: %d", name, partitions,
+                codec.getName(), size));
+        log.info("| operation | records | duration ms | records/s | MB/s |\n| --- | ---: | ---: | ---: | ---: |");
+        log.info(append.toMarkdown("append"));
+        log.info(tail.toMarkdown("tail"));
+    }
+
+    protected static class Result {
+
+        protected final int count;
+
+        protected final long bytes;
+
+        protected final long durationNanos;
+
+        protected Result(int count, long bytes, long durationNanos) {
+            this.count = count;
+            this.bytes = bytes;
+            this.durationNanos = Math.max(1, durationNanos);
+        }
+
+        protected double recordsPerSecond() {
+            return count * 1e9 / durationNanos;
+        }
+
+        protected double megabytesPerSecond() {
+            return bytes * 1e9 / durationNanos / (1024 * 1024);
+        }
+
+        protected String toMarkdown(String operation) {
+            return String.format("|%s|%d|%d|%.0f|%.2f|", operation, count, durationNanos / 1_000_000,
+                    recordsPerSecond(), megabytesPerSecond());
+        }
+
+        protected void toJson(ObjectNode node) {
+            node.put("records", count);
+            node.put("bytes", bytes);
+            node.put("durationMs", durationNanos / 1_000_000);
+            node.put("recordsPerSecond", recordsPerSecond());
+            node.put("megabytesPerSecond", megabytesPerSecond());
+        }
+    }
+
+}
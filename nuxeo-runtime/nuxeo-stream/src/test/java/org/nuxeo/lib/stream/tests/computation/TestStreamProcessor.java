@@ -28,6 +28,8 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -38,6 +40,7 @@ import org.nuxeo.lib.stream.codec.AvroJsonCodec;
 import org.nuxeo.lib.stream.codec.AvroMessageCodec;
 import org.nuxeo.lib.stream.codec.Codec;
 import org.nuxeo.lib.stream.codec.SerializableCodec;
+import org.nuxeo.lib.stream.computation.ComputationContext;
 import org.nuxeo.lib.stream.computation.ComputationPolicy;
 import org.nuxeo.lib.stream.computation.ComputationPolicyBuilder;
 import org.nuxeo.lib.stream.computation.Record;
@@ -664,6 +667,77 @@ public abstract class TestStreamProcessor {
 
     }
 
+    @Test
+    public void testPolicyReadBatch() throws Exception {
+        AtomicInteger maxBatchSize = new AtomicInteger();
+        Topology topology = Topology.builder()
+                                    .addComputation(() -> new ComputationForward("C1", 1, 1) {
+                                        @Override
+                                        public void processRecords(ComputationContext context, String inputStreamName,
+                                                List<Record> records) {
+                                            maxBatchSize.accumulateAndGet(records.size(), Math::max);
+                                            super.processRecords(context, inputStreamName, records);
+                                        }
+                                    }, Arrays.asList("i1:input", "o1:output"))
+                                    .build();
+        ComputationPolicy policy = new ComputationPolicyBuilder().readBatchPolicy(10, Duration.ofMillis(5)).build();
+        int nbRecords = 25;
+        try (LogManager manager = getLogManager()) {
+            StreamManager streamManager = new LogStreamManager(manager);
+            Settings settings = new Settings(1, 1, policy);
+            StreamProcessor processor = streamManager.registerAndCreateProcessor("processor", topology, settings);
+            // records are available before the processor starts so they are read in batches
+            for (int i = 0; i < nbRecords; i++) {
+                streamManager.append("input", Record.of("key" + i, null));
+            }
+            processor.start();
+            processor.waitForAssignments(Duration.ofSeconds(10));
+            assertTrue(processor.drainAndStop(Duration.ofSeconds(20)));
+            LogLag lag = manager.getLag("input", "C1");
+            assertEquals(lag.toString(), 0, lag.lag());
+            assertEquals(nbRecords, countRecordIn(manager, "output"));
+            assertTrue(String.valueOf(maxBatchSize.get()), maxBatchSize.get() > 1);
+            assertTrue(String.valueOf(maxBatchSize.get()), maxBatchSize.get() <= 10);
+        }
+    }
+
+    @Test
+    public void testPolicyReadBatchSkipsFailingRecord() throws Exception {
+        Topology topology = Topology.builder()
+                                    .addComputation(() -> new ComputationForward("C1", 1, 1) {
+                                        @Override
+                                        public void processRecord(ComputationContext context, String inputStreamName,
+                                                Record record) {
+                                            if ("poison".equals(record.getKey())) {
+                                                throw new IllegalStateException("Simulated error for test purpose");
+                                            }
+                                            super.processRecord(context, inputStreamName, record);
+                                        }
+                                    }, Arrays.asList("i1:input", "o1:output"))
+                                    .build();
+        ComputationPolicy policy = new ComputationPolicyBuilder().readBatchPolicy(10, Duration.ofMillis(5))
+                                                                 .retryPolicy(new RetryPolicy(
+                                                                         ComputationPolicy.NO_RETRY))
+                                                                 .continueOnFailure(true)
+                                                                 .build();
+        int nbRecords = 25;
+        try (LogManager manager = getLogManager()) {
+            StreamManager streamManager = new LogStreamManager(manager);
+            Settings settings = new Settings(1, 1, policy);
+            StreamProcessor processor = streamManager.registerAndCreateProcessor("processor", topology, settings);
+            for (int i = 0; i < nbRecords; i++) {
+                streamManager.append("input", Record.of(i == 12 ? "poison" : "key" + i, null));
+            }
+            processor.start();
+            processor.waitForAssignments(Duration.ofSeconds(10));
+            assertTrue(processor.drainAndStop(Duration.ofSeconds(20)));
+            LogLag lag = manager.getLag("input", "C1");
+            assertEquals(lag.toString(), 0, lag.lag());
+            // only the failing record is skipped, not the other records read with it
+            assertEquals(nbRecords - 1, countRecordIn(manager, "output"));
+        }
+    }
+
     @Test
     public void testRegisterWithoutExecution() throws Exception {
         Topology topology = Topology.builder()
@@ -0,0 +1,218 @@
+/*
+ * (C) Copyright 2019 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.lib.stream.tests.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.nuxeo.lib.stream.tests.TestLibChronicle.IS_WIN;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nuxeo.lib.stream.log.LogAppender;
+import org.nuxeo.lib.stream.log.LogLag;
+import org.nuxeo.lib.stream.log.LogManager;
+import org.nuxeo.lib.stream.log.LogOffset;
+import org.nuxeo.lib.stream.log.LogRecord;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.mmap.MMapLogManager;
+import org.nuxeo.lib.stream.tests.KeyValueMessage;
+
+/**
+ * @since 11.1
+ */
+public class TestLogMMap extends TestLog {
+
+    // small segments to exercise segment rolling
+    protected static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected Path basePath;
+
+    @Before
+    public void skipWindowsThatDoNotCleanTempFolder() {
+        org.junit.Assume.assumeFalse(IS_WIN);
+    }
+
+    @After
+    public void resetBasePath() {
+        basePath = null;
+    }
+
+    @Override
+    public LogManager createManager() throws Exception {
+        if (basePath == null) {
+            basePath = folder.newFolder().toPath();
+        }
+        return new MMapLogManager(basePath, SEGMENT_SIZE);
+    }
+
+    @Test
+    public void testSegmentRolling() throws Exception {
+        final int NB_MSG = 1000;
+        manager.createIfNotExists(logName, 1);
+        LogAppender<KeyValueMessage> appender = manager.getAppender(logName);
+        LogOffset offset = null;
+        for (int i = 0; i < NB_MSG; i++) {
+            offset = appender.append(0, KeyValueMessage.of("id" + i));
+        }
+        assertEquals(NB_MSG - 1, offset.offset());
+        Path partitionPath = Paths.get(((MMapLogManager) manager).getBasePath(), logName, "P-00");
+        assertTrue(Files.list(partitionPath).count() > 1);
+
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer("group", logName)) {
+            for (int i = 0; i < NB_MSG / 2; i++) {
+                LogRecord<KeyValueMessage> record = tailer.read(DEF_TIMEOUT);
+                assertEquals("id" + i, record.message().key());
+                assertEquals(i, record.offset().offset());
+            }
+            tailer.commit();
+        }
+        resetManager();
+        // reopen on the committed offset, located in a segment in the middle of the partition
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer("group", logName)) {
+            assertEquals("id" + NB_MSG / 2, tailer.read(DEF_TIMEOUT).message().key());
+            tailer.seek(offset);
+            assertEquals("id" + (NB_MSG - 1), tailer.read(DEF_TIMEOUT).message().key());
+        }
+        assertEquals(LogLag.of(NB_MSG / 2), manager.getLag(logName, "group"));
+        // appends continue after the last record
+        appender = manager.getAppender(logName);
+        assertEquals(NB_MSG, appender.append(0, KeyValueMessage.of("last")).offset());
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+        final int NB_MSG = 1000;
+        manager.close();
+        manager = new MMapLogManager(basePath, SEGMENT_SIZE, "1s");
+        manager.createIfNotExists(logName, 1);
+        Path partitionPath = Paths.get(((MMapLogManager) manager).getBasePath(), logName, "P-00");
+        Path firstSegment = partitionPath.resolve(String.format("%020d.seg", 0));
+        LogAppender<KeyValueMessage> appender = manager.getAppender(logName);
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer("group", logName)) {
+            // the group holds the segments it has not processed
+            tailer.commit();
+            for (int i = 0; i < NB_MSG; i++) {
+                appender.append(0, KeyValueMessage.of("id" + i));
+            }
+            Thread.sleep(1100);
+            appender.append(0, KeyValueMessage.of("id" + NB_MSG));
+            for (int i = 0; i < NB_MSG; i++) {
+                appender.append(0, KeyValueMessage.of("more" + i));
+            }
+            assertTrue(firstSegment.toFile().exists());
+
+            for (int i = 0; i < NB_MSG / 2; i++) {
+                assertEquals("id" + i, tailer.read(DEF_TIMEOUT).message().key());
+            }
+            tailer.commit();
+        }
+        Thread.sleep(1100);
+        for (int i = 0; i < NB_MSG; i++) {
+            appender.append(0, KeyValueMessage.of("last" + i));
+        }
+        // the expired segments below the committed offset are deleted
+        assertFalse(firstSegment.toFile().exists());
+        resetManager();
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer("group", logName)) {
+            assertEquals("id" + NB_MSG / 2, tailer.read(DEF_TIMEOUT).message().key());
+        }
+        // a new group starts at the first retained record
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer("other", logName)) {
+            long first = tailer.read(DEF_TIMEOUT).offset().offset();
+            assertTrue(first > 0 && first <= NB_MSG / 2);
+        }
+    }
+
+    @Test
+    public void testSharedLog() throws Exception {
+        manager.createIfNotExists(logName, 1);
+        try (LogManager other = createManager()) {
+            LogAppender<KeyValueMessage> appender = manager.getAppender(logName);
+            try (LogTailer<KeyValueMessage> tailer = other.createTailer("group", logName)) {
+                for (int i = 0; i < 500; i++) {
+                    appender.append(0, KeyValueMessage.of("id" + i));
+                }
+                for (int i = 0; i < 500; i++) {
+                    assertEquals("id" + i, tailer.read(Duration.ofSeconds(1)).message().key());
+                }
+                tailer.commit();
+            }
+            assertEquals(LogLag.of(0), manager.getLag(logName, "group"));
+        }
+    }
+
+    @Test
+    public void testRecoverUnpublishedRecord() throws Exception {
+        manager.createIfNotExists(logName, 1);
+        LogAppender<KeyValueMessage> appender = manager.getAppender(logName);
+        for (int i = 0; i < 3; i++) {
+            appender.append(0, KeyValueMessage.of("id" + i));
+        }
+        resetManager();
+        // simulate a process stopped after reserving a record but before publishing it
+        Path segmentPath = Paths.get(((MMapLogManager) manager).getBasePath(), logName, "P-00",
+                String.format("%020d.seg", 0));
+        try (RandomAccessFile file = new RandomAccessFile(segmentPath.toFile(), "rw")) {
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+            buffer.order(ByteOrder.nativeOrder());
+            long state = buffer.getLong(0);
+            long count = state >>> 32;
+            long position = state & 0x7FFF_FFFFL;
+            // length written, payload and marker not
+            buffer.putInt(64 + (int) position + 4, 100);
+            buffer.putLong(0, ((count + 1) << 32) | (position + 112));
+            buffer.force();
+        }
+        resetManager();
+
+        appender = manager.getAppender(logName);
+        // the lost record keeps its offset
+        LogOffset offset = appender.append(0, KeyValueMessage.of("id4"));
+        assertEquals(4, offset.offset());
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer("group", logName)) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals("id" + i, tailer.read(DEF_TIMEOUT).message().key());
+            }
+            LogRecord<KeyValueMessage> record = tailer.read(DEF_TIMEOUT);
+            assertEquals("id4", record.message().key());
+            assertEquals(4, record.offset().offset());
+            assertNull(tailer.read(Duration.ofMillis(10)));
+            // seek over the lost record
+            tailer.seek(offset);
+            assertEquals("id4", tailer.read(DEF_TIMEOUT).message().key());
+            tailer.commit();
+        }
+        assertEquals(LogLag.of(0), manager.getLag(logName, "group"));
+    }
+
+}
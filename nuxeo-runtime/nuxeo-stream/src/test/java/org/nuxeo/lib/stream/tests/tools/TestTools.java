@@ -272,6 +272,16 @@ public abstract class TestTools {
         }
     }
 
+    @Test
+    public void testBench() {
+        run(String.format("bench %s --log-name %s-bench --partitions 2 --count 100 --size 64", getManagerOptions(),
+                LOG_NAME));
+        run(String.format("bench %s --log-name %s-bench2 --count 100 --codec avro --json", getManagerOptions(),
+                LOG_NAME));
+        // refuse to bench on an existing Log
+        runShouldFail(String.format("bench %s --log-name %s", getManagerOptions(), LOG_NAME));
+    }
+
     @Test
     public void testDump() {
         run("help dump");